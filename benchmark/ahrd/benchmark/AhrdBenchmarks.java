@@ -0,0 +1,236 @@
+package ahrd.benchmark;
+
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Settings.setSettings;
+import static ahrd.model.AhrdDb.closeDb;
+import static ahrd.model.AhrdDb.initializeDb;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import ahrd.controller.Settings;
+import ahrd.model.BlastResult;
+import ahrd.model.DescriptionScoreCalculator;
+import ahrd.model.Protein;
+import ahrd.model.ReferenceProtein;
+import ahrd.model.TokenScoreCalculator;
+
+/**
+ * Benchmarks of AHRD's parsing, tokenization and scoring hot paths on
+ * synthetic data. Run with <code>ant benchmark</code>. The following system
+ * properties are recognized:
+ * <ul>
+ * <li>ahrd.benchmark.seed - seed of the synthetic data generator (default
+ * 42)</li>
+ * <li>ahrd.benchmark.warmup - number of warm-up iterations (default 5)</li>
+ * <li>ahrd.benchmark.iterations - number of measured iterations (default
+ * 10)</li>
+ * <li>ahrd.benchmark.iteration_millis - duration of each iteration (default
+ * 1000)</li>
+ * </ul>
+ * Command line arguments, if any, restrict the benchmarks run to those whose
+ * names contain any of them.
+ */
+public class AhrdBenchmarks {
+
+	public static final int REFERENCES = 20000;
+	public static final int QUERIES = 2000;
+	public static final int HITS_PER_QUERY = 50;
+	public static final int DESCRIPTIONS = 10000;
+	public static final int[] HITS_FOR_SCORING = { 10, 200, 2000 };
+
+	public static void main(String[] args) throws Exception {
+		long seed = Long.getLong("ahrd.benchmark.seed", 42L);
+		BenchmarkRunner runner = new BenchmarkRunner(Integer.getInteger("ahrd.benchmark.warmup", 5),
+				Integer.getInteger("ahrd.benchmark.iterations", 10),
+				Long.getLong("ahrd.benchmark.iteration_millis", 1000L));
+		File dir = Files.createTempDirectory("ahrd_benchmark").toFile();
+		try {
+			System.out.println("Generating synthetic data with seed " + seed + " in " + dir);
+			final SyntheticData data = new SyntheticData(seed, dir, REFERENCES);
+			File referenceFasta = data.writeReferenceFasta();
+			File queryFasta = data.writeQueryFasta(QUERIES);
+			File blastResults = data.writeBlast8Results(QUERIES, HITS_PER_QUERY);
+			setSettings(new Settings(data.writeInputYml(queryFasta, blastResults, referenceFasta).getPath()));
+
+			List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+			benchmarks.add(parseBlastDatabaseBenchmark());
+			benchmarks.add(parseBlastResultsBenchmark());
+			benchmarks.add(tokenizeBenchmark(data.derive(1)));
+			benchmarks.add(filterBenchmark(data.derive(2)));
+			for (int nHits : HITS_FOR_SCORING)
+				benchmarks.add(findHighestScoringBlastResultBenchmark(data.derive(nHits), nHits));
+
+			// Reference proteins have to be in AHRD's database before any of
+			// the other benchmarks can be run:
+			initializeDb(false);
+			ReferenceProtein.parseBlastDatabase(SyntheticData.BLAST_DB_NAME, false);
+			closeDb();
+			initializeDb(true);
+			try {
+				for (Benchmark benchmark : benchmarks) {
+					if (isSelected(benchmark, args))
+						runner.measure(benchmark);
+				}
+			} finally {
+				closeDb();
+			}
+		} finally {
+			delete(dir);
+		}
+	}
+
+	public static boolean isSelected(Benchmark benchmark, String[] args) {
+		if (args.length == 0)
+			return true;
+		for (String arg : args) {
+			if (benchmark.getName().contains(arg))
+				return true;
+		}
+		return false;
+	}
+
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children)
+				delete(child);
+		}
+		file.delete();
+	}
+
+	public static Benchmark parseBlastDatabaseBenchmark() {
+		return new Benchmark("ReferenceProtein.parseBlastDatabase (" + REFERENCES + " references)") {
+			@Override
+			public void setUp() throws Exception {
+				// Needs a writable database:
+				closeDb();
+				initializeDb(false);
+			}
+
+			@Override
+			public Object run() throws Exception {
+				return ReferenceProtein.parseBlastDatabase(SyntheticData.BLAST_DB_NAME, false);
+			}
+
+			@Override
+			public void tearDown() throws Exception {
+				closeDb();
+				initializeDb(true);
+			}
+		};
+	}
+
+	public static Benchmark parseBlastResultsBenchmark() {
+		return new Benchmark("BlastResult.parseBlastResults (" + QUERIES + " x " + HITS_PER_QUERY + " hits)") {
+			private Map<String, Protein> proteinDb = new HashMap<String, Protein>();
+
+			@Override
+			public void setUp() throws Exception {
+				for (int i = 0; i < QUERIES; i++)
+					proteinDb.put(SyntheticData.queryAccession(i),
+							new Protein(SyntheticData.queryAccession(i), 1000));
+			}
+
+			@Override
+			public Object run() throws Exception {
+				return BlastResult.parseBlastResults(proteinDb, SyntheticData.BLAST_DB_NAME);
+			}
+		};
+	}
+
+	/**
+	 * @param data
+	 * @return List<String> - random descriptions that pass the description
+	 *         blacklist
+	 */
+	public static List<String> filteredDescriptions(SyntheticData data) {
+		List<Pattern> blacklist = getSettings().getBlastResultsBlackList(SyntheticData.BLAST_DB_NAME);
+		List<Pattern> filter = getSettings().getBlastResultsFilter(SyntheticData.BLAST_DB_NAME);
+		List<String> descriptions = new ArrayList<String>(DESCRIPTIONS);
+		while (descriptions.size() < DESCRIPTIONS) {
+			String description = data.randomDescription();
+			if (DescriptionScoreCalculator.passesBlacklist(description, blacklist))
+				descriptions.add(DescriptionScoreCalculator.filter(description, filter));
+		}
+		return descriptions;
+	}
+
+	public static Benchmark tokenizeBenchmark(final SyntheticData data) {
+		return new Benchmark("TokenScoreCalculator.tokenize") {
+			private List<String> descriptions;
+			private List<Pattern> tokenBlacklist;
+			private int next = 0;
+
+			@Override
+			public void setUp() throws Exception {
+				descriptions = filteredDescriptions(data);
+				tokenBlacklist = getSettings().getTokenBlackList(SyntheticData.BLAST_DB_NAME);
+			}
+
+			@Override
+			public Object run() throws Exception {
+				next = (next + 1) % descriptions.size();
+				return TokenScoreCalculator.tokenize(descriptions.get(next), tokenBlacklist);
+			}
+		};
+	}
+
+	public static Benchmark filterBenchmark(final SyntheticData data) {
+		return new Benchmark("DescriptionScoreCalculator.filter") {
+			private List<String> descriptions = new ArrayList<String>(DESCRIPTIONS);
+			private List<Pattern> filter;
+			private int next = 0;
+
+			@Override
+			public void setUp() throws Exception {
+				for (int i = 0; i < DESCRIPTIONS; i++)
+					descriptions.add(data.randomDescription() + " OS=Arabidopsis thaliana GN=SYN" + i);
+				filter = getSettings().getBlastResultsFilter(SyntheticData.BLAST_DB_NAME);
+			}
+
+			@Override
+			public Object run() throws Exception {
+				next = (next + 1) % descriptions.size();
+				return DescriptionScoreCalculator.filter(descriptions.get(next), filter);
+			}
+		};
+	}
+
+	public static Benchmark findHighestScoringBlastResultBenchmark(final SyntheticData data, final int nHits) {
+		return new Benchmark("DescriptionScoreCalculator.findHighestScoringBlastResult (" + nHits + " hits)") {
+			private Protein protein;
+
+			@Override
+			public void setUp() throws Exception {
+				Random random = data.getRandom();
+				protein = new Protein("query_with_" + nHits + "_hits", 1000);
+				for (int i = 0; i < nHits; i++) {
+					int queryStart = 1 + random.nextInt(500);
+					int subjectStart = 1 + random.nextInt(500);
+					int alnLength = 30 + random.nextInt(400);
+					BlastResult br = new BlastResult(data.randomReferenceAccession(),
+							Math.pow(10.0, -random.nextInt(180)), data.randomDescription(), queryStart,
+							queryStart + alnLength - 1, subjectStart, subjectStart + alnLength - 1, 1000,
+							20.0 + random.nextInt(9000) / 10.0, SyntheticData.BLAST_DB_NAME);
+					br.setProtein(protein);
+					br.generateHRDCandidateForProtein();
+				}
+				protein.getTokenScoreCalculator().assignTokenScores();
+				protein.getTokenScoreCalculator().filterTokenScores();
+			}
+
+			@Override
+			public Object run() throws Exception {
+				protein.getDescriptionScoreCalculator().findHighestScoringBlastResult();
+				return protein.getDescriptionScoreCalculator().getHighestScoringBlastResult();
+			}
+		};
+	}
+}
@@ -0,0 +1,41 @@
+package ahrd.benchmark;
+
+/**
+ * A single micro-benchmark. The <code>BenchmarkRunner</code> invokes
+ * <code>setUp()</code> once, then calls <code>run()</code> repeatedly, first to
+ * warm up the JIT and then to measure, and finally invokes
+ * <code>tearDown()</code>. Any state a benchmark needs should be prepared in
+ * <code>setUp()</code>, so that only the hot path is measured.
+ */
+public abstract class Benchmark {
+
+	private String name;
+
+	public Benchmark(String name) {
+		super();
+		setName(name);
+	}
+
+	public void setUp() throws Exception {
+	}
+
+	/**
+	 * Executes the measured operation once.
+	 *
+	 * @return Object - any result of the operation. The runner consumes it, so
+	 *         that the JIT cannot eliminate the measured code as dead.
+	 * @throws Exception
+	 */
+	public abstract Object run() throws Exception;
+
+	public void tearDown() throws Exception {
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+}
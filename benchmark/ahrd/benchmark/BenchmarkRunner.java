@@ -0,0 +1,82 @@
+package ahrd.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal benchmark harness: Each <code>Benchmark</code> is warmed up for a
+ * number of iterations, after which the mean and standard deviation of the
+ * time per operation are measured over a further number of iterations. Each
+ * iteration runs the benchmark repeatedly for at least
+ * <code>iterationMillis</code> milliseconds.
+ */
+public class BenchmarkRunner {
+
+	private int warmupIterations;
+	private int measurementIterations;
+	private long iterationMillis;
+	/**
+	 * Consumes the results of all benchmark operations, so they can not be
+	 * eliminated by the JIT.
+	 */
+	private volatile int sink;
+
+	public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+		super();
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationMillis = iterationMillis;
+	}
+
+	/**
+	 * Runs the benchmark repeatedly for at least <code>iterationMillis</code>.
+	 *
+	 * @param benchmark
+	 * @return double - the mean time per operation in nano-seconds
+	 * @throws Exception
+	 */
+	private double iteration(Benchmark benchmark) throws Exception {
+		long deadline = System.nanoTime() + iterationMillis * 1000000L;
+		long ops = 0;
+		long start = System.nanoTime();
+		long now;
+		do {
+			Object result = benchmark.run();
+			sink += (result == null) ? 0 : System.identityHashCode(result);
+			ops++;
+			now = System.nanoTime();
+		} while (now < deadline);
+		return (double) (now - start) / ops;
+	}
+
+	/**
+	 * Warms up and measures the argument benchmark and prints the result.
+	 *
+	 * @param benchmark
+	 * @return double[] - mean and standard deviation of the time per operation
+	 *         in nano-seconds
+	 * @throws Exception
+	 */
+	public double[] measure(Benchmark benchmark) throws Exception {
+		benchmark.setUp();
+		try {
+			for (int i = 0; i < warmupIterations; i++)
+				iteration(benchmark);
+			List<Double> nsPerOp = new ArrayList<Double>(measurementIterations);
+			for (int i = 0; i < measurementIterations; i++)
+				nsPerOp.add(iteration(benchmark));
+			double mean = 0.0;
+			for (Double x : nsPerOp)
+				mean += x;
+			mean /= nsPerOp.size();
+			double variance = 0.0;
+			for (Double x : nsPerOp)
+				variance += (x - mean) * (x - mean);
+			double sd = nsPerOp.size() > 1 ? Math.sqrt(variance / (nsPerOp.size() - 1)) : 0.0;
+			System.out.println(String.format("%-50s %15.1f ns/op  +/- %12.1f", benchmark.getName(), mean, sd));
+			return new double[] { mean, sd };
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package ahrd.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic, but realistic looking, AHRD input: Reference proteins
+ * in FASTA format, query proteins, tabular sequence similarity search results
+ * in Blast8 format and an AHRD input YML referencing them. All data is drawn
+ * from a <code>Random</code> initialized with the argument seed, so that the
+ * same seed always yields identical files and benchmark results remain
+ * comparable between commits.
+ */
+public class SyntheticData {
+
+	public static final String BLAST_DB_NAME = "swissprot";
+	public static final String AMINO_ACIDS = "ACDEFGHIKLMNPQRSTVWY";
+	/**
+	 * Words typically found in UniProtKB descriptions. Some of them are matched
+	 * by the description and token blacklists used in the benchmarks, as is the
+	 * case with real data.
+	 */
+	public static final String[] DESCRIPTION_WORDS = { "kinase", "receptor-like", "serine/threonine-protein",
+			"zinc", "finger", "transcription", "factor", "dehydrogenase", "NADH", "oxidoreductase",
+			"transferase", "hydrolase", "synthase", "subunit", "alpha", "beta", "ribosomal", "mitochondrial",
+			"chloroplastic", "binding", "domain", "containing", "protein", "family", "member", "ATP-dependent",
+			"RNA", "DNA", "helicase", "polymerase", "endoribonuclease", "Dicer", "homolog", "like", "activity",
+			"leucine-rich", "repeat", "F-box", "WRKY", "MYB", "cytochrome", "P450", "peroxidase", "transporter",
+			"ABC", "aquaporin", "heat", "shock", "chaperone", "ubiquitin", "ligase", "E3", "pentatricopeptide",
+			"calmodulin", "glutathione", "S-transferase", "methyltransferase", "acetyltransferase", "At3g17420",
+			"(Fragment)", "1", "2", "3", "A", "B" };
+	public static final String[] DESCRIPTION_PREFIXES = { "", "", "", "", "Probable ", "Putative ",
+			"Uncharacterized ", "Similar to " };
+
+	private long seed;
+	private Random random;
+	private File directory;
+	private int nReferences;
+	private List<String> referenceAccessions;
+
+	/**
+	 * @param seed
+	 * @param directory
+	 *            - the directory to write all files into
+	 * @param nReferences
+	 *            - the number of reference proteins to generate
+	 */
+	public SyntheticData(long seed, File directory, int nReferences) {
+		super();
+		this.seed = seed;
+		this.random = new Random(seed);
+		this.directory = directory;
+		this.nReferences = nReferences;
+		this.referenceAccessions = new ArrayList<String>(nReferences);
+		for (int i = 0; i < nReferences; i++)
+			referenceAccessions.add(String.format("sp|S%05d|SYN%d_ARATH", i, i));
+	}
+
+	/**
+	 * @param salt
+	 * @return SyntheticData - a generator of the same reference proteins and
+	 *         directory, whose random numbers are independent of this one's.
+	 *         Use one per benchmark, so that its data does not depend on which
+	 *         other benchmarks were run before.
+	 */
+	public SyntheticData derive(long salt) {
+		return new SyntheticData(seed + 31 * salt, directory, nReferences);
+	}
+
+	public Random getRandom() {
+		return random;
+	}
+
+	public List<String> getReferenceAccessions() {
+		return referenceAccessions;
+	}
+
+	public File file(String name) {
+		return new File(directory, name);
+	}
+
+	public String randomDescription() {
+		StringBuilder desc = new StringBuilder(
+				DESCRIPTION_PREFIXES[random.nextInt(DESCRIPTION_PREFIXES.length)]);
+		int nWords = 2 + random.nextInt(6);
+		for (int i = 0; i < nWords; i++) {
+			if (i > 0)
+				desc.append(' ');
+			desc.append(DESCRIPTION_WORDS[random.nextInt(DESCRIPTION_WORDS.length)]);
+		}
+		return desc.toString();
+	}
+
+	public String randomReferenceAccession() {
+		return referenceAccessions.get(random.nextInt(nReferences));
+	}
+
+	private void writeSequence(BufferedWriter out, int length) throws IOException {
+		for (int i = 0; i < length; i++) {
+			out.write(AMINO_ACIDS.charAt(random.nextInt(AMINO_ACIDS.length())));
+			if ((i + 1) % 60 == 0 || i == length - 1)
+				out.write('\n');
+		}
+	}
+
+	/**
+	 * Writes the reference proteins in UniProtKB FASTA format.
+	 *
+	 * @return File
+	 * @throws IOException
+	 */
+	public File writeReferenceFasta() throws IOException {
+		File fasta = file("references.fasta");
+		BufferedWriter out = new BufferedWriter(new FileWriter(fasta));
+		try {
+			for (int i = 0; i < nReferences; i++) {
+				out.write(">" + referenceAccessions.get(i) + " " + randomDescription()
+						+ " OS=Arabidopsis thaliana GN=SYN" + i + " PE=1 SV=1\n");
+				writeSequence(out, 50 + random.nextInt(950));
+			}
+		} finally {
+			out.close();
+		}
+		return fasta;
+	}
+
+	/**
+	 * Writes the query proteins in FASTA format.
+	 *
+	 * @param nQueries
+	 * @return File
+	 * @throws IOException
+	 */
+	public File writeQueryFasta(int nQueries) throws IOException {
+		File fasta = file("queries.fasta");
+		BufferedWriter out = new BufferedWriter(new FileWriter(fasta));
+		try {
+			for (int i = 0; i < nQueries; i++) {
+				out.write(">" + queryAccession(i) + "\n");
+				writeSequence(out, 50 + random.nextInt(950));
+			}
+		} finally {
+			out.close();
+		}
+		return fasta;
+	}
+
+	public static String queryAccession(int i) {
+		return "query_" + i;
+	}
+
+	/**
+	 * Writes Blast8 tabular results, sorted by query, each of argument number
+	 * of queries having argument number of Hits.
+	 *
+	 * @param nQueries
+	 * @param hitsPerQuery
+	 * @return File
+	 * @throws IOException
+	 */
+	public File writeBlast8Results(int nQueries, int hitsPerQuery) throws IOException {
+		File table = file("blast8_" + nQueries + "x" + hitsPerQuery + ".txt");
+		BufferedWriter out = new BufferedWriter(new FileWriter(table));
+		try {
+			for (int i = 0; i < nQueries; i++) {
+				for (int j = 0; j < hitsPerQuery; j++) {
+					int alnLength = 30 + random.nextInt(400);
+					int queryStart = 1 + random.nextInt(100);
+					int subjectStart = 1 + random.nextInt(100);
+					double bitScore = 20.0 + random.nextInt(9000) / 10.0;
+					out.write(queryAccession(i) + "\t" + randomReferenceAccession() + "\t"
+							+ String.format(Locale.ENGLISH, "%.2f", 20.0 + random.nextInt(8000) / 100.0) + "\t" + alnLength + "\t"
+							+ random.nextInt(alnLength / 2) + "\t" + random.nextInt(5) + "\t" + queryStart + "\t"
+							+ (queryStart + alnLength - 1) + "\t" + subjectStart + "\t"
+							+ (subjectStart + alnLength - 1) + "\t"
+							+ String.format(Locale.ENGLISH, "%.0e", Math.pow(10.0, -random.nextInt(180))) + "\t" + bitScore + "\n");
+				}
+			}
+		} finally {
+			out.close();
+		}
+		return table;
+	}
+
+	/**
+	 * Writes an AHRD input YML, using the blacklists and filters shipped with
+	 * AHRD's test resources.
+	 *
+	 * @param queryFasta
+	 * @param blastResults
+	 * @param referenceFasta
+	 * @return File
+	 * @throws IOException
+	 */
+	public File writeInputYml(File queryFasta, File blastResults, File referenceFasta) throws IOException {
+		File yml = file("ahrd_input_benchmark.yml");
+		BufferedWriter out = new BufferedWriter(new FileWriter(yml));
+		try {
+			out.write("proteins_fasta: " + queryFasta.getPath() + "\n");
+			out.write("ahrd_db: " + file("ahrd_db").getPath() + "\n");
+			out.write("output: " + file("ahrd_output.csv").getPath() + "\n");
+			out.write("token_score_bit_score_weight: 0.468\n");
+			out.write("token_score_database_score_weight: 0.2098\n");
+			out.write("token_score_overlap_score_weight: 0.3221\n");
+			out.write("blast_dbs:\n");
+			out.write("  " + BLAST_DB_NAME + ":\n");
+			out.write("    weight: 653\n");
+			out.write("    description_score_bit_score_weight: 2.717061\n");
+			out.write("    file: " + blastResults.getPath() + "\n");
+			out.write("    database: " + referenceFasta.getPath() + "\n");
+			out.write("    blacklist: ./test/resources/blacklist_descline.txt\n");
+			out.write("    filter: ./test/resources/filter_descline_sprot.txt\n");
+			out.write("    token_blacklist: ./test/resources/blacklist_token.txt\n");
+		} finally {
+			out.close();
+		}
+		return yml;
+	}
+}
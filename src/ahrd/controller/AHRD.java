@@ -3,16 +3,29 @@ package ahrd.controller;
 import static ahrd.controller.DatabaseSetup.setupOrUseExistingDatabase;
 import static ahrd.controller.Settings.getSettings;
 import static ahrd.controller.Settings.setSettings;
+import static ahrd.controller.Utils.rethrowCause;
 import static ahrd.model.AhrdDb.closeDb;
+import static ahrd.model.AhrdDb.getReferenceProteinCache;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.xml.sax.SAXException;
 
@@ -20,6 +33,8 @@ import ahrd.exception.MissingAccessionException;
 import ahrd.exception.MissingInterproResultException;
 import ahrd.exception.MissingProteinException;
 import ahrd.model.BlastResult;
+import ahrd.model.BlastResult.PreparedBlastResults;
+import ahrd.model.FastaReader;
 import ahrd.model.InterproResult;
 import ahrd.model.Protein;
 import ahrd.view.FastaOutputWriter;
@@ -30,6 +45,11 @@ import nu.xom.ParsingException;
 public class AHRD {
 
 	public static final String VERSION = "3.4";
+	/**
+	 * The number of scored Proteins that may wait to be written into the
+	 * output. See <code>assignHumanReadableDescriptions(IOutputWriter)</code>.
+	 */
+	public static final int OUTPUT_QUEUE_CAPACITY = 1024;
 
 	private Map<String, Protein> proteins;
 	private Map<String, Double> descriptionScoreBitScoreWeights = new HashMap<String, Double>();
@@ -59,19 +79,18 @@ public class AHRD {
 			// Load and parse all inputs
 			ahrd.setup(true);
 
-			// Iterate over all Proteins and assign the best scoring Human
-			// Readable Description
-			ahrd.assignHumanReadableDescriptions();
-			// Log
-			System.out.println("...assigned highestest scoring human readable descriptions in " + ahrd.takeTime()
-					+ "sec, currently occupying " + ahrd.takeMemoryUsage() + " MB");
-			// Write result to output-file:
+			// Iterate over all Proteins, assign the best scoring Human
+			// Readable Description and write each into the output-file as
+			// soon as it is scored:
 			System.out.println("Writing output to '" + getSettings().getPathToOutput() + "'.");
 			IOutputWriter ow = initializeOutputWriter(ahrd.getProteins().values());
-			ow.writeOutput();
+			ahrd.assignHumanReadableDescriptions(ow);
 			// Log
-			System.out.println("Wrote output in " + ahrd.takeTime() + "sec, currently occupying "
-					+ ahrd.takeMemoryUsage() + " MB");
+			System.out.println("...assigned highestest scoring human readable descriptions and wrote output in "
+					+ ahrd.takeTime() + "sec, currently occupying " + ahrd.takeMemoryUsage() + " MB");
+			if (getReferenceProteinCache() != null)
+				System.out.println("Reference protein cache: " + getReferenceProteinCache().getHits() + " hits, "
+						+ getReferenceProteinCache().getMisses() + " misses.");
 
 			System.out.println("\n\nDONE");
 		} catch (Exception e) {
@@ -106,14 +125,66 @@ public class AHRD {
 		setSettings(new Settings(pathToYmlInput));
 	}
 
+	/**
+	 * Constructor for runs using the Settings already assigned to the current
+	 * thread.
+	 */
+	protected AHRD() {
+		super();
+	}
+
 	public void initializeProteins() throws IOException, MissingAccessionException {
-		setProteins(Protein.initializeProteins(getSettings().getProteinsFasta()));
+		FastaReader fasta = getSettings().getProteinsFastaReader();
+		try {
+			setProteins(Protein.initializeProteins(fasta));
+		} finally {
+			fasta.close();
+		}
 	}
 
+	/**
+	 * Reads the sequence similarity search results of all Blast-Databases and
+	 * assigns the Hits to their query Proteins. If requested in the Settings,
+	 * the results of different Blast-Databases are parsed and looked up in
+	 * AHRD's database concurrently. The Hits are then added to the Proteins on
+	 * the calling thread in the order of the Blast-Databases, so the result
+	 * does not depend on the number of threads. See
+	 * <code>BlastResult.prepareBlastResults(...)</code>.
+	 * 
+	 * @throws IOException
+	 * @throws MissingProteinException
+	 * @throws SAXException
+	 * @throws MissingAccessionException
+	 */
 	public void parseBlastResults()
 			throws IOException, MissingProteinException, SAXException, MissingAccessionException {
-		for (String blastDatabase : getSettings().getBlastDatabases()) {
-			BlastResult.readBlastResults(getProteins(), blastDatabase);
+		if (getSettings().getSearchResultsThreads() <= 1) {
+			// Only hold a single Blast-Database's Hits in memory at a time:
+			for (String blastDatabase : getSettings().getBlastDatabases()) {
+				BlastResult.readBlastResults(getProteins(), blastDatabase);
+			}
+			return;
+		}
+		List<Callable<PreparedBlastResults>> tasks = new ArrayList<Callable<PreparedBlastResults>>();
+		for (final String blastDatabase : getSettings().getBlastDatabases()) {
+			tasks.add(new Callable<PreparedBlastResults>() {
+				@Override
+				public PreparedBlastResults call() throws Exception {
+					return BlastResult.prepareBlastResults(getProteins(), blastDatabase);
+				}
+			});
+		}
+		List<PreparedBlastResults> preparedBlastResults;
+		try {
+			preparedBlastResults = Utils.executeInParallel(tasks, getSettings().getSearchResultsThreads());
+		} catch (ExecutionException e) {
+			rethrowCause(e.getCause(), IOException.class);
+			rethrowCause(e.getCause(), MissingProteinException.class);
+			rethrowCause(e.getCause(), MissingAccessionException.class);
+			throw new RuntimeException(e.getCause());
+		}
+		for (PreparedBlastResults prepared : preparedBlastResults) {
+			prepared.addToProteins(getProteins());
 		}
 	}
 
@@ -138,7 +209,8 @@ public class AHRD {
 	public void filterBestScoringBlastResults(Protein prot) {
 		for (String blastDatabaseName : prot.getBlastResults().keySet()) {
 			prot.getBlastResults().put(blastDatabaseName,
-					BlastResult.filterBestScoringBlastResults(prot.getBlastResults().get(blastDatabaseName), 200));
+					BlastResult.filterBestScoringBlastResults(prot.getBlastResults().get(blastDatabaseName),
+							BlastResult.MAX_BLAST_RESULTS_PER_DATABASE));
 		}
 	}
 
@@ -183,34 +255,174 @@ public class AHRD {
 	}
 
 	/**
-	 * Assign a HumanReadableDescription to each Protein
+	 * Assign a HumanReadableDescription to each Protein. Proteins are scored
+	 * independently of each other, so if requested in the Settings they are
+	 * processed by several threads.
 	 * 
 	 * @throws MissingInterproResultException
 	 * @throws IOException
 	 * @throws SQLException
 	 */
 	public void assignHumanReadableDescriptions() throws MissingInterproResultException, IOException, SQLException {
-		for (String protAcc : getProteins().keySet()) {
-			Protein prot = getProteins().get(protAcc);
-			// Find best scoring Blast-Hit's Description-Line (based on
-			// evalue):
-			filterBestScoringBlastResults(prot);
-			// Tokenize each BlastResult's Description-Line and
-			// assign the Tokens their Scores:
-			// tokenizeBlastResultDescriptionLines(prot);
-			prot.getTokenScoreCalculator().assignTokenScores();
-			// Tell informative from non-informative Tokens.
-			// Assign each non-informative a new Score :=
-			// currentScore - (Token-High-Score / 2)
-			prot.getTokenScoreCalculator().filterTokenScores();
-			// Find the highest scoring Blast-Result:
-			prot.getDescriptionScoreCalculator().findHighestScoringBlastResult();
-			// filter for each protein's most-informative
-			// interpro-results (DEPRECATED)
-			InterproResult.filterForMostInforming(prot);
+		if (getSettings().getAnnotationThreads() > 1) {
+			List<Callable<Protein>> tasks = new ArrayList<Callable<Protein>>(getProteins().size());
+			for (final Protein prot : getProteins().values()) {
+				tasks.add(new Callable<Protein>() {
+					@Override
+					public Protein call() throws Exception {
+						assignHumanReadableDescription(prot);
+						return prot;
+					}
+				});
+			}
+			try {
+				Utils.executeInParallel(tasks, getSettings().getAnnotationThreads());
+			} catch (ExecutionException e) {
+				rethrowCause(e.getCause(), MissingInterproResultException.class);
+				rethrowCause(e.getCause(), IOException.class);
+				rethrowCause(e.getCause(), SQLException.class);
+				throw new RuntimeException(e.getCause());
+			}
+		} else {
+			for (String protAcc : getProteins().keySet()) {
+				assignHumanReadableDescription(getProteins().get(protAcc));
+			}
+		}
+	}
+
+	/**
+	 * Assign a HumanReadableDescription to each Protein and write it into
+	 * argument output as soon as it is scored. Scoring and writing are
+	 * pipelined: A background thread writes the Proteins in the order of
+	 * <code>getProteins()</code> while the next ones are scored, and releases
+	 * each Protein's Blast-Results once it has been written. At most
+	 * <code>OUTPUT_QUEUE_CAPACITY</code> scored Proteins wait to be written,
+	 * so scoring blocks, if writing falls behind. The output is closed, even
+	 * if scoring or writing fails.
+	 * 
+	 * @param ow
+	 * @throws MissingInterproResultException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public void assignHumanReadableDescriptions(final IOutputWriter ow)
+			throws MissingInterproResultException, IOException, SQLException {
+		final BlockingQueue<Future<Protein>> scoredProteins = new ArrayBlockingQueue<Future<Protein>>(
+				OUTPUT_QUEUE_CAPACITY);
+		final int numberOfProteins = getProteins().size();
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		ExecutorService scorers = getSettings().getAnnotationThreads() > 1
+				? Executors.newFixedThreadPool(getSettings().getAnnotationThreads()) : null;
+		try {
+			Future<Void> written = writer.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					try {
+						ow.writeHeader();
+						for (int i = 0; i < numberOfProteins; i++) {
+							Protein prot;
+							try {
+								prot = scoredProteins.take().get();
+							} catch (ExecutionException e) {
+								rethrowCause(e.getCause(), Exception.class);
+								throw e;
+							}
+							ow.writeProtein(prot);
+							prot.releaseBlastResults();
+						}
+					} catch (Exception e) {
+						// Close the output even if scoring or writing failed,
+						// but report the original failure:
+						try {
+							ow.close();
+						} catch (IOException closing) {
+							e.addSuppressed(closing);
+						}
+						throw e;
+					}
+					ow.close();
+					return null;
+				}
+			});
+			for (final Protein prot : getProteins().values()) {
+				Callable<Protein> task = new Callable<Protein>() {
+					@Override
+					public Protein call() throws Exception {
+						assignHumanReadableDescription(prot);
+						return prot;
+					}
+				};
+				Future<Protein> scored;
+				if (scorers != null) {
+					scored = scorers.submit(task);
+				} else {
+					FutureTask<Protein> serial = new FutureTask<Protein>(task);
+					serial.run();
+					scored = serial;
+				}
+				// Do not wait for a writer that has already failed:
+				while (!scoredProteins.offer(scored, 100, TimeUnit.MILLISECONDS)) {
+					if (written.isDone())
+						break;
+				}
+				if (written.isDone())
+					break;
+			}
+			written.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			rethrowCause(e.getCause(), MissingInterproResultException.class);
+			rethrowCause(e.getCause(), IOException.class);
+			rethrowCause(e.getCause(), SQLException.class);
+			rethrowCause(e.getCause(), RuntimeException.class);
+			rethrowCause(e.getCause(), Error.class);
+			throw new RuntimeException(e.getCause());
+		} finally {
+			// Stop the writer, if it is still waiting for scored Proteins, and
+			// wait for it to have closed the output:
+			writer.shutdownNow();
+			if (scorers != null)
+				scorers.shutdownNow();
+			try {
+				writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
 		}
 	}
 
+	/**
+	 * Assign a HumanReadableDescription to the argument Protein. Only the
+	 * argument Protein's state is changed, which is why this method can safely
+	 * be invoked for different Proteins concurrently.
+	 * 
+	 * @param prot
+	 * @throws MissingInterproResultException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public void assignHumanReadableDescription(Protein prot)
+			throws MissingInterproResultException, IOException, SQLException {
+		// Find best scoring Blast-Hit's Description-Line (based on
+		// evalue):
+		filterBestScoringBlastResults(prot);
+		// Tokenize each BlastResult's Description-Line and
+		// assign the Tokens their Scores:
+		// tokenizeBlastResultDescriptionLines(prot);
+		prot.getTokenScoreCalculator().assignTokenScores();
+		// Tell informative from non-informative Tokens.
+		// Assign each non-informative a new Score :=
+		// currentScore - (Token-High-Score / 2)
+		prot.getTokenScoreCalculator().filterTokenScores();
+		// Find the highest scoring Blast-Result:
+		prot.getDescriptionScoreCalculator().findHighestScoringBlastResult();
+		// filter for each protein's most-informative
+		// interpro-results (DEPRECATED)
+		InterproResult.filterForMostInforming(prot);
+	}
+
 	public Map<String, Protein> getProteins() {
 		return proteins;
 	}
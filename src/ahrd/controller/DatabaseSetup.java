@@ -3,6 +3,7 @@ package ahrd.controller;
 import static ahrd.controller.Settings.getSettings;
 import static ahrd.controller.Settings.setSettings;
 import static ahrd.model.AhrdDb.closeDb;
+import static ahrd.model.AhrdDb.getReferenceProteinDAO;
 import static ahrd.model.AhrdDb.initializeDb;
 import static ahrd.model.ReferenceProtein.parseBlastDatabase;
 import static ahrd.model.ReferenceProtein.parseReferenceGoAnnotations;
@@ -13,6 +14,8 @@ import java.nio.file.Files;
 
 import com.sleepycat.je.DatabaseException;
 
+import ahrd.model.CompactReferenceProteinStore;
+
 public class DatabaseSetup {
 
 	/**
@@ -68,6 +71,8 @@ public class DatabaseSetup {
 		parseReferenceSequenceDatabases(writeLogMsgs);
 		// Optionally parse Gene Ontology Annotations (GOA):
 		parseGeneOntologyAnnotations(writeLogMsgs);
+		// Optionally write the compact reference protein store:
+		writeCompactReferenceStore(writeLogMsgs);
 	}
 
 	/**
@@ -86,7 +91,7 @@ public class DatabaseSetup {
 				if (writeLogMsgs)
 					System.out.println(
 							"Starting to parse reference sequence database (Fasta-Format): '" + blastDb + "'.");
-				parseBlastDatabase(blastDb);
+				parseBlastDatabase(blastDb, writeLogMsgs);
 			}
 			if (writeLogMsgs)
 				System.out.println("Done parsing reference sequence databases.");
@@ -115,9 +120,32 @@ public class DatabaseSetup {
 		}
 	}
 
+	/**
+	 * If requested in the input, writes all ReferenceProteins into the compact
+	 * reference protein store, which AHRD then maps into memory instead of
+	 * opening Berkeley-DB. Informs the User about the process.
+	 * 
+	 * @param writeLogMsgs
+	 *            - set to true if log messages should be written to standard
+	 *            out and error
+	 * @throws IOException
+	 */
+	public static void writeCompactReferenceStore(boolean writeLogMsgs) throws IOException {
+		if (getSettings().getUseCompactReferenceStore()) {
+			if (writeLogMsgs)
+				System.out.println("Writing compact reference protein store '"
+						+ getSettings().getPathToCompactReferenceStore() + "'.");
+			long nProteins = CompactReferenceProteinStore.write(getReferenceProteinDAO(),
+					getSettings().getPathToCompactReferenceStore());
+			if (writeLogMsgs)
+				System.out.println("Wrote " + nProteins + " reference proteins into the compact store.");
+		}
+	}
+
 	/**
 	 * Connects to an existing database, if one is found, or creates and feeds a
-	 * new one.
+	 * new one. In both cases the database is finally opened read-only, which
+	 * enables caching of ReferenceProteins read from it.
 	 * 
 	 * @throws DatabaseException
 	 * @throws IOException
@@ -127,7 +155,10 @@ public class DatabaseSetup {
 			initializeDb(true);
 			if (writeLogMsgs)
 				System.out.println("Using EXISTING database in '" + getSettings().getAhrd_db() + "'.");
-		} else
+		} else {
 			createOrUpdateAhrdDatabase(writeLogMsgs); // User will be informed.
+			closeDb();
+			initializeDb(true);
+		}
 	}
 }
@@ -5,10 +5,14 @@ import static ahrd.controller.Settings.getSettings;
 import static ahrd.model.AhrdDb.closeDb;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import ahrd.exception.MissingAccessionException;
 import ahrd.model.Blast2GoAnnot;
+import ahrd.model.FastaReader;
 import ahrd.model.Protein;
 import ahrd.model.ReferenceDescription;
 import ahrd.view.OutputWriter;
@@ -19,17 +23,25 @@ public class Evaluator extends AHRD {
 		super(pathToInputYml);
 	}
 
+	protected Evaluator() {
+		super();
+	}
+
 	public void setupReferences() throws IOException, MissingAccessionException {
-		List<String> fastaEntries = Protein.splitFasta(getSettings().getReferencesFasta());
-		for (String fastaEntry : fastaEntries) {
-			if (fastaEntry != null && !fastaEntry.trim().equals("")) {
-				ReferenceDescription rd = ReferenceDescription.constructFromFastaEntry(fastaEntry.trim());
-				Protein p = getProteins().get(rd.getAccession());
-				if (p == null)
-					throw new MissingAccessionException(
-							"Could not find Protein for Accession '" + rd.getAccession() + "'");
-				p.getEvaluationScoreCalculator().setReferenceDescription(rd);
+		FastaReader fasta = getSettings().getReferencesFastaReader();
+		try {
+			while (fasta.next()) {
+				if (!fasta.getHeader().trim().equals("")) {
+					ReferenceDescription rd = ReferenceDescription.constructFromFastaHeader(fasta.getHeader().trim());
+					Protein p = getProteins().get(rd.getAccession());
+					if (p == null)
+						throw new MissingAccessionException(
+								"Could not find Protein for Accession '" + rd.getAccession() + "'");
+					p.getEvaluationScoreCalculator().setReferenceDescription(rd);
+				}
 			}
+		} finally {
+			fasta.close();
 		}
 	}
 
@@ -86,14 +98,25 @@ public class Evaluator extends AHRD {
 	 * all found descriptions coming from competitive methods. As for now those
 	 * methods are the best Blast-Hits of each searched Blast-Database. @NOTE:
 	 * Best Blast-Hits have the highest Bit-Scores. <br />
-	 * After having evaluated the objective function for each Protein,
-	 * calculates the average-evaluation-score and sets it in the current
-	 * Settings.
+	 * Proteins are evaluated independently of each other, so if requested in
+	 * the Settings they are processed by several threads. Averages are
+	 * calculated afterwards by the caller in the order of
+	 * <code>getProteins()</code>, hence they do not depend on the number of
+	 * threads.
 	 */
 	public void calculateEvaluationScores() {
-		for (Protein prot : getProteins().values()) {
-			prot.getEvaluationScoreCalculator().assignEvlScrsToCompetitors();
+		final double beta = getSettings().getFMeasureBetaParameter();
+		List<Callable<Protein>> tasks = new ArrayList<Callable<Protein>>(getProteins().size());
+		for (final Protein prot : getProteins().values()) {
+			tasks.add(new Callable<Protein>() {
+				@Override
+				public Protein call() {
+					prot.getEvaluationScoreCalculator().assignEvlScrsToCompetitors(beta);
+					return prot;
+				}
+			});
 		}
+		evaluateInParallel(tasks);
 	}
 
 	/**
@@ -101,11 +124,36 @@ public class Evaluator extends AHRD {
 	 * calculateEvaluationScores() for each Protein's Blast-Results'
 	 * Description-Lines and stores the maximum possible score each Protein's
 	 * EvaluationScoreCalculator. This is used to get more accurate information
-	 * of how well AHRD performs.
+	 * of how well AHRD performs. Like <code>calculateEvaluationScores()</code>
+	 * uses as many threads as requested in the Settings.
 	 */
 	public void findHighestPossibleEvaluationScores() {
-		for (Protein prot : getProteins().values()) {
-			prot.getEvaluationScoreCalculator().findHighestPossibleEvaluationScore();
+		final double beta = getSettings().getFMeasureBetaParameter();
+		List<Callable<Protein>> tasks = new ArrayList<Callable<Protein>>(getProteins().size());
+		for (final Protein prot : getProteins().values()) {
+			tasks.add(new Callable<Protein>() {
+				@Override
+				public Protein call() {
+					prot.getEvaluationScoreCalculator().findHighestPossibleEvaluationScore(beta);
+					return prot;
+				}
+			});
+		}
+		evaluateInParallel(tasks);
+	}
+
+	/**
+	 * Executes the argument evaluation tasks on
+	 * <code>getSettings().getEvaluationThreads()</code> threads.
+	 * 
+	 * @param tasks
+	 */
+	protected void evaluateInParallel(List<Callable<Protein>> tasks) {
+		try {
+			Utils.executeInParallel(tasks, getSettings().getEvaluationThreads());
+		} catch (ExecutionException e) {
+			// The tasks do not throw checked Exceptions:
+			throw new RuntimeException(e.getCause());
 		}
 	}
 
@@ -0,0 +1,154 @@
+package ahrd.controller;
+
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Utils.fromFile;
+import static ahrd.model.AhrdDb.closeDb;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ahrd.exception.MissingInterproResultException;
+import ahrd.model.CompiledProtein;
+import ahrd.view.TrainerOutputWriter;
+
+/**
+ * Evaluates a grid of Parameters, e.g. for sensitivity analyses, without
+ * optimizing them. The Proteins are compiled once, as done by the Trainer,
+ * and then each Protein is scored with batches of
+ * <code>PARAMETER_BATCH_SIZE</code> Parameters at once. See
+ * <code>CompiledProtein.findHighestScoringHits(ParameterBatch)</code>.
+ */
+public class GridEvaluator extends Trainer {
+
+	/**
+	 * The number of Parameters scored in a single pass over each Protein.
+	 */
+	public static final int PARAMETER_BATCH_SIZE = 256;
+	public static final String TOKEN_SCORE_BIT_SCORE_WEIGHT_COLUMN = "Token-Score-Bit-Score-Weight";
+	public static final String TOKEN_SCORE_DATABASE_SCORE_WEIGHT_COLUMN = "Token-Score-Database-Score-Weight";
+	public static final String TOKEN_SCORE_OVERLAP_SCORE_WEIGHT_COLUMN = "Token-Score-Overlap-Score-Weight";
+	public static final String BLAST_DB_WEIGHT_COLUMN_SUFFIX = "-Weight";
+	public static final String DESCRIPTION_SCORE_BIT_SCORE_WEIGHT_COLUMN_SUFFIX = "-Description-Score-Bit-Score-Weight";
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		System.out.println(
+				"Usage:\njava -Xmx30g -cp ahrd.jar ahrd.controller.GridEvaluator input.yml parameter_grid.tsv\n");
+
+		try {
+			GridEvaluator evaluator = new GridEvaluator(args[0]);
+			evaluator.setup(false); // false -> Don't log memory and time-usages
+			evaluator.setupReferences();
+			List<Parameters> grid = readParameterGrid(args[1]);
+			evaluator.evaluateGrid(grid);
+			new TrainerOutputWriter().writeGridOutput(grid);
+			System.out.println("Written output into:\n" + getSettings().getPathToOutput());
+		} catch (Exception e) {
+			System.err.println("We are sorry, an unexpected ERROR occurred:");
+			e.printStackTrace(System.err);
+		} finally {
+			closeDb();
+		}
+	}
+
+	public GridEvaluator(String pathToInputYml) throws IOException {
+		super(pathToInputYml);
+	}
+
+	/**
+	 * Reads a tab separated table of Parameters, one set of Parameters per
+	 * row. The header names the columns as in the Trainer's output, i.e.
+	 * <code>Token-Score-Bit-Score-Weight</code>,
+	 * <code>Token-Score-Database-Score-Weight</code>,
+	 * <code>Token-Score-Overlap-Score-Weight</code>, and for each
+	 * Blast-Database <code>&lt;name&gt;-Weight</code> and
+	 * <code>&lt;name&gt;-Description-Score-Bit-Score-Weight</code>. Other
+	 * columns are ignored, missing ones are taken from the current Settings.
+	 * Hence the Trainer's final output can be read, too.
+	 *
+	 * @param pathToParameterGrid
+	 * @return List<Parameters> - in order of appearance
+	 * @throws IOException
+	 */
+	public static List<Parameters> readParameterGrid(String pathToParameterGrid) throws IOException {
+		List<String> lines = fromFile(pathToParameterGrid);
+		List<Parameters> grid = new ArrayList<Parameters>();
+		if (lines.isEmpty())
+			return grid;
+		List<String> header = Arrays.asList(lines.get(0).split("\t"));
+		for (String line : lines.subList(1, lines.size())) {
+			String[] row = line.split("\t");
+			Parameters params = getSettings().getParameters().clone();
+			String value = column(header, row, TOKEN_SCORE_BIT_SCORE_WEIGHT_COLUMN);
+			if (value != null)
+				params.setTokenScoreBitScoreWeight(Double.parseDouble(value));
+			value = column(header, row, TOKEN_SCORE_DATABASE_SCORE_WEIGHT_COLUMN);
+			if (value != null)
+				params.setTokenScoreDatabaseScoreWeight(Double.parseDouble(value));
+			value = column(header, row, TOKEN_SCORE_OVERLAP_SCORE_WEIGHT_COLUMN);
+			if (value != null)
+				params.setTokenScoreOverlapScoreWeight(Double.parseDouble(value));
+			for (String blastDb : getSettings().getSortedBlastDatabases()) {
+				value = column(header, row, blastDb + BLAST_DB_WEIGHT_COLUMN_SUFFIX);
+				if (value != null)
+					params.setBlastDbWeight(blastDb, Integer.valueOf(value).toString());
+				value = column(header, row, blastDb + DESCRIPTION_SCORE_BIT_SCORE_WEIGHT_COLUMN_SUFFIX);
+				if (value != null)
+					params.setDescriptionScoreBitScoreWeight(blastDb, Double.valueOf(value).toString());
+			}
+			grid.add(params);
+		}
+		return grid;
+	}
+
+	private static String column(List<String> header, String[] row, String name) {
+		int i = header.indexOf(name);
+		return (i >= 0 && i < row.length && !row[i].trim().equals("")) ? row[i].trim() : null;
+	}
+
+	/**
+	 * Scores all argument Parameters and sets their average evaluation-scores,
+	 * True-Positives- and False-Positives-Rates. The averages are identical to
+	 * the ones the Trainer calculates for each of them.
+	 *
+	 * @param grid
+	 * @throws MissingInterproResultException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public void evaluateGrid(List<Parameters> grid) throws MissingInterproResultException, IOException, SQLException {
+		if (getCompiledProteins() == null)
+			compileProteins();
+		for (int from = 0; from < grid.size(); from += PARAMETER_BATCH_SIZE) {
+			List<Parameters> chunk = grid.subList(from, Math.min(from + PARAMETER_BATCH_SIZE, grid.size()));
+			ParameterBatch batch = new ParameterBatch(chunk, getSettings().getSortedBlastDatabases());
+			double[] avgEvlScrs = new double[batch.size()];
+			double[] avgTruePosRates = new double[batch.size()];
+			double[] avgFalsePosRates = new double[batch.size()];
+			for (CompiledProtein prot : getCompiledProteins()) {
+				if (prot.isEvaluated()) {
+					int[] hits = prot.findHighestScoringHits(batch);
+					for (int k = 0; k < batch.size(); k++) {
+						avgEvlScrs[k] += prot.getEvaluationScore(hits[k]);
+						avgTruePosRates[k] += prot.getTruePositivesRate(hits[k]);
+						avgFalsePosRates[k] += prot.getFalsePositivesRate(hits[k]);
+					}
+				}
+			}
+			// average each number:
+			double numberOfProts = getProteins().size();
+			for (int k = 0; k < batch.size(); k++) {
+				chunk.get(k).setAvgEvaluationScore(avgEvlScrs[k] > 0.0 ? avgEvlScrs[k] / numberOfProts : avgEvlScrs[k]);
+				chunk.get(k).setAvgTruePositivesRate(
+						avgTruePosRates[k] > 0.0 ? avgTruePosRates[k] / numberOfProts : avgTruePosRates[k]);
+				chunk.get(k).setAvgFalsePositivesRate(
+						avgFalsePosRates[k] > 0.0 ? avgFalsePosRates[k] / numberOfProts : avgFalsePosRates[k]);
+			}
+		}
+	}
+}
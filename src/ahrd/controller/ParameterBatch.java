@@ -0,0 +1,81 @@
+package ahrd.controller;
+
+import java.util.List;
+
+import ahrd.model.TokenScoreCalculator;
+
+/**
+ * A batch of K Parameters stored in primitive arrays, so that all of them can
+ * be evaluated in a single pass over each Protein's candidate descriptions.
+ * See <code>CompiledProtein.findHighestScoringHits(ParameterBatch)</code>.
+ * Blast-Database specific weights are stored at index
+ * <code>blastDatabase * K + k</code>, so that the inner-most loops run over
+ * the K Parameters.
+ */
+public class ParameterBatch {
+
+	private int size;
+	private double[] tokenScoreBitScoreWeights;
+	private double[] tokenScoreDatabaseScoreWeights;
+	private double[] tokenScoreOverlapScoreWeights;
+	private double[] blastDbWeights;
+	private double[] descriptionScoreBitScoreWeights;
+
+	/**
+	 * @param parameters
+	 * @param sortedBlastDatabases
+	 *            - the Blast-Databases in the order the Proteins were compiled
+	 *            with
+	 * @throws IllegalArgumentException
+	 *             if any Parameters' Token-Score-Weights do not sum up to one
+	 */
+	public ParameterBatch(List<Parameters> parameters, List<String> sortedBlastDatabases) {
+		super();
+		this.size = parameters.size();
+		this.tokenScoreBitScoreWeights = new double[size];
+		this.tokenScoreDatabaseScoreWeights = new double[size];
+		this.tokenScoreOverlapScoreWeights = new double[size];
+		this.blastDbWeights = new double[sortedBlastDatabases.size() * size];
+		this.descriptionScoreBitScoreWeights = new double[sortedBlastDatabases.size() * size];
+		for (int k = 0; k < size; k++) {
+			Parameters params = parameters.get(k);
+			tokenScoreBitScoreWeights[k] = params.getTokenScoreBitScoreWeight();
+			tokenScoreDatabaseScoreWeights[k] = params.getTokenScoreDatabaseScoreWeight();
+			tokenScoreOverlapScoreWeights[k] = params.getTokenScoreOverlapScoreWeight();
+			TokenScoreCalculator.validateTokenScoreWeights(tokenScoreBitScoreWeights[k],
+					tokenScoreDatabaseScoreWeights[k], tokenScoreOverlapScoreWeights[k]);
+			for (int db = 0; db < sortedBlastDatabases.size(); db++) {
+				blastDbWeights[db * size + k] = params.getBlastDbWeight(sortedBlastDatabases.get(db));
+				descriptionScoreBitScoreWeights[db * size + k] = params
+						.getDescriptionScoreBitScoreWeight(sortedBlastDatabases.get(db));
+			}
+		}
+	}
+
+	/**
+	 * @return int - K, the number of Parameters in this batch
+	 */
+	public int size() {
+		return size;
+	}
+
+	public double[] getTokenScoreBitScoreWeights() {
+		return tokenScoreBitScoreWeights;
+	}
+
+	public double[] getTokenScoreDatabaseScoreWeights() {
+		return tokenScoreDatabaseScoreWeights;
+	}
+
+	public double[] getTokenScoreOverlapScoreWeights() {
+		return tokenScoreOverlapScoreWeights;
+	}
+
+	public double[] getBlastDbWeights() {
+		return blastDbWeights;
+	}
+
+	public double[] getDescriptionScoreBitScoreWeights() {
+		return descriptionScoreBitScoreWeights;
+	}
+}
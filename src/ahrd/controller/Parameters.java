@@ -6,6 +6,7 @@ import static ahrd.controller.Utils.randomMultipleOfTen;
 import static ahrd.controller.Utils.randomSaveSubtract;
 import static ahrd.controller.Utils.roundToNDecimalPlaces;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -20,7 +21,9 @@ import java.util.Set;
  * 
  * @author Kathrin Klee, Asis Hallab
  */
-public class Parameters implements Cloneable {
+public class Parameters implements Cloneable, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private Double tokenScoreBitScoreWeight;
 	private Double tokenScoreDatabaseScoreWeight;
@@ -99,7 +102,7 @@ public class Parameters implements Cloneable {
 		// How many Parameters can be mutated?
 		int noOfParams = 3 + 2 * getBlastDatabases().size();
 		// Randomly choose a parameter to change:
-		Random rand = Utils.random;
+		Random rand = Utils.getRandom();
 		randParamInd = rand.nextInt(noOfParams);
 		return randParamInd;
 	}
@@ -136,7 +139,7 @@ public class Parameters implements Cloneable {
 		Integer randParamToMutate = getLastMutatedParameter();
 		if (!(diffEvalScoreToLastEvaluatedParams != null
 				&& diffEvalScoreToLastEvaluatedParams > 0.0
-				&& randParamToMutate != null && Utils.random.nextDouble() <= pMutateSameParameter(diffEvalScoreToLastEvaluatedParams))) {
+				&& randParamToMutate != null && Utils.getRandom().nextDouble() <= pMutateSameParameter(diffEvalScoreToLastEvaluatedParams))) {
 			// Do not mutate the same parameter again, but randomly choose one
 			// to change:
 			randParamToMutate = parameterToMutateRandomIndex();
@@ -170,7 +173,7 @@ public class Parameters implements Cloneable {
 	}
 
 	public String randomBlastDatabaseName() {
-		Random rand = Utils.random;
+		Random rand = Utils.getRandom();
 		int randBlastDbInd = rand.nextInt(getBlastDatabases().size());
 		List<String> blastDbNamesList = new ArrayList<String>(
 				getBlastDatabases());
@@ -282,7 +285,7 @@ public class Parameters implements Cloneable {
 	 *         mutate.
 	 */
 	public Double mutatePercentageBy() {
-		return Math.abs(Utils.random.nextGaussian()
+		return Math.abs(Utils.getRandom().nextGaussian()
 				* getSettings().getMutatorDeviation()
 				+ getSettings().getMutatorMean());
 	}
@@ -351,18 +354,18 @@ public class Parameters implements Cloneable {
 						this.getTokenScoreOverlapScoreWeight());
 	}
 
+	/**
+	 * Consistent with <code>equals(Object)</code> and independent of the
+	 * iteration order of the Blast-Database-Parameters, so that Parameters
+	 * can be looked up in hashed memos, even after having been serialized.
+	 */
 	@Override
 	public int hashCode() {
-		String hashSrc = "";
-		for (String blastDb : getBlastDbParameters().keySet()) {
-			for (String iterKey : getParametersOfBlastDb(blastDb).keySet()) {
-				hashSrc += getParametersOfBlastDb(blastDb).get(iterKey);
-			}
-		}
-		hashSrc += getTokenScoreBitScoreWeight()
-				+ getTokenScoreDatabaseScoreWeight()
-				+ getTokenScoreOverlapScoreWeight();
-		return hashSrc.hashCode();
+		int hash = getBlastDbParameters().hashCode();
+		hash = 31 * hash + getTokenScoreBitScoreWeight().hashCode();
+		hash = 31 * hash + getTokenScoreDatabaseScoreWeight().hashCode();
+		hash = 31 * hash + getTokenScoreOverlapScoreWeight().hashCode();
+		return hash;
 	}
 
 	/**
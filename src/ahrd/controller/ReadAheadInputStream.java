@@ -0,0 +1,130 @@
+package ahrd.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the wrapped InputStream on a background thread into a bounded queue
+ * of chunks. Wrapping a decompressing stream, inflation runs concurrently to
+ * the parsing of the already decompressed data. See
+ * <code>Utils.openInputStream(String)</code>.
+ */
+class ReadAheadInputStream extends InputStream {
+
+	public static final int CHUNK_SIZE = 1 << 16;
+	public static final int CHUNKS_READ_AHEAD = 16;
+	/**
+	 * Marks the end of the wrapped stream in the queue:
+	 */
+	private static final byte[] END = new byte[0];
+
+	private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(CHUNKS_READ_AHEAD);
+	private final Thread reader;
+	private volatile IOException failure;
+	private byte[] chunk;
+	private int position;
+	private boolean closed = false;
+
+	public ReadAheadInputStream(final InputStream in, String name) {
+		super();
+		this.reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				boolean interrupted = false;
+				try {
+					while (true) {
+						byte[] buffer = new byte[CHUNK_SIZE];
+						int n = 0;
+						int read;
+						while (n < CHUNK_SIZE && (read = in.read(buffer, n, CHUNK_SIZE - n)) != -1)
+							n += read;
+						if (n == 0)
+							break;
+						if (n < CHUNK_SIZE) {
+							byte[] last = new byte[n];
+							System.arraycopy(buffer, 0, last, 0, n);
+							buffer = last;
+						}
+						chunks.put(buffer);
+					}
+				} catch (IOException e) {
+					failure = e;
+				} catch (InterruptedException e) {
+					// Reading has been stopped by close()
+					interrupted = true;
+				}
+				try {
+					in.close();
+				} catch (IOException e) {
+					if (failure == null)
+						failure = e;
+				}
+				if (!interrupted) {
+					try {
+						chunks.put(END);
+					} catch (InterruptedException e) {
+						// Reading has been stopped by close()
+					}
+				}
+			}
+		}, "read-ahead " + name);
+		this.reader.setDaemon(true);
+		this.reader.start();
+	}
+
+	/**
+	 * @return boolean - false, if the end of the wrapped stream is reached
+	 * @throws IOException
+	 *             - the one the background thread failed with, if any
+	 */
+	private boolean nextChunk() throws IOException {
+		if (chunk == END)
+			return false;
+		if (chunk == null || position == chunk.length) {
+			try {
+				chunk = chunks.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			position = 0;
+			if (chunk == END) {
+				if (failure != null)
+					throw failure;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextChunk())
+			return -1;
+		return chunk[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!nextChunk())
+			return -1;
+		int n = Math.min(len, chunk.length - position);
+		System.arraycopy(chunk, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			reader.interrupt();
+			chunks.clear();
+		}
+	}
+}
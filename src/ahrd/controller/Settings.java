@@ -12,10 +12,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import com.esotericsoftware.yamlbeans.YamlReader;
 
+import ahrd.model.FastaReader;
+import ahrd.model.ProcessedDescription;
+
 /**
  * Using the <em>thread-local</em> singleton-pattern to hold in a central place
  * all AHRD's current settings. This eases greatly access of input-values from
@@ -26,9 +30,10 @@ import com.esotericsoftware.yamlbeans.YamlReader;
 public class Settings implements Cloneable {
 
 	/**
-	 * Thread-Local Singleton of the current AHRD-Run's settings:
+	 * Thread-Local Singleton of the current AHRD-Run's settings. Threads started
+	 * by an AHRD-Run inherit its settings:
 	 */
-	private static final ThreadLocal<Settings> settings = new ThreadLocal<Settings>();
+	private static final ThreadLocal<Settings> settings = new InheritableThreadLocal<Settings>();
 
 	public static Settings getSettings() {
 		return settings.get();
@@ -49,6 +54,7 @@ public class Settings implements Cloneable {
 	public static final String BLAST_BLACKLIST_KEY = "blacklist";
 	public static final String BLAST_FILTER_KEY = "filter";
 	public static final String TOKEN_BLACKLIST_KEY = "token_blacklist";
+	public static final String BLAST_RESULTS_CACHE_KEY = "cache";
 	public static final String INTERPRO_DATABASE_KEY = "interpro_database";
 	public static final String INTERPRO_RESULT_KEY = "interpro_result";
 	public static final String GENE_ONTOLOGY_RESULT_KEY = "gene_ontology_result";
@@ -88,6 +94,8 @@ public class Settings implements Cloneable {
 	public static final String SEQ_SIM_SEARCH_TABLE_SUBJECT_END_COL_KEY = "seq_sim_search_table_subject_end_col";
 	public static final String SEQ_SIM_SEARCH_TABLE_E_VALUE_COL_KEY = "seq_sim_search_table_e_value_col";
 	public static final String SEQ_SIM_SEARCH_TABLE_BIT_SCORE_COL_KEY = "seq_sim_search_table_bit_score_col";
+	public static final String SEQ_SIM_SEARCH_TABLE_SORTED_BY_QUERY_KEY = "seq_sim_search_table_sorted_by_query";
+	public static final String PRESELECT_BEST_BLAST_HITS_KEY = "preselect_best_blast_hits";
 	public static final String FASTA_HEADER_REGEX_KEY = "fasta_header_regex";
 	public static final Pattern DEFAULT_FASTA_HEADER_REGEX = Pattern
 			.compile("^>(?<accession>\\S+)\\s+(?<description>.+?)\\s+(((OS|os)=.+)|((GN|gn)=.+))?$");
@@ -101,11 +109,32 @@ public class Settings implements Cloneable {
 	public static final String DEFAULT_LINE_SEP = "(\r|\n)+";
 	public static final String AHRD_DATABASE_KEY = "ahrd_db";
 	public static final String AHRD_DB_CACHE_PERCENT_KEY = "ahrd_db_cache_percent";
+	public static final String ANNOTATION_THREADS_KEY = "annotation_threads";
+	public static final String EVALUATION_THREADS_KEY = "evaluation_threads";
+	public static final String SEARCH_RESULTS_THREADS_KEY = "search_results_threads";
+	public static final String DATABASE_SETUP_THREADS_KEY = "database_setup_threads";
+	public static final String GO_ANNOTATIONS_IN_MEMORY_KEY = "go_annotations_in_memory";
+	public static final String REFERENCE_PROTEIN_CACHE_SIZE_KEY = "reference_protein_cache_size";
+	public static final String COMPACT_REFERENCE_STORE_KEY = "compact_reference_store";
+	public static final String ANNEALING_CHAINS_KEY = "annealing_chains";
+	public static final String ANNEALING_THREADS_KEY = "annealing_threads";
+	public static final String ANNEALING_SEED_KEY = "annealing_seed";
+	public static final String CHECKPOINT_KEY = "checkpoint";
+	public static final String CHECKPOINT_INTERVAL_KEY = "checkpoint_interval";
+	public static final String RESUME_FROM_CHECKPOINT_KEY = "resume_from_checkpoint";
+	public static final String COMPACT_REFERENCE_STORE_FILE_NAME = "reference_proteins.compact";
 
 	/*
 	 * CONSTANTS:
 	 */
 	public static final String TOKEN_SPLITTER_REGEX = "-|/|;|\\\\|,|:|\"|'|\\.|\\s+|\\||\\(|\\)";
+	public static final Pattern TOKEN_SPLITTER = Pattern.compile(TOKEN_SPLITTER_REGEX);
+	/**
+	 * Blacklisted regular expressions using any of these features can not be
+	 * merged into a single alternation, because their meaning would change:
+	 * back-references, named groups, and the comments flag.
+	 */
+	public static final Pattern UNMERGEABLE_REGEX = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\(\\?[a-wyzA-Z-]*x");
 	public static final String FASTA_PROTEIN_HEADER_ACCESSION_GROUP_NAME = "accession";
 	public static final String FASTA_PROTEIN_HEADER_DESCRIPTION_GROUP_NAME = "description";
 	public static final String SHORT_ACCESSION_GROUP_NAME = "shortAccession";
@@ -120,11 +149,11 @@ public class Settings implements Cloneable {
 	private String pathToProteinsFasta;
 	private String pathToReferencesFasta;
 	private String pathToReferencesDescriptionBlacklist;
-	private List<String> referencesDescriptionBlacklist;
+	private List<Pattern> referencesDescriptionBlacklist;
 	private String pathToReferencesDescriptionFilter;
-	private List<String> referencesDescriptionFilter;
+	private List<Pattern> referencesDescriptionFilter;
 	private String pathToReferencesTokenBlacklist;
-	private List<String> referencesTokenBlacklist = new ArrayList<String>();
+	private List<Pattern> referencesTokenBlacklist = new ArrayList<Pattern>();
 	private String pathToInterproDatabase;
 	private String pathToInterproResults;
 	private String pathToGeneOntologyResults;
@@ -156,9 +185,20 @@ public class Settings implements Cloneable {
 	private Double fMeasureBetaParameter = 1.0;
 	private Map<String, Map<String, String>> blastDbSettings = new HashMap<String, Map<String, String>>();
 	private List<String> sortedBlastDatabaseNames;
-	private Map<String, List<String>> blastResultsBlacklists = new HashMap<String, List<String>>();
-	private Map<String, List<String>> blastResultsFilter = new HashMap<String, List<String>>();
-	private Map<String, List<String>> tokenBlacklists = new HashMap<String, List<String>>();
+	/**
+	 * The Blacklists and Filters of each Blast-Database are held as
+	 * pre-compiled regular expressions. See <code>compileBlacklist(...)</code>
+	 * and <code>compileFilter(...)</code> for details.
+	 */
+	private Map<String, List<Pattern>> blastResultsBlacklists = new HashMap<String, List<Pattern>>();
+	private Map<String, List<Pattern>> blastResultsFilter = new HashMap<String, List<Pattern>>();
+	private Map<String, List<Pattern>> tokenBlacklists = new HashMap<String, List<Pattern>>();
+	/**
+	 * The memoized results of passing the reference descriptions through each
+	 * Blast-Database's Blacklist, Filter, and Tokenizer. See
+	 * <code>ProcessedDescription</code>.
+	 */
+	private Map<String, Map<String, ProcessedDescription>> processedDescriptions = new HashMap<String, Map<String, ProcessedDescription>>();
 	private String pathToBlast2GoAnnotations;
 	/**
 	 * For the <strong>simulated annealing</strong> algorithm, this will be current
@@ -229,6 +269,21 @@ public class Settings implements Cloneable {
 	private Integer seqSimSearchTableSubjectEndCol = 9;
 	private Integer seqSimSearchTableEValueCol = 10;
 	private Integer seqSimSearchTableBitScoreCol = 11;
+	/**
+	 * If set to true, the sequence similarity search result tables are
+	 * expected to be sorted by query accession and are processed one query
+	 * after the other. This bounds memory usage by the largest block of Hits of
+	 * a single query.
+	 */
+	private Boolean seqSimSearchTableSortedByQuery = false;
+	/**
+	 * If set, only this many Hits of lowest E-Value per query Protein and
+	 * Blast-Database are processed. Unless the search results are sorted by
+	 * query, these are selected while parsing, so that the other Hits are never
+	 * held in memory. See <code>BlastResult.parseBlastResults(...)</code>. Not
+	 * set by default, i.e. all Hits are processed.
+	 */
+	private Integer preselectBestBlastHits;
 	private Pattern referenceGoRegex;
 	/**
 	 * If set to true AHRD will choose the highest scoring BlastResult WITH GO
@@ -252,6 +307,83 @@ public class Settings implements Cloneable {
 	 * database where records are read at most once per AHRD-run.
 	 */
 	private int ahrdDbCachePercent = 1;
+	/**
+	 * The number of threads used to assign each Protein its Human Readable
+	 * Description. Proteins are scored independently of each other. Default is
+	 * one, i.e. all Proteins are processed one after the other.
+	 */
+	private int annotationThreads = 1;
+	/**
+	 * The number of threads used to evaluate the Descriptions assigned to the
+	 * Proteins and those of their competitors against the references. Each
+	 * Protein is evaluated independently of the others. Default is one.
+	 */
+	private int evaluationThreads = 1;
+	/**
+	 * The number of threads reading the sequence similarity search results of
+	 * different Blast-Databases concurrently. Default is one, i.e. one
+	 * Blast-Database after the other.
+	 */
+	private int searchResultsThreads = 1;
+	/**
+	 * The number of threads parsing the Fasta headers of reference sequence
+	 * databases during database setup. Reading the files and writing into the
+	 * database each happen on one additional thread.
+	 */
+	private int databaseSetupThreads = 1;
+	/**
+	 * The number of distinct reference GO annotations DatabaseSetup aggregates
+	 * in memory before spilling them to a temporary file. Each takes roughly
+	 * 200 bytes of heap. If not set, it is derived from the maximum heap, see
+	 * <code>ReferenceProtein.defaultMaxGoAnnotationsInMemory()</code>.
+	 */
+	private Integer goAnnotationsInMemory;
+	/**
+	 * The maximum number of ReferenceProteins kept in memory after being read
+	 * from AHRD's database. See <code>AhrdDb.ReferenceProteinCache</code>. A
+	 * cached ReferenceProtein, with its accessions, description and GO terms,
+	 * takes roughly 0.5 to 1 KB of heap, i.e. the default of 50,000 up to
+	 * about 50 MB.
+	 */
+	private int referenceProteinCacheSize = 50000;
+	/**
+	 * If set to true, DatabaseSetup additionally writes all ReferenceProteins
+	 * into an immutable memory-mapped file, which AHRD then reads instead of
+	 * Berkeley-DB. See <code>CompactReferenceProteinStore</code>.
+	 */
+	private Boolean useCompactReferenceStore = false;
+	/**
+	 * The number of independent simulated annealing chains the Trainer runs in
+	 * a single JVM. All chains share the parsed Proteins and their candidate
+	 * descriptions. The first chain starts at the Parameters given in the
+	 * input, all others at distinct random Parameters. Default is one.
+	 */
+	private int annealingChains = 1;
+	/**
+	 * The number of threads the Trainer runs its simulated annealing chains
+	 * on. Default is one.
+	 */
+	private int annealingThreads = 1;
+	/**
+	 * If set, the random start Parameters and each chain's random decisions
+	 * are derived from this seed, so that training is reproducible regardless
+	 * of the number of threads used.
+	 */
+	private Long annealingSeed;
+	/**
+	 * If set, the Trainer periodically saves the state of its simulated
+	 * annealing into this file.
+	 */
+	private String pathToCheckpoint;
+	/**
+	 * The number of simulated annealing iterations between two checkpoints.
+	 * Default is 1000.
+	 */
+	private int checkpointInterval = 1000;
+	/**
+	 * If set to true, the Trainer resumes from its checkpoint, if present.
+	 */
+	private boolean resumeFromCheckpoint = false;
 
 	/**
 	 * Construct from contents of file 'AHRD_input.yml'.
@@ -294,9 +426,13 @@ public class Settings implements Cloneable {
 		// their appropriate files:
 		for (String blastDatabaseName : getBlastDatabases()) {
 			this.blastResultsBlacklists.put(blastDatabaseName,
-					fromFile(getPathToBlastResultsBlackList(blastDatabaseName)));
-			this.blastResultsFilter.put(blastDatabaseName, fromFile(getPathToBlastResultsFilter(blastDatabaseName)));
-			this.tokenBlacklists.put(blastDatabaseName, fromFile(getPathToTokenBlacklist(blastDatabaseName)));
+					compileBlacklist(fromFile(getPathToBlastResultsBlackList(blastDatabaseName))));
+			this.blastResultsFilter.put(blastDatabaseName,
+					compileFilter(fromFile(getPathToBlastResultsFilter(blastDatabaseName))));
+			this.tokenBlacklists.put(blastDatabaseName,
+					compileBlacklist(fromFile(getPathToTokenBlacklist(blastDatabaseName))));
+			this.processedDescriptions.put(blastDatabaseName,
+					new ConcurrentHashMap<String, ProcessedDescription>());
 			// Set Database-Weights and Description-Score-Bit-Score-Weight:
 			this.getParameters().setBlastDbWeight(blastDatabaseName,
 					this.getBlastDbSettings(blastDatabaseName).get(Settings.BLAST_DB_WEIGHT_KEY));
@@ -375,6 +511,13 @@ public class Settings implements Cloneable {
 			setSeqSimSearchTableBitScoreCol(
 					Integer.parseInt(input.get(SEQ_SIM_SEARCH_TABLE_BIT_SCORE_COL_KEY).toString()));
 		}
+		if (input.get(SEQ_SIM_SEARCH_TABLE_SORTED_BY_QUERY_KEY) != null) {
+			setSeqSimSearchTableSortedByQuery(
+					Boolean.parseBoolean(input.get(SEQ_SIM_SEARCH_TABLE_SORTED_BY_QUERY_KEY).toString()));
+		}
+		if (input.get(PRESELECT_BEST_BLAST_HITS_KEY) != null) {
+			setPreselectBestBlastHits(Integer.parseInt(input.get(PRESELECT_BEST_BLAST_HITS_KEY).toString()));
+		}
 		// Enable parsing of custom (non UniprotKB) go annotation (GOA) files:
 		if (input.get(REFERENCE_GO_REGEX_KEY) != null) {
 			setReferenceGoRegex(Pattern.compile(input.get(REFERENCE_GO_REGEX_KEY).toString()));
@@ -387,15 +530,15 @@ public class Settings implements Cloneable {
 		}
 		if (input.get(REFERENCES_DESCRIPTION_BLACKLIST_KEY) != null) {
 			this.setPathToReferencesDescriptionBlacklist(input.get(REFERENCES_DESCRIPTION_BLACKLIST_KEY).toString());
-			this.setReferencesDescriptionBlacklist(fromFile(getPathToReferencesDescriptionBlacklist()));
+			this.setReferencesDescriptionBlacklist(compileBlacklist(fromFile(getPathToReferencesDescriptionBlacklist())));
 		}
 		if (input.get(REFERENCES_DESCRIPTION_FILTER_KEY) != null) {
 			this.setPathToReferencesDescriptionFilter(input.get(REFERENCES_DESCRIPTION_FILTER_KEY).toString());
-			this.setReferencesDescriptionFilter(fromFile(getPathToReferencesDescriptionFilter()));
+			this.setReferencesDescriptionFilter(compileFilter(fromFile(getPathToReferencesDescriptionFilter())));
 		}
 		if (input.get(REFERENCES_TOKEN_BLACKLIST_KEY) != null) {
 			this.setPathToReferencesTokenBlacklist(input.get(REFERENCES_TOKEN_BLACKLIST_KEY).toString());
-			this.setReferencesTokenBlacklist(fromFile(getPathToReferencesTokenBlacklist()));
+			this.setReferencesTokenBlacklist(compileBlacklist(fromFile(getPathToReferencesTokenBlacklist())));
 		}
 		if (input.get(AHRD_DATABASE_KEY) != null) {
 			this.setAhrd_db(input.get(AHRD_DATABASE_KEY).toString());
@@ -403,6 +546,92 @@ public class Settings implements Cloneable {
 		if (input.get(AHRD_DB_CACHE_PERCENT_KEY) != null) {
 			this.setAhrdDbCachePercent(Integer.valueOf(input.get(AHRD_DB_CACHE_PERCENT_KEY).toString()));
 		}
+		if (input.get(ANNOTATION_THREADS_KEY) != null) {
+			this.setAnnotationThreads(Integer.parseInt(input.get(ANNOTATION_THREADS_KEY).toString()));
+		}
+		if (input.get(EVALUATION_THREADS_KEY) != null) {
+			this.setEvaluationThreads(Integer.parseInt(input.get(EVALUATION_THREADS_KEY).toString()));
+		}
+		if (input.get(SEARCH_RESULTS_THREADS_KEY) != null) {
+			this.setSearchResultsThreads(Integer.parseInt(input.get(SEARCH_RESULTS_THREADS_KEY).toString()));
+		}
+		if (input.get(DATABASE_SETUP_THREADS_KEY) != null) {
+			this.setDatabaseSetupThreads(Integer.parseInt(input.get(DATABASE_SETUP_THREADS_KEY).toString()));
+		}
+		if (input.get(COMPACT_REFERENCE_STORE_KEY) != null) {
+			this.setUseCompactReferenceStore(Boolean.parseBoolean(input.get(COMPACT_REFERENCE_STORE_KEY).toString()));
+		}
+		if (input.get(GO_ANNOTATIONS_IN_MEMORY_KEY) != null) {
+			this.setGoAnnotationsInMemory(Integer.parseInt(input.get(GO_ANNOTATIONS_IN_MEMORY_KEY).toString()));
+		}
+		if (input.get(REFERENCE_PROTEIN_CACHE_SIZE_KEY) != null) {
+			this.setReferenceProteinCacheSize(
+					Integer.parseInt(input.get(REFERENCE_PROTEIN_CACHE_SIZE_KEY).toString()));
+		}
+		if (input.get(ANNEALING_CHAINS_KEY) != null) {
+			this.setAnnealingChains(Integer.parseInt(input.get(ANNEALING_CHAINS_KEY).toString()));
+		}
+		if (input.get(ANNEALING_THREADS_KEY) != null) {
+			this.setAnnealingThreads(Integer.parseInt(input.get(ANNEALING_THREADS_KEY).toString()));
+		}
+		if (input.get(ANNEALING_SEED_KEY) != null) {
+			this.setAnnealingSeed(Long.parseLong(input.get(ANNEALING_SEED_KEY).toString()));
+		}
+		if (input.get(CHECKPOINT_KEY) != null) {
+			this.setPathToCheckpoint(input.get(CHECKPOINT_KEY).toString());
+		}
+		if (input.get(CHECKPOINT_INTERVAL_KEY) != null) {
+			this.setCheckpointInterval(Integer.parseInt(input.get(CHECKPOINT_INTERVAL_KEY).toString()));
+		}
+		if (input.get(RESUME_FROM_CHECKPOINT_KEY) != null) {
+			this.setResumeFromCheckpoint(Boolean.parseBoolean(input.get(RESUME_FROM_CHECKPOINT_KEY).toString()));
+		}
+	}
+
+	/**
+	 * Compiles the regular expressions of a blacklist. A string is
+	 * blacklisted, if any of them is found in it. Hence all regular expressions
+	 * are merged into a single alternation, which is checked in one pass. Only
+	 * if the blacklist uses features that prevent merging, see
+	 * <code>UNMERGEABLE_REGEX</code>, each regular expression is compiled
+	 * separately.
+	 * 
+	 * @param blacklist
+	 * @return List<Pattern> - empty, of size one, or one Pattern per regular
+	 *         expression
+	 */
+	public static List<Pattern> compileBlacklist(List<String> blacklist) {
+		List<Pattern> compiled = new ArrayList<Pattern>();
+		boolean mergeable = true;
+		StringBuilder alternation = new StringBuilder();
+		for (String regex : blacklist) {
+			mergeable = mergeable && !UNMERGEABLE_REGEX.matcher(regex).find();
+			if (alternation.length() > 0)
+				alternation.append('|');
+			alternation.append("(?:").append(regex).append(')');
+			// Fail early on invalid regular expressions:
+			compiled.add(Pattern.compile(regex));
+		}
+		if (mergeable && compiled.size() > 1) {
+			compiled.clear();
+			compiled.add(Pattern.compile(alternation.toString()));
+		}
+		return compiled;
+	}
+
+	/**
+	 * Compiles the regular expressions of a filter. As the matches of each
+	 * filter are deleted one after the other, they can not be merged.
+	 * 
+	 * @param filter
+	 * @return List<Pattern> - one Pattern per regular expression
+	 */
+	public static List<Pattern> compileFilter(List<String> filter) {
+		List<Pattern> compiled = new ArrayList<Pattern>();
+		for (String regex : filter) {
+			compiled.add(Pattern.compile(regex));
+		}
+		return compiled;
 	}
 
 	/**
@@ -504,6 +733,16 @@ public class Settings implements Cloneable {
 		return getBlastDbSettings(blastDatabaseName).get(BLAST_RESULT_FILE_KEY);
 	}
 
+	/**
+	 * @param blastDatabaseName
+	 * @return String - the path to the binary cache of the argument
+	 *         Blast-Database's parsed search results, or null if no cache is
+	 *         to be used. See <code>BlastResultsCache</code>.
+	 */
+	public String getPathToBlastResultsCache(String blastDatabaseName) {
+		return getBlastDbSettings(blastDatabaseName).get(BLAST_RESULTS_CACHE_KEY);
+	}
+
 	public String getPathToBlastDatabase(String blastDatabaseName) {
 		return getBlastDbSettings(blastDatabaseName).get(BLAST_DATABASE_KEY);
 	}
@@ -524,7 +763,7 @@ public class Settings implements Cloneable {
 		return getBlastDbSettings(blastDatabaseName).get(BLAST_BLACKLIST_KEY);
 	}
 
-	public List<String> getBlastResultsBlackList(String blastDatabaseName) {
+	public List<Pattern> getBlastResultsBlackList(String blastDatabaseName) {
 		return this.blastResultsBlacklists.get(blastDatabaseName);
 	}
 
@@ -532,7 +771,7 @@ public class Settings implements Cloneable {
 		return getBlastDbSettings(blastDatabaseName).get(BLAST_FILTER_KEY);
 	}
 
-	public List<String> getBlastResultsFilter(String blastDatabaseName) {
+	public List<Pattern> getBlastResultsFilter(String blastDatabaseName) {
 		return this.blastResultsFilter.get(blastDatabaseName);
 	}
 
@@ -540,10 +779,20 @@ public class Settings implements Cloneable {
 		return getBlastDbSettings(blastDatabaseName).get(TOKEN_BLACKLIST_KEY);
 	}
 
-	public List<String> getTokenBlackList(String blastDatabaseName) {
+	public List<Pattern> getTokenBlackList(String blastDatabaseName) {
 		return this.tokenBlacklists.get(blastDatabaseName);
 	}
 
+	/**
+	 * @param blastDatabaseName
+	 * @return Map<String, ProcessedDescription> - the thread-safe memo of
+	 *         raw to processed reference descriptions of the argument
+	 *         Blast-Database, or null if it is unknown
+	 */
+	public Map<String, ProcessedDescription> getProcessedDescriptions(String blastDatabaseName) {
+		return this.processedDescriptions.get(blastDatabaseName);
+	}
+
 	private String getPathToProteinsFasta() {
 		return pathToProteinsFasta;
 	}
@@ -552,6 +801,16 @@ public class Settings implements Cloneable {
 		return readFile(getPathToProteinsFasta());
 	}
 
+	/**
+	 * @return FastaReader - reading the query proteins record by record,
+	 *         including their AA-sequences only if they are to be written
+	 *         into the output
+	 * @throws IOException
+	 */
+	public FastaReader getProteinsFastaReader() throws IOException {
+		return new FastaReader(getPathToProteinsFasta(), doOutputFasta());
+	}
+
 	private String getPathToReferencesFasta() {
 		return pathToReferencesFasta;
 	}
@@ -560,6 +819,15 @@ public class Settings implements Cloneable {
 		return readFile(getPathToReferencesFasta());
 	}
 
+	/**
+	 * @return FastaReader - reading the references' headers record by record,
+	 *         their sequences are not needed
+	 * @throws IOException
+	 */
+	public FastaReader getReferencesFastaReader() throws IOException {
+		return new FastaReader(getPathToReferencesFasta(), false);
+	}
+
 	public void setPathToProteinsFasta(String pathToProteinsFasta) {
 		this.pathToProteinsFasta = pathToProteinsFasta;
 	}
@@ -878,6 +1146,24 @@ public class Settings implements Cloneable {
 		this.seqSimSearchTableBitScoreCol = seqSimSearchTableBitScoreCol;
 	}
 
+	public Boolean getSeqSimSearchTableSortedByQuery() {
+		return seqSimSearchTableSortedByQuery;
+	}
+
+	public void setSeqSimSearchTableSortedByQuery(Boolean seqSimSearchTableSortedByQuery) {
+		this.seqSimSearchTableSortedByQuery = seqSimSearchTableSortedByQuery;
+	}
+
+	public Integer getPreselectBestBlastHits() {
+		return preselectBestBlastHits;
+	}
+
+	public void setPreselectBestBlastHits(Integer preselectBestBlastHits) {
+		if (preselectBestBlastHits != null && preselectBestBlastHits < 1)
+			preselectBestBlastHits = 1;
+		this.preselectBestBlastHits = preselectBestBlastHits;
+	}
+
 	/**
 	 * Either returns the custom regular expression pattern used to parse the
 	 * provided reference Gene Ontology annotions (GOA) or returns the default
@@ -933,27 +1219,27 @@ public class Settings implements Cloneable {
 		this.pathToReferencesTokenBlacklist = pathToReferencesTokenBlacklist;
 	}
 
-	public List<String> getReferencesDescriptionBlacklist() {
+	public List<Pattern> getReferencesDescriptionBlacklist() {
 		return referencesDescriptionBlacklist;
 	}
 
-	public void setReferencesDescriptionBlacklist(List<String> referencesDescriptionBlacklist) {
+	public void setReferencesDescriptionBlacklist(List<Pattern> referencesDescriptionBlacklist) {
 		this.referencesDescriptionBlacklist = referencesDescriptionBlacklist;
 	}
 
-	public List<String> getReferencesDescriptionFilter() {
+	public List<Pattern> getReferencesDescriptionFilter() {
 		return referencesDescriptionFilter;
 	}
 
-	public void setReferencesDescriptionFilter(List<String> referencesDescriptionFilter) {
+	public void setReferencesDescriptionFilter(List<Pattern> referencesDescriptionFilter) {
 		this.referencesDescriptionFilter = referencesDescriptionFilter;
 	}
 
-	public List<String> getReferencesTokenBlacklist() {
+	public List<Pattern> getReferencesTokenBlacklist() {
 		return referencesTokenBlacklist;
 	}
 
-	public void setReferencesTokenBlacklist(List<String> referencesTokenBlacklist) {
+	public void setReferencesTokenBlacklist(List<Pattern> referencesTokenBlacklist) {
 		this.referencesTokenBlacklist = referencesTokenBlacklist;
 	}
 
@@ -974,4 +1260,134 @@ public class Settings implements Cloneable {
 			ahrdDbCachePercent = 90;
 		this.ahrdDbCachePercent = ahrdDbCachePercent;
 	}
-}
\ No newline at end of file
+
+	public int getAnnotationThreads() {
+		return annotationThreads;
+	}
+
+	public void setAnnotationThreads(int annotationThreads) {
+		if (annotationThreads < 1)
+			annotationThreads = 1;
+		this.annotationThreads = annotationThreads;
+	}
+
+	public int getEvaluationThreads() {
+		return evaluationThreads;
+	}
+
+	public void setEvaluationThreads(int evaluationThreads) {
+		if (evaluationThreads < 1)
+			evaluationThreads = 1;
+		this.evaluationThreads = evaluationThreads;
+	}
+
+	public int getSearchResultsThreads() {
+		return searchResultsThreads;
+	}
+
+	public void setSearchResultsThreads(int searchResultsThreads) {
+		if (searchResultsThreads < 1)
+			searchResultsThreads = 1;
+		this.searchResultsThreads = searchResultsThreads;
+	}
+
+	public int getDatabaseSetupThreads() {
+		return databaseSetupThreads;
+	}
+
+	public void setDatabaseSetupThreads(int databaseSetupThreads) {
+		if (databaseSetupThreads < 1)
+			databaseSetupThreads = 1;
+		this.databaseSetupThreads = databaseSetupThreads;
+	}
+
+	public Integer getGoAnnotationsInMemory() {
+		return goAnnotationsInMemory;
+	}
+
+	public void setGoAnnotationsInMemory(Integer goAnnotationsInMemory) {
+		if (goAnnotationsInMemory != null && goAnnotationsInMemory < 1)
+			goAnnotationsInMemory = 1;
+		this.goAnnotationsInMemory = goAnnotationsInMemory;
+	}
+
+	public int getReferenceProteinCacheSize() {
+		return referenceProteinCacheSize;
+	}
+
+	public void setReferenceProteinCacheSize(int referenceProteinCacheSize) {
+		if (referenceProteinCacheSize < 0)
+			referenceProteinCacheSize = 0;
+		this.referenceProteinCacheSize = referenceProteinCacheSize;
+	}
+
+	public Boolean getUseCompactReferenceStore() {
+		return useCompactReferenceStore;
+	}
+
+	public void setUseCompactReferenceStore(Boolean useCompactReferenceStore) {
+		this.useCompactReferenceStore = useCompactReferenceStore;
+	}
+
+	/**
+	 * @return String - the path to the compact reference protein store, which
+	 *         resides in AHRD's database directory
+	 */
+	public String getPathToCompactReferenceStore() {
+		return new File(getAhrd_db(), COMPACT_REFERENCE_STORE_FILE_NAME).getPath();
+	}
+
+	public int getAnnealingChains() {
+		return annealingChains;
+	}
+
+	public void setAnnealingChains(int annealingChains) {
+		if (annealingChains < 1)
+			annealingChains = 1;
+		this.annealingChains = annealingChains;
+	}
+
+	public int getAnnealingThreads() {
+		return annealingThreads;
+	}
+
+	public void setAnnealingThreads(int annealingThreads) {
+		if (annealingThreads < 1)
+			annealingThreads = 1;
+		this.annealingThreads = annealingThreads;
+	}
+
+	public Long getAnnealingSeed() {
+		return annealingSeed;
+	}
+
+	public void setAnnealingSeed(Long annealingSeed) {
+		this.annealingSeed = annealingSeed;
+	}
+
+	public String getPathToCheckpoint() {
+		return pathToCheckpoint;
+	}
+
+	public void setPathToCheckpoint(String pathToCheckpoint) {
+		this.pathToCheckpoint = pathToCheckpoint;
+	}
+
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	public void setCheckpointInterval(int checkpointInterval) {
+		if (checkpointInterval < 1)
+			checkpointInterval = 1;
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	public boolean isResumeFromCheckpoint() {
+		return resumeFromCheckpoint;
+	}
+
+	public void setResumeFromCheckpoint(boolean resumeFromCheckpoint) {
+		this.resumeFromCheckpoint = resumeFromCheckpoint;
+	}
+}
@@ -1,18 +1,28 @@
 package ahrd.controller;
 
 import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Settings.setSettings;
+import static ahrd.controller.Utils.rethrowCause;
 
 import static ahrd.model.AhrdDb.closeDb;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import ahrd.exception.MissingInterproResultException;
+import ahrd.model.CompiledProtein;
 import ahrd.model.EvaluationScoreCalculator;
 import ahrd.model.Protein;
+import ahrd.model.TokenScoreCalculator;
 import ahrd.view.TrainerOutputWriter;
 
 public class Trainer extends Evaluator {
@@ -21,7 +31,16 @@ public class Trainer extends Evaluator {
 	private Parameters bestParameters;
 	private Integer bestParametersFoundAtTemperature;
 	private TrainerOutputWriter outWriter;
-	private Set<Parameters> testedParameters;
+	/**
+	 * Memo of the already evaluated Parameters, each mapped to itself holding
+	 * its average scores.
+	 */
+	private HashMap<Parameters, Parameters> testedParameters;
+	/**
+	 * The Proteins' parameter independent data, compiled once and evaluated in
+	 * each iteration. See <code>compileProteins()</code>.
+	 */
+	private List<CompiledProtein> compiledProteins;
 	/**
 	 * The average of AHRD's maximum evaluation score for each Protein. This is
 	 * the maximum of the evaluation scores calculated for all Descriptions of
@@ -43,19 +62,41 @@ public class Trainer extends Evaluator {
 			// predicted Proteins. AHRD might be compared with B2Gs performance:
 			trainer.setupBlast2GoAnnots();
 
-			// Try to find optimal parameters heuristically:
-			trainer.train();
-			// Calculate the average maximum evaluation score AHRD could have
-			// possible achieved:
-			trainer.calcAvgMaxEvaluationScore();
-
-			// Write final output
-			Settings bestSettings = getSettings().clone();
-			bestSettings.setParameters(trainer.getBestParameters());
-			trainer.outWriter.writeFinalOutput(bestSettings, trainer.getAvgMaxEvaluationScore(),
-					trainer.getBestParametersFoundAtTemperature());
-			System.out.println("Logged path through parameter- and score-space into:\n"
-					+ getSettings().getPathToSimulatedAnnealingPathLog());
+			if (getSettings().getAnnealingChains() > 1) {
+				// Run several independent simulated annealing chains on the
+				// once parsed Proteins:
+				List<Trainer> chains = trainer.trainChains();
+				trainer.calcAvgMaxEvaluationScore();
+				List<Settings> chainsBestSettings = new ArrayList<Settings>(chains.size());
+				List<Integer> foundAtTemperatures = new ArrayList<Integer>(chains.size());
+				for (Trainer chain : chains) {
+					Settings bestSettings = getSettings().clone();
+					bestSettings.setParameters(chain.getBestParameters());
+					chainsBestSettings.add(bestSettings);
+					foundAtTemperatures.add(chain.getBestParametersFoundAtTemperature());
+				}
+				trainer.outWriter.writeFinalOutput(chainsBestSettings, foundAtTemperatures,
+						trainer.getAvgMaxEvaluationScore());
+				System.out.println("Logged each chain's path through parameter- and score-space into:\n"
+						+ chainPathToSimulatedAnnealingPathLog(getSettings().getPathToSimulatedAnnealingPathLog(),
+								0)
+						+ " ... " + chainPathToSimulatedAnnealingPathLog(
+								getSettings().getPathToSimulatedAnnealingPathLog(), chains.size() - 1));
+			} else {
+				// Try to find optimal parameters heuristically:
+				trainer.train();
+				// Calculate the average maximum evaluation score AHRD could
+				// have possible achieved:
+				trainer.calcAvgMaxEvaluationScore();
+
+				// Write final output
+				Settings bestSettings = getSettings().clone();
+				bestSettings.setParameters(trainer.getBestParameters());
+				trainer.outWriter.writeFinalOutput(bestSettings, trainer.getAvgMaxEvaluationScore(),
+						trainer.getBestParametersFoundAtTemperature());
+				System.out.println("Logged path through parameter- and score-space into:\n"
+						+ getSettings().getPathToSimulatedAnnealingPathLog());
+			}
 			System.out.println("Written output into:\n" + getSettings().getPathToOutput());
 		} catch (Exception e) {
 			System.err.println("We are sorry, an unexpected ERROR occurred:");
@@ -76,7 +117,136 @@ public class Trainer extends Evaluator {
 		this.outWriter = new TrainerOutputWriter();
 		// Remember tested Parameter-Sets and their scores?
 		if (getSettings().rememberSimulatedAnnealingPath())
-			this.testedParameters = new HashSet<Parameters>();
+			this.testedParameters = new HashMap<Parameters, Parameters>();
+	}
+
+	/**
+	 * Constructs an independent simulated annealing chain, which evaluates
+	 * argument Trainer's compiled Proteins. These are immutable and thus
+	 * shared by all chains. Must be invoked on the thread the chain is run on,
+	 * after the chain's Settings have been assigned to it.
+	 * 
+	 * @param shared
+	 * @throws IOException
+	 */
+	protected Trainer(Trainer shared) throws IOException {
+		super();
+		this.outWriter = new TrainerOutputWriter();
+		if (getSettings().rememberSimulatedAnnealingPath())
+			this.testedParameters = new HashMap<Parameters, Parameters>();
+		setProteins(shared.getProteins());
+		setCompiledProteins(shared.getCompiledProteins());
+	}
+
+	/**
+	 * Inserts the chain's index into argument path, e.g.
+	 * <code>path_log.csv</code> becomes <code>path_log_chain_3.csv</code>.
+	 * 
+	 * @param pathToSimulatedAnnealingPathLog
+	 * @param chain
+	 * @return String
+	 */
+	public static String chainPathToSimulatedAnnealingPathLog(String pathToSimulatedAnnealingPathLog, int chain) {
+		File log = new File(pathToSimulatedAnnealingPathLog);
+		String name = log.getName();
+		int extension = name.lastIndexOf('.');
+		name = (extension > 0) ? name.substring(0, extension) + "_chain_" + chain + name.substring(extension)
+				: name + "_chain_" + chain;
+		return new File(log.getParentFile(), name).getPath();
+	}
+
+	/**
+	 * Generates the start positions in parameter space of the simulated
+	 * annealing chains: The first chain starts at the current Parameters, all
+	 * others at pairwise distinct random Parameters.
+	 * 
+	 * @param nChains
+	 * @param random
+	 * @return List<Parameters>
+	 */
+	public List<Parameters> chainStartParameters(int nChains, Random random) {
+		List<String> sortedBlastDbs = getSettings().getSortedBlastDatabases();
+		Set<Parameters> distinct = new HashSet<Parameters>();
+		List<Parameters> starts = new ArrayList<Parameters>(nChains);
+		starts.add(getSettings().getParameters().clone());
+		distinct.add(starts.get(0));
+		Utils.setRandom(random);
+		try {
+			while (starts.size() < nChains) {
+				Parameters params = Parameters.randomParameters(sortedBlastDbs);
+				if (distinct.add(params))
+					starts.add(params);
+			}
+		} finally {
+			Utils.setRandom(null);
+		}
+		return starts;
+	}
+
+	/**
+	 * Runs <code>annealing_chains</code> independent simulated annealing chains
+	 * on <code>annealing_threads</code> threads. All chains share this
+	 * Trainer's compiled Proteins, but each has its own Settings, Parameters,
+	 * temperature, and Random. Thus in contrast to running one Trainer per
+	 * start position, the input is parsed only once. If
+	 * <code>annealing_seed</code> is set, the results do not depend on the
+	 * number of threads.
+	 * 
+	 * @return List<Trainer> - the chains, in order, after training. Only their
+	 *         results are kept, not the Proteins they share.
+	 * @throws MissingInterproResultException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public List<Trainer> trainChains() throws MissingInterproResultException, IOException, SQLException {
+		int nChains = getSettings().getAnnealingChains();
+		Random seeds = (getSettings().getAnnealingSeed() != null) ? new Random(getSettings().getAnnealingSeed())
+				: new Random();
+		List<Parameters> starts = chainStartParameters(nChains, seeds);
+		// Compile once, the chains share the result:
+		compileProteins();
+		List<Callable<Trainer>> tasks = new ArrayList<Callable<Trainer>>(nChains);
+		for (int i = 0; i < nChains; i++) {
+			final Settings chainSettings = getSettings().clone();
+			chainSettings.setParameters(starts.get(i));
+			// The chains already keep all threads busy:
+			chainSettings.setAnnotationThreads(1);
+			chainSettings.setPathToSimulatedAnnealingPathLog(
+					chainPathToSimulatedAnnealingPathLog(getSettings().getPathToSimulatedAnnealingPathLog(), i));
+			if (getSettings().getPathToCheckpoint() != null)
+				chainSettings.setPathToCheckpoint(
+						chainPathToSimulatedAnnealingPathLog(getSettings().getPathToCheckpoint(), i));
+			final Random chainRandom = new Random(seeds.nextLong());
+			tasks.add(new Callable<Trainer>() {
+				@Override
+				public Trainer call() throws Exception {
+					// Chains might be run on the calling thread:
+					Settings callersSettings = getSettings();
+					setSettings(chainSettings);
+					Utils.setRandom(chainRandom);
+					try {
+						Trainer chain = new Trainer(Trainer.this);
+						chain.train();
+						// Release the chain's references to the shared
+						// Proteins:
+						chain.setProteins(null);
+						chain.setCompiledProteins(null);
+						return chain;
+					} finally {
+						setSettings(callersSettings);
+						Utils.setRandom(null);
+					}
+				}
+			});
+		}
+		try {
+			return Utils.executeInParallel(tasks, getSettings().getAnnealingThreads());
+		} catch (ExecutionException e) {
+			rethrowCause(e.getCause(), MissingInterproResultException.class);
+			rethrowCause(e.getCause(), IOException.class);
+			rethrowCause(e.getCause(), SQLException.class);
+			throw new RuntimeException(e.getCause());
+		}
 	}
 
 	/**
@@ -87,30 +257,37 @@ public class Trainer extends Evaluator {
 	 * @throws SQLException
 	 */
 	public void train() throws MissingInterproResultException, IOException, SQLException {
+		// Only the best candidates are ever scored, and all that does not
+		// depend on the Parameters is measured once:
+		if (getCompiledProteins() == null)
+			compileProteins();
+		String pathToCheckpoint = getSettings().getPathToCheckpoint();
+		if (pathToCheckpoint != null && getSettings().isResumeFromCheckpoint() && new File(pathToCheckpoint).exists())
+			restore(TrainerCheckpoint.read(pathToCheckpoint));
+		int iterationsSinceCheckpoint = 0;
 		while (getSettings().getTemperature() > 0) {
 			// If we run simulated annealing remembering tested Parameters and
 			// their scores,
 			// do not calculate current Parameter's performance, if already done
 			// in former cycle:
 			if (getSettings().rememberSimulatedAnnealingPath()
-					&& getTestedParameters().contains(getSettings().getParameters())) {
+					&& getTestedParameters().containsKey(getSettings().getParameters())) {
 				getSettings().setParameters(getAlreadyTestedParameters(getSettings().getParameters()));
 			} else {
-				// Iterate over all Proteins and assign the best scoring Human
-				// Readable Description
-				assignHumanReadableDescriptions();
-				// Evaluate AHRD's performance for each Protein:
-				calculateEvaluationScores();
-				// Estimate average performance of current Parameters:
-				calcAveragesOfEvalScoreTPRandFPR();
+				// Assign each Protein its best scoring Human Readable
+				// Description, evaluate it, and estimate the average
+				// performance of the current Parameters:
+				evaluateCompiledProteins();
 			}
 			// Breaking a little bit with the pure simulated annealing
 			// algorithm, we remember the best performing Parameters:
 			findBestSettings();
 			// If started with this option, remember currently evaluated
 			// Parameters:
-			if (getSettings().rememberSimulatedAnnealingPath())
-				getTestedParameters().add(getSettings().getParameters().clone());
+			if (getSettings().rememberSimulatedAnnealingPath()) {
+				Parameters tested = getSettings().getParameters().clone();
+				getTestedParameters().put(tested, tested);
+			}
 			// Remember difference in avg. evaluation-scores, *before* accepting
 			// or rejecting current Parameters:
 			Double diffScores = diffEvalScoreToCurrentlyAcceptedParams();
@@ -124,7 +301,123 @@ public class Trainer extends Evaluator {
 			initNeighbouringSettings();
 			// Cool down temperature:
 			coolDown();
+			// Periodically save the state, so that training can be resumed:
+			if (pathToCheckpoint != null && ++iterationsSinceCheckpoint >= getSettings().getCheckpointInterval()) {
+				checkpoint().write(pathToCheckpoint);
+				iterationsSinceCheckpoint = 0;
+			}
 		}
+		if (pathToCheckpoint != null)
+			checkpoint().write(pathToCheckpoint);
+		this.outWriter.closePathLog();
+	}
+
+	/**
+	 * @return TrainerCheckpoint - the current state of the simulated
+	 *         annealing, to be resumed from with
+	 *         <code>restore(TrainerCheckpoint)</code>
+	 * @throws IOException
+	 */
+	public TrainerCheckpoint checkpoint() throws IOException {
+		TrainerCheckpoint checkpoint = new TrainerCheckpoint();
+		checkpoint.setTemperature(getSettings().getTemperature());
+		checkpoint.setCurrentParameters(getSettings().getParameters());
+		checkpoint.setAcceptedParameters(getAcceptedParameters());
+		checkpoint.setBestParameters(getBestParameters());
+		checkpoint.setBestParametersFoundAtTemperature(getBestParametersFoundAtTemperature());
+		checkpoint.setTestedParameters(getTestedParameters());
+		checkpoint.setRandom(Utils.getRandom());
+		checkpoint.setPathLogOffset(this.outWriter.getPathLogOffset());
+		return checkpoint;
+	}
+
+	/**
+	 * Continues the simulated annealing from argument checkpoint. The
+	 * checkpoint's Random is bound to the current thread, see
+	 * <code>Utils.setRandom(Random)</code>, and the path-log is truncated to
+	 * the rows written before the checkpoint was taken.
+	 * 
+	 * @param checkpoint
+	 * @throws IOException
+	 */
+	public void restore(TrainerCheckpoint checkpoint) throws IOException {
+		getSettings().setTemperature(checkpoint.getTemperature());
+		getSettings().setParameters(checkpoint.getCurrentParameters());
+		setAcceptedParameters(checkpoint.getAcceptedParameters());
+		setBestParameters(checkpoint.getBestParameters());
+		setBestParametersFoundAtTemperature(checkpoint.getBestParametersFoundAtTemperature());
+		if (checkpoint.getTestedParameters() != null && getTestedParameters() != null)
+			this.testedParameters = checkpoint.getTestedParameters();
+		Utils.setRandom(checkpoint.getRandom());
+		this.outWriter.resumePathLog(checkpoint.getPathLogOffset());
+	}
+
+	/**
+	 * Filters each Protein's best scoring candidate descriptions and compiles
+	 * all of their data that does not depend on the Parameters being
+	 * optimized. See <code>CompiledProtein</code>. As in
+	 * <code>assignHumanReadableDescription(Protein)</code> only the
+	 * candidates are filtered, the Token-Scores remain based on all valid
+	 * BlastResults measured in <code>Protein.addBlastResult(...)</code>.
+	 * 
+	 * @throws MissingInterproResultException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public void compileProteins() throws MissingInterproResultException, IOException, SQLException {
+		List<String> sortedBlastDbs = getSettings().getSortedBlastDatabases();
+		List<CompiledProtein> compiled = new ArrayList<CompiledProtein>(getProteins().size());
+		for (Protein prot : getProteins().values()) {
+			filterBestScoringBlastResults(prot);
+			compiled.add(new CompiledProtein(prot, sortedBlastDbs));
+		}
+		setCompiledProteins(compiled);
+	}
+
+	/**
+	 * Scores the compiled Proteins with the current Parameters and sets the
+	 * average evaluation-score, True-Positives- and False-Positives-Rates in
+	 * the current Settings. Yields exactly the same averages as
+	 * <code>assignHumanReadableDescriptions()</code>,
+	 * <code>calculateEvaluationScores()</code>, and
+	 * <code>calcAveragesOfEvalScoreTPRandFPR()</code> would.
+	 */
+	public void evaluateCompiledProteins() {
+		double bitScoreWeight = getSettings().getTokenScoreBitScoreWeight();
+		double databaseScoreWeight = getSettings().getTokenScoreDatabaseScoreWeight();
+		double overlapScoreWeight = getSettings().getTokenScoreOverlapScoreWeight();
+		TokenScoreCalculator.validateTokenScoreWeights(bitScoreWeight, databaseScoreWeight, overlapScoreWeight);
+		List<String> sortedBlastDbs = getSettings().getSortedBlastDatabases();
+		double[] blastDbWeights = new double[sortedBlastDbs.size()];
+		double[] descriptionScoreBitScoreWeights = new double[sortedBlastDbs.size()];
+		for (int i = 0; i < sortedBlastDbs.size(); i++) {
+			blastDbWeights[i] = getSettings().getBlastDbWeight(sortedBlastDbs.get(i));
+			descriptionScoreBitScoreWeights[i] = getSettings()
+					.getDescriptionScoreBitScoreWeight(sortedBlastDbs.get(i));
+		}
+		double avgEvlScr = 0.0;
+		double avgTruePosRate = 0.0;
+		double avgFalsePosRate = 0.0;
+		for (CompiledProtein prot : getCompiledProteins()) {
+			if (prot.isEvaluated()) {
+				int hit = prot.findHighestScoringHit(bitScoreWeight, databaseScoreWeight, overlapScoreWeight,
+						blastDbWeights, descriptionScoreBitScoreWeights);
+				avgEvlScr += prot.getEvaluationScore(hit);
+				avgTruePosRate += prot.getTruePositivesRate(hit);
+				avgFalsePosRate += prot.getFalsePositivesRate(hit);
+			}
+		}
+		// average each number:
+		double numberOfProts = getProteins().size();
+		if (avgEvlScr > 0.0)
+			avgEvlScr = avgEvlScr / numberOfProts;
+		if (avgTruePosRate > 0.0)
+			avgTruePosRate = avgTruePosRate / numberOfProts;
+		if (avgFalsePosRate > 0.0)
+			avgFalsePosRate = avgFalsePosRate / numberOfProts;
+		getSettings().setAvgEvaluationScore(avgEvlScr);
+		getSettings().setAvgTruePositivesRate(avgTruePosRate);
+		getSettings().setAvgFalsePositivesRate(avgFalsePosRate);
 	}
 
 	/**
@@ -255,7 +548,7 @@ public class Trainer extends Evaluator {
 			setAcceptedParameters(getSettings().getParameters().clone());
 		} else {
 			// Take random decision
-			Random r = Utils.random;
+			Random r = Utils.getRandom();
 			if (r.nextDouble() <= acceptCurrSettingsProb) {
 				setAcceptedParameters(getSettings().getParameters().clone());
 				accepted = 1; // Accepted worse performing parameters
@@ -271,15 +564,11 @@ public class Trainer extends Evaluator {
 	 * remembered scores instead.
 	 * 
 	 * @param current
-	 * @return Parameters
+	 * @return Parameters - the remembered Parameters equal to argument ones or
+	 *         NULL, if they have not been evaluated yet
 	 */
 	public Parameters getAlreadyTestedParameters(Parameters current) {
-		Parameters alreadyTested = null;
-		for (Parameters iterParams : getTestedParameters().toArray(new Parameters[] {})) {
-			if (current.equals(iterParams))
-				alreadyTested = iterParams;
-		}
-		return alreadyTested;
+		return getTestedParameters().get(current);
 	}
 
 	/**
@@ -311,7 +600,15 @@ public class Trainer extends Evaluator {
 		this.bestParameters = bestParameters;
 	}
 
-	public Set<Parameters> getTestedParameters() {
+	public List<CompiledProtein> getCompiledProteins() {
+		return compiledProteins;
+	}
+
+	public void setCompiledProteins(List<CompiledProtein> compiledProteins) {
+		this.compiledProteins = compiledProteins;
+	}
+
+	public HashMap<Parameters, Parameters> getTestedParameters() {
 		return testedParameters;
 	}
 
@@ -0,0 +1,141 @@
+package ahrd.controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * The state of a Trainer's simulated annealing, saved periodically so that a
+ * run of several days survives a crash or reboot of the machine it runs on.
+ * Holds everything needed to continue exactly where the Trainer stopped: The
+ * temperature, the Parameters to evaluate next, the accepted and best
+ * Parameters, the memo of already evaluated Parameters, the Random making the
+ * annealing's decisions, and the length of the path-log written so far.
+ */
+public class TrainerCheckpoint implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private Integer temperature;
+	private Parameters currentParameters;
+	private Parameters acceptedParameters;
+	private Parameters bestParameters;
+	private Integer bestParametersFoundAtTemperature;
+	private HashMap<Parameters, Parameters> testedParameters;
+	private Random random;
+	private long pathLogOffset;
+
+	/**
+	 * Writes this checkpoint into argument file. The former checkpoint is
+	 * only replaced, once the new one has been written completely.
+	 *
+	 * @param pathToCheckpoint
+	 * @throws IOException
+	 */
+	public void write(String pathToCheckpoint) throws IOException {
+		File checkpoint = new File(pathToCheckpoint);
+		File tmp = new File(checkpoint.getPath() + ".tmp");
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeObject(this);
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @param pathToCheckpoint
+	 * @return TrainerCheckpoint
+	 * @throws IOException
+	 *             - if the file could not be read or does not hold a
+	 *             TrainerCheckpoint
+	 */
+	public static TrainerCheckpoint read(String pathToCheckpoint) throws IOException {
+		ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(pathToCheckpoint)));
+		try {
+			return (TrainerCheckpoint) in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Not a Trainer checkpoint: " + pathToCheckpoint, e);
+		} catch (ClassCastException e) {
+			throw new IOException("Not a Trainer checkpoint: " + pathToCheckpoint, e);
+		} finally {
+			in.close();
+		}
+	}
+
+	public Integer getTemperature() {
+		return temperature;
+	}
+
+	public void setTemperature(Integer temperature) {
+		this.temperature = temperature;
+	}
+
+	public Parameters getCurrentParameters() {
+		return currentParameters;
+	}
+
+	public void setCurrentParameters(Parameters currentParameters) {
+		this.currentParameters = currentParameters;
+	}
+
+	public Parameters getAcceptedParameters() {
+		return acceptedParameters;
+	}
+
+	public void setAcceptedParameters(Parameters acceptedParameters) {
+		this.acceptedParameters = acceptedParameters;
+	}
+
+	public Parameters getBestParameters() {
+		return bestParameters;
+	}
+
+	public void setBestParameters(Parameters bestParameters) {
+		this.bestParameters = bestParameters;
+	}
+
+	public Integer getBestParametersFoundAtTemperature() {
+		return bestParametersFoundAtTemperature;
+	}
+
+	public void setBestParametersFoundAtTemperature(Integer bestParametersFoundAtTemperature) {
+		this.bestParametersFoundAtTemperature = bestParametersFoundAtTemperature;
+	}
+
+	public HashMap<Parameters, Parameters> getTestedParameters() {
+		return testedParameters;
+	}
+
+	public void setTestedParameters(HashMap<Parameters, Parameters> testedParameters) {
+		this.testedParameters = testedParameters;
+	}
+
+	public Random getRandom() {
+		return random;
+	}
+
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+
+	public long getPathLogOffset() {
+		return pathLogOffset;
+	}
+
+	public void setPathLogOffset(long pathLogOffset) {
+		this.pathLogOffset = pathLogOffset;
+	}
+}
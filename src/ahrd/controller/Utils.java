@@ -1,14 +1,29 @@
 package ahrd.controller;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Provides globally used utility-methods. E.g. for reading files or creating
@@ -19,6 +34,43 @@ import java.util.Random;
 public class Utils {
 
 	public static final Random random = new Random();
+	/**
+	 * The magic bytes compressed files start with:
+	 */
+	public static final byte[] GZIP_MAGIC = { (byte) 0x1f, (byte) 0x8b };
+	public static final byte[] ZSTD_MAGIC = { (byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd };
+	/**
+	 * Output files with this suffix are written gzip compressed:
+	 */
+	public static final String GZIP_SUFFIX = ".gz";
+	/**
+	 * Threads that need reproducible random decisions, e.g. the independent
+	 * chains of a parallel simulated annealing, can bind their own Random to
+	 * themselves. See <code>getRandom()</code>.
+	 */
+	private static final ThreadLocal<Random> threadRandom = new ThreadLocal<Random>();
+
+	/**
+	 * @return Random - the one bound to the current thread, if any, otherwise
+	 *         the globally shared <code>random</code>
+	 */
+	public static Random getRandom() {
+		Random r = threadRandom.get();
+		return r != null ? r : random;
+	}
+
+	/**
+	 * Binds the argument Random to the current thread. Pass <code>null</code>
+	 * to fall back to the globally shared one again.
+	 * 
+	 * @param r
+	 */
+	public static void setRandom(Random r) {
+		if (r == null)
+			threadRandom.remove();
+		else
+			threadRandom.set(r);
+	}
 
 	/**
 	 * Uses (double) Math.round(value * 100000) / 100000 to round to 5 digits
@@ -36,6 +88,19 @@ public class Utils {
 	}
 
 	public static String readFile(String path) throws IOException {
+		if (isCompressed(path)) {
+			Reader in = openReader(path);
+			try {
+				StringBuilder content = new StringBuilder();
+				char[] buffer = new char[1 << 16];
+				int n;
+				while ((n = in.read(buffer)) != -1)
+					content.append(buffer, 0, n);
+				return content.toString();
+			} finally {
+				in.close();
+			}
+		}
 		FileInputStream stream = new FileInputStream(new File(path));
 		try {
 			FileChannel fc = stream.getChannel();
@@ -48,6 +113,96 @@ public class Utils {
 		}
 	}
 
+	/**
+	 * Reads the first bytes of the argument file to tell, whether it is
+	 * compressed.
+	 * 
+	 * @param path
+	 * @return byte[] - GZIP_MAGIC or ZSTD_MAGIC, or null if the file is not
+	 *         compressed
+	 * @throws IOException
+	 */
+	public static byte[] compressionMagic(String path) throws IOException {
+		byte[] head = new byte[ZSTD_MAGIC.length];
+		int n = 0;
+		FileInputStream in = new FileInputStream(path);
+		try {
+			int read;
+			while (n < head.length && (read = in.read(head, n, head.length - n)) != -1)
+				n += read;
+		} finally {
+			in.close();
+		}
+		if (startsWith(head, n, GZIP_MAGIC))
+			return GZIP_MAGIC;
+		if (startsWith(head, n, ZSTD_MAGIC))
+			return ZSTD_MAGIC;
+		return null;
+	}
+
+	private static boolean startsWith(byte[] head, int length, byte[] magic) {
+		if (length < magic.length)
+			return false;
+		for (int i = 0; i < magic.length; i++)
+			if (head[i] != magic[i])
+				return false;
+		return true;
+	}
+
+	public static boolean isCompressed(String path) throws IOException {
+		return compressionMagic(path) != null;
+	}
+
+	/**
+	 * Opens the argument file for reading. Gzip compressed files, recognized
+	 * by their magic bytes, are decompressed on a background thread that reads
+	 * ahead of the caller.
+	 * 
+	 * @param path
+	 * @return InputStream
+	 * @throws IOException
+	 *             - also if the file is compressed with Zstandard, for which
+	 *             no decompressor is available
+	 */
+	public static InputStream openInputStream(String path) throws IOException {
+		byte[] magic = compressionMagic(path);
+		if (magic == ZSTD_MAGIC)
+			throw new IOException("Zstandard compressed files are not supported, please decompress '" + path
+					+ "' or compress it with gzip.");
+		if (magic == GZIP_MAGIC)
+			return new ReadAheadInputStream(
+					new GZIPInputStream(new FileInputStream(path), ReadAheadInputStream.CHUNK_SIZE), path);
+		return new FileInputStream(path);
+	}
+
+	/**
+	 * @param path
+	 * @return BufferedReader - reading the argument file, decompressing it if
+	 *         needed. See <code>openInputStream(String)</code>.
+	 * @throws IOException
+	 */
+	public static BufferedReader openReader(String path) throws IOException {
+		return new BufferedReader(new InputStreamReader(openInputStream(path), Charset.defaultCharset()));
+	}
+
+	/**
+	 * Opens the argument file for writing. If its name ends with
+	 * <code>GZIP_SUFFIX</code> the written output is gzip compressed on a
+	 * background thread.
+	 * 
+	 * @param path
+	 * @return BufferedWriter
+	 * @throws IOException
+	 */
+	public static BufferedWriter openWriter(String path) throws IOException {
+		if (path.endsWith(GZIP_SUFFIX))
+			return new BufferedWriter(new OutputStreamWriter(
+					new WriteBehindOutputStream(
+							new GZIPOutputStream(new FileOutputStream(path), WriteBehindOutputStream.CHUNK_SIZE), path),
+					Charset.defaultCharset()));
+		return new BufferedWriter(new FileWriter(path));
+	}
+
 	/**
 	 * Random: >= 0.1 and <= 1.0
 	 * 
@@ -63,13 +218,12 @@ public class Utils {
 	 * @return Long
 	 */
 	public static Long randomMultipleOfTen() {
-		Random rand = Utils.random;
+		Random rand = getRandom();
 		return Long.valueOf((rand.nextInt(10) + 1) * 10);
 	}
 
 	public static boolean randomTrueOrFalse() {
-		Random rand = Utils.random;
-		;
+		Random rand = getRandom();
 		return rand.nextBoolean();
 	}
 
@@ -100,4 +254,74 @@ public class Utils {
 		return fromFile;
 	}
 
+	/**
+	 * Calls all argument tasks and returns their results in the order of the
+	 * argument List. If more than one thread is requested, the tasks are
+	 * executed on a fixed thread-pool created for this call only. Hence its
+	 * threads inherit the calling thread's Settings and Database.
+	 * 
+	 * Unchecked exceptions thrown by any task are re-thrown as they are.
+	 * Checked exceptions are wrapped in an ExecutionException, use
+	 * <code>rethrowCause(...)</code> to unwrap them.
+	 * 
+	 * @param tasks
+	 * @param nThreads
+	 * @return List<T> of results, one for each task
+	 * @throws ExecutionException
+	 */
+	public static <T> List<T> executeInParallel(List<? extends Callable<T>> tasks, int nThreads)
+			throws ExecutionException {
+		List<T> results = new ArrayList<T>(tasks.size());
+		if (nThreads <= 1 || tasks.size() <= 1) {
+			for (Callable<T> task : tasks) {
+				try {
+					results.add(task.call());
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new ExecutionException(e);
+				}
+			}
+			return results;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(nThreads, tasks.size()));
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+			for (Callable<T> task : tasks) {
+				futures.add(pool.submit(task));
+			}
+			for (Future<T> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new ExecutionException(e);
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException)
+						throw (RuntimeException) e.getCause();
+					if (e.getCause() instanceof Error)
+						throw (Error) e.getCause();
+					throw e;
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Re-throws the argument cause, if and only if it is an instance of the
+	 * argument type. Use this to unwrap the ExecutionExceptions thrown by
+	 * <code>executeInParallel(...)</code>.
+	 * 
+	 * @param cause
+	 * @param type
+	 * @throws X
+	 */
+	public static <X extends Throwable> void rethrowCause(Throwable cause, Class<X> type) throws X {
+		if (type.isInstance(cause))
+			throw type.cast(cause);
+	}
+
 }
@@ -0,0 +1,144 @@
+package ahrd.controller;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Collects written bytes into chunks that a background thread writes into
+ * the wrapped OutputStream. Wrapping a compressing stream, deflation runs
+ * concurrently to the generation of the output. See
+ * <code>Utils.openWriter(String)</code>.
+ * 
+ * If writing into the wrapped stream fails, the failure is thrown by the
+ * next <code>write</code> or by <code>close()</code>.
+ */
+public class WriteBehindOutputStream extends OutputStream {
+
+	public static final int CHUNK_SIZE = 1 << 16;
+	public static final int CHUNKS_WRITE_BEHIND = 16;
+	/**
+	 * Marks the end of the output in the queue:
+	 */
+	private static final byte[] END = new byte[0];
+
+	private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(CHUNKS_WRITE_BEHIND);
+	private final Thread writer;
+	private volatile IOException failure;
+	private byte[] chunk = new byte[CHUNK_SIZE];
+	private int position = 0;
+	private boolean closed = false;
+
+	public WriteBehindOutputStream(final OutputStream out, String name) {
+		super();
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					byte[] buffer;
+					while ((buffer = chunks.take()) != END) {
+						// After a failure the chunks are still taken, so that
+						// the producer never blocks on a full queue:
+						if (failure == null) {
+							try {
+								out.write(buffer);
+							} catch (IOException e) {
+								failure = e;
+							}
+						}
+					}
+				} catch (InterruptedException e) {
+					failure = new InterruptedIOException();
+				} finally {
+					try {
+						out.close();
+					} catch (IOException e) {
+						if (failure == null)
+							failure = e;
+					}
+				}
+			}
+		}, "write-behind " + name);
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null)
+			throw failure;
+	}
+
+	private void enqueue(byte[] buffer) throws IOException {
+		try {
+			chunks.put(buffer);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (position == CHUNK_SIZE)
+			flushChunk();
+		chunk[position++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (position == CHUNK_SIZE)
+				flushChunk();
+			int n = Math.min(len, CHUNK_SIZE - position);
+			System.arraycopy(b, off, chunk, position, n);
+			position += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Hands the current chunk over to the background thread.
+	 */
+	private void flushChunk() throws IOException {
+		checkFailure();
+		if (position > 0) {
+			byte[] full = chunk;
+			if (position < CHUNK_SIZE) {
+				full = new byte[position];
+				System.arraycopy(chunk, 0, full, 0, position);
+			} else {
+				chunk = new byte[CHUNK_SIZE];
+			}
+			enqueue(full);
+			position = 0;
+		}
+	}
+
+	/**
+	 * Waits for the background thread to have written and closed the wrapped
+	 * stream. The wrapped stream is closed, even if writing into it failed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			flushChunk();
+		} finally {
+			// Even if writing failed, the background thread has to close the
+			// wrapped stream:
+			enqueue(END);
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+		checkFailure();
+	}
+}
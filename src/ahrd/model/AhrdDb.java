@@ -10,6 +10,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.sleepycat.je.DatabaseException;
 import com.sleepycat.je.Environment;
@@ -25,7 +28,7 @@ public class AhrdDb {
 	 * An accessor to handle storage and retrieval of ReferenceProteins with
 	 * Berkeley-DB.
 	 */
-	public static class ReferenceProteinAccessor {
+	public static class ReferenceProteinAccessor implements IReferenceProteinLookup {
 		public PrimaryIndex<String, ReferenceProtein> byAccession;
 		public SecondaryIndex<String, String, ReferenceProtein> byShortAccession;
 
@@ -33,19 +36,122 @@ public class AhrdDb {
 			byAccession = store.getPrimaryIndex(String.class, ReferenceProtein.class);
 			byShortAccession = store.getSecondaryIndex(byAccession, String.class, "shortAccession");
 		}
+
+		@Override
+		public ReferenceProtein get(String accession) {
+			return byAccession.get(accession);
+		}
+	}
+
+	/**
+	 * A bounded cache of ReferenceProteins retrieved by their accession. When
+	 * full, the least recently used ReferenceProtein is evicted. It saves
+	 * repeated look-ups and deserializations of the same ReferenceProteins,
+	 * e.g. when parsing sequence similarity search results and later when
+	 * scoring them. Instances are safe to be used by several threads.
+	 * 
+	 * ReferenceProteins written to the database are not updated in the cache.
+	 * Hence it is only used, if AHRD's database has been opened read-only.
+	 */
+	public static class ReferenceProteinCache implements IReferenceProteinLookup {
+		private final IReferenceProteinLookup lookup;
+		private final Map<String, ReferenceProtein> cache;
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+
+		public ReferenceProteinCache(IReferenceProteinLookup lookup, final int maxSize) {
+			this.lookup = lookup;
+			this.cache = new LinkedHashMap<String, ReferenceProtein>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, ReferenceProtein> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		/**
+		 * Retrieves the ReferenceProtein from the cache or, on a miss, from
+		 * the database.
+		 * 
+		 * @param accession
+		 * @return ReferenceProtein or null if not found in the database
+		 */
+		@Override
+		public ReferenceProtein get(String accession) {
+			ReferenceProtein rp;
+			synchronized (cache) {
+				rp = cache.get(accession);
+			}
+			if (rp != null) {
+				hits.incrementAndGet();
+			} else {
+				misses.incrementAndGet();
+				rp = lookup.get(accession);
+				if (rp != null) {
+					synchronized (cache) {
+						cache.put(accession, rp);
+					}
+				}
+			}
+			return rp;
+		}
+
+		public long getHits() {
+			return hits.get();
+		}
+
+		public long getMisses() {
+			return misses.get();
+		}
+
+		public int size() {
+			synchronized (cache) {
+				return cache.size();
+			}
+		}
 	}
 
 	/*
-	 * Thread-Local Variables handling persitent storage
+	 * Thread-Local Variables handling persitent storage. They are inherited by
+	 * child threads, so that worker threads started by an AHRD-Run share its
+	 * Database.
 	 */
-	private static final ThreadLocal<Environment> ahrdDbEnv = new ThreadLocal<Environment>();
-	private static final ThreadLocal<EntityStore> ahrdStore = new ThreadLocal<EntityStore>();
-	private static final ThreadLocal<ReferenceProteinAccessor> referenceProteinDAO = new ThreadLocal<ReferenceProteinAccessor>();
+	private static final ThreadLocal<Environment> ahrdDbEnv = new InheritableThreadLocal<Environment>();
+	private static final ThreadLocal<EntityStore> ahrdStore = new InheritableThreadLocal<EntityStore>();
+	private static final ThreadLocal<ReferenceProteinAccessor> referenceProteinDAO = new InheritableThreadLocal<ReferenceProteinAccessor>();
+	private static final ThreadLocal<ReferenceProteinCache> referenceProteinCache = new InheritableThreadLocal<ReferenceProteinCache>();
+	private static final ThreadLocal<CompactReferenceProteinStore> compactReferenceProteinStore = new InheritableThreadLocal<CompactReferenceProteinStore>();
 
 	public static ReferenceProteinAccessor getReferenceProteinDAO() {
 		return referenceProteinDAO.get();
 	}
 
+	public static ReferenceProteinCache getReferenceProteinCache() {
+		return referenceProteinCache.get();
+	}
+
+	public static CompactReferenceProteinStore getCompactReferenceProteinStore() {
+		return compactReferenceProteinStore.get();
+	}
+
+	/**
+	 * Retrieves the ReferenceProtein of argument accession. If the current
+	 * Database connection is read-only, its cache is used. If the compact
+	 * reference protein store is open, it is used instead of Berkeley-DB.
+	 * 
+	 * @param accession
+	 * @return ReferenceProtein or null if not found
+	 */
+	public static ReferenceProtein getReferenceProtein(String accession) {
+		if (getReferenceProteinCache() != null)
+			return getReferenceProteinCache().get(accession);
+		if (getCompactReferenceProteinStore() != null)
+			return getCompactReferenceProteinStore().get(accession);
+		return getReferenceProteinDAO().byAccession.get(accession);
+	}
+
 	public static Environment getAhrdDbEnv() {
 		return ahrdDbEnv.get();
 	}
@@ -60,10 +166,24 @@ public class AhrdDb {
 	 * @param readonly Set to true if and only if pure read-access is wanted. This
 	 *                 should be the case if AHRD is run after Database-Setup has
 	 *                 been executed.
+	 *                 If the compact reference protein store is requested and
+	 *                 present, it is mapped instead of opening Berkeley-DB.
 	 * @throws DatabaseException
 	 * @throws IOException
 	 */
 	public static void initializeDb(boolean readonly) throws DatabaseException, IOException {
+		if (readonly && getSettings().getUseCompactReferenceStore()) {
+			if (Files.exists(FileSystems.getDefault().getPath(getSettings().getPathToCompactReferenceStore()))) {
+				compactReferenceProteinStore
+						.set(new CompactReferenceProteinStore(getSettings().getPathToCompactReferenceStore()));
+				referenceProteinCache.set(new ReferenceProteinCache(compactReferenceProteinStore.get(),
+						getSettings().getReferenceProteinCacheSize()));
+				return;
+			}
+			System.err.println("WARNING: Compact reference protein store '"
+					+ getSettings().getPathToCompactReferenceStore()
+					+ "' does not exist. Using Berkeley-DB instead. Run DatabaseSetup to create it.");
+		}
 		EnvironmentConfig envConfig = new EnvironmentConfig();
 		envConfig.setTransactional(false);
 		envConfig.setAllowCreate(!readonly);
@@ -83,6 +203,9 @@ public class AhrdDb {
 		storeConfig.setDeferredWrite(!readonly);
 		ahrdStore.set(new EntityStore(ahrdDbEnv.get(), "AhrdStore", storeConfig));
 		referenceProteinDAO.set(new ReferenceProteinAccessor(ahrdStore.get()));
+		referenceProteinCache.set(readonly
+				? new ReferenceProteinCache(referenceProteinDAO.get(), getSettings().getReferenceProteinCacheSize())
+				: null);
 	}
 
 	/**
@@ -100,6 +223,13 @@ public class AhrdDb {
 		if (referenceProteinDAO.get() != null) {
 			referenceProteinDAO.set(null);
 		}
+		if (referenceProteinCache.get() != null) {
+			referenceProteinCache.set(null);
+		}
+		if (compactReferenceProteinStore.get() != null) {
+			compactReferenceProteinStore.get().close();
+			compactReferenceProteinStore.set(null);
+		}
 	}
 
 	/**
@@ -4,6 +4,7 @@ import static ahrd.model.TokenScoreCalculator.tokenize;
 
 import java.util.ArrayList;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 public class Blast2GoAnnot implements Comparable<Blast2GoAnnot> {
 
@@ -27,7 +28,7 @@ public class Blast2GoAnnot implements Comparable<Blast2GoAnnot> {
 		super();
 		setAccession(accession);
 		setDescription(description);
-		setEvaluationTokens(tokenize(getDescription(), new ArrayList<String>()));
+		setEvaluationTokens(tokenize(getDescription(), new ArrayList<Pattern>()));
 	}
 
 	/**
@@ -2,21 +2,24 @@ package ahrd.model;
 
 import static ahrd.controller.Settings.SHORT_ACCESSION_GROUP_NAME;
 import static ahrd.controller.Settings.getSettings;
-import static ahrd.model.AhrdDb.getReferenceProteinDAO;
+import static ahrd.model.AhrdDb.getReferenceProtein;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import ahrd.controller.Settings;
 import ahrd.exception.MissingAccessionException;
 import ahrd.exception.MissingProteinException;
 
@@ -28,6 +31,61 @@ import ahrd.exception.MissingProteinException;
  */
 public class BlastResult implements Comparable<BlastResult> {
 
+	/**
+	 * The sequence similarity search results in a single Blast-Database, read
+	 * by <code>prepareBlastResults(...)</code> but not yet assigned to their
+	 * query Proteins. Preparing does not modify any Protein, so the results of
+	 * different Blast-Databases can be prepared concurrently. Adding them to
+	 * the Proteins must happen on a single thread, in the order of the
+	 * Blast-Databases, because it accumulates the scores needed to compute
+	 * the Token-Scores.
+	 */
+	public static class PreparedBlastResults {
+		private final String blastDbName;
+		private final BlastResultsCache cache;
+		private final Map<String, List<BlastResult>> hits;
+
+		protected PreparedBlastResults(String blastDbName, BlastResultsCache cache,
+				Map<String, List<BlastResult>> hits) {
+			super();
+			this.blastDbName = blastDbName;
+			this.cache = cache;
+			this.hits = hits;
+		}
+
+		/**
+		 * Assigns the prepared Hits to their query Proteins. Search results
+		 * sorted by query are only streamed now, because in order to keep a
+		 * single query's Hits in memory at a time, each query's Hits are added
+		 * to it as soon as they have been read.
+		 * 
+		 * @param proteinDb
+		 * @throws MissingProteinException
+		 * @throws IOException
+		 * @throws MissingAccessionException
+		 */
+		public void addToProteins(Map<String, Protein> proteinDb)
+				throws MissingProteinException, IOException, MissingAccessionException {
+			if (cache != null)
+				cache.addBlastResults(proteinDb, blastDbName);
+			else if (hits != null)
+				generateHRDCandidates(hits);
+			else
+				streamBlastResults(proteinDb, blastDbName);
+		}
+
+		public String getBlastDbName() {
+			return blastDbName;
+		}
+	}
+
+	/**
+	 * The maximum number of BlastResults per query Protein and sequence
+	 * database AHRD considers as candidates for the Protein's Human Readable
+	 * Description. See <code>filterBestScoringBlastResults(...)</code>.
+	 */
+	public static final int MAX_BLAST_RESULTS_PER_DATABASE = 200;
+
 	private String accession;
 	private String shortAccession;
 	private Double eValue;
@@ -58,7 +116,7 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * The descriptionScore is calculated by AHRD.
 	 */
 	private Double descriptionScore;
-	private Set<String> tokens = new HashSet<String>();
+	private TokenSet tokens = new TokenSet();
 	/**
 	 * The evaluationScore is calculated while training or evaluating AHRD's
 	 * performance in comparison with the "Best Blast Hit"-Method:
@@ -155,6 +213,8 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * <li>Extract Human Readable Descriptions (HRDs) and Sequence Lengths from
 	 * Protein Database in FASTA format</li>
 	 * </ul>
+	 * If a cache is configured for the argument Blast-Database, both steps are
+	 * replaced by loading it. See <code>BlastResultsCache</code>.
 	 * 
 	 * @param proteinDb
 	 * @param blastDbName
@@ -164,8 +224,41 @@ public class BlastResult implements Comparable<BlastResult> {
 	 */
 	public static void readBlastResults(Map<String, Protein> proteinDb, String blastDbName)
 			throws MissingProteinException, IOException, MissingAccessionException {
+		prepareBlastResults(proteinDb, blastDbName).addToProteins(proteinDb);
+	}
+
+	/**
+	 * Does the work of <code>readBlastResults(...)</code> that does not modify
+	 * the query Proteins: Loads or creates the Blast-Database's cache, if one
+	 * is configured. Otherwise, unless the search results are sorted by query,
+	 * parses them and looks up the Hits' reference proteins in AHRD's
+	 * database. Safe to be invoked concurrently for different
+	 * Blast-Databases.
+	 * 
+	 * @param proteinDb
+	 * @param blastDbName
+	 * @return PreparedBlastResults - to be added to the query Proteins
+	 * @throws MissingProteinException
+	 * @throws IOException
+	 * @throws MissingAccessionException
+	 */
+	public static PreparedBlastResults prepareBlastResults(Map<String, Protein> proteinDb, String blastDbName)
+			throws MissingProteinException, IOException, MissingAccessionException {
+		String pathToCache = getSettings().getPathToBlastResultsCache(blastDbName);
+		if (pathToCache != null) {
+			// Parse the search results only, if they are not cached yet:
+			BlastResultsCache cache = BlastResultsCache.read(pathToCache, blastDbName);
+			if (cache == null) {
+				cache = BlastResultsCache.fromSearchResults(blastDbName);
+				cache.write(pathToCache, blastDbName);
+			}
+			return new PreparedBlastResults(blastDbName, cache, null);
+		} else if (getSettings().getSeqSimSearchTableSortedByQuery()) {
+			return new PreparedBlastResults(blastDbName, null, null);
+		} // ELSE
 		Map<String, List<BlastResult>> brs = parseBlastResults(proteinDb, blastDbName);
-		parseBlastDatabase(brs);
+		setReferenceProteinValues(brs);
+		return new PreparedBlastResults(blastDbName, null, brs);
 	}
 
 	/**
@@ -175,6 +268,12 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * supposed to contain a single High Scoring Pair (HSP). Preferred format is
 	 * 'Blast8' (-m 8).
 	 * 
+	 * If requested in the Settings, only each query's
+	 * <code>getPreselectBestBlastHits()</code> Hits of lowest E-Value are
+	 * kept, see <code>preselectBestBlastResults(...)</code>. They are selected
+	 * while parsing, so that the discarded Hits are never held in memory. See
+	 * <code>BestHitsOfQuery</code>.
+	 * 
 	 * @param proteinDb
 	 * @param blastDbName
 	 * @return Map<String,List<BlastResult>> Set of Hit-Accessions (Key) to the
@@ -185,38 +284,315 @@ public class BlastResult implements Comparable<BlastResult> {
 	public static Map<String, List<BlastResult>> parseBlastResults(Map<String, Protein> proteinDb, String blastDbName)
 			throws MissingProteinException, IOException {
 		Map<String, List<BlastResult>> brs = new HashMap<String, List<BlastResult>>();
-		BufferedReader fastaIn = null;
+		Integer howMany = getSettings().getPreselectBestBlastHits();
+		Map<Protein, BestHitsOfQuery> bestHitsOfQueries = new HashMap<Protein, BestHitsOfQuery>();
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser(
+				getSettings().getPathToBlastResults(blastDbName));
 		try {
-			fastaIn = new BufferedReader(new FileReader(getSettings().getPathToBlastResults(blastDbName)));
-			String str;
-			while ((str = fastaIn.readLine()) != null) {
-				// Only evaluate current line, either if there is no
-				// comment-line-regex given, or if it is given AND it does not
-				// match:
-				if (getSettings().getSeqSimSearchTableCommentLineRegex() == null
-						|| !getSettings().getSeqSimSearchTableCommentLineRegex().matcher(str).matches()) {
-					String[] brFields = str.split(getSettings().getSeqSimSearchTableSep());
-					if (!proteinDb.containsKey(brFields[getSettings().getSeqSimSearchTableQueryCol()])) {
-						throw new MissingProteinException("Could not find Protein for Accession '"
-								+ brFields[getSettings().getSeqSimSearchTableQueryCol()] + "' in Protein Database.");
-					} // ELSE
-					BlastResult br = new BlastResult(brFields[getSettings().getSeqSimSearchTableSubjectCol()],
-							Double.parseDouble(validateDouble(brFields[getSettings().getSeqSimSearchTableEValueCol()])),
-							Integer.parseInt(brFields[getSettings().getSeqSimSearchTableQueryStartCol()]),
-							Integer.parseInt(brFields[getSettings().getSeqSimSearchTableQueryEndCol()]),
-							Integer.parseInt(brFields[getSettings().getSeqSimSearchTableSubjectStartCol()]),
-							Integer.parseInt(brFields[getSettings().getSeqSimSearchTableSubjectEndCol()]),
-							Double.parseDouble(brFields[getSettings().getSeqSimSearchTableBitScoreCol()]), blastDbName,
-							proteinDb.get(brFields[getSettings().getSeqSimSearchTableQueryCol()]));
+			long line = 0;
+			while (parser.next()) {
+				BlastResult br = parseBlastResult(parser, proteinDb, blastDbName);
+				if (howMany == null)
 					addBlastResult(brs, br);
-				}
+				else
+					BestHitsOfQuery.add(bestHitsOfQueries, howMany, br, line++);
 			}
 		} finally {
-			fastaIn.close();
+			parser.close();
 		}
+		if (howMany != null)
+			BestHitsOfQuery.addBlastResults(brs, bestHitsOfQueries);
 		return brs;
 	}
 
+	/**
+	 * The <code>howMany</code> Hits of lowest E-Value of a single query
+	 * Protein, selected while the search results are parsed. As in
+	 * <code>addBlastResult(...)</code>, of several High Scoring Pairs of the
+	 * same Hit the one of highest Bit-Score is kept. Of Hits with equal
+	 * E-Values the ones read first are preferred. Unlike
+	 * <code>preselectBestBlastResults(...)</code>, which selects among all of
+	 * a query's Hits after they have been parsed, a High Scoring Pair of a Hit
+	 * already discarded is considered as a new Hit.
+	 */
+	protected static class BestHitsOfQuery {
+
+		protected static class Hit {
+			private BlastResult br;
+			/**
+			 * The line the Hit was first read from:
+			 */
+			private final long line;
+
+			private Hit(BlastResult br, long line) {
+				this.br = br;
+				this.line = line;
+			}
+		}
+
+		private final int howMany;
+		private final Map<String, Hit> bySubject = new HashMap<String, Hit>();
+		/**
+		 * The worst of the selected Hits is on top:
+		 */
+		private final PriorityQueue<Hit> worstFirst = new PriorityQueue<Hit>(11, new Comparator<Hit>() {
+			@Override
+			public int compare(Hit a, Hit b) {
+				int cmp = b.br.getEValue().compareTo(a.br.getEValue());
+				return cmp != 0 ? cmp : Long.compare(b.line, a.line);
+			}
+		});
+
+		protected BestHitsOfQuery(int howMany) {
+			this.howMany = howMany;
+		}
+
+		/**
+		 * Offers argument br to the Hits selected for its query Protein.
+		 *
+		 * @param bestHitsOfQueries
+		 *            the Hits selected so far, per query Protein
+		 * @param howMany
+		 * @param br
+		 * @param line
+		 *            the position of br in the search results
+		 */
+		protected static void add(Map<Protein, BestHitsOfQuery> bestHitsOfQueries, int howMany, BlastResult br,
+				long line) {
+			BestHitsOfQuery bestHits = bestHitsOfQueries.get(br.getProtein());
+			if (bestHits == null) {
+				bestHits = new BestHitsOfQuery(howMany);
+				bestHitsOfQueries.put(br.getProtein(), bestHits);
+			}
+			bestHits.add(br, line);
+		}
+
+		/**
+		 * Adds the selected Hits of all queries to argument brs, see
+		 * <code>addBlastResult(...)</code>, in the order they were first read.
+		 */
+		protected static void addBlastResults(Map<String, List<BlastResult>> brs,
+				Map<Protein, BestHitsOfQuery> bestHitsOfQueries) {
+			List<Hit> preselected = new ArrayList<Hit>();
+			for (BestHitsOfQuery bestHits : bestHitsOfQueries.values())
+				preselected.addAll(bestHits.bySubject.values());
+			Collections.sort(preselected, new Comparator<Hit>() {
+				@Override
+				public int compare(Hit a, Hit b) {
+					return Long.compare(a.line, b.line);
+				}
+			});
+			for (Hit hit : preselected)
+				addBlastResult(brs, hit.br);
+		}
+
+		protected void add(BlastResult br, long line) {
+			Hit hit = bySubject.get(br.getAccession());
+			if (hit != null) {
+				if (hit.br.getBitScore() < br.getBitScore()) {
+					// The E-Value might have changed:
+					worstFirst.remove(hit);
+					hit.br = br;
+					worstFirst.add(hit);
+				}
+				return;
+			}
+			hit = new Hit(br, line);
+			if (worstFirst.size() < howMany) {
+				worstFirst.add(hit);
+			} else if (worstFirst.comparator().compare(hit, worstFirst.peek()) > 0) {
+				bySubject.remove(worstFirst.poll().br.getAccession());
+				worstFirst.add(hit);
+			} else {
+				return;
+			}
+			bySubject.put(br.getAccession(), hit);
+		}
+	}
+
+	/**
+	 * Reads in the tabular sequence similarity search results as
+	 * <code>parseBlastResults(...)</code> does, but expects them to be sorted
+	 * by query accession. Each block of lines referring to the same query
+	 * Protein is processed as soon as it has been read completely: Its Hits
+	 * are looked up in AHRD's database, turned into candidate descriptions,
+	 * and only the best <code>MAX_BLAST_RESULTS_PER_DATABASE</code> are kept.
+	 * Thus only a single query's Hits are held in memory at any time.
+	 * 
+	 * @param proteinDb
+	 * @param blastDbName
+	 * @throws MissingProteinException
+	 * @throws IOException
+	 * @throws MissingAccessionException
+	 * @throws IllegalArgumentException
+	 *             if the results are not sorted by query accession
+	 */
+	public static void streamBlastResults(Map<String, Protein> proteinDb, String blastDbName)
+			throws MissingProteinException, IOException, MissingAccessionException {
+		Set<String> processedQueryAccessions = new HashSet<String>();
+		Map<String, List<BlastResult>> queryBlock = new HashMap<String, List<BlastResult>>();
+		Protein query = null;
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser(
+				getSettings().getPathToBlastResults(blastDbName));
+		try {
+			while (parser.next()) {
+				BlastResult br = parseBlastResult(parser, proteinDb, blastDbName);
+				if (br.getProtein() != query) {
+					if (query != null) {
+						processQueryBlock(query, queryBlock, blastDbName);
+						queryBlock = new HashMap<String, List<BlastResult>>();
+					}
+					query = br.getProtein();
+					if (!processedQueryAccessions.add(query.getAccession()))
+						throw notSortedByQuery(blastDbName, query);
+				}
+				addBlastResult(queryBlock, br);
+			}
+			if (query != null)
+				processQueryBlock(query, queryBlock, blastDbName);
+		} finally {
+			parser.close();
+		}
+	}
+
+	/**
+	 * @param blastDbName
+	 * @param query
+	 * @return IllegalArgumentException - explaining that the Hits of the
+	 *         argument query were found after those of other queries
+	 */
+	protected static IllegalArgumentException notSortedByQuery(String blastDbName, Protein query) {
+		return new IllegalArgumentException("Sequence similarity search results in '"
+				+ getSettings().getPathToBlastResults(blastDbName) + "' are not sorted by query. Found Hits of query '"
+				+ query.getAccession() + "' after Hits of other queries. Please sort the results or set '"
+				+ Settings.SEQ_SIM_SEARCH_TABLE_SORTED_BY_QUERY_KEY + "' to false.");
+	}
+
+	/**
+	 * Looks up the reference proteins of all Hits in the argument block of a
+	 * single query Protein and adds the valid ones to the query. Subsequently
+	 * only the query's best scoring Hits in the argument sequence database are
+	 * retained. Note, that the cumulative scores needed to compute the Token
+	 * Scores have already been measured for all valid Hits.
+	 * 
+	 * @param query
+	 * @param queryBlock
+	 * @param blastDbName
+	 * @throws MissingAccessionException
+	 */
+	protected static void processQueryBlock(Protein query, Map<String, List<BlastResult>> queryBlock,
+			String blastDbName) throws MissingAccessionException {
+		parseBlastDatabase(preselectBestBlastResults(queryBlock));
+		retainBestScoringBlastResults(query, blastDbName);
+	}
+
+	/**
+	 * Retains only the argument query Protein's best
+	 * <code>MAX_BLAST_RESULTS_PER_DATABASE</code> Hits in the argument
+	 * sequence database.
+	 * 
+	 * @param query
+	 * @param blastDbName
+	 */
+	protected static void retainBestScoringBlastResults(Protein query, String blastDbName) {
+		List<BlastResult> hits = query.getBlastResults().get(blastDbName);
+		if (hits != null && hits.size() > MAX_BLAST_RESULTS_PER_DATABASE) {
+			// Copy the best Hits, so the discarded ones can be garbage
+			// collected:
+			query.getBlastResults().put(blastDbName, new ArrayList<BlastResult>(
+					filterBestScoringBlastResults(hits, MAX_BLAST_RESULTS_PER_DATABASE)));
+		}
+	}
+
+	/**
+	 * Optionally, if requested in the Settings, retains per query Protein
+	 * only the <code>getPreselectBestBlastHits()</code> BlastResults of lowest
+	 * E-Value in the argument blastResults of a single Blast-Database. This
+	 * happens before the Hits' reference proteins are looked up and their
+	 * descriptions are passed through Blacklist, Filter, and Tokenizer, so
+	 * that this work and the measuring of the cumulative Token-Scores is only
+	 * done for the preselected Hits. Note, that unlike
+	 * <code>filterBestScoringBlastResults(...)</code> it selects among all
+	 * Hits, including those whose descriptions turn out to be blacklisted.
+	 * Hence results differ from AHRD's default mode.
+	 * 
+	 * @param blastResults
+	 * @return Map<String, List<BlastResult>> - the argument blastResults, if
+	 *         no preselection is requested, otherwise the preselected ones in
+	 *         the same order
+	 */
+	protected static Map<String, List<BlastResult>> preselectBestBlastResults(
+			Map<String, List<BlastResult>> blastResults) {
+		Integer howMany = getSettings().getPreselectBestBlastHits();
+		if (howMany == null)
+			return blastResults;
+		final List<BlastResult> hits = new ArrayList<BlastResult>();
+		for (List<BlastResult> sameHitBrs : blastResults.values())
+			hits.addAll(sameHitBrs);
+		// The worst of the selected Hits is on top of each query's heap. Of
+		// Hits with equal E-Values the first ones are preferred:
+		Comparator<Integer> worstFirst = new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int cmp = hits.get(b).getEValue().compareTo(hits.get(a).getEValue());
+				return cmp != 0 ? cmp : b.compareTo(a);
+			}
+		};
+		Map<Protein, PriorityQueue<Integer>> bestHitsOfQueries = new HashMap<Protein, PriorityQueue<Integer>>();
+		for (int i = 0; i < hits.size(); i++) {
+			PriorityQueue<Integer> bestHits = bestHitsOfQueries.get(hits.get(i).getProtein());
+			if (bestHits == null) {
+				bestHits = new PriorityQueue<Integer>(11, worstFirst);
+				bestHitsOfQueries.put(hits.get(i).getProtein(), bestHits);
+			}
+			if (bestHits.size() < howMany) {
+				bestHits.add(i);
+			} else if (worstFirst.compare(i, bestHits.peek()) > 0) {
+				bestHits.poll();
+				bestHits.add(i);
+			}
+		}
+		BitSet selected = new BitSet(hits.size());
+		for (PriorityQueue<Integer> bestHits : bestHitsOfQueries.values()) {
+			for (Integer i : bestHits)
+				selected.set(i);
+		}
+		Map<String, List<BlastResult>> preselected = new LinkedHashMap<String, List<BlastResult>>();
+		int i = 0;
+		for (Map.Entry<String, List<BlastResult>> sameHitBrs : blastResults.entrySet()) {
+			List<BlastResult> selectedSameHitBrs = new ArrayList<BlastResult>();
+			for (BlastResult br : sameHitBrs.getValue()) {
+				if (selected.get(i++))
+					selectedSameHitBrs.add(br);
+			}
+			if (!selectedSameHitBrs.isEmpty())
+				preselected.put(sameHitBrs.getKey(), selectedSameHitBrs);
+		}
+		return preselected;
+	}
+
+	/**
+	 * Creates a BlastResult referencing its query Protein from the argument
+	 * parser's current line.
+	 * 
+	 * @param parser
+	 * @param proteinDb
+	 * @param blastDbName
+	 * @return BlastResult
+	 * @throws MissingProteinException
+	 */
+	protected static BlastResult parseBlastResult(SequenceSimilarityTabularSearchResultParser parser,
+			Map<String, Protein> proteinDb, String blastDbName) throws MissingProteinException {
+		Protein query = proteinDb.get(parser.getQueryAccession());
+		if (query == null) {
+			throw new MissingProteinException(
+					"Could not find Protein for Accession '" + parser.getQueryAccession() + "' in Protein Database.");
+		} // ELSE
+		return new BlastResult(parser.getSubjectAccession(), parser.getEValue(), parser.getQueryStart(),
+				parser.getQueryEnd(), parser.getSubjectStart(), parser.getSubjectEnd(), parser.getBitScore(),
+				blastDbName, query);
+	}
+
 	/**
 	 * The argument BlastResult is added to the argument Map of BlastResults. If
 	 * a BlastResult of same accession and for the same query protein is already
@@ -224,37 +600,82 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * the one of worse Bit-Score. If this is a so far not seen BlastResult,
 	 * regarding Hit-Accession and Query-Accession, it will simply be added.
 	 * 
+	 * The BlastResult of the same query is found in constant time, see
+	 * <code>HitsOfSubject</code>, even if the Hit is matched by many queries.
+	 * 
 	 * @param brs
 	 * @param br
 	 */
 	public static void addBlastResult(Map<String, List<BlastResult>> brs, BlastResult br) {
-		if (brs.containsKey(br.getAccession())) {
-			boolean isMultipleHsp = false;
-			List<BlastResult> sameHitBrs = brs.get(br.getAccession());
-			for (BlastResult iterBr : sameHitBrs) {
-				// If and only if there is a BlastResult of same Hit and Query
-				// that also has a better Bit-Score, replace the one of lower
-				// Bit-Score with the higher one:
-				if (iterBr.getProtein().equals(br.getProtein())) {
-					isMultipleHsp = true;
-					if (iterBr.getBitScore() < br.getBitScore()) {
-						sameHitBrs.remove(iterBr);
-						sameHitBrs.add(br);
-					}
-				}
-			}
-			// If this a Hit for another Protein, add it:
-			if (!isMultipleHsp) {
-				sameHitBrs.add(br);
-			}
-
-		} else {
+		List<BlastResult> sameHitBrs = brs.get(br.getAccession());
+		if (sameHitBrs == null) {
 			// Add a new List<BlastResult> containing the argument BlastResult
 			// br to the argument Map brs:
-			List<BlastResult> sameHitBrs = new ArrayList<BlastResult>();
-			sameHitBrs.add(br);
+			sameHitBrs = new HitsOfSubject();
 			brs.put(br.getAccession(), sameHitBrs);
 		}
+		if (sameHitBrs instanceof HitsOfSubject) {
+			((HitsOfSubject) sameHitBrs).addBestScoring(br);
+		} else {
+			int i = indexOfQuery(sameHitBrs, br.getProtein());
+			if (i < 0)
+				sameHitBrs.add(br);
+			else if (sameHitBrs.get(i).getBitScore() < br.getBitScore())
+				sameHitBrs.set(i, br);
+		}
+	}
+
+	private static int indexOfQuery(List<BlastResult> sameHitBrs, Protein query) {
+		for (int i = 0; i < sameHitBrs.size(); i++) {
+			if (sameHitBrs.get(i).getProtein().equals(query))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * The BlastResults of a single Hit (Subject) created by
+	 * <code>addBlastResult(...)</code>, holding at most one BlastResult per
+	 * query Protein. Once the Hit is matched by more than
+	 * <code>INDEX_QUERIES_FROM</code> queries, the position of each query's
+	 * BlastResult is indexed, so that ubiquitous Hits, matched by thousands
+	 * of queries, do not need to be scanned for each High Scoring Pair.
+	 */
+	protected static class HitsOfSubject extends ArrayList<BlastResult> {
+		private static final long serialVersionUID = 1L;
+		protected static final int INDEX_QUERIES_FROM = 8;
+
+		private Map<Protein, Integer> positionOfQuery;
+
+		/**
+		 * Adds the argument BlastResult, or replaces the one of the same query
+		 * with it, if the argument has a higher Bit-Score. A replaced
+		 * BlastResult keeps its position.
+		 * 
+		 * @param br
+		 */
+		public void addBestScoring(BlastResult br) {
+			int i;
+			if (positionOfQuery != null) {
+				Integer position = positionOfQuery.get(br.getProtein());
+				i = position == null ? -1 : position;
+			} else {
+				i = indexOfQuery(this, br.getProtein());
+			}
+			if (i >= 0) {
+				if (get(i).getBitScore() < br.getBitScore())
+					set(i, br);
+				return;
+			}
+			add(br);
+			if (positionOfQuery != null) {
+				positionOfQuery.put(br.getProtein(), size() - 1);
+			} else if (size() > INDEX_QUERIES_FROM) {
+				positionOfQuery = new HashMap<Protein, Integer>(size() * 2);
+				for (int j = 0; j < size(); j++)
+					positionOfQuery.put(get(j).getProtein(), j);
+			}
+		}
 	}
 
 	/**
@@ -269,15 +690,46 @@ public class BlastResult implements Comparable<BlastResult> {
 	 */
 	public static void parseBlastDatabase(Map<String, List<BlastResult>> blastResults)
 			throws MissingAccessionException {
+		setReferenceProteinValues(blastResults);
+		generateHRDCandidates(blastResults);
+	}
+
+	/**
+	 * Sets the description and sequence length of each Hit's reference protein
+	 * extracted from AHRD's persistent database in the argument blastResults.
+	 * Does not modify the query Proteins.
+	 * 
+	 * @param blastResults
+	 * @throws MissingAccessionException
+	 */
+	protected static void setReferenceProteinValues(Map<String, List<BlastResult>> blastResults)
+			throws MissingAccessionException {
 		ReferenceProtein rp;
 		for (String accession : blastResults.keySet()) {
-			rp = getReferenceProteinDAO().byAccession.get(accession);
+			rp = getReferenceProtein(accession);
 			if (rp == null) {
 				throw new MissingAccessionException("Found Blast-Hits to reference protein '" + accession
 						+ "' but could not find the matching Reference-Protein in AHRD's persistent Database."
 						+ " Please update it accordingly.");
 			}
-			setReferenceProteinValuesInBlastHits(rp, blastResults.get(accession));
+			for (BlastResult blastResult : blastResults.get(accession)) {
+				blastResult.setDescription(rp.getHrd());
+				blastResult.setSubjectLength(rp.getSequenceLength());
+			}
+		}
+	}
+
+	/**
+	 * Invokes <code>generateHRDCandidateForProtein()</code> on all argument
+	 * blastResults, whose reference proteins' values have already been set.
+	 * 
+	 * @param blastResults
+	 */
+	protected static void generateHRDCandidates(Map<String, List<BlastResult>> blastResults) {
+		for (List<BlastResult> hits : blastResults.values()) {
+			for (BlastResult blastResult : hits) {
+				blastResult.generateHRDCandidateForProtein();
+			}
 		}
 	}
 
@@ -293,9 +745,23 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * @param hits
 	 */
 	public static void setReferenceProteinValuesInBlastHits(ReferenceProtein rp, List<BlastResult> hits) {
+		setReferenceProteinValuesInBlastHits(rp.getHrd(), rp.getSequenceLength(), hits);
+	}
+
+	/**
+	 * See <code>setReferenceProteinValuesInBlastHits(ReferenceProtein, List)</code>.
+	 * 
+	 * @param hrd
+	 *            - the reference protein's human readable description
+	 * @param sequenceLength
+	 *            - the reference protein's sequence length
+	 * @param hits
+	 */
+	public static void setReferenceProteinValuesInBlastHits(String hrd, Integer sequenceLength,
+			List<BlastResult> hits) {
 		for (BlastResult blastResult : hits) {
-			blastResult.setDescription(rp.getHrd());
-			blastResult.setSubjectLength(rp.getSequenceLength());
+			blastResult.setDescription(hrd);
+			blastResult.setSubjectLength(sequenceLength);
 			blastResult.generateHRDCandidateForProtein();
 		}
 	}
@@ -317,15 +783,12 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * @return String pattern
 	 */
 	public String patternize() {
-		String pattern = "";
-		if (getTokens().size() > 0) {
-			List<String> sortedTkns = new ArrayList<String>(getTokens());
-			Collections.sort(sortedTkns);
-			for (String tkn : sortedTkns) {
-				pattern += tkn;
-			}
+		// TokenSets iterate in lexicographic order:
+		StringBuilder pattern = new StringBuilder();
+		for (String tkn : getTokens()) {
+			pattern.append(tkn);
 		}
-		return pattern;
+		return pattern.toString();
 	}
 
 	/**
@@ -333,7 +796,7 @@ public class BlastResult implements Comparable<BlastResult> {
 	 * in this' tokens field.
 	 */
 	public void tokenize() {
-		List<String> tknBlackList = getSettings().getTokenBlackList(getBlastDatabaseName());
+		List<Pattern> tknBlackList = getSettings().getTokenBlackList(getBlastDatabaseName());
 		this.setTokens(TokenScoreCalculator.tokenize(this.getDescription(), tknBlackList));
 	}
 
@@ -346,7 +809,7 @@ public class BlastResult implements Comparable<BlastResult> {
 	 *         the respective blacklist. FALSE otherwise.
 	 */
 	public boolean passesBlacklist(String blastResultDescriptionLine) {
-		List<String> blacklist = getSettings().getBlastResultsBlackList(getBlastDatabaseName());
+		List<Pattern> blacklist = getSettings().getBlastResultsBlackList(getBlastDatabaseName());
 		return DescriptionScoreCalculator.passesBlacklist(blastResultDescriptionLine, blacklist);
 	}
 
@@ -359,7 +822,7 @@ public class BlastResult implements Comparable<BlastResult> {
 	 *         in which all matches to the respective filters are deleted.
 	 */
 	public String filter(String blastResultDescriptionLine) {
-		List<String> filter = getSettings().getBlastResultsFilter(getBlastDatabaseName());
+		List<Pattern> filter = getSettings().getBlastResultsFilter(getBlastDatabaseName());
 		return DescriptionScoreCalculator.filter(blastResultDescriptionLine, filter);
 	}
 
@@ -379,7 +842,7 @@ public class BlastResult implements Comparable<BlastResult> {
 		if (getSettings().getEvaluateValidTokens())
 			setEvaluationTokens(getTokens());
 		else
-			setEvaluationTokens(TokenScoreCalculator.tokenize(getDescription(), new ArrayList<String>()));
+			setEvaluationTokens(TokenScoreCalculator.tokenize(getDescription(), new ArrayList<Pattern>()));
 	}
 
 	public boolean isValid() {
@@ -427,14 +890,15 @@ public class BlastResult implements Comparable<BlastResult> {
 			// Pass best Blast-Hit's Description through filter:
 			theClone.setDescription(filter(theClone.getDescription()));
 			// Tokenize without filtering tokens through the Blacklist:
-			theClone.setTokens(TokenScoreCalculator.tokenize(theClone.getDescription(), new ArrayList<String>()));
+			theClone.setTokens(TokenScoreCalculator.tokenize(theClone.getDescription(), new ArrayList<Pattern>()));
 			getProtein().getEvaluationScoreCalculator().addUnchangedBlastResult(getBlastDatabaseName(), theClone);
 		}
-		if (passesBlacklist(getDescription())) {
-			// Pass bestScoringHSP through filter:
-			setDescription(filter(getDescription()));
-			// Tokenize the filtered Description-Line:
-			tokenize();
+		// Pass bestScoringHSP through Blacklist, filter and tokenize it. The
+		// results are shared by all Hits of the same description:
+		ProcessedDescription processed = ProcessedDescription.get(getDescription(), getBlastDatabaseName());
+		if (processed.passesBlacklist()) {
+			setDescription(processed.getDescription());
+			setTokens(processed.getTokens());
 			// Pass bestScoringHSP through Blacklist and add it, if it
 			// is still valid:
 			if (isValid()) {
@@ -526,12 +990,12 @@ public class BlastResult implements Comparable<BlastResult> {
 		this.bitScore = bitScore;
 	}
 
-	public Set<String> getTokens() {
+	public TokenSet getTokens() {
 		return tokens;
 	}
 
 	public void setTokens(Set<String> tokens) {
-		this.tokens = tokens;
+		this.tokens = (tokens instanceof TokenSet) ? (TokenSet) tokens : new TokenSet(tokens);
 	}
 
 	public Double getDescriptionScore() {
@@ -0,0 +1,507 @@
+package ahrd.model;
+
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.model.AhrdDb.getReferenceProtein;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import ahrd.exception.MissingAccessionException;
+import ahrd.exception.MissingProteinException;
+
+/**
+ * The parsed tabular sequence similarity search results of a single
+ * Blast-Database, together with the human readable description and sequence
+ * length of each Hit's reference protein. Written to a binary file on the
+ * first run, later runs on the same search results load it instead of parsing
+ * the text table and looking up each Hit in AHRD's database. Blacklists,
+ * filters and tokenization are applied after loading, so they may change
+ * between runs.
+ *
+ * The file consists of a header followed by these sections:
+ * <ul>
+ * <li>header - magic number, version, a fingerprint of the Settings used to
+ * parse the search results and of the reference database, and size,
+ * modification time and a sampled CRC32 checksum of the search result file,
+ * see <code>checksum(...)</code></li>
+ * <li>queries - the distinct query accessions</li>
+ * <li>subjects - the distinct subject accessions, each with its human
+ * readable description and sequence length</li>
+ * <li>hits - one column per field, in order of the lines in the search result
+ * file: query id, subject id, query start and end, subject start and end,
+ * E-Value, and Bit-Score</li>
+ * </ul>
+ * The cache is only used, if all values in its header match. Otherwise it is
+ * rebuilt.
+ */
+public class BlastResultsCache {
+
+	public static final int MAGIC = 0x41485243;
+	public static final int VERSION = 2;
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int CHECKSUM_SAMPLES = 16;
+	private static final int CHECKSUM_SAMPLE_SIZE = 1 << 16;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private String[] queryAccessions;
+	private String[] subjectAccessions;
+	private String[] subjectHrds;
+	private int[] subjectLengths;
+	private int size;
+	private int[] queries;
+	private int[] subjects;
+	private int[] queryStarts;
+	private int[] queryEnds;
+	private int[] subjectStarts;
+	private int[] subjectEnds;
+	private double[] eValues;
+	private double[] bitScores;
+
+	protected BlastResultsCache(int capacity) {
+		super();
+		this.queries = new int[capacity];
+		this.subjects = new int[capacity];
+		this.queryStarts = new int[capacity];
+		this.queryEnds = new int[capacity];
+		this.subjectStarts = new int[capacity];
+		this.subjectEnds = new int[capacity];
+		this.eValues = new double[capacity];
+		this.bitScores = new double[capacity];
+	}
+
+	/**
+	 * Parses the argument Blast-Database's tabular search results and looks up
+	 * each distinct Hit in AHRD's database.
+	 *
+	 * @param blastDbName
+	 * @return BlastResultsCache
+	 * @throws IOException
+	 * @throws MissingAccessionException
+	 *             if a Hit cannot be found in AHRD's database
+	 */
+	public static BlastResultsCache fromSearchResults(String blastDbName)
+			throws IOException, MissingAccessionException {
+		BlastResultsCache cache = new BlastResultsCache(1024);
+		Map<String, Integer> queryIds = new LinkedHashMap<String, Integer>();
+		Map<String, Integer> subjectIds = new LinkedHashMap<String, Integer>();
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser(
+				getSettings().getPathToBlastResults(blastDbName));
+		try {
+			while (parser.next()) {
+				if (cache.size == cache.queries.length)
+					cache.grow();
+				int i = cache.size++;
+				cache.queries[i] = id(queryIds, parser.getQueryAccession());
+				cache.subjects[i] = id(subjectIds, parser.getSubjectAccession());
+				cache.queryStarts[i] = parser.getQueryStart();
+				cache.queryEnds[i] = parser.getQueryEnd();
+				cache.subjectStarts[i] = parser.getSubjectStart();
+				cache.subjectEnds[i] = parser.getSubjectEnd();
+				cache.eValues[i] = parser.getEValue();
+				cache.bitScores[i] = parser.getBitScore();
+			}
+		} finally {
+			parser.close();
+		}
+		cache.queryAccessions = queryIds.keySet().toArray(new String[queryIds.size()]);
+		cache.subjectAccessions = subjectIds.keySet().toArray(new String[subjectIds.size()]);
+		cache.subjectHrds = new String[cache.subjectAccessions.length];
+		cache.subjectLengths = new int[cache.subjectAccessions.length];
+		for (int s = 0; s < cache.subjectAccessions.length; s++) {
+			ReferenceProtein rp = getReferenceProtein(cache.subjectAccessions[s]);
+			if (rp == null) {
+				throw new MissingAccessionException("Found Blast-Hits to reference protein '"
+						+ cache.subjectAccessions[s]
+						+ "' but could not find the matching Reference-Protein in AHRD's persistent Database."
+						+ " Please update it accordingly.");
+			}
+			cache.subjectHrds[s] = rp.getHrd();
+			cache.subjectLengths[s] = rp.getSequenceLength();
+		}
+		return cache;
+	}
+
+	private static int id(Map<String, Integer> ids, String accession) {
+		Integer id = ids.get(accession);
+		if (id == null) {
+			id = ids.size();
+			ids.put(accession, id);
+		}
+		return id;
+	}
+
+	private void grow() {
+		int capacity = queries.length * 2;
+		queries = Arrays.copyOf(queries, capacity);
+		subjects = Arrays.copyOf(subjects, capacity);
+		queryStarts = Arrays.copyOf(queryStarts, capacity);
+		queryEnds = Arrays.copyOf(queryEnds, capacity);
+		subjectStarts = Arrays.copyOf(subjectStarts, capacity);
+		subjectEnds = Arrays.copyOf(subjectEnds, capacity);
+		eValues = Arrays.copyOf(eValues, capacity);
+		bitScores = Arrays.copyOf(bitScores, capacity);
+	}
+
+	/**
+	 * Describes everything, apart from the search result file itself, the
+	 * cached values depend on: The Settings used to parse the search results
+	 * and the reference database, the reference database itself, and AHRD's
+	 * database the Hits were looked up in.
+	 *
+	 * @param blastDbName
+	 * @return String
+	 */
+	public static String fingerprint(String blastDbName) {
+		StringBuilder fp = new StringBuilder(blastDbName);
+		fp.append('\t').append(getSettings().getSeqSimSearchTableSep());
+		fp.append('\t').append(getSettings().getSeqSimSearchTableCommentLineRegex());
+		fp.append('\t').append(getSettings().getSeqSimSearchTableQueryCol());
+		fp.append('\t').append(getSettings().getSeqSimSearchTableSubjectCol());
+		fp.append('\t').append(getSettings().getSeqSimSearchTableQueryStartCol());
+		fp.append('\t').append(getSettings().getSeqSimSearchTableQueryEndCol());
+		fp.append('\t').append(getSettings().getSeqSimSearchTableSubjectStartCol());
+		fp.append('\t').append(getSettings().getSeqSimSearchTableSubjectEndCol());
+		fp.append('\t').append(getSettings().getSeqSimSearchTableEValueCol());
+		fp.append('\t').append(getSettings().getSeqSimSearchTableBitScoreCol());
+		String pathToDatabase = getSettings().getPathToBlastDatabase(blastDbName);
+		fp.append('\t').append(pathToDatabase);
+		if (pathToDatabase != null) {
+			File database = new File(pathToDatabase);
+			fp.append('\t').append(database.length()).append('\t').append(database.lastModified());
+		}
+		fp.append('\t').append(getSettings().getFastaHeaderRegex(blastDbName).pattern());
+		fp.append('\t').append(getSettings().getShortAccessionRegex(blastDbName).pattern());
+		// AHRD's database is identified by its directory, which is modified
+		// whenever database files are added or removed, and its compact
+		// store, if any:
+		File ahrdDb = new File(getSettings().getAhrd_db());
+		fp.append('\t').append(ahrdDb.getAbsolutePath()).append('\t').append(ahrdDb.lastModified());
+		File compactStore = new File(getSettings().getPathToCompactReferenceStore());
+		if (compactStore.exists())
+			fp.append('\t').append(compactStore.length()).append('\t').append(compactStore.lastModified());
+		return fp.toString();
+	}
+
+	/**
+	 * Computes the CRC32 checksum of <code>CHECKSUM_SAMPLES</code> blocks of
+	 * <code>CHECKSUM_SAMPLE_SIZE</code> bytes, evenly spread over the argument
+	 * file from its head to its tail. Files not larger than all blocks
+	 * together are checked completely. So, loading the cache of a huge search
+	 * result file does not read the whole file. Changes missed by the sample
+	 * are very likely to change the file's size or modification time, which
+	 * are checked, too.
+	 *
+	 * @param path
+	 * @return long - the CRC32 checksum of the sampled content of the argument
+	 *         file
+	 * @throws IOException
+	 */
+	public static long checksum(String path) throws IOException {
+		CRC32 crc = new CRC32();
+		FileInputStream in = new FileInputStream(path);
+		try {
+			FileChannel channel = in.getChannel();
+			long length = channel.size();
+			long samples = Math.min(CHECKSUM_SAMPLES, (length + CHECKSUM_SAMPLE_SIZE - 1) / CHECKSUM_SAMPLE_SIZE);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(CHECKSUM_SAMPLE_SIZE);
+			for (long i = 0; i < samples; i++) {
+				long position = samples > 1 ? i * ((length - CHECKSUM_SAMPLE_SIZE) / (samples - 1)) : 0;
+				if (i == samples - 1)
+					position = Math.max(0, length - CHECKSUM_SAMPLE_SIZE);
+				buffer.clear();
+				while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) != -1)
+					;
+				buffer.flip();
+				crc.update(buffer);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes this cache for the argument Blast-Database into the argument
+	 * file. A former cache is only replaced, once the new one has been written
+	 * completely.
+	 *
+	 * @param pathToCache
+	 * @param blastDbName
+	 * @throws IOException
+	 */
+	public void write(String pathToCache, String blastDbName) throws IOException {
+		String pathToResults = getSettings().getPathToBlastResults(blastDbName);
+		File results = new File(pathToResults);
+		File cache = new File(pathToCache);
+		File tmp = new File(cache.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), BUFFER_SIZE));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, fingerprint(blastDbName));
+			out.writeLong(results.length());
+			out.writeLong(results.lastModified());
+			out.writeLong(checksum(pathToResults));
+			out.writeInt(queryAccessions.length);
+			for (String accession : queryAccessions)
+				writeString(out, accession);
+			out.writeInt(subjectAccessions.length);
+			for (int s = 0; s < subjectAccessions.length; s++) {
+				writeString(out, subjectAccessions[s]);
+				writeString(out, subjectHrds[s]);
+				out.writeInt(subjectLengths[s]);
+			}
+			out.writeInt(size);
+			for (int[] column : Arrays.asList(queries, subjects, queryStarts, queryEnds, subjectStarts, subjectEnds))
+				for (int i = 0; i < size; i++)
+					out.writeInt(column[i]);
+			for (double[] column : Arrays.asList(eValues, bitScores))
+				for (int i = 0; i < size; i++)
+					out.writeDouble(column[i]);
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		if (str == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = str.getBytes(UTF8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Loads the cache for the argument Blast-Database from the argument file,
+	 * reading it sequentially.
+	 *
+	 * @param pathToCache
+	 * @param blastDbName
+	 * @return BlastResultsCache - or null, if the file does not exist or does
+	 *         not match the current search results and Settings
+	 * @throws IOException
+	 */
+	public static BlastResultsCache read(String pathToCache, String blastDbName) throws IOException {
+		if (!new File(pathToCache).isFile())
+			return null;
+		String pathToResults = getSettings().getPathToBlastResults(blastDbName);
+		File results = new File(pathToResults);
+		FileInputStream stream = new FileInputStream(pathToCache);
+		try {
+			ChannelReader in = new ChannelReader(stream.getChannel());
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			if (!fingerprint(blastDbName).equals(in.readString()))
+				return null;
+			if (in.readLong() != results.length() || in.readLong() != results.lastModified())
+				return null;
+			if (in.readLong() != checksum(pathToResults))
+				return null;
+			String[] queryAccessions = new String[in.readInt()];
+			for (int q = 0; q < queryAccessions.length; q++)
+				queryAccessions[q] = in.readString();
+			int nSubjects = in.readInt();
+			String[] subjectAccessions = new String[nSubjects];
+			String[] subjectHrds = new String[nSubjects];
+			int[] subjectLengths = new int[nSubjects];
+			for (int s = 0; s < nSubjects; s++) {
+				subjectAccessions[s] = in.readString();
+				subjectHrds[s] = in.readString();
+				subjectLengths[s] = in.readInt();
+			}
+			BlastResultsCache cache = new BlastResultsCache(in.readInt());
+			cache.size = cache.queries.length;
+			cache.queryAccessions = queryAccessions;
+			cache.subjectAccessions = subjectAccessions;
+			cache.subjectHrds = subjectHrds;
+			cache.subjectLengths = subjectLengths;
+			for (int[] column : Arrays.asList(cache.queries, cache.subjects, cache.queryStarts, cache.queryEnds,
+					cache.subjectStarts, cache.subjectEnds))
+				in.readInts(column);
+			for (double[] column : Arrays.asList(cache.eValues, cache.bitScores))
+				in.readDoubles(column);
+			return cache;
+		} catch (EOFException e) {
+			// A truncated cache is rebuilt:
+			return null;
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Creates the cached Hits and assigns them to their query Proteins in
+	 * argument proteinDb, exactly as
+	 * <code>BlastResult.readBlastResults(...)</code> does when parsing the
+	 * search results. That is, also if the search results are sorted by query,
+	 * only a single query's Hits are processed at a time.
+	 *
+	 * @param proteinDb
+	 * @param blastDbName
+	 * @throws MissingProteinException
+	 * @throws IllegalArgumentException
+	 *             if the search results are expected to be, but are not sorted
+	 *             by query
+	 */
+	public void addBlastResults(Map<String, Protein> proteinDb, String blastDbName) throws MissingProteinException {
+		Map<String, Integer> subjectIds = new HashMap<String, Integer>(subjectAccessions.length * 2);
+		for (int s = 0; s < subjectAccessions.length; s++)
+			subjectIds.put(subjectAccessions[s], s);
+		Protein[] queryProteins = new Protein[queryAccessions.length];
+		for (int q = 0; q < queryAccessions.length; q++) {
+			queryProteins[q] = proteinDb.get(queryAccessions[q]);
+			if (queryProteins[q] == null)
+				throw new MissingProteinException(
+						"Could not find Protein for Accession '" + queryAccessions[q] + "' in Protein Database.");
+		}
+		boolean sortedByQuery = getSettings().getSeqSimSearchTableSortedByQuery();
+		Set<String> processedQueryAccessions = new HashSet<String>();
+		// Unless sorted by query, select the best Hits while creating them:
+		Integer howMany = sortedByQuery ? null : getSettings().getPreselectBestBlastHits();
+		Map<Protein, BlastResult.BestHitsOfQuery> bestHitsOfQueries = new HashMap<Protein, BlastResult.BestHitsOfQuery>();
+		Map<String, List<BlastResult>> brs = new HashMap<String, List<BlastResult>>();
+		Protein query = null;
+		for (int i = 0; i < size; i++) {
+			BlastResult br = new BlastResult(subjectAccessions[subjects[i]], eValues[i], queryStarts[i], queryEnds[i],
+					subjectStarts[i], subjectEnds[i], bitScores[i], blastDbName, queryProteins[queries[i]]);
+			if (howMany != null) {
+				BlastResult.BestHitsOfQuery.add(bestHitsOfQueries, howMany, br, i);
+				continue;
+			}
+			if (sortedByQuery && br.getProtein() != query) {
+				if (query != null) {
+					setReferenceProteinValues(brs, subjectIds);
+					BlastResult.retainBestScoringBlastResults(query, blastDbName);
+					brs = new HashMap<String, List<BlastResult>>();
+				}
+				query = br.getProtein();
+				if (!processedQueryAccessions.add(query.getAccession()))
+					throw BlastResult.notSortedByQuery(blastDbName, query);
+			}
+			BlastResult.addBlastResult(brs, br);
+		}
+		if (howMany != null)
+			BlastResult.BestHitsOfQuery.addBlastResults(brs, bestHitsOfQueries);
+		setReferenceProteinValues(brs, subjectIds);
+		if (sortedByQuery && query != null)
+			BlastResult.retainBestScoringBlastResults(query, blastDbName);
+	}
+
+	/**
+	 * Does what <code>BlastResult.parseBlastDatabase(...)</code> does, but
+	 * takes the reference proteins' descriptions and lengths from this cache.
+	 */
+	private void setReferenceProteinValues(Map<String, List<BlastResult>> brs, Map<String, Integer> subjectIds) {
+		brs = BlastResult.preselectBestBlastResults(brs);
+		for (String accession : brs.keySet()) {
+			int s = subjectIds.get(accession);
+			BlastResult.setReferenceProteinValuesInBlastHits(subjectHrds[s], subjectLengths[s], brs.get(accession));
+		}
+	}
+
+	/**
+	 * @return int - the number of cached Hits
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Reads a file sequentially through a single buffer, so that the columns
+	 * of Hits are copied into their arrays in bulk.
+	 */
+	private static class ChannelReader {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		public ChannelReader(FileChannel channel) {
+			super();
+			this.channel = channel;
+			this.buffer.limit(0);
+		}
+
+		/**
+		 * Ensures the buffer holds at least n unread bytes.
+		 */
+		private void require(int n) throws IOException {
+			if (buffer.remaining() >= n)
+				return;
+			buffer.compact();
+			while (buffer.position() < n) {
+				if (channel.read(buffer) == -1)
+					throw new EOFException();
+			}
+			buffer.flip();
+		}
+
+		public int readInt() throws IOException {
+			require(4);
+			return buffer.getInt();
+		}
+
+		public long readLong() throws IOException {
+			require(8);
+			return buffer.getLong();
+		}
+
+		public String readString() throws IOException {
+			int length = readInt();
+			if (length < 0)
+				return null;
+			byte[] bytes = new byte[length];
+			int read = 0;
+			while (read < length) {
+				require(Math.min(length - read, BUFFER_SIZE));
+				int n = Math.min(length - read, buffer.remaining());
+				buffer.get(bytes, read, n);
+				read += n;
+			}
+			return new String(bytes, UTF8);
+		}
+
+		public void readInts(int[] column) throws IOException {
+			int read = 0;
+			while (read < column.length) {
+				require(4);
+				int n = Math.min(column.length - read, buffer.remaining() / 4);
+				buffer.asIntBuffer().get(column, read, n);
+				buffer.position(buffer.position() + n * 4);
+				read += n;
+			}
+		}
+
+		public void readDoubles(double[] column) throws IOException {
+			int read = 0;
+			while (read < column.length) {
+				require(8);
+				int n = Math.min(column.length - read, buffer.remaining() / 8);
+				buffer.asDoubleBuffer().get(column, read, n);
+				buffer.position(buffer.position() + n * 8);
+				read += n;
+			}
+		}
+	}
+}
@@ -0,0 +1,391 @@
+package ahrd.model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sleepycat.persist.EntityCursor;
+
+import ahrd.model.AhrdDb.ReferenceProteinAccessor;
+
+/**
+ * An immutable, memory-mapped file holding all ReferenceProteins of AHRD's
+ * database. It is written once by <code>DatabaseSetup</code> and then opened
+ * read-only. As the operating system's page cache holds the mapped file,
+ * several AHRD processes on the same machine share it.
+ *
+ * The file consists of a header followed by these sections:
+ * <ul>
+ * <li>index - one long per ReferenceProtein pointing to its record, sorted by
+ * accession</li>
+ * <li>records - accession, short accession, description id, sequence length,
+ * sequence database id, and GO term ids of each ReferenceProtein</li>
+ * <li>descriptions - the human readable descriptions, each distinct
+ * description stored only once as far as
+ * <code>MAX_REMEMBERED_DESCRIPTIONS</code> allows</li>
+ * <li>GO terms and sequence databases - tables of the distinct GO terms and
+ * sequence database names</li>
+ * </ul>
+ * A ReferenceProtein is looked up by binary search on the UTF-8 bytes of its
+ * accession, directly comparing against the mapped file.
+ */
+public class CompactReferenceProteinStore implements IReferenceProteinLookup, Closeable {
+
+	public static final String MAGIC = "AHRDREF1";
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+	/**
+	 * Number of distinct descriptions remembered while writing the store, in
+	 * order to write repeated descriptions only once.
+	 */
+	public static final int MAX_REMEMBERED_DESCRIPTIONS = 1000000;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int HEADER_SIZE = 64;
+	/**
+	 * Each mapped segment extends this many bytes into the next one, so that
+	 * ints and longs never have to be read across segment boundaries.
+	 */
+	private static final int SEGMENT_OVERLAP = 8;
+
+	private final MappedByteBuffer[] segments;
+	private final int segmentSize;
+	private final long size;
+	private final long nProteins;
+	private final long indexOffset;
+	private final long recordsOffset;
+	private final long descriptionsOffset;
+	private final String[] goTerms;
+	private final String[] blastDatabaseNames;
+
+	public CompactReferenceProteinStore(String path) throws IOException {
+		this(path, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Maps the argument file read-only into memory.
+	 *
+	 * @param path
+	 * @param segmentSize
+	 *            - the file is mapped in segments of this size
+	 * @throws IOException
+	 */
+	public CompactReferenceProteinStore(String path, int segmentSize) throws IOException {
+		this.segmentSize = segmentSize;
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			this.size = channel.size();
+			this.segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = (long) i * segmentSize;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(size - start, (long) segmentSize + SEGMENT_OVERLAP));
+			}
+		} finally {
+			// Mappings stay valid after closing the file:
+			file.close();
+		}
+		if (size < HEADER_SIZE || !MAGIC.equals(new String(getBytes(0, MAGIC.length()), UTF8)))
+			throw new IOException("'" + path + "' is not a compact reference protein store.");
+		this.nProteins = getLong(8);
+		this.indexOffset = getLong(16);
+		this.recordsOffset = getLong(24);
+		this.descriptionsOffset = getLong(32);
+		this.goTerms = getStringTable(getLong(40));
+		this.blastDatabaseNames = getStringTable(getLong(48));
+	}
+
+	/**
+	 * Writes all ReferenceProteins of the argument Berkeley-DB accessor into a
+	 * new compact store. The primary index returns them sorted by accession,
+	 * which is verified while writing.
+	 *
+	 * @param dao
+	 * @param path
+	 * @return long - the number of written ReferenceProteins
+	 * @throws IOException
+	 */
+	public static long write(ReferenceProteinAccessor dao, String path) throws IOException {
+		File index = File.createTempFile("ahrd_compact_index", ".bin");
+		File records = File.createTempFile("ahrd_compact_records", ".bin");
+		File descriptions = File.createTempFile("ahrd_compact_descriptions", ".bin");
+		long nProteins = 0;
+		long recordsSize = 0;
+		long descriptionsSize = 0;
+		Map<String, Long> descriptionIds = new HashMap<String, Long>();
+		Map<String, Integer> goTermIds = new LinkedHashMap<String, Integer>();
+		Map<String, Integer> blastDatabaseIds = new LinkedHashMap<String, Integer>();
+		try {
+			DataOutputStream indexOut = openDataOutputStream(index);
+			DataOutputStream recordsOut = openDataOutputStream(records);
+			DataOutputStream descriptionsOut = openDataOutputStream(descriptions);
+			EntityCursor<ReferenceProtein> cursor = dao.byAccession.entities();
+			try {
+				byte[] previousAccession = null;
+				for (ReferenceProtein rp : cursor) {
+					byte[] accession = rp.getAccession().getBytes(UTF8);
+					if (previousAccession != null && compare(previousAccession, accession) >= 0)
+						throw new IOException("Accessions are not sorted by their UTF-8 bytes: '"
+								+ new String(previousAccession, UTF8) + "' is followed by '" + rp.getAccession()
+								+ "'. Can not write compact reference protein store.");
+					previousAccession = accession;
+					// Description:
+					Long descriptionId = descriptionIds.get(rp.getHrd());
+					if (descriptionId == null) {
+						descriptionId = descriptionsSize;
+						descriptionsSize += writeString(descriptionsOut, rp.getHrd());
+						if (descriptionIds.size() < MAX_REMEMBERED_DESCRIPTIONS)
+							descriptionIds.put(rp.getHrd(), descriptionId);
+					}
+					// Record:
+					indexOut.writeLong(recordsSize);
+					recordsSize += writeBytes(recordsOut, accession);
+					recordsSize += writeString(recordsOut, rp.getShortAccession());
+					recordsOut.writeLong(descriptionId);
+					recordsOut.writeInt(rp.getSequenceLength() != null ? rp.getSequenceLength() : -1);
+					recordsOut.writeInt(tableId(blastDatabaseIds, rp.getBlastDatabaseName()));
+					recordsOut.writeInt(rp.getGoTerms().size());
+					for (String goTerm : rp.getGoTerms()) {
+						recordsOut.writeInt(tableId(goTermIds, goTerm));
+					}
+					recordsSize += 20 + 4 * rp.getGoTerms().size();
+					nProteins++;
+				}
+			} finally {
+				cursor.close();
+				indexOut.close();
+				recordsOut.close();
+				descriptionsOut.close();
+			}
+			// Assemble the store:
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(path));
+			try {
+				long goTermsOffset = HEADER_SIZE + 8 * nProteins + recordsSize + descriptionsSize;
+				long blastDatabasesOffset = goTermsOffset + tableSize(goTermIds);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.put(MAGIC.getBytes(UTF8));
+				header.putLong(nProteins);
+				header.putLong(HEADER_SIZE);
+				header.putLong(HEADER_SIZE + 8 * nProteins);
+				header.putLong(HEADER_SIZE + 8 * nProteins + recordsSize);
+				header.putLong(goTermsOffset);
+				header.putLong(blastDatabasesOffset);
+				header.putLong(blastDatabasesOffset + tableSize(blastDatabaseIds));
+				out.write(header.array());
+				Files.copy(index.toPath(), out);
+				Files.copy(records.toPath(), out);
+				Files.copy(descriptions.toPath(), out);
+				DataOutputStream tablesOut = new DataOutputStream(out);
+				writeStringTable(tablesOut, goTermIds);
+				writeStringTable(tablesOut, blastDatabaseIds);
+				tablesOut.flush();
+			} finally {
+				out.close();
+			}
+		} finally {
+			index.delete();
+			records.delete();
+			descriptions.delete();
+		}
+		return nProteins;
+	}
+
+	private static DataOutputStream openDataOutputStream(File file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+	}
+
+	/**
+	 * Writes the length of argument bytes followed by the bytes.
+	 *
+	 * @return int - the number of written bytes
+	 */
+	private static int writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		return 4 + bytes.length;
+	}
+
+	/**
+	 * Writes argument String as UTF-8 bytes preceded by their number. NULL is
+	 * written as length -1.
+	 *
+	 * @return int - the number of written bytes
+	 */
+	private static int writeString(DataOutputStream out, String str) throws IOException {
+		if (str == null) {
+			out.writeInt(-1);
+			return 4;
+		}
+		return writeBytes(out, str.getBytes(UTF8));
+	}
+
+	private static int tableId(Map<String, Integer> table, String str) {
+		Integer id = table.get(str);
+		if (id == null) {
+			id = table.size();
+			table.put(str, id);
+		}
+		return id;
+	}
+
+	private static long tableSize(Map<String, Integer> table) {
+		long tableSize = 4;
+		for (String str : table.keySet()) {
+			tableSize += 4 + (str == null ? 0 : str.getBytes(UTF8).length);
+		}
+		return tableSize;
+	}
+
+	private static void writeStringTable(DataOutputStream out, Map<String, Integer> table) throws IOException {
+		out.writeInt(table.size());
+		// The LinkedHashMap returns the Strings in the order of their ids:
+		for (String str : table.keySet()) {
+			writeString(out, str);
+		}
+	}
+
+	/**
+	 * Compares the argument byte arrays as unsigned bytes.
+	 */
+	protected static int compare(byte[] a, byte[] b) {
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+			if (cmp != 0)
+				return cmp;
+		}
+		return a.length - b.length;
+	}
+
+	private byte getByte(long pos) {
+		return segments[(int) (pos / segmentSize)].get((int) (pos % segmentSize));
+	}
+
+	private int getInt(long pos) {
+		return segments[(int) (pos / segmentSize)].getInt((int) (pos % segmentSize));
+	}
+
+	private long getLong(long pos) {
+		return segments[(int) (pos / segmentSize)].getLong((int) (pos % segmentSize));
+	}
+
+	private byte[] getBytes(long pos, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = getByte(pos + i);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Reads a String written by <code>writeString(...)</code>.
+	 */
+	private String getString(long pos) {
+		int length = getInt(pos);
+		return length < 0 ? null : new String(getBytes(pos + 4, length), UTF8);
+	}
+
+	private String[] getStringTable(long pos) {
+		String[] table = new String[getInt(pos)];
+		pos += 4;
+		for (int i = 0; i < table.length; i++) {
+			table[i] = getString(pos);
+			pos += 4 + Math.max(getInt(pos), 0);
+		}
+		return table;
+	}
+
+	/**
+	 * Compares the accession of the record at argument position with argument
+	 * key, without copying the accession out of the mapped file.
+	 */
+	private int compareAccession(long recordPos, byte[] key) {
+		int length = getInt(recordPos);
+		int n = Math.min(length, key.length);
+		for (int i = 0; i < n; i++) {
+			int cmp = (getByte(recordPos + 4 + i) & 0xff) - (key[i] & 0xff);
+			if (cmp != 0)
+				return cmp;
+		}
+		return length - key.length;
+	}
+
+	private long recordPosition(long i) {
+		return recordsOffset + getLong(indexOffset + 8 * i);
+	}
+
+	/**
+	 * Binary search for the ReferenceProtein of argument accession.
+	 *
+	 * @param accession
+	 * @return ReferenceProtein or null if not found
+	 */
+	@Override
+	public ReferenceProtein get(String accession) {
+		byte[] key = accession.getBytes(UTF8);
+		long low = 0;
+		long high = nProteins - 1;
+		while (low <= high) {
+			long mid = (low + high) >>> 1;
+			int cmp = compareAccession(recordPosition(mid), key);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return readRecord(recordPosition(mid), accession);
+		}
+		return null;
+	}
+
+	private ReferenceProtein readRecord(long pos, String accession) {
+		ReferenceProtein rp = new ReferenceProtein();
+		rp.setAccession(accession);
+		pos += 4 + getInt(pos);
+		rp.setShortAccession(getString(pos));
+		pos += 4 + Math.max(getInt(pos), 0);
+		rp.setHrd(getString(descriptionsOffset + getLong(pos)));
+		int sequenceLength = getInt(pos + 8);
+		rp.setSequenceLength(sequenceLength < 0 ? null : Integer.valueOf(sequenceLength));
+		rp.setBlastDatabaseName(blastDatabaseNames[getInt(pos + 12)]);
+		int nGoTerms = getInt(pos + 16);
+		pos += 20;
+		for (int i = 0; i < nGoTerms; i++) {
+			rp.getGoTerms().add(goTerms[getInt(pos + 4 * i)]);
+		}
+		return rp;
+	}
+
+	public long size() {
+		return nProteins;
+	}
+
+	/**
+	 * @return long - the size of the mapped file in bytes
+	 */
+	public long getFileSize() {
+		return size;
+	}
+
+	/**
+	 * Releases the mapped segments. They are unmapped by the garbage collector.
+	 */
+	@Override
+	public void close() {
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = null;
+		}
+	}
+}
@@ -0,0 +1,433 @@
+package ahrd.model;
+
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.model.AhrdDb.getReferenceProtein;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import ahrd.controller.ParameterBatch;
+
+/**
+ * A Protein compiled for training: While AHRD's Parameters are optimized, the
+ * candidate descriptions of each Protein, their tokens, bit scores, overlap
+ * scores, and the Blast-Databases they come from never change. Neither do
+ * the evaluation scores each candidate would achieve, if it was chosen. Hence
+ * all of these are measured once and stored in primitive arrays. Scoring a
+ * Protein with a given set of Parameters is then a tight arithmetic pass over
+ * these arrays, yielding exactly the same result as
+ * <code>AHRD.assignHumanReadableDescription(Protein)</code> followed by
+ * <code>EvaluationScoreCalculator.assignEvlScrsToCompetitors()</code>: Only
+ * the candidates are restricted to the best scoring ones, the Token-Scores
+ * are based on all valid BlastResults, see
+ * <code>Protein.addBlastResult(BlastResult)</code>.
+ *
+ * Instances are immutable and can be shared by several threads.
+ */
+public class CompiledProtein {
+
+	private int nBlastDatabases;
+	private double maxBitScore;
+	private double totalTokenBitScore;
+	private double totalTokenOverlapScore;
+	/**
+	 * Number of valid BlastResults per Blast-Database
+	 */
+	private int[] blastDatabaseHits;
+	/**
+	 * Cumulative scores per token, tokens are numbered in order of first
+	 * appearance among the candidates
+	 */
+	private double[] cumulativeTokenBitScores;
+	private double[] cumulativeTokenOverlapScores;
+	/**
+	 * Number of valid BlastResults per token and Blast-Database, at index
+	 * <code>token * nBlastDatabases + blastDatabase</code>
+	 */
+	private int[] tokenBlastDatabaseHits;
+	/**
+	 * The candidates, in the order <code>DescriptionScoreCalculator</code>
+	 * ranks them:
+	 */
+	private int[] hitBlastDatabases;
+	private double[] hitBitScores;
+	private boolean[] hitHasGoAnnotations;
+	/**
+	 * The tokens of candidate i are <code>hitTokens[hitTokenOffsets[i]]</code>
+	 * to <code>hitTokens[hitTokenOffsets[i+1]-1]</code>, in the order of the
+	 * candidate's <code>TokenSet</code>.
+	 */
+	private int[] hitTokenOffsets;
+	private int[] hitTokens;
+	/**
+	 * Only Proteins having a reference description are evaluated.
+	 */
+	private boolean evaluated;
+	private double[] hitEvaluationScores;
+	private double[] hitTruePositivesRates;
+	private double[] hitFalsePositivesRates;
+
+	/**
+	 * Compiles argument Protein's current candidate descriptions. Uses the
+	 * Settings of the current thread to decide how to evaluate candidates and
+	 * whether to prefer candidates with Gene Ontology annotations. The
+	 * cumulative and total scores are taken from the Protein's
+	 * <code>TokenScoreCalculator</code> and hence, as in AHRD, are based on
+	 * <em>all</em> valid BlastResults added to the Protein, even if its
+	 * candidates have been filtered down to the best scoring ones since.
+	 *
+	 * @param protein
+	 * @param blastDatabases
+	 *            - all Blast-Databases, their indices are used to look up
+	 *            the Blast-Database specific weights
+	 */
+	public CompiledProtein(Protein protein, List<String> blastDatabases) {
+		super();
+		this.nBlastDatabases = blastDatabases.size();
+		List<BlastResult> hits = new ArrayList<BlastResult>();
+		List<Integer> hitDbs = new ArrayList<Integer>();
+		for (String blastDb : protein.getBlastResults().keySet()) {
+			for (BlastResult br : protein.getBlastResults().get(blastDb)) {
+				hits.add(br);
+				hitDbs.add(blastDatabases.indexOf(br.getBlastDatabaseName()));
+			}
+		}
+		// Number the candidates' tokens in order of first appearance, these
+		// are the only ones TokenScoreCalculator assigns Token-Scores to:
+		Map<Integer, Integer> tokenIndices = new HashMap<Integer, Integer>();
+		TokenSet allTokens = new TokenSet();
+		int nHitTokens = 0;
+		for (BlastResult br : hits) {
+			for (String token : br.getTokens()) {
+				if (allTokens.add(token))
+					tokenIndices.put(TokenDictionary.getId(token), tokenIndices.size());
+			}
+			nHitTokens += br.getTokens().size();
+		}
+		compileTokenScores(protein.getTokenScoreCalculator(), blastDatabases, tokenIndices);
+		this.maxBitScore = protein.getDescriptionScoreCalculator().getMaxBitScore();
+		this.hitBlastDatabases = new int[hits.size()];
+		this.hitBitScores = new double[hits.size()];
+		this.hitHasGoAnnotations = new boolean[hits.size()];
+		this.hitTokenOffsets = new int[hits.size() + 1];
+		this.hitTokens = new int[nHitTokens];
+		boolean preferGoAnnos = getSettings().getPreferReferenceWithGoAnnos();
+		int offset = 0;
+		for (int i = 0; i < hits.size(); i++) {
+			BlastResult br = hits.get(i);
+			hitBlastDatabases[i] = hitDbs.get(i);
+			hitBitScores[i] = br.getBitScore();
+			if (preferGoAnnos) {
+				ReferenceProtein rp = getReferenceProtein(br.getAccession());
+				hitHasGoAnnotations[i] = rp != null && !rp.getGoTerms().isEmpty();
+			}
+			hitTokenOffsets[i] = offset;
+			TokenSet tokens = br.getTokens();
+			for (int j = 0; j < tokens.size(); j++)
+				hitTokens[offset++] = tokenIndices.get(tokens.getId(j));
+		}
+		hitTokenOffsets[hits.size()] = offset;
+		compileEvaluationScores(protein, hits, allTokens);
+	}
+
+	/**
+	 * Copies the cumulative scores of the candidates' tokens, the total
+	 * scores, and the numbers of valid BlastResults per Blast-Database, as
+	 * measured by argument TokenScoreCalculator.
+	 */
+	private void compileTokenScores(TokenScoreCalculator tsc, List<String> blastDatabases,
+			Map<Integer, Integer> tokenIndices) {
+		int nTokens = tokenIndices.size();
+		this.totalTokenBitScore = tsc.getTotalTokenBitScore();
+		this.totalTokenOverlapScore = tsc.getTotalTokenOverlapScore();
+		this.blastDatabaseHits = new int[nBlastDatabases];
+		this.cumulativeTokenBitScores = new double[nTokens];
+		this.cumulativeTokenOverlapScores = new double[nTokens];
+		this.tokenBlastDatabaseHits = new int[nTokens * nBlastDatabases];
+		for (int db = 0; db < nBlastDatabases; db++) {
+			Integer hits = tsc.getBlastDatabaseHits().get(blastDatabases.get(db));
+			blastDatabaseHits[db] = hits == null ? 0 : hits;
+		}
+		for (Map.Entry<Integer, Integer> token : tokenIndices.entrySet()) {
+			int tokenId = token.getKey();
+			int t = token.getValue();
+			cumulativeTokenBitScores[t] = tsc.getCumulativeTokenBitScores().getScore(tokenId);
+			cumulativeTokenOverlapScores[t] = tsc.getCumulativeTokenOverlapScores().getScore(tokenId);
+			for (int db = 0; db < nBlastDatabases; db++) {
+				TokenScoreMap tokenHits = tsc.getTokenBlastDatabaseHits().get(blastDatabases.get(db));
+				if (tokenHits != null && tokenHits.containsId(tokenId))
+					tokenBlastDatabaseHits[t * nBlastDatabases + db] = (int) tokenHits.getScore(tokenId);
+			}
+		}
+	}
+
+	/**
+	 * Measures the evaluation scores each candidate achieves, if chosen. See
+	 * <code>EvaluationScoreCalculator.assignEvlScrsToCompetitors()</code>.
+	 */
+	private void compileEvaluationScores(Protein protein, List<BlastResult> hits, Set<String> allTokens) {
+		EvaluationScoreCalculator esc = protein.getEvaluationScoreCalculator();
+		this.evaluated = esc != null && esc.getReferenceDescription() != null
+				&& esc.getReferenceDescription().getDescription() != null;
+		if (evaluated) {
+			Set<String> referenceTokens = esc.getReferenceDescription().getTokens();
+			this.hitEvaluationScores = new double[hits.size()];
+			this.hitTruePositivesRates = new double[hits.size()];
+			this.hitFalsePositivesRates = new double[hits.size()];
+			for (int i = 0; i < hits.size(); i++) {
+				BlastResult br = hits.get(i);
+				Set<String> evaluationTokens = getSettings().getEvaluateValidTokens() ? br.getTokens()
+						: TokenScoreCalculator.tokenize(br.getDescription(), new ArrayList<Pattern>());
+				hitEvaluationScores[i] = EvaluationScoreCalculator.fBetaScore(evaluationTokens, referenceTokens);
+				hitTruePositivesRates[i] = EvaluationScoreCalculator.truePositivesRate(evaluationTokens,
+						referenceTokens);
+				hitFalsePositivesRates[i] = EvaluationScoreCalculator.falsePositivesRate(evaluationTokens,
+						referenceTokens, allTokens);
+			}
+		}
+	}
+
+	/**
+	 * Scores all candidate descriptions with argument weights and finds the
+	 * highest scoring one, exactly as
+	 * <code>DescriptionScoreCalculator.findHighestScoringBlastResult()</code>
+	 * would after the Token-Scores have been assigned and filtered.
+	 *
+	 * @param tokenScoreBitScoreWeight
+	 * @param tokenScoreDatabaseScoreWeight
+	 * @param tokenScoreOverlapScoreWeight
+	 * @param blastDbWeights
+	 *            - indexed as the Blast-Databases this Protein was compiled
+	 *            with
+	 * @param descriptionScoreBitScoreWeights
+	 *            - indexed as the Blast-Databases this Protein was compiled
+	 *            with
+	 * @return int - the index of the highest scoring candidate or -1, if there
+	 *         is none
+	 */
+	public int findHighestScoringHit(double tokenScoreBitScoreWeight, double tokenScoreDatabaseScoreWeight,
+			double tokenScoreOverlapScoreWeight, double[] blastDbWeights, double[] descriptionScoreBitScoreWeights) {
+		int nTokens = cumulativeTokenBitScores.length;
+		// Token-Scores:
+		double totalTokenBlastDatabaseScore = 0.0;
+		for (int db = 0; db < nBlastDatabases; db++)
+			totalTokenBlastDatabaseScore += blastDatabaseHits[db] * blastDbWeights[db];
+		double[] tokenScores = new double[nTokens];
+		double tokenHighScore = 0.0;
+		for (int t = 0; t < nTokens; t++) {
+			double cumulativeTokenBlastDatabaseScore = 0.0;
+			for (int db = 0; db < nBlastDatabases; db++)
+				cumulativeTokenBlastDatabaseScore += tokenBlastDatabaseHits[t * nBlastDatabases + db]
+						* blastDbWeights[db];
+			tokenScores[t] = tokenScoreBitScoreWeight * cumulativeTokenBitScores[t] / totalTokenBitScore
+					+ tokenScoreDatabaseScoreWeight * cumulativeTokenBlastDatabaseScore
+							/ totalTokenBlastDatabaseScore
+					+ tokenScoreOverlapScoreWeight * cumulativeTokenOverlapScores[t] / totalTokenOverlapScore;
+			if (tokenScores[t] > tokenHighScore)
+				tokenHighScore = tokenScores[t];
+		}
+		// Filter non-informative tokens:
+		boolean[] informative = new boolean[nTokens];
+		for (int t = 0; t < nTokens; t++) {
+			informative[t] = tokenScores[t] > tokenHighScore / 2;
+			if (!informative[t])
+				tokenScores[t] -= tokenHighScore / 2;
+		}
+		// Description-Scores, on ties the last candidate wins:
+		int best = -1;
+		int bestWithGoAnnos = -1;
+		double highScore = 0.0;
+		double highScoreWithGoAnnos = 0.0;
+		for (int i = 0; i < hitBitScores.length; i++) {
+			// Only candidates having at least a single non-blacklisted Token
+			// are taken into account:
+			if (hitTokenOffsets[i + 1] == hitTokenOffsets[i])
+				continue;
+			double descriptionScore = descriptionScore(i, tokenScores, tokenHighScore, informative,
+					descriptionScoreBitScoreWeights);
+			if (best < 0 || Double.compare(descriptionScore, highScore) >= 0) {
+				best = i;
+				highScore = descriptionScore;
+			}
+			if (hitHasGoAnnotations[i]
+					&& (bestWithGoAnnos < 0 || Double.compare(descriptionScore, highScoreWithGoAnnos) >= 0)) {
+				bestWithGoAnnos = i;
+				highScoreWithGoAnnos = descriptionScore;
+			}
+		}
+		if (bestWithGoAnnos < 0)
+			return best;
+		// DescriptionScoreCalculator ranks candidates by their scores, so of
+		// all candidates scoring as high as the best one with GO annotations
+		// the last one is chosen, regardless of its own annotations:
+		for (int i = hitBitScores.length - 1; i > bestWithGoAnnos; i--) {
+			if (hitTokenOffsets[i + 1] > hitTokenOffsets[i] && Double.compare(
+					descriptionScore(i, tokenScores, tokenHighScore, informative, descriptionScoreBitScoreWeights),
+					highScoreWithGoAnnos) == 0)
+				return i;
+		}
+		return bestWithGoAnnos;
+	}
+
+	/**
+	 * See <code>DescriptionScoreCalculator.calcDescriptionScore(BlastResult)</code>
+	 * and <code>LexicalScoreCalculator.lexicalScore(BlastResult)</code>.
+	 */
+	private double descriptionScore(int i, double[] tokenScores, double tokenHighScore, boolean[] informative,
+			double[] descriptionScoreBitScoreWeights) {
+		int nHitTokens = hitTokenOffsets[i + 1] - hitTokenOffsets[i];
+		double sumOfTokenScores = 0.0;
+		double nInformativeTokens = 0.0;
+		for (int j = hitTokenOffsets[i]; j < hitTokenOffsets[i + 1]; j++) {
+			sumOfTokenScores += tokenScores[hitTokens[j]];
+			if (informative[hitTokens[j]])
+				nInformativeTokens += 1.0;
+		}
+		return sumOfTokenScores / tokenHighScore / (nHitTokens / nInformativeTokens)
+				+ descriptionScoreBitScoreWeights[hitBlastDatabases[i]] * hitBitScores[i] / maxBitScore;
+	}
+
+	/**
+	 * Does the same as <code>findHighestScoringHit(...)</code> for each of the
+	 * K Parameters in argument batch, but in a single pass over the
+	 * candidates. All intermediate scores are kept in arrays indexed
+	 * <code>i * K + k</code>, so that the inner-most loops run over the K
+	 * Parameters and can be vectorized by the JIT. The arithmetic is performed
+	 * in the very same order as for a single set of Parameters, hence the
+	 * results are identical.
+	 * 
+	 * @param batch
+	 * @return int[] - for each of the K Parameters the index of the highest
+	 *         scoring candidate or -1, if there is none
+	 */
+	public int[] findHighestScoringHits(ParameterBatch batch) {
+		int K = batch.size();
+		int nTokens = cumulativeTokenBitScores.length;
+		int nHits = hitBitScores.length;
+		double[] bitScoreWeights = batch.getTokenScoreBitScoreWeights();
+		double[] databaseScoreWeights = batch.getTokenScoreDatabaseScoreWeights();
+		double[] overlapScoreWeights = batch.getTokenScoreOverlapScoreWeights();
+		double[] blastDbWeights = batch.getBlastDbWeights();
+		double[] descriptionScoreBitScoreWeights = batch.getDescriptionScoreBitScoreWeights();
+		// Token-Scores:
+		double[] totalTokenBlastDatabaseScores = new double[K];
+		for (int db = 0; db < nBlastDatabases; db++)
+			for (int k = 0; k < K; k++)
+				totalTokenBlastDatabaseScores[k] += blastDatabaseHits[db] * blastDbWeights[db * K + k];
+		double[] tokenScores = new double[nTokens * K];
+		double[] tokenHighScores = new double[K];
+		double[] cumulativeTokenBlastDatabaseScores = new double[K];
+		for (int t = 0; t < nTokens; t++) {
+			Arrays.fill(cumulativeTokenBlastDatabaseScores, 0.0);
+			for (int db = 0; db < nBlastDatabases; db++) {
+				int hits = tokenBlastDatabaseHits[t * nBlastDatabases + db];
+				for (int k = 0; k < K; k++)
+					cumulativeTokenBlastDatabaseScores[k] += hits * blastDbWeights[db * K + k];
+			}
+			for (int k = 0; k < K; k++) {
+				double tokenScore = bitScoreWeights[k] * cumulativeTokenBitScores[t] / totalTokenBitScore
+						+ databaseScoreWeights[k] * cumulativeTokenBlastDatabaseScores[k]
+								/ totalTokenBlastDatabaseScores[k]
+						+ overlapScoreWeights[k] * cumulativeTokenOverlapScores[t] / totalTokenOverlapScore;
+				tokenScores[t * K + k] = tokenScore;
+				if (tokenScore > tokenHighScores[k])
+					tokenHighScores[k] = tokenScore;
+			}
+		}
+		// Filter non-informative tokens:
+		boolean[] informative = new boolean[nTokens * K];
+		for (int t = 0; t < nTokens; t++) {
+			for (int k = 0; k < K; k++) {
+				informative[t * K + k] = tokenScores[t * K + k] > tokenHighScores[k] / 2;
+				if (!informative[t * K + k])
+					tokenScores[t * K + k] -= tokenHighScores[k] / 2;
+			}
+		}
+		// Description-Scores:
+		double[] descriptionScores = new double[nHits * K];
+		double[] sumsOfTokenScores = new double[K];
+		double[] nInformativeTokens = new double[K];
+		for (int i = 0; i < nHits; i++) {
+			int nHitTokens = hitTokenOffsets[i + 1] - hitTokenOffsets[i];
+			if (nHitTokens == 0)
+				continue;
+			Arrays.fill(sumsOfTokenScores, 0.0);
+			Arrays.fill(nInformativeTokens, 0.0);
+			for (int j = hitTokenOffsets[i]; j < hitTokenOffsets[i + 1]; j++) {
+				int t = hitTokens[j];
+				for (int k = 0; k < K; k++) {
+					sumsOfTokenScores[k] += tokenScores[t * K + k];
+					if (informative[t * K + k])
+						nInformativeTokens[k] += 1.0;
+				}
+			}
+			int db = hitBlastDatabases[i];
+			for (int k = 0; k < K; k++)
+				descriptionScores[i * K + k] = sumsOfTokenScores[k] / tokenHighScores[k]
+						/ (nHitTokens / nInformativeTokens[k])
+						+ descriptionScoreBitScoreWeights[db * K + k] * hitBitScores[i] / maxBitScore;
+		}
+		// Rank the candidates exactly as findHighestScoringHit(...) does:
+		int[] best = new int[K];
+		for (int k = 0; k < K; k++) {
+			int bestHit = -1;
+			int bestWithGoAnnos = -1;
+			for (int i = 0; i < nHits; i++) {
+				if (hitTokenOffsets[i + 1] == hitTokenOffsets[i])
+					continue;
+				double descriptionScore = descriptionScores[i * K + k];
+				if (bestHit < 0 || Double.compare(descriptionScore, descriptionScores[bestHit * K + k]) >= 0)
+					bestHit = i;
+				if (hitHasGoAnnotations[i] && (bestWithGoAnnos < 0
+						|| Double.compare(descriptionScore, descriptionScores[bestWithGoAnnos * K + k]) >= 0))
+					bestWithGoAnnos = i;
+			}
+			if (bestWithGoAnnos >= 0) {
+				bestHit = bestWithGoAnnos;
+				for (int i = nHits - 1; i > bestWithGoAnnos; i--) {
+					if (hitTokenOffsets[i + 1] > hitTokenOffsets[i] && Double.compare(descriptionScores[i * K + k],
+							descriptionScores[bestWithGoAnnos * K + k]) == 0) {
+						bestHit = i;
+						break;
+					}
+				}
+			}
+			best[k] = bestHit;
+		}
+		return best;
+	}
+
+	/**
+	 * @return boolean - true if and only if this Protein has a reference
+	 *         description to be evaluated against
+	 */
+	public boolean isEvaluated() {
+		return evaluated;
+	}
+
+	/**
+	 * @param hit
+	 *            - the index of the chosen candidate or -1, if none was chosen
+	 * @return double - the F-Beta-Score of the chosen candidate
+	 */
+	public double getEvaluationScore(int hit) {
+		return hit < 0 ? 0.0 : hitEvaluationScores[hit];
+	}
+
+	public double getTruePositivesRate(int hit) {
+		return hit < 0 ? 0.0 : hitTruePositivesRates[hit];
+	}
+
+	public double getFalsePositivesRate(int hit) {
+		return hit < 0 ? 0.0 : hitFalsePositivesRates[hit];
+	}
+
+	public int getNumberOfHits() {
+		return hitBitScores.length;
+	}
+}
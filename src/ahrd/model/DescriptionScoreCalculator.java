@@ -1,7 +1,7 @@
 package ahrd.model;
 
 import static ahrd.controller.Settings.getSettings;
-import static ahrd.model.AhrdDb.getReferenceProteinDAO;
+import static ahrd.model.AhrdDb.getReferenceProtein;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -15,19 +15,21 @@ import java.util.regex.Pattern;
 
 public class DescriptionScoreCalculator {
 
+	public static final Pattern MULTIPLE_WHITESPACES = Pattern.compile("\\s{2,}");
+
 	/**
 	 * Global implementation of the Description Blacklist.
 	 * 
 	 * @param description
 	 * @param blacklist
+	 *            - pre-compiled, see <code>Settings.compileBlacklist(...)</code>
 	 * @return TRUE if and only if none of the regular expressions in blacklist
 	 *         matches the argument description. FALSE otherwise.
 	 */
-	public static boolean passesBlacklist(String description, List<String> blacklist) {
+	public static boolean passesBlacklist(String description, List<Pattern> blacklist) {
 		boolean passesBlacklist = (description != null && !description.equals(""));
-		for (Iterator<String> i = blacklist.iterator(); (i.hasNext() && passesBlacklist);) {
-			Pattern p = Pattern.compile(i.next());
-			Matcher m = p.matcher(description);
+		for (Iterator<Pattern> i = blacklist.iterator(); (i.hasNext() && passesBlacklist);) {
+			Matcher m = i.next().matcher(description);
 			passesBlacklist = !m.find();
 		}
 		return passesBlacklist;
@@ -38,20 +40,21 @@ public class DescriptionScoreCalculator {
 	 * 
 	 * @param description
 	 * @param filter
+	 *            - pre-compiled, see <code>Settings.compileFilter(...)</code>
 	 * @return A modified version of argument description in which all matches
 	 *         to any of the regular expressions in argument filter are deleted.
 	 *         Finally the filtered description is trimmed and multiple
 	 *         white-spaces are condensed into a single white-spaces.
 	 */
-	public static String filter(String description, List<String> filter) {
+	public static String filter(String description, List<Pattern> filter) {
 		String filteredDescLine = description;
-		for (Iterator<String> i = filter.iterator(); i.hasNext();) {
-			Pattern p = Pattern.compile(i.next());
+		for (Iterator<Pattern> i = filter.iterator(); i.hasNext();) {
+			Pattern p = i.next();
 			// Replace with whitespace, so word-boundaries are kept up
 			filteredDescLine = p.matcher(filteredDescLine).replaceAll(" ");
 		}
 		// Condense multiple whitespaces into one and trim the description-line:
-		filteredDescLine = filteredDescLine.replaceAll("\\s{2,}", " ").trim();
+		filteredDescLine = MULTIPLE_WHITESPACES.matcher(filteredDescLine).replaceAll(" ").trim();
 		return filteredDescLine;
 	}
 
@@ -81,7 +84,7 @@ public class DescriptionScoreCalculator {
 				// that have at least a single non-blacklisted Token:
 				if (iterBlastResult.getTokens().size() > 0) {
 					scoreRanking.put(iterBlastResult.getDescriptionScore(), iterBlastResult);
-					rp = getReferenceProteinDAO().byAccession.get(iterBlastResult.getAccession());
+					rp = getReferenceProtein(iterBlastResult.getAccession());
 					if (rp != null && !rp.getGoTerms().isEmpty() && getSettings().getPreferReferenceWithGoAnnos())
 						scoreRankingWithGoAnnos.add(iterBlastResult.getDescriptionScore());
 				}
@@ -96,7 +99,7 @@ public class DescriptionScoreCalculator {
 		setHighestScoringBlastResult(bestScoringBr);
 		// If AHRD is able to annotate Gene Ontology (GO) Terms, do so:
 		if (bestScoringBr != null) {
-			rp = getReferenceProteinDAO().byAccession.get(bestScoringBr.getAccession());
+			rp = getReferenceProtein(bestScoringBr.getAccession());
 			if (rp != null && !rp.getGoTerms().isEmpty())
 				getProtein().setGoResults(rp.getGoTerms());
 		}
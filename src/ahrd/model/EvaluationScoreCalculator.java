@@ -35,6 +35,12 @@ public class EvaluationScoreCalculator {
 	private Double truePositivesRate;
 	private Double falsePositivesRate;
 	private Double highestPossibleEvaluationScore;
+	/**
+	 * The evaluation-score of the best performing competitor. It does not
+	 * depend on AHRD's Parameters, hence it is calculated only once. NULL means
+	 * not yet calculated.
+	 */
+	private Double bestCompetitorEvaluationScore;
 
 	public EvaluationScoreCalculator(Protein protein) {
 		super();
@@ -131,6 +137,21 @@ public class EvaluationScoreCalculator {
 	 *         given.
 	 */
 	public static Double fBetaScore(Set<String> assignedTkns, Set<String> referenceTkns) {
+		return fBetaScore(assignedTkns, referenceTkns, getSettings().getFMeasureBetaParameter());
+	}
+
+	/**
+	 * See <code>fBetaScore(Set, Set)</code>. Evaluating many Descriptions, the
+	 * argument beta is looked up in the Settings only once by the caller.
+	 * 
+	 * @param assignedTkns
+	 * @param referenceTkns
+	 * @param beta
+	 *            - the F-Measure's beta parameter
+	 * @return Double - F-Beta-Score or Double.NaN if no reference Tokens were
+	 *         given.
+	 */
+	public static Double fBetaScore(Set<String> assignedTkns, Set<String> referenceTkns, double beta) {
 		// Validate Reference:
 		if (referenceTkns == null || referenceTkns.isEmpty())
 			return Double.NaN;
@@ -144,7 +165,7 @@ public class EvaluationScoreCalculator {
 				double rc = tp / referenceTkns.size();
 				// F-Beta-Measure is the harmonic mean of precision and recall
 				// weighted by param beta:
-				Double bSqr = getSettings().getFMeasureBetaParameter() * getSettings().getFMeasureBetaParameter();
+				double bSqr = beta * beta;
 				fBetaScore = (1 + bSqr) * (pr * rc) / (bSqr * pr + rc);
 			}
 		}
@@ -164,6 +185,7 @@ public class EvaluationScoreCalculator {
 		if (!getUnchangedBlastResults().containsKey(blastDb)
 				|| getUnchangedBlastResults().get(blastDb).getBitScore() < br.getBitScore()) {
 			getUnchangedBlastResults().put(blastDb, br);
+			setBestCompetitorEvaluationScore(null);
 		}
 	}
 
@@ -173,6 +195,16 @@ public class EvaluationScoreCalculator {
 	 * Blast-Hit.
 	 */
 	public void assignEvlScrsToCompetitors() {
+		assignEvlScrsToCompetitors(getSettings().getFMeasureBetaParameter());
+	}
+
+	/**
+	 * See <code>assignEvlScrsToCompetitors()</code>.
+	 * 
+	 * @param beta
+	 *            - the F-Measure's beta parameter
+	 */
+	public void assignEvlScrsToCompetitors(double beta) {
 		if (getReferenceDescription() != null && getReferenceDescription().getDescription() != null) {
 			// First Competitor is the Description assigned by AHRD itself:
 			if (getProtein().getDescriptionScoreCalculator().getHighestScoringBlastResult() != null) {
@@ -183,7 +215,7 @@ public class EvaluationScoreCalculator {
 				Set<String> hrdEvlTkns = getProtein().getDescriptionScoreCalculator().getHighestScoringBlastResult()
 						.getEvaluationTokens();
 				// Calculate the Evaluation-Score as the F-Beta-Score:
-				setEvalutionScore(fBetaScore(hrdEvlTkns, getReferenceDescription().getTokens()));
+				setEvalutionScore(fBetaScore(hrdEvlTkns, getReferenceDescription().getTokens(), beta));
 				// Enable calculation of the ROC-Curve:
 				setTruePositivesRate(truePositivesRate(hrdEvlTkns, getReferenceDescription().getTokens()));
 				setFalsePositivesRate(falsePositivesRate(hrdEvlTkns, getReferenceDescription().getTokens(),
@@ -194,55 +226,96 @@ public class EvaluationScoreCalculator {
 				setTruePositivesRate(0.0);
 				setFalsePositivesRate(0.0);
 			}
-			// Other competitors are the best unchanged BlastHits from all
-			// performed Blast-Database-Searches:
-			Double bestCompEvlScr = 0.0;
-			if (getUnchangedBlastResults().size() > 0) {
-				for (String blastDatabase : getUnchangedBlastResults().keySet()) {
-					BlastResult cmpt = getUnchangedBlastResults().get(blastDatabase);
-					if (cmpt != null) {
-						// Generate the set of Evaluation-Tokens from the
-						// actually assigned Description, WITHOUT filtering each
-						// Token with the BLACKLIST:
-						cmpt.tokenizeForEvaluation();
-						cmpt.setEvaluationScore(
-								fBetaScore(cmpt.getEvaluationTokens(), getReferenceDescription().getTokens()));
-						// Find best performing competitor-method:
-						if (cmpt.getEvaluationScore() > bestCompEvlScr)
-							bestCompEvlScr = cmpt.getEvaluationScore();
-					}
-				}
-			}
-			// Also compare with the Blast2GO-Annotation(s), if present:
-			if (getBlast2GoAnnots() != null) {
-				for (Blast2GoAnnot b2ga : getBlast2GoAnnots()) {
-					b2ga.setEvaluationScore(
-							fBetaScore(b2ga.getEvaluationTokens(), getReferenceDescription().getTokens()));
+			// The competitors' scores do not change, evaluate them only once:
+			if (getBestCompetitorEvaluationScore() == null)
+				evaluateCompetitors(beta);
+			// Compare AHRD's performance:
+			setEvalScoreMinBestCompScore(getEvalutionScore() - getBestCompetitorEvaluationScore());
+		}
+	}
+
+	/**
+	 * Evaluates the competitors, i.e. the best unchanged BlastHits from all
+	 * performed Blast-Database-Searches and the Blast2GoAnnots, and remembers
+	 * the best performing competitor's evaluation-score. As neither the
+	 * competitors nor the reference depend on AHRD's Parameters, this needs to
+	 * be done only once per Protein, even when the Trainer scores it many
+	 * times.
+	 */
+	public void evaluateCompetitors() {
+		evaluateCompetitors(getSettings().getFMeasureBetaParameter());
+	}
+
+	/**
+	 * See <code>evaluateCompetitors()</code>.
+	 * 
+	 * @param beta
+	 *            - the F-Measure's beta parameter
+	 */
+	public void evaluateCompetitors(double beta) {
+		// Competitors are the best unchanged BlastHits from all performed
+		// Blast-Database-Searches:
+		Double bestCompEvlScr = 0.0;
+		if (getUnchangedBlastResults().size() > 0) {
+			for (String blastDatabase : getUnchangedBlastResults().keySet()) {
+				BlastResult cmpt = getUnchangedBlastResults().get(blastDatabase);
+				if (cmpt != null) {
+					// Generate the set of Evaluation-Tokens from the
+					// actually assigned Description, WITHOUT filtering each
+					// Token with the BLACKLIST:
+					cmpt.tokenizeForEvaluation();
+					cmpt.setEvaluationScore(
+							fBetaScore(cmpt.getEvaluationTokens(), getReferenceDescription().getTokens(), beta));
 					// Find best performing competitor-method:
-					if (b2ga.getEvaluationScore() > bestCompEvlScr)
-						bestCompEvlScr = b2ga.getEvaluationScore();
+					if (cmpt.getEvaluationScore() > bestCompEvlScr)
+						bestCompEvlScr = cmpt.getEvaluationScore();
 				}
 			}
-			// Compare AHRD's performance:
-			setEvalScoreMinBestCompScore(getEvalutionScore() - bestCompEvlScr);
 		}
+		// Also compare with the Blast2GO-Annotation(s), if present:
+		if (getBlast2GoAnnots() != null) {
+			for (Blast2GoAnnot b2ga : getBlast2GoAnnots()) {
+				b2ga.setEvaluationScore(
+						fBetaScore(b2ga.getEvaluationTokens(), getReferenceDescription().getTokens(), beta));
+				// Find best performing competitor-method:
+				if (b2ga.getEvaluationScore() > bestCompEvlScr)
+					bestCompEvlScr = b2ga.getEvaluationScore();
+			}
+		}
+		setBestCompetitorEvaluationScore(bestCompEvlScr);
 	}
 
 	/**
 	 * In order to get more accurate information of how well AHRD performs, we
 	 * infer the highest possible score by calculating the evaluation-score for
 	 * each BlastResult's Description and remembering the highest achieved
-	 * score.
+	 * score. Each BlastResult is evaluated only once, so invoking this
+	 * repeatedly, e.g. after the BlastResults have been filtered, is cheap.
 	 */
 	public void findHighestPossibleEvaluationScore() {
+		findHighestPossibleEvaluationScore(getSettings().getFMeasureBetaParameter());
+	}
+
+	/**
+	 * See <code>findHighestPossibleEvaluationScore()</code>.
+	 * 
+	 * @param beta
+	 *            - the F-Measure's beta parameter
+	 */
+	public void findHighestPossibleEvaluationScore(double beta) {
 		setHighestPossibleEvaluationScore(0.0);
 		for (List<BlastResult> resultsFromBlastDatabase : getProtein().getBlastResults().values()) {
 			for (BlastResult cmpt : resultsFromBlastDatabase) {
-				// Generate the set of Evaluation-Tokens from the
-				// actually assigned Description, WITHOUT filtering each
-				// Token with the BLACKLIST:
-				cmpt.tokenizeForEvaluation();
-				cmpt.setEvaluationScore(fBetaScore(cmpt.getEvaluationTokens(), getReferenceDescription().getTokens()));
+				// A BlastResult's evaluation-score does not depend on AHRD's
+				// Parameters, so calculate it only once:
+				if (cmpt.getEvaluationScore() == null) {
+					// Generate the set of Evaluation-Tokens from the
+					// actually assigned Description, WITHOUT filtering each
+					// Token with the BLACKLIST:
+					cmpt.tokenizeForEvaluation();
+					cmpt.setEvaluationScore(
+							fBetaScore(cmpt.getEvaluationTokens(), getReferenceDescription().getTokens(), beta));
+				}
 				// Find best performing BlastResult-Description:
 				if (cmpt.getEvaluationScore() > getHighestPossibleEvaluationScore())
 					setHighestPossibleEvaluationScore(cmpt.getEvaluationScore());
@@ -277,14 +350,28 @@ public class EvaluationScoreCalculator {
 		if (getBlast2GoAnnots() == null)
 			setBlast2GoAnnots(new HashSet<Blast2GoAnnot>());
 		getBlast2GoAnnots().add(b2ga);
+		setBestCompetitorEvaluationScore(null);
 	}
 
 	public ReferenceDescription getReferenceDescription() {
 		return referenceDescription;
 	}
 
+	/**
+	 * Sets the reference and forgets all evaluation-scores calculated against
+	 * the former one.
+	 * 
+	 * @param referenceDescription
+	 */
 	public void setReferenceDescription(ReferenceDescription referenceDescription) {
 		this.referenceDescription = referenceDescription;
+		setBestCompetitorEvaluationScore(null);
+		if (getProtein() != null) {
+			for (List<BlastResult> resultsFromBlastDatabase : getProtein().getBlastResults().values()) {
+				for (BlastResult br : resultsFromBlastDatabase)
+					br.setEvaluationScore(null);
+			}
+		}
 	}
 
 	public Map<String, BlastResult> getUnchangedBlastResults() {
@@ -293,6 +380,7 @@ public class EvaluationScoreCalculator {
 
 	public void setUnchangedBlastResults(Map<String, BlastResult> unchangedBlastResults) {
 		this.unchangedBlastResults = unchangedBlastResults;
+		setBestCompetitorEvaluationScore(null);
 	}
 
 	public Protein getProtein() {
@@ -341,6 +429,7 @@ public class EvaluationScoreCalculator {
 
 	public void setBlast2GoAnnots(Set<Blast2GoAnnot> blast2GoAnnots) {
 		this.blast2GoAnnots = blast2GoAnnots;
+		setBestCompetitorEvaluationScore(null);
 	}
 
 	public Double getHighestPossibleEvaluationScore() {
@@ -351,4 +440,12 @@ public class EvaluationScoreCalculator {
 		this.highestPossibleEvaluationScore = highestPossibleEvaluationScore;
 	}
 
+	public Double getBestCompetitorEvaluationScore() {
+		return bestCompetitorEvaluationScore;
+	}
+
+	public void setBestCompetitorEvaluationScore(Double bestCompetitorEvaluationScore) {
+		this.bestCompetitorEvaluationScore = bestCompetitorEvaluationScore;
+	}
+
 }
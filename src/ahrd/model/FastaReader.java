@@ -0,0 +1,114 @@
+package ahrd.model;
+
+import static ahrd.controller.Utils.openReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a FASTA file record by record, so that neither the whole file nor a
+ * list of all its entries has to be held in memory. A record's header is the
+ * line following the '&gt;', its sequence is the concatenation of the trimmed
+ * lines up to the next header. If the sequences are not needed, only their
+ * lengths are counted. Gzip compressed files are decompressed on the fly.
+ *
+ * Usage:
+ *
+ * <pre>
+ * while (fasta.next()) {
+ * 	fasta.getHeader();
+ * 	...
+ * }
+ * fasta.close();
+ * </pre>
+ */
+public class FastaReader implements Closeable {
+
+	private final BufferedReader reader;
+	private final boolean readSequences;
+	private final StringBuilder sequence = new StringBuilder();
+	private boolean started = false;
+	/**
+	 * The line last read, i.e. the header of the following record:
+	 */
+	private String line;
+	private String header;
+	private int sequenceLength;
+
+	/**
+	 * @param pathToFasta
+	 * @param readSequences
+	 *            - if false, only the sequences' lengths are counted
+	 * @throws IOException
+	 */
+	public FastaReader(String pathToFasta, boolean readSequences) throws IOException {
+		this(openReader(pathToFasta), readSequences);
+	}
+
+	public FastaReader(Reader in, boolean readSequences) {
+		super();
+		this.reader = new BufferedReader(in);
+		this.readSequences = readSequences;
+	}
+
+	/**
+	 * Advances to the next record. Anything before the first header is
+	 * skipped.
+	 *
+	 * @return boolean - false, if there are no more records
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		if (!started) {
+			started = true;
+			line = reader.readLine();
+			while (line != null && !line.startsWith(">"))
+				line = reader.readLine();
+		}
+		if (line == null) {
+			header = null;
+			return false;
+		}
+		header = line.substring(1);
+		sequence.setLength(0);
+		sequenceLength = 0;
+		while ((line = reader.readLine()) != null && !line.startsWith(">")) {
+			String sequencePart = line.trim();
+			sequenceLength += sequencePart.length();
+			if (readSequences)
+				sequence.append(sequencePart);
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/**
+	 * @return String - the current record's header without the leading
+	 *         '&gt;'
+	 */
+	public String getHeader() {
+		return header;
+	}
+
+	/**
+	 * @return String - the current record's sequence, or null if this reader
+	 *         does not read sequences
+	 */
+	public String getSequence() {
+		return readSequences ? sequence.toString() : null;
+	}
+
+	public int getSequenceLength() {
+		return sequenceLength;
+	}
+
+	public boolean isReadSequences() {
+		return readSequences;
+	}
+}
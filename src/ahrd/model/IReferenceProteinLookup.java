@@ -0,0 +1,15 @@
+package ahrd.model;
+
+/**
+ * A read-only source of ReferenceProteins, e.g. AHRD's Berkeley-DB or the
+ * compact reference protein store.
+ */
+public interface IReferenceProteinLookup {
+
+	/**
+	 * @param accession
+	 * @return ReferenceProtein with argument accession or null if not found
+	 */
+	public ReferenceProtein get(String accession);
+
+}
@@ -1,25 +1,30 @@
 package ahrd.model;
 
 import static ahrd.controller.Settings.getSettings;
-import java.io.BufferedInputStream;
+import static ahrd.controller.Utils.openInputStream;
+
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import nu.xom.Attribute;
-import nu.xom.Builder;
-import nu.xom.Document;
-import nu.xom.Element;
-import nu.xom.Nodes;
-import nu.xom.ParsingException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import ahrd.exception.MissingProteinException;
 import ahrd.exception.MissingInterproResultException;
@@ -39,6 +44,71 @@ public class InterproResult implements Comparable<InterproResult> {
 	private Set<String> contains = new HashSet<String>();
 
 	private static Map<String, InterproResult> interproDb = new HashMap<String, InterproResult>();
+	/**
+	 * The closures last computed by <code>computeClosures()</code>. They are
+	 * never modified once published, so annotation threads can use them
+	 * without synchronization.
+	 */
+	private static volatile Closures closures;
+
+	/**
+	 * Of each InterproResult in the Interpro-Memory-Database, the other
+	 * InterproResults that make it redundant for
+	 * <code>filterForMostInforming(...)</code>.
+	 */
+	private static final class Closures {
+		/**
+		 * The Interpro-Memory-Database and its size, when the closures were
+		 * computed.
+		 */
+		private final Map<String, InterproResult> interproDb;
+		private final int size;
+		/**
+		 * Each InterproResult at its dense index, and the indices by id:
+		 */
+		private final InterproResult[] iprs;
+		private final Map<String, Integer> indices;
+		/**
+		 * Per index, the sorted indices of the InterproResult's ancestors and
+		 * of the InterproResults containing it, directly or transitively.
+		 */
+		private final int[][] ancestors;
+		private final int[][] containers;
+		/**
+		 * Per index, true, if an ancestor or a directly or transitively
+		 * contained InterproResult, respectively, could not be found in the
+		 * Interpro-Memory-Database.
+		 */
+		private final boolean[] missingAncestors;
+		private final boolean[] missingContained;
+
+		private Closures(Map<String, InterproResult> interproDb) {
+			this.interproDb = interproDb;
+			this.size = interproDb.size();
+			this.iprs = interproDb.values().toArray(new InterproResult[size]);
+			this.indices = new HashMap<String, Integer>(size * 2);
+			for (int i = 0; i < size; i++)
+				indices.put(iprs[i].getId(), i);
+			this.ancestors = new int[size][];
+			this.containers = new int[size][];
+			this.missingAncestors = new boolean[size];
+			this.missingContained = new boolean[size];
+		}
+
+		private boolean isOf(Map<String, InterproResult> interproDb) {
+			return this.interproDb == interproDb && size == interproDb.size();
+		}
+
+		/**
+		 * @param ipr
+		 * @return int - the index of the argument InterproResult or -1, if it
+		 *         is not in the Interpro-Memory-Database
+		 */
+		private int indexOf(InterproResult ipr) {
+			Integer i = indices.get(ipr.getId());
+			return (i != null && iprs[i] == ipr) ? i : -1;
+		}
+	}
 
 	public InterproResult(String id, String shortName, String type) {
 		super();
@@ -47,72 +117,202 @@ public class InterproResult implements Comparable<InterproResult> {
 		setType(type);
 	}
 
-	private static String getAttributeValue(Element element,
-			String attributeName) {
-		String attrVal = "";
-		Attribute attr = element.getAttribute(attributeName);
-		if (attr != null)
-			attrVal = attr.getValue();
-		// else
-		// element.getLocalName() +
-		// "' does not have Attribute '" +
-		// attributeName + "'!"
-		// );
-		return attrVal;
+	/**
+	 * Loads the Interpro-Entities from the Interpro-Database in XML format
+	 * (interpro.xml) into the Interpro-Memory-Database. The file is read as a
+	 * stream, so that no document tree of the whole database is held in
+	 * memory: Of each entity only its id, short name, type, name, parent, and
+	 * contained entities are kept. Subsequently the closures needed by
+	 * <code>filterForMostInforming(...)</code> are computed. Gzip compressed
+	 * files are decompressed on the fly.
+	 * 
+	 * @throws IOException
+	 */
+	public static void initialiseInterproDb() throws IOException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// interpro.xml refers to its DTD, which is not needed:
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		InputStream in = openInputStream(getSettings().getPathToInterproDatabase());
+		try {
+			XMLStreamReader xml = factory.createXMLStreamReader(in);
+			try {
+				while (xml.hasNext()) {
+					if (xml.next() == XMLStreamConstants.START_ELEMENT && "interpro".equals(xml.getLocalName())) {
+						InterproResult ipr = readInterproElement(xml);
+						// Add new InterproResult to the Interpro-Memory-Database:
+						getInterproDb().put(ipr.getId(), ipr);
+					}
+				}
+			} finally {
+				xml.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not parse Interpro-Database '" + getSettings().getPathToInterproDatabase()
+					+ "'.", e);
+		} finally {
+			in.close();
+		}
+		computeClosures();
 	}
 
-	private static String retrieveContentOfFirstChildElement(Element element,
-			String xpathQuery) {
-		String res = null;
-		Nodes resultNodes = element.query(xpathQuery);
-		if (resultNodes.size() > 0) {
-			res = resultNodes.get(0).getValue();
+	/**
+	 * Reads the 'interpro' element the argument reader is positioned at and
+	 * leaves the reader at its end. Only the first 'name', 'parent_list', and
+	 * 'contains' child elements are considered, and of 'parent_list' only the
+	 * first 'rel_ref'.
+	 * 
+	 * @param xml
+	 * @return InterproResult
+	 * @throws XMLStreamException
+	 */
+	private static InterproResult readInterproElement(XMLStreamReader xml) throws XMLStreamException {
+		InterproResult ipr = new InterproResult(attributeValue(xml, "id"), attributeValue(xml, "short_name"),
+				attributeValue(xml, "type"));
+		StringBuilder name = null;
+		String child = null;
+		boolean readName = false, readParent = false, readContains = false;
+		int depth = 1;
+		while (depth > 0) {
+			switch (xml.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				if (depth == 2) {
+					child = xml.getLocalName();
+					if ("name".equals(child) && !readName) {
+						name = new StringBuilder();
+					} else if ("parent_list".equals(child) && readParent
+							|| "contains".equals(child) && readContains) {
+						child = null;
+					}
+				} else if (depth == 3 && "rel_ref".equals(xml.getLocalName()) && child != null) {
+					String relRef = xml.getAttributeValue(null, "ipr_ref");
+					if ("parent_list".equals(child) && !readParent) {
+						ipr.setParentId(relRef);
+						readParent = true;
+					} else if ("contains".equals(child) && relRef != null) {
+						ipr.getContains().add(relRef);
+					}
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				if (depth == 2 && child != null) {
+					if ("name".equals(child) && name != null) {
+						ipr.setName(name.toString());
+						name = null;
+						readName = true;
+					} else if ("parent_list".equals(child)) {
+						readParent = true;
+					} else if ("contains".equals(child)) {
+						readContains = true;
+					}
+				}
+				depth--;
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				if (name != null)
+					name.append(xml.getText());
+				break;
+			}
 		}
-		return res;
+		return ipr;
 	}
 
-	public static void initialiseInterproDb() throws IOException,
-			ParsingException {
-		Builder parser = new Builder();
-		Document doc = parser.build(new BufferedInputStream(
-				new FileInputStream(new File(getSettings()
-						.getPathToInterproDatabase()))));
-		Nodes ipr_nodes = doc.query("//interpro");
-		for (int i = 0; i < ipr_nodes.size(); i++) {
-			Element ipr_el = (Element) ipr_nodes.get(i);
-			InterproResult ipr = new InterproResult(getAttributeValue(ipr_el,
-					"id"), getAttributeValue(ipr_el, "short_name"),
-					getAttributeValue(ipr_el, "type"));
-			ipr.setName(retrieveContentOfFirstChildElement(ipr_el, "name"));
-			// Retrieve Parent-Id:
-			Nodes resultNodes = ipr_el.query("parent_list");
-			if (resultNodes.size() > 0) {
-				resultNodes = resultNodes.get(0).query("rel_ref");
-				if (resultNodes.size() > 0) {
-					Attribute relRefAttr = ((Element) resultNodes.get(0))
-							.getAttribute("ipr_ref");
-					if (relRefAttr != null)
-						ipr.setParentId(relRefAttr.getValue());
+	private static String attributeValue(XMLStreamReader xml, String attributeName) {
+		String attrVal = xml.getAttributeValue(null, attributeName);
+		return attrVal == null ? "" : attrVal;
+	}
+
+	/**
+	 * Assigns each InterproResult in the Interpro-Memory-Database a dense
+	 * index and computes, which other InterproResults make it redundant for
+	 * <code>filterForMostInforming(...)</code>: its ancestors and the
+	 * InterproResults containing it, directly or transitively. Has to be
+	 * invoked after the Interpro-Memory-Database has been modified.
+	 * <code>filterForMostInforming(...)</code> does so, if the database's
+	 * size has changed.
+	 */
+	public static synchronized void computeClosures() {
+		Closures c = new Closures(getInterproDb());
+		List<BitSet> containers = new ArrayList<BitSet>(c.size);
+		for (int i = 0; i < c.size; i++) {
+			BitSet ancestors = new BitSet();
+			InterproResult parent = c.iprs[i];
+			while (parent.getParentId() != null) {
+				parent = getInterproDb().get(parent.getParentId());
+				if (parent == null) {
+					c.missingAncestors[i] = true;
+					break;
 				}
+				int parentIndex = c.indices.get(parent.getId());
+				if (ancestors.get(parentIndex))
+					break;
+				ancestors.set(parentIndex);
 			}
-			// Initialise contained InterproResults:
-			resultNodes = ipr_el.query("contains");
-			if (resultNodes.size() > 0) {
-				resultNodes = ((Element) resultNodes.get(0)).query("rel_ref");
-				if (resultNodes.size() > 0) {
-					for (int j = 0; j < resultNodes.size(); j++) {
-						Element relRefElmnt = (Element) resultNodes.get(j);
-						Attribute relRefAttr = relRefElmnt
-								.getAttribute("ipr_ref");
-						if (relRefAttr != null) {
-							ipr.getContains().add(relRefAttr.getValue());
-						}
+			c.ancestors[i] = toIndices(ancestors, i);
+			containers.add(new BitSet());
+		}
+		for (int container = 0; container < c.size; container++) {
+			// Depth first search of all directly or transitively contained
+			// InterproResults:
+			BitSet contained = new BitSet();
+			Deque<InterproResult> toVisit = new ArrayDeque<InterproResult>();
+			toVisit.push(c.iprs[container]);
+			while (!toVisit.isEmpty()) {
+				for (String containedId : toVisit.pop().getContains()) {
+					InterproResult containee = getInterproDb().get(containedId);
+					if (containee == null) {
+						c.missingContained[container] = true;
+					} else if (!contained.get(c.indices.get(containedId))) {
+						contained.set(c.indices.get(containedId));
+						toVisit.push(containee);
 					}
 				}
 			}
-			// Add new InterproResult to the Interpro-Memory-Database:
-			getInterproDb().put(ipr.getId(), ipr);
+			for (int i = contained.nextSetBit(0); i >= 0; i = contained.nextSetBit(i + 1))
+				containers.get(i).set(container);
+		}
+		for (int i = 0; i < c.size; i++)
+			c.containers[i] = toIndices(containers.get(i), i);
+		closures = c;
+	}
+
+	/**
+	 * @return Closures - the closures of the current Interpro-Memory-Database,
+	 *         computed anew if it has been modified since
+	 */
+	private static Closures closures() {
+		Closures c = closures;
+		if (c == null || !c.isOf(getInterproDb())) {
+			synchronized (InterproResult.class) {
+				c = closures;
+				if (c == null || !c.isOf(getInterproDb())) {
+					computeClosures();
+					c = closures;
+				}
+			}
 		}
+		return c;
+	}
+
+	/**
+	 * Stores the argument indices compactly, because BitSets would span the
+	 * whole Interpro-Memory-Database.
+	 * 
+	 * @param indices
+	 * @param self
+	 *            - index not to include
+	 * @return int[] - the sorted indices
+	 */
+	private static int[] toIndices(BitSet indices, int self) {
+		indices.clear(self);
+		int[] sorted = new int[indices.cardinality()];
+		int j = 0;
+		for (int i = indices.nextSetBit(0); i >= 0; i = indices.nextSetBit(i + 1))
+			sorted[j++] = i;
+		return sorted;
 	}
 
 	/**
@@ -171,26 +371,90 @@ public class InterproResult implements Comparable<InterproResult> {
 
 	/**
 	 * Filters out all those Protein's InterproResults, who are parents of or
-	 * contained by any other of the protein's InterproResults. Unfortunately
-	 * this is of O(n^2)!
+	 * contained by any other of the protein's InterproResults. Uses the
+	 * closures computed by <code>computeClosures()</code>, so that each
+	 * InterproResult is checked by looking up its few ancestors and containers
+	 * in the set of the Protein's InterproResults.
+	 * 
+	 * @throws MissingInterproResultException
+	 *             if any of the InterproResults to compare refers to a parent
+	 *             or contained InterproResult not found in the
+	 *             Interpro-Memory-Database
 	 */
 	public static void filterForMostInforming(Protein p)
 			throws MissingInterproResultException {
+		if (p.getInterproResults().size() < 2)
+			return;
+		Closures c = closures();
+		// Only InterproResults found in the Interpro-Memory-Database are
+		// compared:
+		List<InterproResult> iprsToCompare = new ArrayList<InterproResult>();
+		List<Integer> indicesToCompare = new ArrayList<Integer>();
+		BitSet iprsOfProtein = new BitSet();
+		boolean missingReferences = false;
+		for (InterproResult ipr : p.getInterproResults()) {
+			int i = c.indexOf(ipr);
+			if (i >= 0) {
+				iprsToCompare.add(ipr);
+				indicesToCompare.add(i);
+				iprsOfProtein.set(i);
+				missingReferences |= c.missingAncestors[i] || c.missingContained[i];
+			}
+		}
+		if (missingReferences)
+			validateReferences(c, iprsToCompare, indicesToCompare);
 		Set<InterproResult> mostInformatives = new HashSet<InterproResult>(p
 				.getInterproResults());
-		for (InterproResult iprToValidate : p.getInterproResults()) {
-			Set<InterproResult> iprsToCompare = new HashSet<InterproResult>(p
-					.getInterproResults());
-			iprsToCompare.remove(iprToValidate);
-			for (InterproResult iprToCompare : iprsToCompare) {
-				if (iprToValidate.isParent(iprToCompare)
-						|| iprToCompare.contains(iprToValidate))
-					mostInformatives.remove(iprToValidate);
-			}
+		for (int j = 0; j < iprsToCompare.size(); j++) {
+			int i = indicesToCompare.get(j);
+			if (anyIndexIn(c.ancestors[i], iprsOfProtein) || anyIndexIn(c.containers[i], iprsOfProtein))
+				mostInformatives.remove(iprsToCompare.get(j));
 		}
 		p.setInterproResults(mostInformatives);
 	}
 
+	private static boolean anyIndexIn(int[] indices, BitSet set) {
+		for (int i : indices) {
+			if (set.get(i))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Throws a MissingInterproResultException if comparing any two of the
+	 * argument InterproResults requires an InterproResult not found in the
+	 * Interpro-Memory-Database: That is, if one is not an ancestor of the
+	 * other, but the latter's ancestors are incomplete, or if one is not
+	 * contained by the other, but the latter's contained InterproResults are
+	 * incomplete.
+	 * 
+	 * @param c
+	 * @param iprs
+	 * @param indices
+	 *            - the argument InterproResults' indices in the closures
+	 * @throws MissingInterproResultException
+	 */
+	private static void validateReferences(Closures c, List<InterproResult> iprs, List<Integer> indices)
+			throws MissingInterproResultException {
+		for (int v = 0; v < iprs.size(); v++) {
+			int toValidate = indices.get(v);
+			for (int w = 0; w < iprs.size(); w++) {
+				int toCompare = indices.get(w);
+				if (toValidate == toCompare || Arrays.binarySearch(c.ancestors[toValidate], toCompare) >= 0)
+					continue;
+				if (c.missingAncestors[toValidate])
+					throw new MissingInterproResultException(
+							"Could not find all ancestors of Interpro-Result '" + iprs.get(v).getId()
+									+ "' in Memory-Database.");
+				if (c.missingContained[toCompare] && Arrays.binarySearch(c.containers[toValidate], toCompare) < 0)
+					throw new MissingInterproResultException(
+							"Could not find all Interpro-Results contained by '" + iprs.get(w).getId()
+									+ "' in Memory-Database.");
+			}
+		}
+	}
+
 	public int compareTo(InterproResult iprToComapre) {
 		return this.getId().compareTo(iprToComapre.getId());
 	}
@@ -0,0 +1,98 @@
+package ahrd.model;
+
+import static ahrd.controller.Settings.getSettings;
+
+import java.util.Map;
+
+/**
+ * The result of passing a reference protein's raw Human Readable Description
+ * through the Blacklist, Filter, and Tokenizer of a Blast-Database. Reference
+ * descriptions repeat heavily, e.g. "Uncharacterized protein" is the
+ * description of millions of TrEMBL entries. Hence the results are memoized
+ * for the current AHRD run, and all BlastResults of the same description and
+ * Blast-Database share the filtered description and its immutable TokenSet.
+ * See <code>Settings.getProcessedDescriptions(...)</code>.
+ */
+public class ProcessedDescription {
+
+	/**
+	 * Once this many distinct descriptions of a Blast-Database have been
+	 * memoized, further ones are processed without being memoized.
+	 */
+	public static final int MAX_MEMOIZED_PER_DATABASE = 1 << 20;
+
+	/**
+	 * The filtered description, or null if the raw description does not pass
+	 * the Blacklist.
+	 */
+	private final String description;
+	private final TokenSet tokens;
+
+	protected ProcessedDescription(String description, TokenSet tokens) {
+		super();
+		this.description = description;
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Looks up the memoized result of processing the argument raw description
+	 * with the Blacklist, Filter, and Token-Blacklist of the argument
+	 * Blast-Database, or processes and memoizes it.
+	 * 
+	 * @param rawDescription
+	 * @param blastDbName
+	 * @return ProcessedDescription
+	 */
+	public static ProcessedDescription get(String rawDescription, String blastDbName) {
+		Map<String, ProcessedDescription> memo = getSettings().getProcessedDescriptions(blastDbName);
+		if (memo == null || rawDescription == null)
+			return process(rawDescription, blastDbName);
+		ProcessedDescription processed = memo.get(rawDescription);
+		if (processed == null) {
+			processed = process(rawDescription, blastDbName);
+			if (memo.size() < MAX_MEMOIZED_PER_DATABASE)
+				memo.put(rawDescription, processed);
+		}
+		return processed;
+	}
+
+	/**
+	 * Passes the argument raw description through the argument
+	 * Blast-Database's Blacklist, Filter, and Tokenizer, exactly as
+	 * <code>BlastResult.generateHRDCandidateForProtein()</code> used to do
+	 * for each Hit.
+	 * 
+	 * @param rawDescription
+	 * @param blastDbName
+	 * @return ProcessedDescription
+	 */
+	public static ProcessedDescription process(String rawDescription, String blastDbName) {
+		if (!DescriptionScoreCalculator.passesBlacklist(rawDescription,
+				getSettings().getBlastResultsBlackList(blastDbName)))
+			return new ProcessedDescription(null, null);
+		String filtered = DescriptionScoreCalculator.filter(rawDescription,
+				getSettings().getBlastResultsFilter(blastDbName));
+		TokenSet tokens = TokenScoreCalculator.tokenize(filtered, getSettings().getTokenBlackList(blastDbName));
+		return new ProcessedDescription(filtered, tokens.makeImmutable());
+	}
+
+	public boolean passesBlacklist() {
+		return description != null;
+	}
+
+	/**
+	 * @return String - the filtered description, or null if the raw
+	 *         description does not pass the Blacklist
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return TokenSet - the immutable tokens of the filtered description, or
+	 *         null if the raw description does not pass the Blacklist
+	 */
+	public TokenSet getTokens() {
+		return tokens;
+	}
+}
@@ -3,6 +3,8 @@ package ahrd.model;
 import static ahrd.controller.Settings.DEFAULT_LINE_SEP;
 import static ahrd.controller.Settings.getSettings;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -75,23 +77,41 @@ public class Protein {
 			throw new MissingAccessionException(
 					"Missing protein-accession in:\n" + fastaEntry);
 		}
-		String[] sequence_parts = new String[fasta_data.length - 1];
-		System.arraycopy(fasta_data, 1, sequence_parts, 0,
-				fasta_data.length - 1);
-		String sequence = "";
-		for (String sequence_part : sequence_parts) {
-			sequence += sequence_part.trim();
+		StringBuilder sequence = new StringBuilder();
+		for (int i = 1; i < fasta_data.length; i++) {
+			sequence.append(fasta_data[i].trim());
 		}
 		// Construct the new Protein, either storing its AA-sequence or just the
 		// sequence's length:
 		Protein p = null;
 		if (getSettings().doOutputFasta())
-			p = new Protein(accession, sequence);
+			p = new Protein(accession, sequence.toString());
 		else
 			p = new Protein(accession, sequence.length());
 		return p;
 	}
 
+	/**
+	 * Constructs a Protein from the current record of argument FASTA-Reader.
+	 * The AA-sequence is only stored, if the reader reads sequences, otherwise
+	 * just the sequence's length.
+	 * 
+	 * @param fasta
+	 * @return Protein
+	 * @throws MissingAccessionException
+	 */
+	public static Protein constructFromFastaRecord(FastaReader fasta)
+			throws MissingAccessionException {
+		String accession = fasta.getHeader().split(" ")[0];
+		if (accession == null || accession.equals("")) {
+			throw new MissingAccessionException(
+					"Missing protein-accession in:\n" + fasta.getHeader());
+		}
+		if (fasta.isReadSequences())
+			return new Protein(accession, fasta.getSequence());
+		return new Protein(accession, fasta.getSequenceLength());
+	}
+
 	/**
 	 * Construct Memory-Database of Proteins!
 	 * 
@@ -99,15 +119,27 @@ public class Protein {
 	 * @return
 	 */
 	public static Map<String, Protein> initializeProteins(
-			String fastaFileContent) throws MissingAccessionException {
+			String fastaFileContent) throws IOException,
+			MissingAccessionException {
+		return initializeProteins(new FastaReader(new StringReader(
+				fastaFileContent), getSettings().doOutputFasta()));
+	}
+
+	/**
+	 * Construct Memory-Database of Proteins reading argument FASTA record by
+	 * record. The reader is not closed.
+	 * 
+	 * @param fasta
+	 * @return Map<String, Protein>
+	 * @throws IOException
+	 * @throws MissingAccessionException
+	 */
+	public static Map<String, Protein> initializeProteins(FastaReader fasta)
+			throws IOException, MissingAccessionException {
 		Map<String, Protein> proteins = new HashMap<String, Protein>();
-		List<String> fastaEntries = splitFasta(fastaFileContent);
-		for (String fastaEntry : fastaEntries) {
-			if (fastaEntry != null && !fastaEntry.trim().equals("")
-					&& !fastaEntry.equals("\n")) {
-				Protein prot = constructFromFastaEntry(fastaEntry);
-				proteins.put(prot.accession, prot);
-			}
+		while (fasta.next()) {
+			Protein prot = constructFromFastaRecord(fasta);
+			proteins.put(prot.accession, prot);
 		}
 		return proteins;
 	}
@@ -150,6 +182,24 @@ public class Protein {
 		getDescriptionScoreCalculator().measureMaxBitScore(br.getBitScore());
 	}
 
+	/**
+	 * Discards all scores calculated for this Protein and its candidate
+	 * descriptions. Must be invoked before the Protein is scored again with
+	 * changed Parameters, e.g. in each iteration of the Trainer, because the
+	 * cumulative Blast-Database-Scores depend on the Blast-Database-Weights.
+	 * All other cumulative and total scores, as well as the highest BitScore,
+	 * are kept as they were measured over <em>all</em> valid BlastResults in
+	 * <code>addBlastResult(BlastResult)</code>, even if the candidate
+	 * descriptions have been filtered since. See
+	 * <code>TokenScoreCalculator.reweighBlastDatabaseScores()</code>.
+	 */
+	public void resetScores() {
+		getTokenScoreCalculator().reweighBlastDatabaseScores();
+		double maxBitScore = getDescriptionScoreCalculator().getMaxBitScore();
+		setDescriptionScoreCalculator(new DescriptionScoreCalculator(this));
+		getDescriptionScoreCalculator().setMaxBitScore(maxBitScore);
+	}
+
 	public String getAccession() {
 		return accession;
 	}
@@ -162,6 +212,15 @@ public class Protein {
 		return blastResults;
 	}
 
+	/**
+	 * Drops all Blast-Results, once they are no longer needed, e.g. after the
+	 * Protein has been written into the output. The highest scoring
+	 * Blast-Result remains referenced by the DescriptionScoreCalculator.
+	 */
+	public void releaseBlastResults() {
+		setBlastResults(new HashMap<String, List<BlastResult>>());
+	}
+
 	public void setBlastResults(Map<String, List<BlastResult>> blastResults) {
 		this.blastResults = blastResults;
 	}
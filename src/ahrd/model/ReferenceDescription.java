@@ -15,14 +15,24 @@ public class ReferenceDescription {
 	}
 
 	public static ReferenceDescription constructFromFastaEntry(String fastaEntry) {
-		ReferenceDescription rd = new ReferenceDescription();
-
 		// First line is a combination of Accession and Description
-		String[] fastaData = fastaEntry.split("\n");
+		return constructFromFastaHeader(fastaEntry.split("\n")[0]);
+	}
+
+	/**
+	 * Only the header of a reference FASTA-entry is needed, so the references
+	 * can be read with a <code>FastaReader</code> not storing sequences.
+	 * 
+	 * @param fastaHeader
+	 *            - the header line without the leading '&gt;'
+	 * @return ReferenceDescription
+	 */
+	public static ReferenceDescription constructFromFastaHeader(String fastaHeader) {
+		ReferenceDescription rd = new ReferenceDescription();
 		// First token before whitespace-char is the Accession
-		rd.setAccession(fastaData[0].split(" ")[0].trim());
+		rd.setAccession(fastaHeader.split(" ")[0].trim());
 		// Everything after the Accession is considered the description-line:
-		rd.setDescription(fastaData[0].replace(rd.getAccession(), "").trim());
+		rd.setDescription(fastaHeader.replace(rd.getAccession(), "").trim());
 		// Process the reference's human readable description as requested by
 		// the user (Settings) -
 		// NOTE, if the HRD passes the Blacklist and no filtering is
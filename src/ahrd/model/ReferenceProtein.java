@@ -5,14 +5,38 @@ import static ahrd.controller.Settings.FASTA_PROTEIN_HEADER_DESCRIPTION_GROUP_NA
 import static ahrd.controller.Settings.GO_TERM_GROUP_NAME;
 import static ahrd.controller.Settings.SHORT_ACCESSION_GROUP_NAME;
 import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Utils.openReader;
+import static ahrd.controller.Utils.rethrowCause;
+import static ahrd.controller.Utils.roundToNDecimalPlaces;
 import static ahrd.model.AhrdDb.getReferenceProteinDAO;
 import static com.sleepycat.persist.model.Relationship.ONE_TO_ONE;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -51,71 +75,256 @@ public class ReferenceProtein {
 	}
 
 	/**
-	 * Extracts from the provided protein database in FASTA format the length
-	 * and human readable descriptions of those Proteins that are Hits
-	 * (Subjects) in the argument blastResults. Each time such a Hit is found
-	 * the mentioned measurements are set in the respective instance of
-	 * BlastResult and subsequently the method 'Protein.addBlastResult' is
-	 * invoked.
+	 * Number of consecutive Fasta entries handed over to a parser thread at
+	 * once.
+	 */
+	public static final int FASTA_ENTRIES_PER_BATCH = 10000;
+	/**
+	 * Progress of parsing a reference Fasta database is reported each time this
+	 * number of ReferenceProteins has been stored.
+	 */
+	public static final long PROGRESS_REPORT_INTERVAL = 1000000;
+	/**
+	 * Marks the end of the parsed batches of Fasta entries.
+	 */
+	private static final Future<List<ReferenceProtein>> END_OF_FASTA_BATCHES = new FutureTask<List<ReferenceProtein>>(
+			new Callable<List<ReferenceProtein>>() {
+				public List<ReferenceProtein> call() {
+					return null;
+				}
+			});
+
+	/**
+	 * A single Fasta entry as read from a reference sequence database: Its
+	 * header line and the length of its sequence.
+	 */
+	protected static class FastaEntry {
+		protected final String header;
+		protected final int sequenceLength;
+
+		protected FastaEntry(String header, int sequenceLength) {
+			this.header = header;
+			this.sequenceLength = sequenceLength;
+		}
+	}
+
+	/**
+	 * See <code>parseBlastDatabase(String, boolean)</code>. No progress is
+	 * reported.
 	 * 
 	 * @param blastDbName
 	 * @throws IOException
 	 */
 	public static void parseBlastDatabase(String blastDbName) throws IOException {
-		// Parse line by line FASTA Blast search DB. Extract Subject Lengths and
-		// Subject HRDs.
+		parseBlastDatabase(blastDbName, false);
+	}
+
+	/**
+	 * Extracts from the provided protein database in FASTA format the length
+	 * and human readable descriptions of all Proteins and stores them as
+	 * ReferenceProteins in AHRD's database.
+	 * 
+	 * The work is pipelined: One reader thread cuts the Fasta file at header
+	 * lines into batches of <code>FASTA_ENTRIES_PER_BATCH</code> entries,
+	 * <code>Settings.getDatabaseSetupThreads()</code> parser threads apply the
+	 * header and short accession regular expressions, and the calling thread
+	 * writes the resulting ReferenceProteins into the database. Batches are
+	 * written in the order they were read, so that the last one of several
+	 * entries sharing an accession is the one kept.
+	 * 
+	 * @param blastDbName
+	 * @param writeLogMsgs
+	 *            - set to true if progress, in entries per second, should be
+	 *            reported on standard out
+	 * @return long - the number of stored ReferenceProteins
+	 * @throws IOException
+	 */
+	public static long parseBlastDatabase(final String blastDbName, boolean writeLogMsgs) throws IOException {
+		final String fastaPath = getSettings().getPathToBlastDatabase(blastDbName);
+		final Pattern headerRegex = getSettings().getFastaHeaderRegex(blastDbName);
+		final Pattern shortAccessionRegex = getSettings().getShortAccessionRegex(blastDbName);
+		int nThreads = getSettings().getDatabaseSetupThreads();
+		// Bounded, so that the reader does not run away from the writer:
+		final BlockingQueue<Future<List<ReferenceProtein>>> parsedBatches = new ArrayBlockingQueue<Future<List<ReferenceProtein>>>(
+				4 * nThreads);
+		final ExecutorService parsers = Executors.newFixedThreadPool(nThreads);
+		ExecutorService reader = Executors.newSingleThreadExecutor();
+		long start = System.currentTimeMillis();
+		long stored = 0;
+		try {
+			Future<Long> readEntries = reader.submit(new Callable<Long>() {
+				public Long call() throws IOException, InterruptedException {
+					return readFastaBatches(fastaPath, blastDbName, headerRegex, shortAccessionRegex, parsers,
+							parsedBatches);
+				}
+			});
+			Future<List<ReferenceProtein>> batch;
+			while ((batch = parsedBatches.take()) != END_OF_FASTA_BATCHES) {
+				for (ReferenceProtein rp : batch.get()) {
+					getReferenceProteinDAO().byAccession.putNoReturn(rp);
+					stored++;
+					if (writeLogMsgs && stored % PROGRESS_REPORT_INTERVAL == 0)
+						reportProgress(blastDbName, stored, start);
+				}
+			}
+			// Throws any exception the reader ran into:
+			readEntries.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing reference sequence database '" + blastDbName + "'.", e);
+		} catch (ExecutionException e) {
+			rethrowCause(e.getCause(), IOException.class);
+			rethrowCause(e.getCause(), RuntimeException.class);
+			throw new RuntimeException(e.getCause());
+		} finally {
+			// If writing or parsing failed, the reader might be blocked on the
+			// full queue, and the queued batches are no longer needed:
+			reader.shutdownNow();
+			Future<List<ReferenceProtein>> pending;
+			while ((pending = parsedBatches.poll()) != null)
+				pending.cancel(true);
+			parsers.shutdownNow();
+		}
+		if (writeLogMsgs)
+			reportProgress(blastDbName, stored, start);
+		return stored;
+	}
+
+	/**
+	 * Reads the Fasta file line by line and submits batches of consecutive
+	 * entries to the parser threads. The Futures of the parsed batches are
+	 * queued in the order the entries appear in the file.
+	 * 
+	 * @return Long - the number of read Fasta entries
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	protected static Long readFastaBatches(String fastaPath, final String blastDbName, final Pattern headerRegex,
+			final Pattern shortAccessionRegex, ExecutorService parsers,
+			BlockingQueue<Future<List<ReferenceProtein>>> parsedBatches) throws IOException, InterruptedException {
+		long nEntries = 0;
 		BufferedReader fastaIn = null;
 		try {
-			fastaIn = new BufferedReader(new FileReader(getSettings().getPathToBlastDatabase(blastDbName)));
-			String str, hrd = new String();
-			String acc = "";
-			Integer hitAALength = Integer.valueOf(0);
-			boolean hit = false;
+			fastaIn = openReader(fastaPath);
+			List<FastaEntry> entries = new ArrayList<FastaEntry>(FASTA_ENTRIES_PER_BATCH);
+			String str, header = null;
+			int sequenceLength = 0;
 			while ((str = fastaIn.readLine()) != null) {
 				if (str.startsWith(">")) {
-					// Finished reading in the original Fasta-Entry of a
-					// Blast-Hit? If so, process it:
-					if (hit) {
-						put(new ReferenceProtein(acc, hrd, hitAALength, blastDbName));
-						// Clean up to enable processing the next Hit
-						hitAALength = Integer.valueOf(0);
-						// Note, that the boolean 'hit' will be set in the
-						// following If-Else-Block.
-					}
-					// Process the current Fasta-Header-Line:
-					Matcher m = getSettings().getFastaHeaderRegex(blastDbName).matcher(str);
-					if (!m.matches()) {
-						// Provided REGEX to parse FASTA header does not work in
-						// this case:
-						System.err.println("WARNING: FASTA header line\n" + str.trim()
-								+ "\ndoes not match provided regular expression\n"
-								+ getSettings().getFastaHeaderRegex(blastDbName).toString()
-								+ "\n. The header and the following entry, including possibly respective matching BLAST Hits, are ignored and discarded.\n"
-								+ "To fix this, please use - Blast database specific - parameter "
-								+ Settings.FASTA_HEADER_REGEX_KEY
-								+ " to provide a regular expression that matches ALL FASTA headers in Blast database '"
-								+ blastDbName + "'.");
-					} else {
-						// Found the next Reference Protein:
-						acc = m.group(FASTA_PROTEIN_HEADER_ACCESSION_GROUP_NAME).trim();
-						hrd = m.group(FASTA_PROTEIN_HEADER_DESCRIPTION_GROUP_NAME).trim();
-						// Following lines, until the next header, contain
-						// information to be collected:
-						hit = true;
+					if (header != null) {
+						entries.add(new FastaEntry(header, sequenceLength));
+						nEntries++;
+						if (entries.size() == FASTA_ENTRIES_PER_BATCH) {
+							parsedBatches.put(submitFastaBatch(entries, blastDbName, headerRegex,
+									shortAccessionRegex, parsers));
+							entries = new ArrayList<FastaEntry>(FASTA_ENTRIES_PER_BATCH);
+						}
 					}
-				} else if (hit) {
-					// Process non header-line, if and only if, we are reading
-					// the sequence of a Blast-Hit:
-					hitAALength += str.trim().length();
+					header = str;
+					sequenceLength = 0;
+				} else if (header != null) {
+					sequenceLength += str.trim().length();
 				}
 			}
-			// Was the last read FASTA entry a Blast-Hit? If so, it needs
-			// processing:
-			if (hit)
-				put(new ReferenceProtein(acc, hrd, hitAALength, blastDbName));
+			if (header != null) {
+				entries.add(new FastaEntry(header, sequenceLength));
+				nEntries++;
+			}
+			if (!entries.isEmpty())
+				parsedBatches.put(submitFastaBatch(entries, blastDbName, headerRegex, shortAccessionRegex, parsers));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw e;
 		} finally {
-			fastaIn.close();
+			// Let the writer finish, even if reading failed. If the writer
+			// has given up and interrupted the reader, nobody is left to take
+			// the end from the queue:
+			try {
+				if (!Thread.currentThread().isInterrupted())
+					parsedBatches.put(END_OF_FASTA_BATCHES);
+			} finally {
+				if (fastaIn != null)
+					fastaIn.close();
+			}
+		}
+		return nEntries;
+	}
+
+	/**
+	 * Submits the parsing of argument Fasta entries to the argument parser
+	 * threads.
+	 * 
+	 * @return Future of the parsed ReferenceProteins
+	 */
+	protected static Future<List<ReferenceProtein>> submitFastaBatch(final List<FastaEntry> entries,
+			final String blastDbName, final Pattern headerRegex, final Pattern shortAccessionRegex,
+			ExecutorService parsers) {
+		return parsers.submit(new Callable<List<ReferenceProtein>>() {
+			public List<ReferenceProtein> call() {
+				return parseFastaEntries(entries, blastDbName, headerRegex, shortAccessionRegex);
+			}
+		});
+	}
+
+	/**
+	 * Applies the Fasta header regular expression to each of the argument
+	 * entries and creates the respective ReferenceProteins. Entries, whose
+	 * header does not match, are discarded with a warning.
+	 * 
+	 * @param entries
+	 * @param blastDbName
+	 * @param headerRegex
+	 * @param shortAccessionRegex
+	 * @return List of ReferenceProteins in the order of argument entries
+	 */
+	protected static List<ReferenceProtein> parseFastaEntries(List<FastaEntry> entries, String blastDbName,
+			Pattern headerRegex, Pattern shortAccessionRegex) {
+		List<ReferenceProtein> refProts = new ArrayList<ReferenceProtein>(entries.size());
+		Matcher m = headerRegex.matcher("");
+		for (FastaEntry entry : entries) {
+			m.reset(entry.header);
+			if (!m.matches()) {
+				// Provided REGEX to parse FASTA header does not work in
+				// this case:
+				System.err.println("WARNING: FASTA header line\n" + entry.header.trim()
+						+ "\ndoes not match provided regular expression\n" + headerRegex.toString()
+						+ "\n. The header and the following entry, including possibly respective matching BLAST Hits, are ignored and discarded.\n"
+						+ "To fix this, please use - Blast database specific - parameter "
+						+ Settings.FASTA_HEADER_REGEX_KEY
+						+ " to provide a regular expression that matches ALL FASTA headers in Blast database '"
+						+ blastDbName + "'.");
+			} else {
+				refProts.add(new ReferenceProtein(m.group(FASTA_PROTEIN_HEADER_ACCESSION_GROUP_NAME).trim(),
+						m.group(FASTA_PROTEIN_HEADER_DESCRIPTION_GROUP_NAME).trim(),
+						Integer.valueOf(entry.sequenceLength), blastDbName, shortAccessionRegex));
+			}
 		}
+		return refProts;
+	}
+
+	private static void reportProgress(String blastDbName, long stored, long start) {
+		double seconds = Math.max(System.currentTimeMillis() - start, 1) / 1000.0;
+		System.out.println("Stored " + stored + " entries of reference sequence database '" + blastDbName + "' in "
+				+ roundToNDecimalPlaces(seconds, 1) + " seconds (" + Math.round(stored / seconds)
+				+ " entries per second).");
+	}
+
+	/**
+	 * Rough estimate of the heap used by a single reference GO annotation
+	 * aggregated by <code>parseReferenceGoAnnotations(int)</code>, including
+	 * the hash set entry and the GO term string.
+	 */
+	public static final int BYTES_PER_GO_ANNOTATION_IN_MEMORY = 200;
+
+	/**
+	 * @return int - the number of distinct reference GO annotations held in
+	 *         memory before they are spilled to a temporary file, unless set
+	 *         in the Settings: as many as fit into a tenth of the maximum
+	 *         heap, but at least 10,000 and at most 1,000,000.
+	 */
+	public static int defaultMaxGoAnnotationsInMemory() {
+		long fitting = Runtime.getRuntime().maxMemory() / 10 / BYTES_PER_GO_ANNOTATION_IN_MEMORY;
+		return (int) Math.max(10000, Math.min(1000000, fitting));
 	}
 
 	/**
@@ -123,30 +332,181 @@ public class ReferenceProtein {
 	 * proteins in the searched Blast databases. These GOAs will then be used to
 	 * annotate the query proteins with GO terms. The important restriction is,
 	 * that only those reference GO annotations will be extracted that match one
-	 * of the BlastResults found in the respective Blast searches
-	 * <code>uniqueShortAccessions</code>.
+	 * of the ReferenceProteins stored in AHRD's database.
+	 * 
+	 * See <code>parseReferenceGoAnnotations(int)</code> for details. At most
+	 * <code>getSettings().getGoAnnotationsInMemory()</code> annotations are
+	 * held in memory, by default <code>defaultMaxGoAnnotationsInMemory()</code>.
 	 * 
-	 * @param Set
-	 *            <String> uniqueShortAccessions - The unique short accessions
-	 *            of BlastResults found in the respective Blast searches
 	 * @throws IOException
 	 */
 	public static void parseReferenceGoAnnotations() throws IOException {
+		Integer maxAnnotationsInMemory = getSettings().getGoAnnotationsInMemory();
+		parseReferenceGoAnnotations(
+				maxAnnotationsInMemory != null ? maxAnnotationsInMemory : defaultMaxGoAnnotationsInMemory());
+	}
+
+	/**
+	 * Parses the tabular reference Gene Ontology term annotations (GOA) in
+	 * bulk. The GO terms are first aggregated per short accession. Whenever
+	 * more than <code>maxAnnotationsInMemory</code> distinct annotations have
+	 * been aggregated, they are written, sorted by short accession, into a
+	 * temporary file. Finally all aggregated annotations are merged in order of
+	 * short accession and each ReferenceProtein is read and updated exactly
+	 * once.
+	 * 
+	 * @param maxAnnotationsInMemory
+	 * @throws IOException
+	 */
+	public static void parseReferenceGoAnnotations(int maxAnnotationsInMemory) throws IOException {
 		BufferedReader goaIn = null;
+		List<File> chunks = new ArrayList<File>();
 		try {
-			goaIn = new BufferedReader(new FileReader(getSettings().getPathToGeneOntologyResults()));
-			Pattern p = getSettings().getReferenceGoRegex();
-			String line, shortAcc, goTerm = "";
+			goaIn = openReader(getSettings().getPathToGeneOntologyResults());
+			Matcher m = getSettings().getReferenceGoRegex().matcher("");
+			Map<String, Set<String>> goAnnos = new HashMap<String, Set<String>>();
+			int nGoAnnos = 0;
+			String line;
 			while ((line = goaIn.readLine()) != null) {
-				Matcher m = p.matcher(line);
+				m.reset(line);
 				if (m.find()) {
-					shortAcc = m.group(SHORT_ACCESSION_GROUP_NAME);
-					goTerm = m.group(GO_TERM_GROUP_NAME);
-					addGoAnnotation(shortAcc, goTerm);
+					String shortAcc = m.group(SHORT_ACCESSION_GROUP_NAME);
+					Set<String> goTerms = goAnnos.get(shortAcc);
+					if (goTerms == null) {
+						goTerms = new HashSet<String>();
+						goAnnos.put(shortAcc, goTerms);
+					}
+					if (goTerms.add(m.group(GO_TERM_GROUP_NAME)) && ++nGoAnnos >= maxAnnotationsInMemory) {
+						chunks.add(spillGoAnnotations(goAnnos));
+						goAnnos.clear();
+						nGoAnnos = 0;
+					}
+				}
+			}
+			if (chunks.isEmpty()) {
+				for (String shortAcc : new TreeSet<String>(goAnnos.keySet())) {
+					addGoAnnotations(shortAcc, goAnnos.get(shortAcc));
+				}
+			} else {
+				if (!goAnnos.isEmpty())
+					chunks.add(spillGoAnnotations(goAnnos));
+				goAnnos = null;
+				mergeGoAnnotationChunks(chunks);
+			}
+		} finally {
+			if (goaIn != null)
+				goaIn.close();
+			for (File chunk : chunks) {
+				chunk.delete();
+			}
+		}
+	}
+
+	/**
+	 * Writes the argument GO annotations, sorted by short accession, into a
+	 * temporary file. Each line holds a short accession followed by its GO
+	 * terms, all separated by tabs.
+	 * 
+	 * @param goAnnos
+	 * @return File - the temporary file
+	 * @throws IOException
+	 */
+	protected static File spillGoAnnotations(Map<String, Set<String>> goAnnos) throws IOException {
+		File chunk = File.createTempFile("ahrd_reference_go_annotations", ".tsv");
+		chunk.deleteOnExit();
+		BufferedWriter chunkOut = new BufferedWriter(new FileWriter(chunk));
+		try {
+			for (String shortAcc : new TreeSet<String>(goAnnos.keySet())) {
+				chunkOut.write(shortAcc);
+				for (String goTerm : goAnnos.get(shortAcc)) {
+					chunkOut.write('\t');
+					chunkOut.write(goTerm);
+				}
+				chunkOut.newLine();
+			}
+		} finally {
+			chunkOut.close();
+		}
+		return chunk;
+	}
+
+	/**
+	 * Merges the argument files written by
+	 * <code>spillGoAnnotations(...)</code> and adds the GO terms of each short
+	 * accession to the respective ReferenceProtein.
+	 * 
+	 * @param chunks
+	 * @throws IOException
+	 */
+	protected static void mergeGoAnnotationChunks(List<File> chunks) throws IOException {
+		List<GoAnnotationChunkReader> readers = new ArrayList<GoAnnotationChunkReader>();
+		PriorityQueue<GoAnnotationChunkReader> heads = new PriorityQueue<GoAnnotationChunkReader>();
+		try {
+			for (File chunk : chunks) {
+				GoAnnotationChunkReader reader = new GoAnnotationChunkReader(chunk);
+				readers.add(reader);
+				if (reader.next())
+					heads.add(reader);
+			}
+			while (!heads.isEmpty()) {
+				GoAnnotationChunkReader reader = heads.poll();
+				String shortAcc = reader.shortAccession;
+				Set<String> goTerms = new HashSet<String>(reader.goTerms);
+				if (reader.next())
+					heads.add(reader);
+				while (!heads.isEmpty() && heads.peek().shortAccession.equals(shortAcc)) {
+					reader = heads.poll();
+					goTerms.addAll(reader.goTerms);
+					if (reader.next())
+						heads.add(reader);
 				}
+				addGoAnnotations(shortAcc, goTerms);
 			}
 		} finally {
-			goaIn.close();
+			for (GoAnnotationChunkReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads a file written by <code>spillGoAnnotations(...)</code> line by
+	 * line. Readers are ordered by the short accession they currently point
+	 * to.
+	 */
+	protected static class GoAnnotationChunkReader implements Comparable<GoAnnotationChunkReader>, Closeable {
+		private BufferedReader in;
+		protected String shortAccession;
+		protected List<String> goTerms;
+
+		protected GoAnnotationChunkReader(File chunk) throws IOException {
+			this.in = new BufferedReader(new FileReader(chunk));
+		}
+
+		/**
+		 * Reads the next line.
+		 * 
+		 * @return boolean - false if and only if the end of file is reached
+		 * @throws IOException
+		 */
+		protected boolean next() throws IOException {
+			String line = in.readLine();
+			if (line == null)
+				return false;
+			String[] fields = line.split("\t");
+			shortAccession = fields[0];
+			goTerms = Arrays.asList(fields).subList(1, fields.length);
+			return true;
+		}
+
+		@Override
+		public int compareTo(GoAnnotationChunkReader other) {
+			return shortAccession.compareTo(other.shortAccession);
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
 		}
 	}
 
@@ -159,12 +519,25 @@ public class ReferenceProtein {
 	 * @param goTerm
 	 */
 	protected static void addGoAnnotation(String brShortAccession, String goTerm) {
+		addGoAnnotations(brShortAccession, Collections.singleton(goTerm));
+	}
+
+	/**
+	 * Adds the Gene Ontology terms <code>goTerms</code> to the Set of the
+	 * ReferenceProtein's GO term annotations, reading and writing the
+	 * ReferenceProtein once. The ReferenceProtein is identified by its short
+	 * accession <code>brShortAccession</code>.
+	 * 
+	 * @param brShortAccession
+	 * @param goTerms
+	 */
+	protected static void addGoAnnotations(String brShortAccession, Collection<String> goTerms) {
 		ReferenceProtein rp = getReferenceProteinDAO().byShortAccession.get(brShortAccession);
 		if (null != rp) {
-			// Add Go Term
-			rp.getGoTerms().add(goTerm);
+			// Add Go Terms
+			rp.getGoTerms().addAll(goTerms);
 			// Update Database-Entry:
-			getReferenceProteinDAO().byAccession.put(rp);
+			getReferenceProteinDAO().byAccession.putNoReturn(rp);
 		} // Maybe we should write out a warning in the else-case?
 	}
 
@@ -191,13 +564,29 @@ public class ReferenceProtein {
 	 * @param sequenceLength
 	 */
 	public ReferenceProtein(String accession, String hrd, Integer sequenceLength, String blastDatabaseName) {
+		this(accession, hrd, sequenceLength, blastDatabaseName,
+				getSettings().getShortAccessionRegex(blastDatabaseName));
+	}
+
+	/**
+	 * Constructor setting the fields, using the argument - already compiled -
+	 * regular expression to extract the short accession.
+	 * 
+	 * @param accession
+	 * @param hrd
+	 * @param sequenceLength
+	 * @param blastDatabaseName
+	 * @param shortAccessionRegex
+	 */
+	public ReferenceProtein(String accession, String hrd, Integer sequenceLength, String blastDatabaseName,
+			Pattern shortAccessionRegex) {
 		super();
 		setAccession(accession);
 		setHrd(hrd);
 		setSequenceLength(sequenceLength);
 		setBlastDatabaseName(blastDatabaseName);
 		// Extract the short accession from the long one:
-		initShortAccession();
+		initShortAccession(shortAccessionRegex);
 	}
 
 	/**
@@ -208,7 +597,16 @@ public class ReferenceProtein {
 	 * of standardization, indeed!
 	 */
 	public void initShortAccession() {
-		Pattern p = getSettings().getShortAccessionRegex(getBlastDatabaseName());
+		initShortAccession(getSettings().getShortAccessionRegex(getBlastDatabaseName()));
+	}
+
+	/**
+	 * See <code>initShortAccession()</code>.
+	 * 
+	 * @param p
+	 *            - the regular expression extracting the short accession
+	 */
+	public void initShortAccession(Pattern p) {
 		Matcher m = p.matcher(getAccession());
 		setShortAccession(getAccession());
 		if (!m.find()) {
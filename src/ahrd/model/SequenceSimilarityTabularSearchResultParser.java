@@ -1,5 +1,556 @@
 package ahrd.model;
 
-public class SequenceSimilarityTabularSearchResultParser {
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Utils.isCompressed;
+import static ahrd.controller.Utils.openReader;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads tabular sequence similarity search results (Blast8 and alike) line by
+ * line. The columns to parse are the ones configured in the current Settings.
+ *
+ * If columns are separated by a single character, as they should be, the
+ * result file is memory-mapped and each line is scanned for the separator byte
+ * directly. Coordinates, E-Values and Bit-Scores are parsed from the mapped
+ * bytes, only the query and subject accessions are turned into Strings. These
+ * are interned, so that recurring accessions are not allocated again. To keep
+ * memory bounded also for huge result tables, at most
+ * <code>MAX_INTERNED_ACCESSIONS</code> accessions are remembered at a time.
+ * If a regular expression is used as separator, or the file is gzip
+ * compressed, lines are read and split conventionally.
+ *
+ * Usage:
+ *
+ * <pre>
+ * while (parser.next()) {
+ * 	parser.getQueryAccession();
+ * 	...
+ * }
+ * parser.close();
+ * </pre>
+ *
+ * @author hallab
+ */
+public class SequenceSimilarityTabularSearchResultParser implements Closeable {
+
+	/**
+	 * The largest part of the result file that is mapped into memory at once.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+	/**
+	 * The maximum number of accessions interned at a time, see
+	 * <code>AccessionInterner</code>.
+	 */
+	public static final int MAX_INTERNED_ACCESSIONS = 1 << 16;
+	/**
+	 * Powers of ten that are exactly representable as double.
+	 */
+	private static final double[] EXACT_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private final String path;
+	private final int windowSize;
+	/**
+	 * Settings controlling the parsing:
+	 */
+	private final Matcher commentLineMatcher;
+	private final int queryCol;
+	private final int subjectCol;
+	private final int queryStartCol;
+	private final int queryEndCol;
+	private final int subjectStartCol;
+	private final int subjectEndCol;
+	private final int eValueCol;
+	private final int bitScoreCol;
+	private final int maxCol;
+	/**
+	 * Memory-mapped reading:
+	 */
+	private FileInputStream stream;
+	private FileChannel channel;
+	private long fileSize;
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long position;
+	private byte separator;
+	private int lineStart;
+	private int lineEnd;
+	private final int[] fieldStarts;
+	private final int[] fieldEnds;
+	private final LineView lineView = new LineView();
+	private final AccessionInterner accessions = new AccessionInterner();
+	/**
+	 * Conventional reading, if the separator is a regular expression:
+	 */
+	private BufferedReader reader;
+	private Pattern separatorRegex;
+	/**
+	 * The current line's values:
+	 */
+	private long lineNumber = 0;
+	private String queryAccession;
+	private String subjectAccession;
+	private int queryStart;
+	private int queryEnd;
+	private int subjectStart;
+	private int subjectEnd;
+	private double eValue;
+	private double bitScore;
+
+	/**
+	 * A view on the current line as sequence of ISO-8859-1 characters, so that
+	 * comment lines can be recognized without decoding them.
+	 */
+	private class LineView implements CharSequence {
+		public int length() {
+			return lineEnd - lineStart;
+		}
+
+		public char charAt(int index) {
+			return (char) (window.get(lineStart + index) & 0xff);
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			return toString().subSequence(start, end);
+		}
+
+		public String toString() {
+			return field(lineStart, lineEnd);
+		}
+	}
+
+	/**
+	 * Open addressing hash table returning the same String instance for equal
+	 * accessions. Look ups compare the mapped bytes with the characters of
+	 * already seen accessions, so known accessions are found without any
+	 * allocation. Once <code>MAX_INTERNED_ACCESSIONS</code> accessions have
+	 * been interned, the table is cleared, so that it does not grow with the
+	 * number of distinct accessions in the whole file.
+	 */
+	private class AccessionInterner {
+		private String[] strings = new String[1024];
+		private int[] hashes = new int[1024];
+		private int size = 0;
+		private final Map<String, String> nonAscii = new HashMap<String, String>();
+
+		public String intern(int start, int end) {
+			if (size + nonAscii.size() >= MAX_INTERNED_ACCESSIONS)
+				clear();
+			int hash = 0;
+			for (int i = start; i < end; i++) {
+				byte b = window.get(i);
+				if (b < 0)
+					return internNonAscii(start, end);
+				hash = 31 * hash + b;
+			}
+			int mask = strings.length - 1;
+			int slot = hash & mask;
+			while (strings[slot] != null) {
+				if (hashes[slot] == hash && matches(strings[slot], start, end))
+					return strings[slot];
+				slot = (slot + 1) & mask;
+			}
+			String accession = field(start, end);
+			strings[slot] = accession;
+			hashes[slot] = hash;
+			if (++size * 2 > strings.length)
+				grow();
+			return accession;
+		}
+
+		private String internNonAscii(int start, int end) {
+			String accession = new String(bytes(start, end), StandardCharsets.UTF_8);
+			String interned = nonAscii.get(accession);
+			if (interned == null) {
+				nonAscii.put(accession, accession);
+				interned = accession;
+			}
+			return interned;
+		}
+
+		private boolean matches(String accession, int start, int end) {
+			if (accession.length() != end - start)
+				return false;
+			for (int i = start; i < end; i++) {
+				if (accession.charAt(i - start) != window.get(i))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Forgets all interned accessions. The table keeps its capacity.
+		 */
+		private void clear() {
+			Arrays.fill(strings, null);
+			size = 0;
+			nonAscii.clear();
+		}
+
+		private void grow() {
+			String[] oldStrings = strings;
+			int[] oldHashes = hashes;
+			strings = new String[oldStrings.length * 2];
+			hashes = new int[oldStrings.length * 2];
+			int mask = strings.length - 1;
+			for (int i = 0; i < oldStrings.length; i++) {
+				if (oldStrings[i] != null) {
+					int slot = oldHashes[i] & mask;
+					while (strings[slot] != null)
+						slot = (slot + 1) & mask;
+					strings[slot] = oldStrings[i];
+					hashes[slot] = oldHashes[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens the argument tabular sequence similarity search result file for
+	 * parsing according to the current Settings.
+	 *
+	 * @param pathToResults
+	 * @throws IOException
+	 */
+	public SequenceSimilarityTabularSearchResultParser(String pathToResults) throws IOException {
+		this(pathToResults, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Opens the argument tabular sequence similarity search result file for
+	 * parsing according to the current Settings, mapping at most
+	 * <code>windowSize</code> bytes of it into memory at once.
+	 *
+	 * @param pathToResults
+	 * @param windowSize
+	 * @throws IOException
+	 */
+	public SequenceSimilarityTabularSearchResultParser(String pathToResults, int windowSize) throws IOException {
+		super();
+		this.path = pathToResults;
+		this.windowSize = windowSize;
+		Pattern commentLineRegex = getSettings().getSeqSimSearchTableCommentLineRegex();
+		this.commentLineMatcher = (commentLineRegex != null) ? commentLineRegex.matcher("") : null;
+		this.queryCol = getSettings().getSeqSimSearchTableQueryCol();
+		this.subjectCol = getSettings().getSeqSimSearchTableSubjectCol();
+		this.queryStartCol = getSettings().getSeqSimSearchTableQueryStartCol();
+		this.queryEndCol = getSettings().getSeqSimSearchTableQueryEndCol();
+		this.subjectStartCol = getSettings().getSeqSimSearchTableSubjectStartCol();
+		this.subjectEndCol = getSettings().getSeqSimSearchTableSubjectEndCol();
+		this.eValueCol = getSettings().getSeqSimSearchTableEValueCol();
+		this.bitScoreCol = getSettings().getSeqSimSearchTableBitScoreCol();
+		this.maxCol = Math.max(Math.max(Math.max(queryCol, subjectCol), Math.max(queryStartCol, queryEndCol)),
+				Math.max(Math.max(subjectStartCol, subjectEndCol), Math.max(eValueCol, bitScoreCol)));
+		this.fieldStarts = new int[maxCol + 1];
+		this.fieldEnds = new int[maxCol + 1];
+		String sep = getSettings().getSeqSimSearchTableSep();
+		if (sep.length() == 1 && sep.charAt(0) < 128 && !isCompressed(pathToResults)) {
+			this.separator = (byte) sep.charAt(0);
+			this.stream = new FileInputStream(pathToResults);
+			this.channel = stream.getChannel();
+			this.fileSize = channel.size();
+		} else {
+			// Compressed files are streamed, see Utils.openReader(String):
+			this.separatorRegex = Pattern.compile(sep.length() == 1 ? Pattern.quote(sep) : sep);
+			this.reader = openReader(pathToResults);
+		}
+	}
+
+	/**
+	 * Advances to the next line holding a High Scoring Pair. Comment lines, as
+	 * defined by the Settings, and empty lines are skipped.
+	 *
+	 * @return boolean - false if and only if the end of the file is reached
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             if a line has too few columns
+	 * @throws NumberFormatException
+	 *             if a numeric column cannot be parsed
+	 */
+	public boolean next() throws IOException {
+		if (reader != null)
+			return nextSplitLine();
+		while (nextLine()) {
+			if (lineEnd == lineStart)
+				continue;
+			if (commentLineMatcher != null && commentLineMatcher.reset(lineView).matches())
+				continue;
+			splitFields();
+			queryAccession = accessions.intern(fieldStarts[queryCol], fieldEnds[queryCol]);
+			subjectAccession = accessions.intern(fieldStarts[subjectCol], fieldEnds[subjectCol]);
+			queryStart = parseInt(queryStartCol);
+			queryEnd = parseInt(queryEndCol);
+			subjectStart = parseInt(subjectStartCol);
+			subjectEnd = parseInt(subjectEndCol);
+			eValue = parseDouble(eValueCol);
+			bitScore = parseDouble(bitScoreCol);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the next line in the mapped file, mapping the next window if
+	 * necessary. Sets <code>lineStart</code> and <code>lineEnd</code> relative
+	 * to the current window, excluding the line separator.
+	 *
+	 * @return boolean - false if and only if the end of the file is reached
+	 * @throws IOException
+	 */
+	private boolean nextLine() throws IOException {
+		while (position < fileSize) {
+			if (window == null || position >= windowStart + window.limit())
+				map(position);
+			int start = (int) (position - windowStart);
+			int limit = window.limit();
+			int i = start;
+			while (i < limit && window.get(i) != '\n')
+				i++;
+			if (i == limit && windowStart + limit < fileSize) {
+				// The line continues beyond the current window:
+				if (start == 0)
+					throw new IOException("Line " + (lineNumber + 1) + " of '" + path + "' is longer than "
+							+ windowSize + " bytes.");
+				map(position);
+				continue;
+			}
+			lineNumber++;
+			lineStart = start;
+			lineEnd = (i > start && window.get(i - 1) == '\r') ? i - 1 : i;
+			position = windowStart + i + 1;
+			return true;
+		}
+		return false;
+	}
+
+	private void map(long start) throws IOException {
+		windowStart = start;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+	}
+
+	private void splitFields() {
+		int field = 0;
+		int fieldStart = lineStart;
+		for (int i = lineStart; i <= lineEnd && field <= maxCol; i++) {
+			if (i == lineEnd || window.get(i) == separator) {
+				fieldStarts[field] = fieldStart;
+				fieldEnds[field] = i;
+				field++;
+				fieldStart = i + 1;
+			}
+		}
+		if (field <= maxCol)
+			throw new IllegalArgumentException("Line " + lineNumber + " of '" + path + "' has only " + field
+					+ " columns, but column " + maxCol + " (counting from zero) is required.");
+	}
+
+	private byte[] bytes(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = start; i < end; i++)
+			bytes[i - start] = window.get(i);
+		return bytes;
+	}
+
+	private String field(int start, int end) {
+		return new String(bytes(start, end), StandardCharsets.ISO_8859_1);
+	}
+
+	private int parseInt(int col) {
+		int start = fieldStarts[col];
+		int end = fieldEnds[col];
+		int i = start;
+		boolean negative = false;
+		if (i < end && (window.get(i) == '-' || window.get(i) == '+')) {
+			negative = window.get(i) == '-';
+			i++;
+		}
+		long value = 0;
+		if (i == end || end - i > 10)
+			return Integer.parseInt(field(start, end));
+		for (; i < end; i++) {
+			int digit = window.get(i) - '0';
+			if (digit < 0 || digit > 9)
+				return Integer.parseInt(field(start, end));
+			value = value * 10 + digit;
+		}
+		value = negative ? -value : value;
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+			return Integer.parseInt(field(start, end));
+		return (int) value;
+	}
+
+	/**
+	 * Parses decimal numbers of up to 18 significant digits whose decimal
+	 * exponent lies within [-22,22] directly from the mapped bytes. In this
+	 * range a single multiplication or division of exactly representable
+	 * doubles yields the correctly rounded result, i.e. the same value as
+	 * <code>Double.parseDouble</code>. All other numbers are handed over to
+	 * <code>Double.parseDouble</code>. Like in
+	 * <code>BlastResult.validateDouble(...)</code> a leading 'e' is read as
+	 * '1e'.
+	 *
+	 * @param col
+	 * @return double
+	 */
+	private double parseDouble(int col) {
+		int start = fieldStarts[col];
+		int end = fieldEnds[col];
+		int i = start;
+		boolean negative = false;
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		if (i < end && (window.get(i) == 'e' || window.get(i) == 'E')) {
+			mantissa = 1;
+			significantDigits = 1;
+			hasDigits = true;
+		} else if (i < end && (window.get(i) == '-' || window.get(i) == '+')) {
+			negative = window.get(i) == '-';
+			i++;
+		}
+		boolean inFraction = false;
+		for (; i < end; i++) {
+			byte b = window.get(i);
+			if (b >= '0' && b <= '9') {
+				hasDigits = true;
+				if (mantissa != 0 || b != '0') {
+					if (++significantDigits > 18)
+						return parseDoubleConventionally(start, end);
+					mantissa = mantissa * 10 + (b - '0');
+				}
+				if (inFraction)
+					exponent--;
+			} else if (b == '.' && !inFraction) {
+				inFraction = true;
+			} else {
+				break;
+			}
+		}
+		if (!hasDigits)
+			return parseDoubleConventionally(start, end);
+		if (i < end) {
+			// Only an exponent may follow:
+			byte b = window.get(i);
+			if (b != 'e' && b != 'E')
+				return parseDoubleConventionally(start, end);
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (window.get(i) == '-' || window.get(i) == '+')) {
+				negativeExponent = window.get(i) == '-';
+				i++;
+			}
+			if (i == end || end - i > 4)
+				return parseDoubleConventionally(start, end);
+			int explicitExponent = 0;
+			for (; i < end; i++) {
+				int digit = window.get(i) - '0';
+				if (digit < 0 || digit > 9)
+					return parseDoubleConventionally(start, end);
+				explicitExponent = explicitExponent * 10 + digit;
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+		double value;
+		if (mantissa == 0)
+			value = 0.0;
+		else if (exponent >= 0 && exponent < EXACT_POWERS_OF_TEN.length && mantissa < (1L << 53))
+			value = mantissa * EXACT_POWERS_OF_TEN[exponent];
+		else if (exponent < 0 && -exponent < EXACT_POWERS_OF_TEN.length && mantissa < (1L << 53))
+			value = mantissa / EXACT_POWERS_OF_TEN[-exponent];
+		else
+			return parseDoubleConventionally(start, end);
+		return negative ? -value : value;
+	}
+
+	private double parseDoubleConventionally(int start, int end) {
+		return Double.parseDouble(BlastResult.validateDouble(field(start, end)));
+	}
+
+	/**
+	 * Reads and splits the next line, if the separator is a regular
+	 * expression.
+	 *
+	 * @return boolean - false if and only if the end of the file is reached
+	 * @throws IOException
+	 */
+	private boolean nextSplitLine() throws IOException {
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			if (line.isEmpty() || (commentLineMatcher != null && commentLineMatcher.reset(line).matches()))
+				continue;
+			String[] fields = separatorRegex.split(line);
+			if (fields.length <= maxCol)
+				throw new IllegalArgumentException("Line " + lineNumber + " of '" + path + "' has only "
+						+ fields.length + " columns, but column " + maxCol + " (counting from zero) is required.");
+			queryAccession = fields[queryCol];
+			subjectAccession = fields[subjectCol];
+			queryStart = Integer.parseInt(fields[queryStartCol]);
+			queryEnd = Integer.parseInt(fields[queryEndCol]);
+			subjectStart = Integer.parseInt(fields[subjectStartCol]);
+			subjectEnd = Integer.parseInt(fields[subjectEndCol]);
+			eValue = Double.parseDouble(BlastResult.validateDouble(fields[eValueCol]));
+			bitScore = Double.parseDouble(fields[bitScoreCol]);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		if (stream != null)
+			stream.close();
+		if (reader != null)
+			reader.close();
+	}
+
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	public String getQueryAccession() {
+		return queryAccession;
+	}
+
+	public String getSubjectAccession() {
+		return subjectAccession;
+	}
+
+	public int getQueryStart() {
+		return queryStart;
+	}
+
+	public int getQueryEnd() {
+		return queryEnd;
+	}
+
+	public int getSubjectStart() {
+		return subjectStart;
+	}
+
+	public int getSubjectEnd() {
+		return subjectEnd;
+	}
+
+	public double getEValue() {
+		return eValue;
+	}
+
+	public double getBitScore() {
+		return bitScore;
+	}
 }
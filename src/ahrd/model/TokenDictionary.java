@@ -0,0 +1,80 @@
+package ahrd.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Global dictionary of all tokens seen by AHRD. Each distinct token is held
+ * once and is assigned a unique integer id, so that token sets and token
+ * scores can be kept in primitive arrays instead of collections of Strings
+ * and boxed Doubles. Ids are assigned in the order tokens are first seen,
+ * starting at zero. The dictionary is shared by all threads.
+ *
+ * Tokens are never removed, because token sets and token scores of earlier
+ * runs may still refer to their ids. Hence the dictionary grows with the
+ * number of distinct tokens seen during the lifetime of the JVM, e.g. across
+ * several Trainer or Evaluator runs. This is bounded by the vocabulary of the
+ * reference descriptions, which is small compared to the descriptions
+ * themselves.
+ */
+public class TokenDictionary {
+
+	private static final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private static volatile String[] tokens = new String[1024];
+	private static int size = 0;
+
+	/**
+	 * Returns the id of argument token, assigning a new one if the token has
+	 * not been seen before.
+	 *
+	 * @param token
+	 * @return int - the token's id
+	 */
+	public static int getId(String token) {
+		Integer id = ids.get(token);
+		if (id == null) {
+			synchronized (ids) {
+				id = ids.get(token);
+				if (id == null) {
+					if (size == tokens.length) {
+						String[] grown = new String[2 * tokens.length];
+						System.arraycopy(tokens, 0, grown, 0, size);
+						tokens = grown;
+					}
+					tokens[size] = token;
+					id = Integer.valueOf(size);
+					// Publish the id only after the token has been stored:
+					ids.put(token, id);
+					size++;
+				}
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of argument token without assigning a new one.
+	 *
+	 * @param token
+	 * @return int - the token's id or -1 if the token has never been seen
+	 */
+	public static int lookupId(String token) {
+		Integer id = ids.get(token);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id
+	 * @return String - the token with argument id
+	 */
+	public static String getToken(int id) {
+		return tokens[id];
+	}
+
+	/**
+	 * @return int - the number of distinct tokens
+	 */
+	public static int size() {
+		return ids.size();
+	}
+}
@@ -1,12 +1,10 @@
 package ahrd.model;
 
-import static ahrd.controller.Settings.TOKEN_SPLITTER_REGEX;
+import static ahrd.controller.Settings.TOKEN_SPLITTER;
 import static ahrd.controller.Settings.getSettings;
 import static ahrd.controller.Utils.roundToNDecimalPlaces;
 
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -19,24 +17,34 @@ import java.util.regex.Pattern;
  */
 public class TokenScoreCalculator {
 
-	private Map<String, Double> cumulativeTokenBitScores = new HashMap<String, Double>();
-	private Map<String, Double> cumulativeTokenBlastDatabaseScores = new HashMap<String, Double>();
-	private Map<String, Double> cumulativeTokenOverlapScores = new HashMap<String, Double>();
+	/*
+	 * All scores are held per token id, see TokenDictionary.
+	 */
+	private TokenScoreMap cumulativeTokenBitScores = new TokenScoreMap();
+	private TokenScoreMap cumulativeTokenBlastDatabaseScores = new TokenScoreMap();
+	private TokenScoreMap cumulativeTokenOverlapScores = new TokenScoreMap();
 	private double totalTokenBitScore = 0;
 	private double totalTokenBlastDatabaseScore = 0;
 	private double totalTokenOverlapScore = 0;
-	private Map<String, Double> tokenScores = new HashMap<String, Double>();
+	/*
+	 * The Blast-Database-Scores are the only ones depending on the
+	 * Parameters, see reweighBlastDatabaseScores(). Hence the number of valid
+	 * BlastResults per Blast-Database, in total and per token, is counted,
+	 * too.
+	 */
+	private Map<String, TokenScoreMap> tokenBlastDatabaseHits = new HashMap<String, TokenScoreMap>();
+	private Map<String, Integer> blastDatabaseHits = new HashMap<String, Integer>();
+	private TokenScoreMap tokenScores = new TokenScoreMap();
 	private Protein protein;
 	// Please enter your initials ___
 	private double tokenHighScore = 0.0;
 
-	public static boolean tokenPassesBlacklist(String token, List<String> blacklist) {
+	public static boolean tokenPassesBlacklist(String token, List<Pattern> blacklist) {
 		// No Token passes being NULL or empty String
 		boolean passed = (token != null && !token.equals(""));
-		Iterator<String> i = blacklist.iterator();
+		Iterator<Pattern> i = blacklist.iterator();
 		while (i.hasNext() && passed) {
-			Pattern p = Pattern.compile(i.next());
-			Matcher m = p.matcher(token);
+			Matcher m = i.next().matcher(token);
 			// A Match against a blacklisted RegExp lets the token fail:
 			passed = !m.find();
 		}
@@ -45,18 +53,20 @@ public class TokenScoreCalculator {
 
 	/**
 	 * Splits the String description into tokens using the regular expressions
-	 * found in <code>BlastResult.TOKEN _SPLITTER_REGEX</code> and then passes
+	 * found in <code>Settings.TOKEN_SPLITTER</code> and then passes
 	 * them through Blacklisting retaining only tokens that pass.
 	 * 
 	 * @param description
 	 * @param tokenBlacklist
-	 * @return An instance of Set holding all tokens extracted from description
+	 *            - pre-compiled, see <code>Settings.compileBlacklist(...)</code>
+	 * @return An instance of TokenSet holding all tokens extracted from
+	 *         description
 	 */
-	public static Set<String> tokenize(String description, List<String> tokenBlacklist) {
-		Set<String> tkns = new HashSet<String>();
-		for (String tokenCandidate : new HashSet<String>(Arrays.asList(description.split(TOKEN_SPLITTER_REGEX)))) {
+	public static TokenSet tokenize(String description, List<Pattern> tokenBlacklist) {
+		TokenSet tkns = new TokenSet();
+		for (String tokenCandidate : TOKEN_SPLITTER.split(description)) {
 			tokenCandidate = tokenCandidate.toLowerCase();
-			if (tokenCandidate != null && !tokenCandidate.equals("")
+			if (!tokenCandidate.equals("") && !tkns.contains(tokenCandidate)
 					&& tokenPassesBlacklist(tokenCandidate, tokenBlacklist))
 				tkns.add(tokenCandidate);
 		}
@@ -91,11 +101,7 @@ public class TokenScoreCalculator {
 	 * Returns the sum of BlastResult's Tokens' Scores.
 	 */
 	public double descriptionLineSummedTokenScore(BlastResult br) {
-		double sum = 0.0;
-		for (String token : br.getTokens()) {
-			sum += getTokenScores().get(token);
-		}
-		return sum;
+		return sumOfAllTokenScores(br);
 	}
 
 	/**
@@ -109,10 +115,12 @@ public class TokenScoreCalculator {
 			// databases
 			for (BlastResult iterResult : getProtein().getBlastResults().get(iterBlastDb)) {
 				// iterate through tokens in different blast result desc-lines
-				for (String token : iterResult.getTokens()) {
-					if (!(getTokenScores().containsKey(token))) {
-						double tokenscore = tokenScore(token, iterBlastDb);
-						getTokenScores().put(token, Double.valueOf(tokenscore));
+				TokenSet tokens = iterResult.getTokens();
+				for (int i = 0; i < tokens.size(); i++) {
+					int tokenId = tokens.getId(i);
+					if (!(getTokenScores().containsId(tokenId))) {
+						double tokenscore = tokenScore(tokenId, iterBlastDb);
+						getTokenScores().putScore(tokenId, tokenscore);
 						// remember highest token score
 						if (tokenscore > getTokenHighScore()) {
 							setTokenHighScore(tokenscore);
@@ -129,9 +137,9 @@ public class TokenScoreCalculator {
 	 * (old TokenScore) - (tokenHighScore / 2).
 	 */
 	public void filterTokenScores() {
-		for (String token : getTokenScores().keySet()) {
-			if (!isInformativeToken(token)) {
-				getTokenScores().put(token, Double.valueOf(getTokenScores().get(token) - getTokenHighScore() / 2));
+		for (int tokenId : getTokenScores().getIds()) {
+			if (!isInformativeToken(tokenId)) {
+				getTokenScores().putScore(tokenId, getTokenScores().getScore(tokenId) - getTokenHighScore() / 2);
 			}
 		}
 	}
@@ -144,7 +152,17 @@ public class TokenScoreCalculator {
 	 *        initialized!
 	 */
 	public boolean isInformativeToken(String token) {
-		return getTokenScores().get(token) > getTokenHighScore() / 2;
+		return isInformativeToken(TokenDictionary.lookupId(token));
+	}
+
+	/**
+	 * See <code>isInformativeToken(String)</code>.
+	 * 
+	 * @param tokenId
+	 *            - the token's id in the TokenDictionary
+	 */
+	public boolean isInformativeToken(int tokenId) {
+		return getTokenScores().getScore(tokenId) > getTokenHighScore() / 2;
 	}
 
 	/**
@@ -155,12 +173,21 @@ public class TokenScoreCalculator {
 	 *            br
 	 */
 	public void measureCumulativeScores(BlastResult br) {
-		for (String token : br.getTokens()) {
-			Double overlapScore = TokenScoreCalculator.overlapScore(br.getQueryStart(), br.getQueryEnd(),
-					getProtein().getSequenceLength(), br.getSubjectStart(), br.getSubjectEnd(), br.getSubjectLength());
-			addCumulativeTokenBitScore(token, br.getBitScore());
-			addCumulativeTokenBlastDatabaseScore(token, br.getBlastDatabaseName());
-			addCumulativeTokenOverlapScore(token, overlapScore);
+		double overlapScore = TokenScoreCalculator.overlapScore(br.getQueryStart(), br.getQueryEnd(),
+				getProtein().getSequenceLength(), br.getSubjectStart(), br.getSubjectEnd(), br.getSubjectLength());
+		double blastDatabaseWeight = getSettings().getBlastDbWeight(br.getBlastDatabaseName());
+		TokenScoreMap blastDatabaseHits = getTokenBlastDatabaseHits().get(br.getBlastDatabaseName());
+		if (blastDatabaseHits == null) {
+			blastDatabaseHits = new TokenScoreMap();
+			getTokenBlastDatabaseHits().put(br.getBlastDatabaseName(), blastDatabaseHits);
+		}
+		TokenSet tokens = br.getTokens();
+		for (int i = 0; i < tokens.size(); i++) {
+			int tokenId = tokens.getId(i);
+			getCumulativeTokenBitScores().addScore(tokenId, br.getBitScore());
+			getCumulativeTokenBlastDatabaseScores().addScore(tokenId, blastDatabaseWeight);
+			getCumulativeTokenOverlapScores().addScore(tokenId, overlapScore);
+			blastDatabaseHits.addScore(tokenId, 1.0);
 		}
 	}
 
@@ -178,6 +205,55 @@ public class TokenScoreCalculator {
 				getTotalTokenBlastDatabaseScore() + getSettings().getBlastDbWeight(br.getBlastDatabaseName()));
 		setTotalTokenOverlapScore(getTotalTokenOverlapScore() + overlapScore);
 		setTotalTokenBitScore(getTotalTokenBitScore() + br.getBitScore());
+		Integer hits = getBlastDatabaseHits().get(br.getBlastDatabaseName());
+		getBlastDatabaseHits().put(br.getBlastDatabaseName(), hits == null ? 1 : hits + 1);
+	}
+
+	/**
+	 * Discards all assigned Token-Scores and re-calculates the cumulative and
+	 * total Blast-Database-Scores with the current Blast-Database-Weights,
+	 * e.g. in each iteration of the Trainer. The bit- and overlap-scores do
+	 * not depend on the Parameters and hence are kept as they were measured
+	 * over <em>all</em> valid BlastResults, not just the best scoring ones
+	 * the Protein's candidate descriptions have been filtered down to.
+	 * 
+	 * The Blast-Database-Scores are re-calculated in the order of
+	 * <code>Settings.getSortedBlastDatabases()</code>, as
+	 * <code>CompiledProtein</code> does.
+	 */
+	public void reweighBlastDatabaseScores() {
+		setTokenScores(new TokenScoreMap());
+		setTokenHighScore(0.0);
+		TokenScoreMap cumulativeTokenBlastDatabaseScores = new TokenScoreMap(getCumulativeTokenBitScores().size());
+		double totalTokenBlastDatabaseScore = 0.0;
+		for (String blastDb : getSettings().getSortedBlastDatabases()) {
+			Integer hits = getBlastDatabaseHits().get(blastDb);
+			if (hits == null)
+				continue;
+			double blastDatabaseWeight = getSettings().getBlastDbWeight(blastDb);
+			totalTokenBlastDatabaseScore += hits * blastDatabaseWeight;
+			TokenScoreMap tokenHits = getTokenBlastDatabaseHits().get(blastDb);
+			for (int tokenId : tokenHits.getIds())
+				cumulativeTokenBlastDatabaseScores.addScore(tokenId, tokenHits.getScore(tokenId) * blastDatabaseWeight);
+		}
+		setCumulativeTokenBlastDatabaseScores(cumulativeTokenBlastDatabaseScores);
+		setTotalTokenBlastDatabaseScore(totalTokenBlastDatabaseScore);
+	}
+
+	/**
+	 * The three weights of the Token-Score have to sum up to one, tolerating a
+	 * rounding error of up to 10^-3.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if they do not
+	 */
+	public static void validateTokenScoreWeights(double bitScoreWeight, double databaseScoreWeight,
+			double overlapScoreWeight) {
+		double validateSumToOne = roundToNDecimalPlaces(bitScoreWeight + databaseScoreWeight + overlapScoreWeight, 9);
+		if (!(validateSumToOne >= 0.999 && validateSumToOne <= 1.001))
+			throw new IllegalArgumentException(
+					"The three weights 'bitScoreWeight', 'databaseScoreWeight', and 'overlapScoreWeight' should sum up to 1, but actually sum up to: "
+							+ (bitScoreWeight + databaseScoreWeight + overlapScoreWeight));
 	}
 
 	/**
@@ -185,51 +261,45 @@ public class TokenScoreCalculator {
 	 * @return token-score
 	 */
 	public double tokenScore(String token, String blastDatabaseName) {
-		// Validate:
+		return tokenScore(TokenDictionary.lookupId(token), blastDatabaseName);
+	}
+
+	/**
+	 * @param tokenId
+	 *            - the token's id in the TokenDictionary
+	 * @return token-score
+	 */
+	public double tokenScore(int tokenId, String blastDatabaseName) {
 		Double bitScoreWeight = getSettings().getTokenScoreBitScoreWeight();
 		Double databaseScoreWeight = getSettings().getTokenScoreDatabaseScoreWeight();
 		Double overlapScoreWeight = getSettings().getTokenScoreOverlapScoreWeight();
-		double validateSumToOne = roundToNDecimalPlaces(bitScoreWeight + databaseScoreWeight + overlapScoreWeight, 9);
-		// Tolerate rounding error <= 10^-3
-		if (!(validateSumToOne >= 0.999 && validateSumToOne <= 1.001))
-			throw new IllegalArgumentException(
-					"The three weights 'bitScoreWeight', 'databaseScoreWeight', and 'overlapScoreWeight' should sum up to 1, but actually sum up to: "
-							+ (bitScoreWeight + databaseScoreWeight + overlapScoreWeight));
+		validateTokenScoreWeights(bitScoreWeight, databaseScoreWeight, overlapScoreWeight);
 		// Calculate Token-Score:
-		return (bitScoreWeight * getCumulativeTokenBitScores().get(token) / getTotalTokenBitScore()
-				+ databaseScoreWeight * getCumulativeTokenBlastDatabaseScores().get(token)
+		return (bitScoreWeight * getCumulativeTokenBitScores().getScore(tokenId) / getTotalTokenBitScore()
+				+ databaseScoreWeight * getCumulativeTokenBlastDatabaseScores().getScore(tokenId)
 						/ getTotalTokenBlastDatabaseScore()
-				+ overlapScoreWeight * getCumulativeTokenOverlapScores().get(token) / getTotalTokenOverlapScore());
+				+ overlapScoreWeight * getCumulativeTokenOverlapScores().getScore(tokenId)
+						/ getTotalTokenOverlapScore());
 	}
 
 	public void addCumulativeTokenBitScore(String token, double bitScore) {
-		if (!getCumulativeTokenBitScores().containsKey(token))
-			getCumulativeTokenBitScores().put(token, Double.valueOf(bitScore));
-		else
-			getCumulativeTokenBitScores().put(token, Double.valueOf(bitScore + getCumulativeTokenBitScores().get(token)));
+		getCumulativeTokenBitScores().addScore(TokenDictionary.getId(token), bitScore);
 	}
 
 	public void addCumulativeTokenOverlapScore(String token, double overlapScore) {
-		if (!getCumulativeTokenOverlapScores().containsKey(token))
-			getCumulativeTokenOverlapScores().put(token, Double.valueOf(overlapScore));
-		else
-			getCumulativeTokenOverlapScores().put(token,
-					Double.valueOf(overlapScore + getCumulativeTokenOverlapScores().get(token)));
+		getCumulativeTokenOverlapScores().addScore(TokenDictionary.getId(token), overlapScore);
 	}
 
 	public void addCumulativeTokenBlastDatabaseScore(String token, String blastDatabaseName) {
-		Integer blastDatabaseWeight = getSettings().getBlastDbWeight(blastDatabaseName);
-		if (!getCumulativeTokenBlastDatabaseScores().containsKey(token))
-			getCumulativeTokenBlastDatabaseScores().put(token, Double.valueOf(blastDatabaseWeight));
-		else
-			getCumulativeTokenBlastDatabaseScores().put(token,
-					Double.valueOf(blastDatabaseWeight + getCumulativeTokenBlastDatabaseScores().get(token)));
+		getCumulativeTokenBlastDatabaseScores().addScore(TokenDictionary.getId(token),
+				getSettings().getBlastDbWeight(blastDatabaseName));
 	}
 
 	public double sumOfAllTokenScores(BlastResult blastResult) {
 		double sum = 0.0;
-		for (String token : blastResult.getTokens()) {
-			sum += getTokenScores().get(token);
+		TokenSet tokens = blastResult.getTokens();
+		for (int i = 0; i < tokens.size(); i++) {
+			sum += getTokenScores().getScore(tokens.getId(i));
 		}
 		return sum;
 	}
@@ -242,28 +312,28 @@ public class TokenScoreCalculator {
 		this.protein = protein;
 	}
 
-	public Map<String, Double> getCumulativeTokenBitScores() {
+	public TokenScoreMap getCumulativeTokenBitScores() {
 		return cumulativeTokenBitScores;
 	}
 
 	public void setCumulativeTokenBitScores(Map<String, Double> cumulativeTokenBitScores) {
-		this.cumulativeTokenBitScores = cumulativeTokenBitScores;
+		this.cumulativeTokenBitScores = toTokenScoreMap(cumulativeTokenBitScores);
 	}
 
-	public Map<String, Double> getCumulativeTokenBlastDatabaseScores() {
+	public TokenScoreMap getCumulativeTokenBlastDatabaseScores() {
 		return cumulativeTokenBlastDatabaseScores;
 	}
 
 	public void setCumulativeTokenBlastDatabaseScores(Map<String, Double> cumulativeTokenBlastDatabaseScores) {
-		this.cumulativeTokenBlastDatabaseScores = cumulativeTokenBlastDatabaseScores;
+		this.cumulativeTokenBlastDatabaseScores = toTokenScoreMap(cumulativeTokenBlastDatabaseScores);
 	}
 
-	public Map<String, Double> getCumulativeTokenOverlapScores() {
+	public TokenScoreMap getCumulativeTokenOverlapScores() {
 		return cumulativeTokenOverlapScores;
 	}
 
 	public void setCumulativeTokenOverlapScores(Map<String, Double> cumulativeTokenOverlapScores) {
-		this.cumulativeTokenOverlapScores = cumulativeTokenOverlapScores;
+		this.cumulativeTokenOverlapScores = toTokenScoreMap(cumulativeTokenOverlapScores);
 	}
 
 	public double getTotalTokenBitScore() {
@@ -290,6 +360,22 @@ public class TokenScoreCalculator {
 		this.totalTokenOverlapScore = totalTokenOverlapScore;
 	}
 
+	/**
+	 * @return Map<String, TokenScoreMap> - per Blast-Database the number of
+	 *         valid BlastResults each token occurs in
+	 */
+	public Map<String, TokenScoreMap> getTokenBlastDatabaseHits() {
+		return tokenBlastDatabaseHits;
+	}
+
+	/**
+	 * @return Map<String, Integer> - per Blast-Database the number of valid
+	 *         BlastResults
+	 */
+	public Map<String, Integer> getBlastDatabaseHits() {
+		return blastDatabaseHits;
+	}
+
 	/**
 	 * Get tokenHighScore.
 	 * 
@@ -312,9 +398,9 @@ public class TokenScoreCalculator {
 	/**
 	 * Get tokenScores.
 	 * 
-	 * @return tokenScores as Map<String, Double>.
+	 * @return tokenScores as TokenScoreMap.
 	 */
-	public Map<String, Double> getTokenScores() {
+	public TokenScoreMap getTokenScores() {
 		return tokenScores;
 	}
 
@@ -325,6 +411,14 @@ public class TokenScoreCalculator {
 	 *            the value to set.
 	 */
 	public void setTokenScores(Map<String, Double> tokenScores) {
-		this.tokenScores = tokenScores;
+		this.tokenScores = toTokenScoreMap(tokenScores);
+	}
+
+	private static TokenScoreMap toTokenScoreMap(Map<String, Double> scores) {
+		if (scores instanceof TokenScoreMap)
+			return (TokenScoreMap) scores;
+		TokenScoreMap tokenScoreMap = new TokenScoreMap(scores.size());
+		tokenScoreMap.putAll(scores);
+		return tokenScoreMap;
 	}
 }
@@ -0,0 +1,264 @@
+package ahrd.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Maps tokens, identified by their id in the <code>TokenDictionary</code>, to
+ * scores. The ids and scores are held in primitive arrays using open
+ * addressing with linear probing, avoiding boxed keys and values. Removed
+ * tokens leave a marker in their slot, which is dropped when the arrays are
+ * rehashed. For convenience the map can also be used as a
+ * <code>Map&lt;String, Double&gt;</code>.
+ */
+public class TokenScoreMap extends AbstractMap<String, Double> {
+
+	private static final int FREE = -1;
+	private static final int DELETED = -2;
+
+	private int[] keys;
+	private double[] values;
+	private int size = 0;
+	/**
+	 * The number of slots marked as DELETED.
+	 */
+	private int deleted = 0;
+
+	public TokenScoreMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            - the number of tokens expected to be held
+	 */
+	public TokenScoreMap(int expectedSize) {
+		int capacity = 16;
+		while (capacity < 2 * expectedSize)
+			capacity <<= 1;
+		this.keys = new int[capacity];
+		Arrays.fill(this.keys, FREE);
+		this.values = new double[capacity];
+	}
+
+	/**
+	 * @param tokenId
+	 * @return int - the slot holding argument token id or the free slot it
+	 *         would be put into
+	 */
+	private int slot(int tokenId) {
+		int mask = keys.length - 1;
+		int hash = tokenId * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		// Slots of removed tokens do not end the probing:
+		while (keys[slot] != FREE && keys[slot] != tokenId)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	public boolean containsId(int tokenId) {
+		return keys[slot(tokenId)] == tokenId;
+	}
+
+	/**
+	 * @param tokenId
+	 * @return double - the score of argument token or NaN if it has none
+	 */
+	public double getScore(int tokenId) {
+		int slot = slot(tokenId);
+		return keys[slot] == tokenId ? values[slot] : Double.NaN;
+	}
+
+	/**
+	 * Sets the score of argument token.
+	 *
+	 * @param tokenId
+	 * @param score
+	 */
+	public void putScore(int tokenId, double score) {
+		int slot = slot(tokenId);
+		if (keys[slot] == FREE) {
+			if (2 * (size + deleted + 1) > keys.length) {
+				rehash();
+				slot = slot(tokenId);
+			}
+			keys[slot] = tokenId;
+			size++;
+		}
+		values[slot] = score;
+	}
+
+	/**
+	 * Adds argument score to the one of argument token. Tokens without score
+	 * start at zero.
+	 *
+	 * @param tokenId
+	 * @param score
+	 */
+	public void addScore(int tokenId, double score) {
+		int slot = slot(tokenId);
+		if (keys[slot] == tokenId)
+			values[slot] += score;
+		else
+			putScore(tokenId, score);
+	}
+
+	/**
+	 * Removes the score of argument token.
+	 *
+	 * @param tokenId
+	 * @return boolean - true if the token had a score
+	 */
+	public boolean removeId(int tokenId) {
+		int slot = slot(tokenId);
+		if (keys[slot] != tokenId)
+			return false;
+		removeSlot(slot);
+		return true;
+	}
+
+	private void removeSlot(int slot) {
+		keys[slot] = DELETED;
+		size--;
+		deleted++;
+	}
+
+	/**
+	 * @return int[] - the ids of all tokens having a score
+	 */
+	public int[] getIds() {
+		int[] ids = new int[size];
+		int i = 0;
+		for (int key : keys) {
+			if (key >= 0)
+				ids[i++] = key;
+		}
+		return ids;
+	}
+
+	/**
+	 * Rehashes all scores dropping the slots of removed tokens. The capacity
+	 * is doubled, unless enough slots are freed by dropping those.
+	 */
+	private void rehash() {
+		int[] oldKeys = keys;
+		double[] oldValues = values;
+		int capacity = 4 * (size + 1) > oldKeys.length ? 2 * oldKeys.length : oldKeys.length;
+		keys = new int[capacity];
+		Arrays.fill(keys, FREE);
+		values = new double[capacity];
+		deleted = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] >= 0) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		size = 0;
+		deleted = 0;
+	}
+
+	@Override
+	public boolean containsKey(Object token) {
+		if (!(token instanceof String))
+			return false;
+		int tokenId = TokenDictionary.lookupId((String) token);
+		return tokenId >= 0 && containsId(tokenId);
+	}
+
+	@Override
+	public Double get(Object token) {
+		if (!containsKey(token))
+			return null;
+		return getScore(TokenDictionary.lookupId((String) token));
+	}
+
+	@Override
+	public Double put(String token, Double score) {
+		Double previous = get(token);
+		putScore(TokenDictionary.getId(token), score);
+		return previous;
+	}
+
+	@Override
+	public Double remove(Object token) {
+		Double previous = get(token);
+		if (previous != null)
+			removeId(TokenDictionary.lookupId((String) token));
+		return previous;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Double>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Double>>() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Map.Entry<String, Double>> iterator() {
+				return new Iterator<Map.Entry<String, Double>>() {
+					private int next = advance(0);
+					private int last = -1;
+
+					private int advance(int slot) {
+						while (slot < keys.length && keys[slot] < 0)
+							slot++;
+						return slot;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next < keys.length;
+					}
+
+					@Override
+					public Map.Entry<String, Double> next() {
+						if (next >= keys.length)
+							throw new NoSuchElementException();
+						final int slot = next;
+						last = slot;
+						next = advance(next + 1);
+						return new AbstractMap.SimpleEntry<String, Double>(TokenDictionary.getToken(keys[slot]),
+								values[slot]) {
+							private static final long serialVersionUID = 1L;
+
+							@Override
+							public Double setValue(Double score) {
+								values[slot] = score;
+								return super.setValue(score);
+							}
+						};
+					}
+
+					@Override
+					public void remove() {
+						if (last < 0 || keys[last] < 0)
+							throw new IllegalStateException();
+						// Marking the slot as deleted does not move any other
+						// token, so iteration continues as before:
+						removeSlot(last);
+						last = -1;
+					}
+				};
+			}
+		};
+	}
+}
@@ -0,0 +1,163 @@
+package ahrd.model;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact Set of tokens. Tokens are held as their ids in the global
+ * <code>TokenDictionary</code>, in an array sorted by the tokens themselves.
+ * Hence iteration order is the lexicographic order of the tokens and does not
+ * depend on the order in which ids were assigned.
+ */
+public class TokenSet extends AbstractSet<String> {
+
+	private int[] ids;
+	private int size = 0;
+	/**
+	 * Immutable TokenSets can safely be shared, see
+	 * <code>ProcessedDescription</code>.
+	 */
+	private boolean immutable = false;
+
+	public TokenSet() {
+		this.ids = new int[4];
+	}
+
+	public TokenSet(Collection<String> tokens) {
+		this.ids = new int[Math.max(tokens.size(), 4)];
+		addAll(tokens);
+	}
+
+	/**
+	 * Binary search for argument token.
+	 *
+	 * @param token
+	 * @return int - the index of the token, or (-(insertion point) - 1) if not
+	 *         contained
+	 */
+	private int indexOf(String token) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = TokenDictionary.getToken(ids[mid]).compareTo(token);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Makes this TokenSet unmodifiable. Subsequent attempts to modify it throw
+	 * an UnsupportedOperationException.
+	 * 
+	 * @return TokenSet - this
+	 */
+	public TokenSet makeImmutable() {
+		this.immutable = true;
+		return this;
+	}
+
+	public boolean isImmutable() {
+		return immutable;
+	}
+
+	private void checkMutable() {
+		if (immutable)
+			throw new UnsupportedOperationException("This TokenSet is immutable.");
+	}
+
+	/**
+	 * @param i
+	 * @return int - the id of the i-th token in lexicographic order
+	 */
+	public int getId(int i) {
+		return ids[i];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return (o instanceof String) && indexOf((String) o) >= 0;
+	}
+
+	@Override
+	public boolean add(String token) {
+		checkMutable();
+		int i = indexOf(token);
+		if (i >= 0)
+			return false;
+		int insertAt = -(i + 1);
+		if (size == ids.length) {
+			int[] grown = new int[2 * ids.length];
+			System.arraycopy(ids, 0, grown, 0, size);
+			ids = grown;
+		}
+		System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+		ids[insertAt] = TokenDictionary.getId(token);
+		size++;
+		return true;
+	}
+
+	private void removeAt(int i) {
+		checkMutable();
+		System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+		size--;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof String))
+			return false;
+		int i = indexOf((String) o);
+		if (i < 0)
+			return false;
+		removeAt(i);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		checkMutable();
+		size = 0;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int next = 0;
+			private boolean canRemove = false;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public String next() {
+				if (next >= size)
+					throw new NoSuchElementException();
+				canRemove = true;
+				return TokenDictionary.getToken(ids[next++]);
+			}
+
+			@Override
+			public void remove() {
+				if (!canRemove)
+					throw new IllegalStateException();
+				removeAt(--next);
+				canRemove = false;
+			}
+		};
+	}
+}
@@ -38,43 +38,53 @@ public abstract class AbstractOutputWriter implements IOutputWriter {
 		setProteins(proteins);
 	}
 
-	public abstract void writeOutput() throws IOException;
+	/**
+	 * Writes the whole output at once, i.e. the header, each Protein, and
+	 * closes the output.
+	 */
+	public void writeOutput() throws IOException {
+		writeHeader();
+		for (Protein prot : getProteins()) {
+			writeProtein(prot);
+		}
+		close();
+	}
 
 	public String buildDescriptionLine(Protein protein, String seperator) {
-		String descLine = protein.getAccession() + seperator;
+		StringBuilder descLine = new StringBuilder(protein.getAccession()).append(seperator);
 		// Blast-Results
 		if (protein.getDescriptionScoreCalculator().getHighestScoringBlastResult() != null) {
 			BlastResult br = protein.getDescriptionScoreCalculator().getHighestScoringBlastResult();
-			descLine += br.getAccession() + seperator + qualityCode(protein) + seperator + br.getDescription()
-					+ seperator;
+			descLine.append(br.getAccession()).append(seperator).append(qualityCode(protein)).append(seperator)
+					.append(br.getDescription()).append(seperator);
 		} else {
 			// Maintain Table's Column-Structure, if writing tab delimited
 			// values:
 			if (seperator.equals("\t"))
-				descLine += "\t\tUnknown protein\t";
+				descLine.append("\t\tUnknown protein\t");
 			else
-				descLine += "Unknown protein";
+				descLine.append("Unknown protein");
 		}
 		// Interpro
 		List<InterproResult> sortedIprs = new ArrayList<InterproResult>(protein.getInterproResults());
 		Collections.sort(sortedIprs);
 		for (Iterator<InterproResult> i = sortedIprs.iterator(); i.hasNext();) {
 			InterproResult ipr = i.next();
-			descLine += ipr.getId() + " (" + ipr.getName() + ")";
+			descLine.append(ipr.getId()).append(" (").append(ipr.getName()).append(")");
 			if (i.hasNext())
-				descLine += ", ";
+				descLine.append(", ");
 		}
-		descLine += seperator;
+		descLine.append(seperator);
 		// Gene-Ontology-Results:
 		List<String> sortedGOs = new ArrayList<String>(protein.getGoResults());
 		Collections.sort(sortedGOs);
 		for (Iterator<String> i = sortedGOs.iterator(); i.hasNext();) {
 			String gor = i.next();
-			descLine += gor;
+			descLine.append(gor);
 			if (i.hasNext())
-				descLine += ", ";
+				descLine.append(", ");
 		}
-		return descLine;
+		return descLine.toString();
 	}
 
 	/**
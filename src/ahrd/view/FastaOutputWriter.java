@@ -1,9 +1,9 @@
 package ahrd.view;
 
 import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Utils.openWriter;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Collection;
 
@@ -11,21 +11,28 @@ import ahrd.model.Protein;
 
 public class FastaOutputWriter extends AbstractOutputWriter {
 
+	private BufferedWriter bw;
+
 	public FastaOutputWriter(Collection<Protein> proteins) {
 		super(proteins);
 	}
 
-	public void writeOutput() throws IOException {
-		BufferedWriter bw = new BufferedWriter(new FileWriter(getSettings()
-				.getPathToOutput()));
+	public void writeHeader() throws IOException {
+		bw = openWriter(getSettings().getPathToOutput());
+	}
 
-		for (Protein prot : getProteins()) {
-			// Write Fasta-Header
-			bw.write(">" + buildDescriptionLine(prot, " ") + "\n");
-			// Append AA-Sequence
-			bw.write(prot.getSequence() + "\n");
-		}
+	public void writeProtein(Protein prot) throws IOException {
+		// Write Fasta-Header
+		bw.write(">");
+		bw.write(buildDescriptionLine(prot, " "));
+		bw.write("\n");
+		// Append AA-Sequence
+		bw.write(prot.getSequence());
+		bw.write("\n");
+	}
 
-		bw.close();
+	public void close() throws IOException {
+		if (bw != null)
+			bw.close();
 	}
 }
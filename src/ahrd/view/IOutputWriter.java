@@ -2,8 +2,23 @@ package ahrd.view;
 
 import java.io.IOException;
 
+import ahrd.model.Protein;
+
 public interface IOutputWriter {
 
 	public void writeOutput() throws IOException;
 
+	/**
+	 * Opens the output and writes its header, if any. Together with
+	 * <code>writeProtein(Protein)</code> and <code>close()</code> this enables
+	 * writing each Protein as soon as it has been scored.
+	 * 
+	 * @throws IOException
+	 */
+	public void writeHeader() throws IOException;
+
+	public void writeProtein(Protein prot) throws IOException;
+
+	public void close() throws IOException;
+
 }
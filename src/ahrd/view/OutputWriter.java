@@ -1,9 +1,9 @@
 package ahrd.view;
 
 import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Utils.openWriter;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
@@ -15,14 +15,15 @@ import ahrd.model.Protein;
 
 public class OutputWriter extends AbstractOutputWriter {
 
+	protected BufferedWriter bw;
 	protected BufferedWriter hrdScoresWriter;
 
 	public OutputWriter(Collection<Protein> proteins) {
 		super(proteins);
 	}
 
-	public void writeOutput() throws IOException {
-		BufferedWriter bw = new BufferedWriter(new FileWriter(getSettings().getPathToOutput()));
+	public void writeHeader() throws IOException {
+		bw = openWriter(getSettings().getPathToOutput());
 		if (getSettings().doWriteHRDScoresToOutput())
 			writeHRDScoresOutputHeader();
 
@@ -54,47 +55,53 @@ public class OutputWriter extends AbstractOutputWriter {
 		}
 
 		bw.write("\n");
+	}
 
-		for (Protein prot : getProteins()) {
-			// Generate the Human Readable Description:
-			String csvRow = buildDescriptionLine(prot, "\t");
-
-			// If in Evaluator-Mode write out the Evaluator-Score and the
-			// Reference-Description:
-			if (getSettings().isInTrainingMode()) {
-				csvRow += buildTrainerColumns(prot);
-			}
-			// Append further information, if requested:
-			if (getSettings().getWriteBestBlastHitsToOutput()) {
-				csvRow += buildBestBlastHitsColumns(prot);
-			}
-			if (getSettings().getWriteTokenSetToOutput()) {
-				csvRow += buildTokenSetCell(prot);
-			}
-			if (getSettings().getWriteScoresToOutput()) {
-				csvRow += buildDescScoreCells(prot);
-			}
-			if (getSettings().getPathToBlast2GoAnnotations() != null
-					&& !getSettings().getPathToBlast2GoAnnotations().equals("")) {
-				csvRow += buildBlast2GoColumns(prot);
-			}
-			if (getSettings().doFindHighestPossibleEvaluationScore()) {
-				csvRow += buildHighestPossibleEvaluationScoreColumn(prot);
-			}
-
-			// Write row to CSV:
-			csvRow += "\n";
-			bw.write(csvRow);
+	/**
+	 * Writes the argument Protein's row. Its cells are written one after the
+	 * other into the buffered output, instead of concatenating the whole row
+	 * first.
+	 */
+	public void writeProtein(Protein prot) throws IOException {
+		// Generate the Human Readable Description:
+		bw.write(buildDescriptionLine(prot, "\t"));
 
-			// If AHRD is requested to write out the AHRD-Score of each
-			// BlastHit's Description, do so into another file:
-			if (getSettings().doWriteHRDScoresToOutput())
-				writeHrdScoresOutput(prot);
+		// If in Evaluator-Mode write out the Evaluator-Score and the
+		// Reference-Description:
+		if (getSettings().isInTrainingMode()) {
+			bw.write(buildTrainerColumns(prot));
+		}
+		// Append further information, if requested:
+		if (getSettings().getWriteBestBlastHitsToOutput()) {
+			bw.write(buildBestBlastHitsColumns(prot));
 		}
+		if (getSettings().getWriteTokenSetToOutput()) {
+			bw.write(buildTokenSetCell(prot));
+		}
+		if (getSettings().getWriteScoresToOutput()) {
+			bw.write(buildDescScoreCells(prot));
+		}
+		if (getSettings().getPathToBlast2GoAnnotations() != null
+				&& !getSettings().getPathToBlast2GoAnnotations().equals("")) {
+			bw.write(buildBlast2GoColumns(prot));
+		}
+		if (getSettings().doFindHighestPossibleEvaluationScore()) {
+			bw.write(buildHighestPossibleEvaluationScoreColumn(prot));
+		}
+
+		// End the row:
+		bw.write("\n");
 
-		// CLEAN UP:
-		bw.close();
+		// If AHRD is requested to write out the AHRD-Score of each
+		// BlastHit's Description, do so into another file:
 		if (getSettings().doWriteHRDScoresToOutput())
+			writeHrdScoresOutput(prot);
+	}
+
+	public void close() throws IOException {
+		if (bw != null)
+			bw.close();
+		if (getSettings().doWriteHRDScoresToOutput() && this.hrdScoresWriter != null)
 			this.hrdScoresWriter.close();
 	}
 
@@ -108,7 +115,7 @@ public class OutputWriter extends AbstractOutputWriter {
 	 */
 	public void writeHRDScoresOutputHeader() throws IOException {
 		// Initialize OutputWriter:
-		hrdScoresWriter = new BufferedWriter(new FileWriter(getSettings().getPathToHRDScoresOutput()));
+		hrdScoresWriter = openWriter(getSettings().getPathToHRDScoresOutput());
 		hrdScoresWriter.write("Protein-Accesion\tBlast-Hit-Accession\tAHRD-Score\n");
 	}
 
@@ -208,14 +215,15 @@ public class OutputWriter extends AbstractOutputWriter {
 	}
 
 	public String buildTokenSetCell(Protein prot) {
-		String tokenSetCell = "\t";
+		StringBuilder tokenSetCell = new StringBuilder("\t");
 
 		for (String token : prot.getTokenScoreCalculator().getTokenScores().keySet()) {
-			tokenSetCell += "[" + token + "->" + formattedNumberToString(prot.getTokenScoreCalculator().getTokenScores().get(token))
-					+ "]";
+			tokenSetCell.append("[").append(token).append("->")
+					.append(formattedNumberToString(prot.getTokenScoreCalculator().getTokenScores().get(token)))
+					.append("]");
 		}
 
-		return tokenSetCell;
+		return tokenSetCell.toString();
 	}
 
 	public String buildBestBlastHitsHeader() {
@@ -230,21 +238,23 @@ public class OutputWriter extends AbstractOutputWriter {
 	}
 
 	public String buildBestBlastHitsColumns(Protein prot) {
-		String csvRow = "";
+		StringBuilder csvRow = new StringBuilder();
 
 		for (String blastDb : getSettings().getBlastDatabases()) {
 			if (prot.getEvaluationScoreCalculator().getUnchangedBlastResults().get(blastDb) != null) {
 				BlastResult bestBr = prot.getEvaluationScoreCalculator().getUnchangedBlastResults().get(blastDb);
-				csvRow += "\t\"" + bestBr.getAccession() + " " + bestBr.getDescription() + "\"";
+				csvRow.append("\t\"").append(bestBr.getAccession()).append(" ").append(bestBr.getDescription())
+						.append("\"");
 				if (bestBr.getEvaluationScore() != null) {
-					csvRow += "\t" + bestBr.getEvaluationTokens().size() + "\t" + formattedNumberToString(bestBr.getEvaluationScore());
+					csvRow.append("\t").append(bestBr.getEvaluationTokens().size()).append("\t")
+							.append(formattedNumberToString(bestBr.getEvaluationScore()));
 				}
 			} else {
-				csvRow += "\t";
+				csvRow.append("\t");
 				if (getSettings().isInTrainingMode())
-					csvRow += "\t0\t0.0";
+					csvRow.append("\t0\t0.0");
 			}
 		}
-		return csvRow;
+		return csvRow.toString();
 	}
 }
@@ -4,13 +4,16 @@ import static ahrd.controller.Settings.getSettings;
 import static ahrd.view.AbstractOutputWriter.formattedNumberToString;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import ahrd.controller.Parameters;
 import ahrd.controller.Settings;
 
 public class TrainerOutputWriter {
@@ -30,10 +33,6 @@ public class TrainerOutputWriter {
 		// Ensure Blast-Database-Parameters always appear in the right columns:
 		this.sortedBlastDatabases = new ArrayList<String>(getSettings().getBlastDatabases());
 		Collections.sort(this.sortedBlastDatabases);
-		// Prepare buffered output-writer:
-		this.pathBufWrtr = new BufferedWriter(new FileWriter(getSettings().getPathToSimulatedAnnealingPathLog()));
-		// And write the header into the path-log:
-		this.pathBufWrtr.write(generateHeader(false));
 	}
 
 	public String generateHeader(boolean isFinalOutput) {
@@ -54,9 +53,73 @@ public class TrainerOutputWriter {
 
 	public void writeIterationOutput(Settings currentSettings, double diffAvgEvalScoreToCurrAccepted, int accepted)
 			throws IOException {
+		if (this.pathBufWrtr == null) {
+			// Prepare buffered output-writer:
+			this.pathBufWrtr = new BufferedWriter(
+					new FileWriter(getSettings().getPathToSimulatedAnnealingPathLog()));
+			// And write the header into the path-log:
+			this.pathBufWrtr.write(generateHeader(false));
+		}
 		this.pathBufWrtr.write(settingsRow(currentSettings, diffAvgEvalScoreToCurrAccepted, accepted));
 	}
 
+	/**
+	 * @return long - the number of bytes written into the simulated annealing
+	 *         path-log so far, all of which have been flushed to disk
+	 * @throws IOException
+	 */
+	public long getPathLogOffset() throws IOException {
+		if (this.pathBufWrtr == null)
+			return 0;
+		this.pathBufWrtr.flush();
+		return new File(getSettings().getPathToSimulatedAnnealingPathLog()).length();
+	}
+
+	/**
+	 * Continues the simulated annealing path-log of a resumed Trainer: Rows
+	 * written after argument offset, i.e. after the checkpoint the Trainer
+	 * resumes from, are discarded, and further rows are appended.
+	 * 
+	 * @param offset
+	 *            - see <code>getPathLogOffset()</code>
+	 * @throws IOException
+	 *             if the path-log is missing or shorter than argument offset,
+	 *             i.e. does not contain all rows written before the checkpoint
+	 */
+	public void resumePathLog(long offset) throws IOException {
+		closePathLog();
+		if (offset > 0) {
+			File pathLog = new File(getSettings().getPathToSimulatedAnnealingPathLog());
+			if (!pathLog.isFile())
+				throw new IOException("Cannot resume from checkpoint: The simulated annealing path-log '"
+						+ pathLog.getPath() + "' is missing.");
+			if (pathLog.length() < offset)
+				throw new IOException("Cannot resume from checkpoint: The simulated annealing path-log '"
+						+ pathLog.getPath() + "' has " + pathLog.length() + " bytes, but " + offset
+						+ " had been written before the checkpoint was taken.");
+			RandomAccessFile truncate = new RandomAccessFile(pathLog, "rw");
+			try {
+				truncate.setLength(offset);
+			} finally {
+				truncate.close();
+			}
+			this.pathBufWrtr = new BufferedWriter(new FileWriter(pathLog, true));
+		}
+	}
+
+	/**
+	 * Flushes and closes the simulated annealing path-log, if any has been
+	 * written.
+	 * 
+	 * @throws IOException
+	 */
+	public void closePathLog() throws IOException {
+		if (this.pathBufWrtr != null) {
+			this.pathBufWrtr.close();
+			this.pathBufWrtr = null;
+		}
+	}
+
 	/**
 	 * Writes out the final output and cleanes up both used buffered Writer.
 	 * 
@@ -67,7 +130,7 @@ public class TrainerOutputWriter {
 	public void writeFinalOutput(Settings acceptedSettings, Double avgMaxEvaluationScore,
 			Integer acceptedSettingsFoundAtTemperature) throws IOException {
 		// Clean up buffered Sim-Anneal-Path-Log-Writer:
-		this.pathBufWrtr.close();
+		closePathLog();
 
 		// Write output about found best performing Parameters:
 		this.outBufWrtr = new BufferedWriter(new FileWriter(getSettings().getPathToOutput()));
@@ -80,6 +143,67 @@ public class TrainerOutputWriter {
 		this.outBufWrtr.close();
 	}
 
+	/**
+	 * Writes out the final output of several simulated annealing chains: One
+	 * row for the best Parameters found by each chain, followed by the
+	 * globally best of them.
+	 * 
+	 * @param chainsBestSettings
+	 *            - Settings holding each chain's best Parameters
+	 * @param foundAtTemperatures
+	 *            - the temperatures at which the chains found them
+	 * @param avgMaxEvaluationScore
+	 * @throws IOException
+	 */
+	public void writeFinalOutput(List<Settings> chainsBestSettings, List<Integer> foundAtTemperatures,
+			Double avgMaxEvaluationScore) throws IOException {
+		int best = 0;
+		for (int i = 1; i < chainsBestSettings.size(); i++) {
+			if (chainsBestSettings.get(i).getAvgEvaluationScore() > chainsBestSettings.get(best)
+					.getAvgEvaluationScore())
+				best = i;
+		}
+		this.outBufWrtr = new BufferedWriter(new FileWriter(getSettings().getPathToOutput()));
+		this.outBufWrtr.write("Chain\t" + generateHeader(true));
+		for (int i = 0; i < chainsBestSettings.size(); i++) {
+			this.outBufWrtr.write(i + "\t" + finalSettingsRow(chainsBestSettings.get(i), foundAtTemperatures.get(i),
+					avgMaxEvaluationScore));
+		}
+		this.outBufWrtr.write("best (" + best + ")\t"
+				+ finalSettingsRow(chainsBestSettings.get(best), foundAtTemperatures.get(best), avgMaxEvaluationScore));
+		this.outBufWrtr.close();
+	}
+
+	/**
+	 * Writes the scores of the Parameters evaluated by the GridEvaluator, one
+	 * row per set of Parameters in argument order.
+	 * 
+	 * @param grid
+	 * @throws IOException
+	 */
+	public void writeGridOutput(List<Parameters> grid) throws IOException {
+		this.outBufWrtr = new BufferedWriter(new FileWriter(getSettings().getPathToOutput()));
+		String hdr = "Average Evaluation-Score(F-Score)\tAverage True-Positive-Rate\tAverage False-Positive-Rate\tToken-Score-Bit-Score-Weight\tToken-Score-Database-Score-Weight\tToken-Score-Overlap-Score-Weight";
+		for (String blastDb : this.sortedBlastDatabases) {
+			hdr += "\t" + blastDb + "-Weight";
+			hdr += "\t" + blastDb + "-Description-Score-Bit-Score-Weight";
+		}
+		this.outBufWrtr.write(hdr + "\n");
+		for (Parameters p : grid) {
+			String col = p.getAvgEvaluationScore() + "\t" + formattedNumberToString(p.getAvgTruePositivesRate())
+					+ "\t" + formattedNumberToString(p.getAvgFalsePositivesRate()) + "\t"
+					+ formattedNumberToString(p.getTokenScoreBitScoreWeight()) + "\t"
+					+ formattedNumberToString(p.getTokenScoreDatabaseScoreWeight()) + "\t"
+					+ formattedNumberToString(p.getTokenScoreOverlapScoreWeight());
+			for (String blastDb : this.sortedBlastDatabases) {
+				col += "\t" + FRMT.format(p.getBlastDbWeight(blastDb));
+				col += "\t" + FRMT.format(p.getDescriptionScoreBitScoreWeight(blastDb));
+			}
+			this.outBufWrtr.write(col + "\n");
+		}
+		this.outBufWrtr.close();
+	}
+
 	public String settingsRow(Settings s, double diffAvgEvalScoreToCurrAccepted, int accepted) {
 		String col = s.getTemperature().toString() + "\t" + s.getAvgEvaluationScore() + "\t"
 				+ diffAvgEvalScoreToCurrAccepted + "\t" + accepted + "\t"
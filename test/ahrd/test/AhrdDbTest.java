@@ -1,11 +1,17 @@
 package ahrd.test;
 
+import static ahrd.model.AhrdDb.closeDb;
 import static ahrd.model.AhrdDb.deleteDb;
 import static ahrd.model.AhrdDb.initializeDb;
 import static ahrd.model.AhrdDb.getAhrdDbEnv;
+import static ahrd.model.AhrdDb.getReferenceProtein;
+import static ahrd.model.AhrdDb.getReferenceProteinCache;
+import static ahrd.model.AhrdDb.getReferenceProteinDAO;
 
 import static ahrd.test.TestUtils.initTestSettings;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static ahrd.controller.Settings.getSettings;
 
 import java.io.IOException;
@@ -15,6 +21,9 @@ import org.junit.Test;
 import com.sleepycat.je.DatabaseException;
 import com.sleepycat.je.EnvironmentMutableConfig;
 
+import ahrd.model.AhrdDb.ReferenceProteinCache;
+import ahrd.model.ReferenceProtein;
+
 public class AhrdDbTest {
 
 	@Test
@@ -29,4 +38,37 @@ public class AhrdDbTest {
 			deleteDb();
 		}
 	}
+
+	@Test
+	public void testReferenceProteinCache() throws DatabaseException, IOException {
+		try {
+			initTestSettings();
+			initializeDb(false);
+			getReferenceProteinDAO().byAccession
+					.put(new ReferenceProtein("sp|acc_1|accession_one", "Description one", 123, "swissprot"));
+			getReferenceProteinDAO().byAccession
+					.put(new ReferenceProtein("sp|acc_2|accession_two", "Description two", 321, "swissprot"));
+			// Writable connections are not cached:
+			assertNull(getReferenceProteinCache());
+			closeDb();
+			initializeDb(true);
+			ReferenceProtein rp = getReferenceProtein("sp|acc_1|accession_one");
+			assertEquals("Description one", rp.getHrd());
+			assertSame(rp, getReferenceProtein("sp|acc_1|accession_one"));
+			assertNull(getReferenceProtein("sp|not_there|not_there"));
+			assertEquals(1, getReferenceProteinCache().getHits());
+			assertEquals(2, getReferenceProteinCache().getMisses());
+			// The least recently used ReferenceProtein is evicted:
+			ReferenceProteinCache cache = new ReferenceProteinCache(getReferenceProteinDAO(), 1);
+			ReferenceProtein rp1 = cache.get("sp|acc_1|accession_one");
+			cache.get("sp|acc_2|accession_two");
+			assertEquals(1, cache.size());
+			ReferenceProtein rp1Reread = cache.get("sp|acc_1|accession_one");
+			assertEquals(rp1.getAccession(), rp1Reread.getAccession());
+			assertEquals(0, cache.getHits());
+			assertEquals(3, cache.getMisses());
+		} finally {
+			deleteDb();
+		}
+	}
 }
@@ -1,10 +1,17 @@
 package ahrd.test;
 
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Utils.readFile;
+import static ahrd.model.AhrdDb.closeDb;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -16,6 +23,7 @@ import ahrd.exception.MissingProteinException;
 import ahrd.model.BlastResult;
 import ahrd.model.InterproResult;
 import ahrd.model.Protein;
+import ahrd.view.IOutputWriter;
 import nu.xom.ParsingException;
 
 public class AhrdTest {
@@ -66,6 +74,129 @@ public class AhrdTest {
 		assertTrue(p.getTokenScoreCalculator().getTotalTokenOverlapScore() > 0.0);
 	}
 
+	@Test
+	public void testAssignHumanReadableDescriptionsInParallel() throws Exception {
+		// Other tests might have left the database open:
+		closeDb();
+		ahrd = new AHRD("./test/resources/ahrd_input_seq_sim_table_go_prediction.yml");
+		ahrd.setup(false);
+		ahrd.assignHumanReadableDescriptions();
+		Map<String, Protein> serialProteins = ahrd.getProteins();
+		closeDb();
+		// Score the same Proteins again using several threads:
+		ahrd = new AHRD("./test/resources/ahrd_input_seq_sim_table_go_prediction.yml");
+		getSettings().setAnnotationThreads(4);
+		ahrd.setup(false);
+		ahrd.assignHumanReadableDescriptions();
+		closeDb();
+		assertEquals(serialProteins.keySet(), ahrd.getProteins().keySet());
+		for (String protAcc : serialProteins.keySet()) {
+			BlastResult serialBr = serialProteins.get(protAcc).getDescriptionScoreCalculator()
+					.getHighestScoringBlastResult();
+			BlastResult parallelBr = ahrd.getProteins().get(protAcc).getDescriptionScoreCalculator()
+					.getHighestScoringBlastResult();
+			assertNotNull(serialBr);
+			assertNotNull(parallelBr);
+			assertEquals(serialBr.getAccession(), parallelBr.getAccession());
+			assertEquals(serialBr.getDescription(), parallelBr.getDescription());
+			assertEquals(serialProteins.get(protAcc).getDescriptionScoreCalculator().getDescriptionHighScore(),
+					ahrd.getProteins().get(protAcc).getDescriptionScoreCalculator().getDescriptionHighScore());
+			assertEquals(serialProteins.get(protAcc).getGoResults(), ahrd.getProteins().get(protAcc).getGoResults());
+		}
+	}
+
+	@Test
+	public void testPipelinedOutputEqualsOutput() throws Exception {
+		closeDb();
+		File expected = File.createTempFile("ahrd_output", ".csv");
+		File pipelined = File.createTempFile("ahrd_output_pipelined", ".csv");
+		try {
+			ahrd = new AHRD("./test/resources/ahrd_input_seq_sim_table_go_prediction.yml");
+			getSettings().setPathToOutput(expected.getPath());
+			ahrd.setup(false);
+			ahrd.assignHumanReadableDescriptions();
+			AHRD.initializeOutputWriter(ahrd.getProteins().values()).writeOutput();
+			closeDb();
+			// Score and write the same Proteins in a pipeline using several
+			// threads:
+			ahrd = new AHRD("./test/resources/ahrd_input_seq_sim_table_go_prediction.yml");
+			getSettings().setPathToOutput(pipelined.getPath());
+			getSettings().setAnnotationThreads(4);
+			ahrd.setup(false);
+			ahrd.assignHumanReadableDescriptions(AHRD.initializeOutputWriter(ahrd.getProteins().values()));
+			closeDb();
+			assertEquals(readFile(expected.getPath()), readFile(pipelined.getPath()));
+			// Written Proteins' Blast-Results are released:
+			for (Protein prot : ahrd.getProteins().values()) {
+				assertTrue(prot.getBlastResults().isEmpty());
+				assertNotNull(prot.getDescriptionScoreCalculator().getHighestScoringBlastResult());
+			}
+		} finally {
+			expected.delete();
+			pipelined.delete();
+		}
+	}
+
+	@Test
+	public void testPipelinedOutputIsClosedOnFailure() throws Exception {
+		closeDb();
+		ahrd = new AHRD("./test/resources/ahrd_input_seq_sim_table_go_prediction.yml");
+		ahrd.setup(false);
+		final IOException diskFull = new IOException("disk full");
+		final boolean[] closed = new boolean[1];
+		IOutputWriter failing = new IOutputWriter() {
+			public void writeOutput() {
+			}
+
+			public void writeHeader() {
+			}
+
+			public void writeProtein(Protein prot) throws IOException {
+				throw diskFull;
+			}
+
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		try {
+			ahrd.assignHumanReadableDescriptions(failing);
+			fail("Expected the writer's failure to be thrown.");
+		} catch (IOException e) {
+			assertSame(diskFull, e);
+		} finally {
+			closeDb();
+		}
+		assertTrue(closed[0]);
+	}
+
+	@Test
+	public void testConcurrentlyParsedBlastResultsEqualSerialOnes() throws Exception {
+		closeDb();
+		File expected = File.createTempFile("ahrd_output", ".csv");
+		File concurrent = File.createTempFile("ahrd_output_concurrent", ".csv");
+		try {
+			ahrd = new AHRD("./test/resources/ahrd_input_seq_sim_table_go_prediction.yml");
+			getSettings().setPathToOutput(expected.getPath());
+			ahrd.setup(false);
+			ahrd.assignHumanReadableDescriptions();
+			AHRD.initializeOutputWriter(ahrd.getProteins().values()).writeOutput();
+			closeDb();
+			// Parse each Blast-Database's results on its own thread:
+			ahrd = new AHRD("./test/resources/ahrd_input_seq_sim_table_go_prediction.yml");
+			getSettings().setPathToOutput(concurrent.getPath());
+			getSettings().setSearchResultsThreads(getSettings().getBlastDatabases().size());
+			ahrd.setup(false);
+			ahrd.assignHumanReadableDescriptions();
+			AHRD.initializeOutputWriter(ahrd.getProteins().values()).writeOutput();
+			closeDb();
+			assertEquals(readFile(expected.getPath()), readFile(concurrent.getPath()));
+		} finally {
+			expected.delete();
+			concurrent.delete();
+		}
+	}
+
 	@Test
 	@Deprecated
 	public void testParseInterproResults() throws Exception {
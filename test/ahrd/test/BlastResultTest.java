@@ -5,22 +5,31 @@ import static ahrd.controller.Settings.getSettings;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import ahrd.controller.Settings;
 import ahrd.exception.MissingAccessionException;
 import ahrd.exception.MissingProteinException;
 import ahrd.model.BlastResult;
+import ahrd.model.BlastResultsCache;
 import ahrd.model.Protein;
 
 public class BlastResultTest {
@@ -61,6 +70,29 @@ public class BlastResultTest {
 		assertTrue(br.getTokens().contains("flavohemoprotein"));
 	}
 
+	@Test
+	public void testHitsOfSameDescriptionShareProcessedDescription() {
+		Protein query = new Protein("query", 200);
+		BlastResult br1 = new BlastResult("accession_1", 1.0, 10, 20, 10, 20, 200, "swissprot", query);
+		BlastResult br2 = new BlastResult("accession_2", 1.0, 10, 20, 10, 20, 100, "swissprot", query);
+		for (BlastResult br : new BlastResult[] { br1, br2 }) {
+			br.setDescription("Receptor-like protein kinase (Fragment)");
+			br.setSubjectLength(30);
+			br.generateHRDCandidateForProtein();
+		}
+		assertEquals(2, query.getBlastResults().get("swissprot").size());
+		assertEquals("Receptor-like protein kinase", br1.getDescription());
+		assertSame(br1.getDescription(), br2.getDescription());
+		assertSame(br1.getTokens(), br2.getTokens());
+		assertTrue(br1.getTokens().contains("kinase"));
+		try {
+			br1.getTokens().add("fragment");
+			fail("Shared tokens must not be modifiable.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
 	@Test
 	public void testAddBlastResult() throws IOException {
 		Map<String, Protein> proteinDb = TestUtils.mockProteinDb();
@@ -88,6 +120,33 @@ public class BlastResultTest {
 		assertEquals(1, blastResults.get("accession_2").size());
 	}
 
+	@Test
+	public void testAddBlastResultOfUbiquitousHit() {
+		Map<String, List<BlastResult>> blastResults = new HashMap<String, List<BlastResult>>();
+		List<Protein> queries = new ArrayList<Protein>();
+		for (int i = 0; i < 20; i++) {
+			Protein query = new Protein("query_" + i, 200);
+			queries.add(query);
+			BlastResult.addBlastResult(blastResults,
+					new BlastResult("transposase", 1.0, 10, 20, 10, 20, 100 + i, "swissprot", query));
+		}
+		// Further High Scoring Pairs of the same queries only replace those of
+		// lower Bit-Score, keeping their position:
+		BlastResult.addBlastResult(blastResults,
+				new BlastResult("transposase", 1.0, 10, 20, 10, 20, 50, "swissprot", queries.get(3)));
+		BlastResult.addBlastResult(blastResults,
+				new BlastResult("transposase", 1.0, 10, 20, 10, 20, 500, "swissprot", queries.get(15)));
+		BlastResult.addBlastResult(blastResults,
+				new BlastResult("transposase", 1.0, 10, 20, 10, 20, 400, "swissprot", queries.get(0)));
+		List<BlastResult> hits = blastResults.get("transposase");
+		assertEquals(20, hits.size());
+		for (int i = 0; i < 20; i++)
+			assertEquals(queries.get(i), hits.get(i).getProtein());
+		assertEquals(Double.valueOf(103), hits.get(3).getBitScore());
+		assertEquals(Double.valueOf(500), hits.get(15).getBitScore());
+		assertEquals(Double.valueOf(400), hits.get(0).getBitScore());
+	}
+
 	@Test
 	public void testParseBlastResults() throws MissingProteinException, IOException {
 		Map<String, Protein> protDb = TestUtils.mockProteinDb();
@@ -258,4 +317,167 @@ public class BlastResultTest {
 		assertEquals("tr|W9CFB7|W9CFB7_9HELO",
 				p1.getEvaluationScoreCalculator().getUnchangedBlastResults().get("trembl").getAccession());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testStreamLongBlastResults() throws IOException, MissingProteinException, MissingAccessionException {
+		getSettings().getBlastDbSettings().get("trembl").put("file", "./test/resources/bgh04634_vs_trEMBL.txt");
+		getSettings().getBlastDbSettings().get("trembl").put("database",
+				"./test/resources/bgh04634_trembl_database.fasta");
+		getSettings().setPathToGeneOntologyResults(null);
+		createOrUpdateAhrdDatabase(false);
+		Map<String, Protein> protDb = TestUtils.mockProteinDb();
+		BlastResult.readBlastResults(protDb, "trembl");
+		Protein p1 = protDb.get("gene:chr01.1056:mRNA:chr01.1056");
+		// Now read the same results one query at a time:
+		getSettings().setSeqSimSearchTableSortedByQuery(true);
+		Map<String, Protein> streamedProtDb = TestUtils.mockProteinDb();
+		BlastResult.readBlastResults(streamedProtDb, "trembl");
+		Protein streamedP1 = streamedProtDb.get("gene:chr01.1056:mRNA:chr01.1056");
+		// Only the best Hits have been retained:
+		assertEquals(BlastResult.MAX_BLAST_RESULTS_PER_DATABASE, streamedP1.getBlastResults().get("trembl").size());
+		assertEquals("tr|W9CFB7|W9CFB7_9HELO",
+				BlastResult.filterBestScoringBlastResults(streamedP1.getBlastResults().get("trembl"), 1).get(0)
+						.getAccession());
+		// But the cumulative scores have been measured on all valid Hits:
+		Map<String, Double> cumulativeTokenBitScores = p1.getTokenScoreCalculator().getCumulativeTokenBitScores();
+		Map<String, Double> streamedCumulativeTokenBitScores = streamedP1.getTokenScoreCalculator()
+				.getCumulativeTokenBitScores();
+		assertEquals(cumulativeTokenBitScores.keySet(), streamedCumulativeTokenBitScores.keySet());
+		for (String token : cumulativeTokenBitScores.keySet()) {
+			assertEquals(cumulativeTokenBitScores.get(token), streamedCumulativeTokenBitScores.get(token), 0.000001);
+		}
+		assertEquals(p1.getTokenScoreCalculator().getTotalTokenBitScore(),
+				streamedP1.getTokenScoreCalculator().getTotalTokenBitScore(), 0.000001);
+		assertEquals(p1.getDescriptionScoreCalculator().getMaxBitScore(),
+				streamedP1.getDescriptionScoreCalculator().getMaxBitScore(), 0.0);
+	}
+
+	@Test
+	public void testCachedBlastResults() throws IOException, MissingProteinException, MissingAccessionException {
+		File results = File.createTempFile("bgh04634_vs_trEMBL", ".txt");
+		results.deleteOnExit();
+		Files.copy(Paths.get("./test/resources/bgh04634_vs_trEMBL.txt"), results.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		File cache = File.createTempFile("bgh04634_vs_trEMBL", ".cache");
+		cache.delete();
+		cache.deleteOnExit();
+		getSettings().getBlastDbSettings().get("trembl").put("file", results.getPath());
+		getSettings().getBlastDbSettings().get("trembl").put("database",
+				"./test/resources/bgh04634_trembl_database.fasta");
+		getSettings().setPathToGeneOntologyResults(null);
+		createOrUpdateAhrdDatabase(false);
+		Map<String, Protein> protDb = TestUtils.mockProteinDb();
+		BlastResult.readBlastResults(protDb, "trembl");
+		// The first run writes the cache, the second one reads it:
+		getSettings().getBlastDbSettings().get("trembl").put(Settings.BLAST_RESULTS_CACHE_KEY, cache.getPath());
+		BlastResult.readBlastResults(TestUtils.mockProteinDb(), "trembl");
+		assertTrue(cache.exists());
+		BlastResultsCache cached = BlastResultsCache.read(cache.getPath(), "trembl");
+		assertNotNull(cached);
+		assertEquals(Files.readAllLines(results.toPath()).size(), cached.size());
+		Map<String, Protein> cachedProtDb = TestUtils.mockProteinDb();
+		BlastResult.readBlastResults(cachedProtDb, "trembl");
+		for (String protAcc : protDb.keySet()) {
+			List<BlastResult> brs = protDb.get(protAcc).getBlastResults().get("trembl");
+			List<BlastResult> cachedBrs = cachedProtDb.get(protAcc).getBlastResults().get("trembl");
+			assertEquals(brs == null, cachedBrs == null);
+			if (brs == null)
+				continue;
+			assertEquals(brs.size(), cachedBrs.size());
+			for (int i = 0; i < brs.size(); i++) {
+				assertEquals(brs.get(i).getAccession(), cachedBrs.get(i).getAccession());
+				assertEquals(brs.get(i).getDescription(), cachedBrs.get(i).getDescription());
+				assertEquals(brs.get(i).getSubjectLength(), cachedBrs.get(i).getSubjectLength());
+				assertEquals(brs.get(i).getBitScore(), cachedBrs.get(i).getBitScore());
+				assertEquals(brs.get(i).getEValue(), cachedBrs.get(i).getEValue());
+				assertEquals(brs.get(i).getTokens(), cachedBrs.get(i).getTokens());
+			}
+		}
+		// Changed parameters to parse the reference database invalidate the
+		// cache, and it is rebuilt:
+		getSettings().getBlastDbSettings().get("trembl").put(Settings.FASTA_HEADER_REGEX_KEY,
+				"(?:" + Settings.DEFAULT_FASTA_HEADER_REGEX.pattern() + ")");
+		assertNull(BlastResultsCache.read(cache.getPath(), "trembl"));
+		BlastResult.readBlastResults(TestUtils.mockProteinDb(), "trembl");
+		assertNotNull(BlastResultsCache.read(cache.getPath(), "trembl"));
+		// A changed search result file invalidates the cache, even if its
+		// size and modification time are unchanged:
+		long lastModified = results.lastModified();
+		byte[] content = Files.readAllBytes(results.toPath());
+		content[content.length - 2] = (byte) (content[content.length - 2] == '1' ? '2' : '1');
+		Files.write(results.toPath(), content);
+		results.setLastModified(lastModified);
+		assertNull(BlastResultsCache.read(cache.getPath(), "trembl"));
+		BlastResult.readBlastResults(TestUtils.mockProteinDb(), "trembl");
+		assertNotNull(BlastResultsCache.read(cache.getPath(), "trembl"));
+		results.setLastModified(results.lastModified() - 10000);
+		assertNull(BlastResultsCache.read(cache.getPath(), "trembl"));
+	}
+
+	@Test
+	public void testChecksumOfLargeSearchResults() throws IOException {
+		File results = File.createTempFile("large_search_results", ".txt");
+		results.deleteOnExit();
+		byte[] content = new byte[10 << 20];
+		new Random(1).nextBytes(content);
+		Files.write(results.toPath(), content);
+		long checksum = BlastResultsCache.checksum(results.getPath());
+		assertEquals(checksum, BlastResultsCache.checksum(results.getPath()));
+		// Head and tail are always part of the sample:
+		content[content.length - 1]++;
+		Files.write(results.toPath(), content);
+		assertTrue(checksum != BlastResultsCache.checksum(results.getPath()));
+		content[content.length - 1]--;
+		content[0]++;
+		Files.write(results.toPath(), content);
+		assertTrue(checksum != BlastResultsCache.checksum(results.getPath()));
+	}
+
+	@Test
+	public void testPreselectBestBlastResults()
+			throws IOException, MissingProteinException, MissingAccessionException {
+		File cache = File.createTempFile("bgh04634_vs_trEMBL", ".cache");
+		cache.delete();
+		cache.deleteOnExit();
+		getSettings().getBlastDbSettings().get("trembl").put("file", "./test/resources/bgh04634_vs_trEMBL.txt");
+		getSettings().getBlastDbSettings().get("trembl").put("database",
+				"./test/resources/bgh04634_trembl_database.fasta");
+		getSettings().setPathToGeneOntologyResults(null);
+		getSettings().setPreselectBestBlastHits(10);
+		createOrUpdateAhrdDatabase(false);
+		Map<String, Protein> protDb = TestUtils.mockProteinDb();
+		BlastResult.readBlastResults(protDb, "trembl");
+		List<BlastResult> brs = protDb.get("gene:chr01.1056:mRNA:chr01.1056").getBlastResults().get("trembl");
+		// Of the ten preselected Hits only the valid ones are kept:
+		assertTrue(brs.size() > 0 && brs.size() <= 10);
+		assertEquals("tr|W9CFB7|W9CFB7_9HELO", BlastResult.filterBestScoringBlastResults(brs, 1).get(0).getAccession());
+		// Loading the cache selects the same Hits:
+		getSettings().getBlastDbSettings().get("trembl").put(Settings.BLAST_RESULTS_CACHE_KEY, cache.getPath());
+		BlastResult.readBlastResults(TestUtils.mockProteinDb(), "trembl");
+		Map<String, Protein> cachedProtDb = TestUtils.mockProteinDb();
+		BlastResult.readBlastResults(cachedProtDb, "trembl");
+		List<BlastResult> cachedBrs = cachedProtDb.get("gene:chr01.1056:mRNA:chr01.1056").getBlastResults()
+				.get("trembl");
+		assertEquals(brs.size(), cachedBrs.size());
+		for (int i = 0; i < brs.size(); i++) {
+			assertEquals(brs.get(i).getAccession(), cachedBrs.get(i).getAccession());
+			assertEquals(brs.get(i).getEValue(), cachedBrs.get(i).getEValue());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStreamUnsortedBlastResults()
+			throws IOException, MissingProteinException, MissingAccessionException {
+		getSettings().setPathToGeneOntologyResults(null);
+		createOrUpdateAhrdDatabase(false);
+		// Append a Hit of the first query after the Hits of the second query:
+		List<String> lines = Files.readAllLines(Paths.get("./test/resources/tair_blast8_tabular.txt"));
+		lines.add(lines.get(0));
+		File unsortedResults = File.createTempFile("unsorted_tair_blast8_tabular", ".txt");
+		unsortedResults.deleteOnExit();
+		Files.write(unsortedResults.toPath(), lines);
+		getSettings().getBlastDbSettings().get("tair").put("file", unsortedResults.getPath());
+		getSettings().setSeqSimSearchTableSortedByQuery(true);
+		BlastResult.readBlastResults(TestUtils.mockProteinDb(), "tair");
+	}
+}
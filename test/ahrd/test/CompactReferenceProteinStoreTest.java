@@ -0,0 +1,107 @@
+package ahrd.test;
+
+import static ahrd.controller.DatabaseSetup.createOrUpdateAhrdDatabase;
+import static ahrd.controller.Settings.getSettings;
+import static ahrd.controller.Settings.setSettings;
+import static ahrd.model.AhrdDb.closeDb;
+import static ahrd.model.AhrdDb.getCompactReferenceProteinStore;
+import static ahrd.model.AhrdDb.getReferenceProtein;
+import static ahrd.model.AhrdDb.getReferenceProteinDAO;
+import static ahrd.model.AhrdDb.initializeDb;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sleepycat.persist.EntityCursor;
+
+import ahrd.controller.Settings;
+import ahrd.model.CompactReferenceProteinStore;
+import ahrd.model.ReferenceProtein;
+
+public class CompactReferenceProteinStoreTest {
+
+	@Before
+	public void setUp() throws IOException {
+		setSettings(new Settings("./test/resources/ahrd_input_seq_sim_table_go_prediction.yml"));
+	}
+
+	private void assertStoreEqualsDatabase(CompactReferenceProteinStore store) {
+		int nProteins = 0;
+		boolean foundGoTerms = false;
+		EntityCursor<ReferenceProtein> cursor = getReferenceProteinDAO().byAccession.entities();
+		try {
+			for (ReferenceProtein expected : cursor) {
+				ReferenceProtein rp = store.get(expected.getAccession());
+				assertNotNull("Compact store misses '" + expected.getAccession() + "'.", rp);
+				assertEquals(expected.getAccession(), rp.getAccession());
+				assertEquals(expected.getShortAccession(), rp.getShortAccession());
+				assertEquals(expected.getHrd(), rp.getHrd());
+				assertEquals(expected.getSequenceLength(), rp.getSequenceLength());
+				assertEquals(expected.getBlastDatabaseName(), rp.getBlastDatabaseName());
+				assertEquals(expected.getGoTerms(), rp.getGoTerms());
+				foundGoTerms = foundGoTerms || !rp.getGoTerms().isEmpty();
+				nProteins++;
+			}
+		} finally {
+			cursor.close();
+		}
+		assertEquals(nProteins, store.size());
+		assertTrue(foundGoTerms);
+		assertNull(store.get(""));
+		assertNull(store.get("sp|ThisAccessionDoesNotExists|it's_true_believe_me"));
+		assertNull(store.get("~~~ sorts after all accessions"));
+	}
+
+	@Test
+	public void testWriteAndReadCompactStore() throws IOException {
+		File storeFile = File.createTempFile("reference_proteins", ".compact");
+		storeFile.deleteOnExit();
+		try {
+			createOrUpdateAhrdDatabase(false);
+			// Duplicated descriptions are stored once:
+			getReferenceProteinDAO().byAccession
+					.put(new ReferenceProtein("sp|Q00000|DUP1_ARATH", "Same description", 10, "swissprot"));
+			getReferenceProteinDAO().byAccession
+					.put(new ReferenceProtein("sp|Q00001|DUP2_ARATH", "Same description", 20, "swissprot"));
+			CompactReferenceProteinStore.write(getReferenceProteinDAO(), storeFile.getPath());
+			CompactReferenceProteinStore store = new CompactReferenceProteinStore(storeFile.getPath());
+			assertStoreEqualsDatabase(store);
+			store.close();
+			// Records and strings will frequently span several mapped
+			// segments:
+			store = new CompactReferenceProteinStore(storeFile.getPath(), 64);
+			assertStoreEqualsDatabase(store);
+			store.close();
+		} finally {
+			closeDb();
+		}
+	}
+
+	@Test
+	public void testInitializeDbUsesCompactStore() throws IOException {
+		getSettings().setUseCompactReferenceStore(true);
+		try {
+			closeDb();
+			createOrUpdateAhrdDatabase(false);
+			assertTrue(new File(getSettings().getPathToCompactReferenceStore()).exists());
+			closeDb();
+			initializeDb(true);
+			assertNotNull(getCompactReferenceProteinStore());
+			assertNull(getReferenceProteinDAO());
+			ReferenceProtein rp = getReferenceProtein("sp|Q9LRP3|Y3174_ARATH");
+			assertNotNull(rp);
+			assertEquals("Q9LRP3", rp.getShortAccession());
+			assertEquals("Probable receptor-like protein kinase At3g17420", rp.getHrd());
+			assertEquals(Integer.valueOf(467), rp.getSequenceLength());
+		} finally {
+			closeDb();
+		}
+	}
+}
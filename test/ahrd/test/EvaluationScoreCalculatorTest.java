@@ -235,6 +235,53 @@ public class EvaluationScoreCalculatorTest {
 				.getEvaluationScoreCalculator().getTruePositivesRate() != null);
 	}
 
+	@Test
+	public void testCompetitorsAreEvaluatedOnce() {
+		Protein p = TestUtils.mockProtein();
+		ReferenceDescription rd = new ReferenceDescription();
+		rd.setAccession("AHRDv2_Acc");
+		rd.setDescription("AHRD is the best annotator");
+		rd.setTokens(new HashSet<String>(Arrays.asList("ahrd", "is", "the",
+				"best", "annotator")));
+		p.getEvaluationScoreCalculator().setReferenceDescription(rd);
+		p.getDescriptionScoreCalculator().setHighestScoringBlastResult(
+				TestUtils.mockBlastResult("AHRDv2_Acc", 0.001,
+						"AHRD is the best annotator", 0, 200, 10, 20, 200,
+						30000.0, "swissprot", new HashSet<String>(Arrays.asList(
+								"ahrd", "is", "the", "best", "annotator"))));
+		BlastResult sprot = TestUtils.mockBlastResult("Sprot One", 0.001,
+				"AHRD is the best", 0, 200, 10, 20, 200, 30000.0, "swissprot",
+				new HashSet<String>(Arrays.asList("ahrd", "is", "the", "best")));
+		p.getEvaluationScoreCalculator().addUnchangedBlastResult("swissprot",
+				sprot);
+		p.getEvaluationScoreCalculator().assignEvlScrsToCompetitors();
+		assertEquals(0.888888888888889, p.getEvaluationScoreCalculator()
+				.getBestCompetitorEvaluationScore(), 0.000001);
+		assertEquals(0.111111111111111, p.getEvaluationScoreCalculator()
+				.getEvalScoreMinBestCompScore(), 0.000001);
+		// Score AHRD's description again, the competitor must not be
+		// re-evaluated:
+		sprot.setEvaluationScore(0.5);
+		p.getDescriptionScoreCalculator().setHighestScoringBlastResult(
+				TestUtils.mockBlastResult("Sprot Two", 0.001, "AHRD is the",
+						0, 200, 10, 20, 200, 30000.0, "swissprot",
+						new HashSet<String>(Arrays.asList("ahrd", "is", "the"))));
+		p.getEvaluationScoreCalculator().assignEvlScrsToCompetitors();
+		assertEquals(0.5, sprot.getEvaluationScore(), 0.0);
+		assertEquals(0.75 - 0.888888888888889, p
+				.getEvaluationScoreCalculator().getEvalScoreMinBestCompScore(),
+				0.000001);
+		// A new competitor has to be evaluated:
+		p.getEvaluationScoreCalculator().addUnchangedBlastResult("tair",
+				TestUtils.mockBlastResult("TAIR One", 0.001,
+						"AHRD is the best annotator", 0, 200, 10, 20, 200,
+						30000.0, "tair", new HashSet<String>(Arrays.asList(
+								"ahrd", "is", "the", "best", "annotator"))));
+		p.getEvaluationScoreCalculator().assignEvlScrsToCompetitors();
+		assertEquals(1.0, p.getEvaluationScoreCalculator()
+				.getBestCompetitorEvaluationScore(), 0.0);
+	}
+
 	@Test
 	public void testFindHighestPossibleEvaluationScore() {
 		// Mock Protein:
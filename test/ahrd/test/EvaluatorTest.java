@@ -2,9 +2,15 @@ package ahrd.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static ahrd.controller.Settings.getSettings;
 import static ahrd.controller.DatabaseSetup.createOrUpdateAhrdDatabase;
+import static ahrd.model.AhrdDb.closeDb;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -14,6 +20,8 @@ import ahrd.controller.Evaluator;
 import ahrd.exception.MissingAccessionException;
 import ahrd.exception.MissingProteinException;
 import ahrd.model.Blast2GoAnnot;
+import ahrd.model.BlastResult;
+import ahrd.model.Protein;
 
 public class EvaluatorTest {
 
@@ -71,4 +79,69 @@ public class EvaluatorTest {
 				4, evaluator.getProteins().get("gene:chr01.502:mRNA:chr01.502").getEvaluationScoreCalculator()
 						.getUnchangedBlastResults().get("swissprot").getTokens().size());
 	}
+
+	/**
+	 * Runs the Evaluator on the test input, optionally preselecting the
+	 * argument number of best Hits per query and Blast-Database.
+	 * 
+	 * @return Map<String, Double> - the evaluation score of each Protein's
+	 *         assigned description
+	 */
+	private Map<String, Double> evaluationScores(Integer preselectBestBlastHits) throws Exception {
+		closeDb();
+		try {
+			evaluator = new Evaluator("./test/resources/ahrd_input.yml");
+			getSettings().setPreselectBestBlastHits(preselectBestBlastHits);
+			evaluator.setup(false);
+			evaluator.setupReferences();
+			evaluator.assignHumanReadableDescriptions();
+			evaluator.calculateEvaluationScores();
+			Map<String, Double> evlScrs = new HashMap<String, Double>();
+			for (Protein prot : evaluator.getProteins().values()) {
+				for (List<BlastResult> candidates : prot.getBlastResults().values())
+					if (preselectBestBlastHits != null)
+						assertTrue(candidates.size() <= preselectBestBlastHits);
+				evlScrs.put(prot.getAccession(), prot.getEvaluationScoreCalculator().getEvalutionScore());
+			}
+			return evlScrs;
+		} finally {
+			closeDb();
+		}
+	}
+
+	@Test
+	public void testPreselectBestBlastHits() throws Exception {
+		Map<String, Double> evlScrs = evaluationScores(null);
+		// Preselecting more Hits than there are does not change the results:
+		assertEquals(evlScrs, evaluationScores(1000));
+		Map<String, Double> preselectedEvlScrs = evaluationScores(1);
+		assertEquals(evlScrs.keySet(), preselectedEvlScrs.keySet());
+		for (Double evlScr : preselectedEvlScrs.values())
+			assertNotNull(evlScr);
+	}
+
+	/**
+	 * Compares the quality of the descriptions assigned with and without
+	 * preselecting the best Hits, measured as the mean evaluation score over
+	 * all Proteins of the test input.
+	 */
+	@Test
+	public void testPreselectedScoringComparedToFullScoring() throws Exception {
+		double fullMean = meanOf(evaluationScores(null));
+		for (Integer preselectBestBlastHits : new Integer[] { 100, 10 }) {
+			double preselectedMean = meanOf(evaluationScores(preselectBestBlastHits));
+			System.out.println("Mean evaluation score with the best " + preselectBestBlastHits
+					+ " Hits preselected: " + preselectedMean + " (all Hits: " + fullMean + ")");
+			assertTrue("Preselecting the best " + preselectBestBlastHits
+					+ " Hits should not noticeably worsen the assigned descriptions",
+					preselectedMean >= fullMean - 0.05);
+		}
+	}
+
+	private static double meanOf(Map<String, Double> evlScrs) {
+		double sum = 0.0;
+		for (Double evlScr : evlScrs.values())
+			sum += evlScr;
+		return sum / evlScrs.size();
+	}
 }
@@ -0,0 +1,91 @@
+package ahrd.test;
+
+import static ahrd.controller.Settings.getSettings;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nu.xom.ParsingException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import ahrd.controller.GridEvaluator;
+import ahrd.controller.Parameters;
+import ahrd.controller.Utils;
+import ahrd.exception.MissingAccessionException;
+import ahrd.exception.MissingInterproResultException;
+import ahrd.exception.MissingProteinException;
+
+public class GridEvaluatorTest {
+
+	private GridEvaluator evaluator;
+
+	@Before
+	public void setUp() throws IOException, MissingAccessionException, MissingProteinException, SAXException,
+			ParsingException {
+		evaluator = new GridEvaluator("./test/resources/trainer_input.yml");
+		evaluator.setup(false); // false -> Don't log memory and time-usages
+		evaluator.setupReferences();
+	}
+
+	@Test
+	public void testEvaluateGrid() throws MissingInterproResultException, IOException, SQLException {
+		List<Parameters> grid = new ArrayList<Parameters>();
+		grid.add(getSettings().getParameters().clone());
+		Utils.setRandom(new Random(42L));
+		try {
+			for (int i = 0; i < 9; i++)
+				grid.add(Parameters.randomParameters(getSettings().getSortedBlastDatabases()));
+		} finally {
+			Utils.setRandom(null);
+		}
+		this.evaluator.evaluateGrid(grid);
+		// Each set of Parameters must be scored exactly as the Trainer does:
+		for (Parameters params : grid) {
+			getSettings().setParameters(params.clone());
+			this.evaluator.evaluateCompiledProteins();
+			assertTrue(params.getAvgEvaluationScore() > 0.0);
+			assertEquals(getSettings().getAvgEvaluationScore(), params.getAvgEvaluationScore(), 0.0);
+			assertEquals(getSettings().getAvgTruePositivesRate(), params.getAvgTruePositivesRate(), 0.0);
+			assertEquals(getSettings().getAvgFalsePositivesRate(), params.getAvgFalsePositivesRate(), 0.0);
+		}
+	}
+
+	@Test
+	public void testReadParameterGrid() throws IOException {
+		File gridFile = File.createTempFile("parameter_grid", ".tsv");
+		try {
+			FileWriter out = new FileWriter(gridFile);
+			out.write("Token-Score-Bit-Score-Weight\tToken-Score-Database-Score-Weight\t"
+					+ "Token-Score-Overlap-Score-Weight\tswissprot-Weight\t"
+					+ "swissprot-Description-Score-Bit-Score-Weight\tComment\n");
+			out.write("0.6\t0.2\t0.2\t80\t0.5\tfirst\n");
+			out.write("0.4\t0.4\t0.2\t30\t1.5\tsecond\n");
+			out.close();
+			List<Parameters> grid = GridEvaluator.readParameterGrid(gridFile.getPath());
+			assertEquals(2, grid.size());
+			assertEquals(0.6, grid.get(0).getTokenScoreBitScoreWeight(), 0.0);
+			assertEquals(0.2, grid.get(0).getTokenScoreDatabaseScoreWeight(), 0.0);
+			assertEquals(0.2, grid.get(0).getTokenScoreOverlapScoreWeight(), 0.0);
+			assertEquals(Integer.valueOf(80), grid.get(0).getBlastDbWeight("swissprot"));
+			assertEquals(0.5, grid.get(0).getDescriptionScoreBitScoreWeight("swissprot"), 0.0);
+			assertEquals(Integer.valueOf(30), grid.get(1).getBlastDbWeight("swissprot"));
+			assertEquals(1.5, grid.get(1).getDescriptionScoreBitScoreWeight("swissprot"), 0.0);
+			// Missing columns are taken from the Settings:
+			assertEquals(getSettings().getBlastDbWeight("tair"), grid.get(1).getBlastDbWeight("tair"));
+			assertEquals(getSettings().getDescriptionScoreBitScoreWeight("trembl"),
+					grid.get(1).getDescriptionScoreBitScoreWeight("trembl"));
+		} finally {
+			gridFile.delete();
+		}
+	}
+}
@@ -1,8 +1,18 @@
 package ahrd.test;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
+import static ahrd.controller.Settings.getSettings;
 import static junit.framework.Assert.*;
 
 import nu.xom.ParsingException;
@@ -10,6 +20,7 @@ import nu.xom.ParsingException;
 import org.junit.Before;
 import org.junit.Test;
 
+import ahrd.controller.Utils;
 import ahrd.model.InterproResult;
 import ahrd.model.Protein;
 
@@ -92,6 +103,34 @@ public class InterproResultTest {
 						InterproResult.getInterproDb().get("IPR000536")));
 	}
 
+	@Test
+	public void testFilterInterproResultsConcurrently() throws Exception {
+		// Parent -> Child: ipr1 -> ipr2, Container -> Contained: ipr1 -> ipr3
+		final InterproResult ipr1 = new InterproResult("IPR:000011", "short name 11", "domain");
+		final InterproResult ipr2 = new InterproResult("IPR:000012", "short name 12", "domain");
+		final InterproResult ipr3 = new InterproResult("IPR:000013", "short name 13", "domain");
+		ipr2.setParentId(ipr1.getId());
+		ipr1.getContains().add(ipr3.getId());
+		InterproResult.getInterproDb().put(ipr1.getId(), ipr1);
+		InterproResult.getInterproDb().put(ipr2.getId(), ipr2);
+		InterproResult.getInterproDb().put(ipr3.getId(), ipr3);
+		// The closures are computed anew by whichever thread filters first:
+		List<Callable<Set<InterproResult>>> tasks = new ArrayList<Callable<Set<InterproResult>>>();
+		for (int i = 0; i < 64; i++) {
+			tasks.add(new Callable<Set<InterproResult>>() {
+				@Override
+				public Set<InterproResult> call() throws Exception {
+					Protein p = TestUtils.mockProtein();
+					p.getInterproResults().addAll(Arrays.asList(ipr1, ipr2, ipr3));
+					InterproResult.filterForMostInforming(p);
+					return p.getInterproResults();
+				}
+			});
+		}
+		for (Set<InterproResult> mostInformatives : Utils.executeInParallel(tasks, 8))
+			assertEquals(new HashSet<InterproResult>(Arrays.asList(ipr1)), mostInformatives);
+	}
+
 	@Test
 	public void testFilterInterproResults() throws Exception {
 		Protein p = TestUtils.mockProtein();
@@ -141,4 +180,44 @@ public class InterproResultTest {
 		assertTrue(p.getInterproResults().contains(ipr1));
 		assertTrue(p.getInterproResults().contains(ipr2));
 	}
+
+	@Test
+	public void testFilterLoadedInterproResults() throws Exception {
+		// IPR900003 is a grandchild of IPR900001 and contains IPR900004 via
+		// IPR900005. IPR900002 is unrelated to the others:
+		File xml = File.createTempFile("interpro", ".xml");
+		try {
+			BufferedWriter w = new BufferedWriter(new FileWriter(xml));
+			w.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n"
+					+ "<!DOCTYPE interprodb SYSTEM \"interpro.dtd\">\n<interprodb>\n"
+					+ "<interpro id=\"IPR900001\" short_name=\"One\" type=\"Family\"><name>One</name></interpro>\n"
+					+ "<interpro id=\"IPR900002\" short_name=\"Two\" type=\"Domain\"><name>Two</name></interpro>\n"
+					+ "<interpro id=\"IPR900003\" short_name=\"Three\" type=\"Family\"><name>Three &amp; <i>more</i></name>"
+					+ "<parent_list><rel_ref ipr_ref=\"IPR900006\"/><rel_ref ipr_ref=\"IPR900002\"/></parent_list>"
+					+ "<contains><rel_ref ipr_ref=\"IPR900005\"/></contains></interpro>\n"
+					+ "<interpro id=\"IPR900004\" short_name=\"Four\" type=\"Domain\"><name>Four</name></interpro>\n"
+					+ "<interpro id=\"IPR900005\" short_name=\"Five\" type=\"Domain\"><name>Five</name>"
+					+ "<contains><rel_ref ipr_ref=\"IPR900004\"/></contains></interpro>\n"
+					+ "<interpro id=\"IPR900006\" short_name=\"Six\" type=\"Family\"><name>Six</name>"
+					+ "<parent_list><rel_ref ipr_ref=\"IPR900001\"/></parent_list></interpro>\n"
+					+ "</interprodb>\n");
+			w.close();
+			getSettings().setPathToInterproDatabase(xml.getPath());
+			InterproResult.initialiseInterproDb();
+		} finally {
+			xml.delete();
+		}
+		InterproResult ipr3 = InterproResult.getInterproDb().get("IPR900003");
+		assertEquals("Three & more", ipr3.getName());
+		assertEquals("IPR900006", ipr3.getParentId());
+		Protein p = TestUtils.mockProtein();
+		for (String id : new String[] { "IPR900001", "IPR900002", "IPR900003", "IPR900004" })
+			p.getInterproResults().add(InterproResult.getInterproDb().get(id));
+		InterproResult.filterForMostInforming(p);
+		assertEquals(2, p.getInterproResults().size());
+		assertTrue(p.getInterproResults().contains(
+				InterproResult.getInterproDb().get("IPR900001")));
+		assertTrue(p.getInterproResults().contains(
+				InterproResult.getInterproDb().get("IPR900002")));
+	}
 }
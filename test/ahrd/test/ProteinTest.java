@@ -2,11 +2,13 @@ package ahrd.test;
 
 import static ahrd.controller.Settings.getSettings;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +17,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import ahrd.exception.MissingAccessionException;
+import ahrd.model.FastaReader;
 import ahrd.model.Protein;
 
 public class ProteinTest {
@@ -134,4 +137,28 @@ public class ProteinTest {
 				fastaEntries);
 	}
 
+	@Test
+	public void testFastaReader() throws IOException {
+		String str = "\n>Protein One->Expressed in stupid user\r\nSPGYDASMTDSRSSG \r\nISMSIGGRSL\r\n>Protein Two\nMADDSKFCFF\n\nLVSTFLLLAV\n";
+		FastaReader fasta = new FastaReader(new StringReader(str), true);
+		assertTrue(fasta.next());
+		assertEquals("Protein One->Expressed in stupid user", fasta.getHeader());
+		assertEquals("SPGYDASMTDSRSSGISMSIGGRSL", fasta.getSequence());
+		assertEquals(25, fasta.getSequenceLength());
+		assertTrue(fasta.next());
+		assertEquals("Protein Two", fasta.getHeader());
+		assertEquals("MADDSKFCFFLVSTFLLLAV", fasta.getSequence());
+		assertFalse(fasta.next());
+		fasta.close();
+		// Without sequences only their lengths are counted:
+		fasta = new FastaReader(new StringReader(str), false);
+		assertTrue(fasta.next());
+		assertNull(fasta.getSequence());
+		assertEquals(25, fasta.getSequenceLength());
+		assertTrue(fasta.next());
+		assertEquals(20, fasta.getSequenceLength());
+		assertFalse(fasta.next());
+		fasta.close();
+	}
+
 }
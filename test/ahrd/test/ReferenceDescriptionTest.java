@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.junit.Test;
 import org.xml.sax.SAXException;
@@ -41,7 +42,7 @@ public class ReferenceDescriptionTest {
 	public void testTokenizeDescription() {
 		String description = "Sheep wool growth factor putative subfamiLy aCtiviTy";
 		String[] tokens = { "sheep", "wool", "growth", "factor", "putative", "subfamily", "activity" };
-		Set<String> generatedTokens = TokenScoreCalculator.tokenize(description, new ArrayList<String>());
+		Set<String> generatedTokens = TokenScoreCalculator.tokenize(description, new ArrayList<Pattern>());
 		assertEquals(7, generatedTokens.size());
 		for (String tkn : tokens) {
 			assertTrue("Generated tokens do not contain '" + tkn + "'!", generatedTokens.contains(tkn));
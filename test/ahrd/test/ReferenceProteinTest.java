@@ -1,5 +1,6 @@
 package ahrd.test;
 
+import static ahrd.controller.Settings.getSettings;
 import static ahrd.controller.Settings.setSettings;
 import static ahrd.model.AhrdDb.closeDb;
 import static ahrd.model.AhrdDb.getReferenceProteinDAO;
@@ -12,7 +13,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
 
 import org.junit.Test;
 import org.xml.sax.SAXException;
@@ -102,6 +112,93 @@ public class ReferenceProteinTest {
 		}
 	}
 
+	@Test
+	public void testParseBlastDatabaseInParallel() throws IOException {
+		initTestSettings();
+		getSettings().setDatabaseSetupThreads(3);
+		int nEntries = 2 * ReferenceProtein.FASTA_ENTRIES_PER_BATCH + 17;
+		File fasta = File.createTempFile("reference_proteins", ".fasta");
+		fasta.deleteOnExit();
+		PrintWriter fastaOut = new PrintWriter(fasta);
+		try {
+			for (int i = 0; i < nEntries; i++) {
+				fastaOut.println(">sp|ACC" + i + "|PROT" + i + "_ARATH Protein number " + i + " OS=Arabidopsis");
+				fastaOut.println("MKV" + i);
+				fastaOut.println("LLA");
+			}
+			// A header not matching the regular expression is discarded along
+			// with its sequence:
+			fastaOut.println("> not a swissprot header");
+			fastaOut.println("MKVLLAMKVLLA");
+			// The last entry of a duplicated accession is kept:
+			fastaOut.println(">sp|ACC7|PROT7_ARATH Duplicated protein OS=Arabidopsis");
+			fastaOut.println("MK");
+		} finally {
+			fastaOut.close();
+		}
+		getSettings().getBlastDbSettings().get("swissprot").put("database", fasta.getPath());
+		try {
+			initializeDb(false);
+			assertEquals(nEntries + 1, ReferenceProtein.parseBlastDatabase("swissprot", false));
+			for (int i : new int[] { 0, 1, 9999, 10000, 10001, 20016, nEntries - 1 }) {
+				ReferenceProtein rp = getReferenceProteinDAO().byShortAccession.get("ACC" + i);
+				assertNotNull(rp);
+				assertEquals("sp|ACC" + i + "|PROT" + i + "_ARATH", rp.getAccession());
+				assertEquals("Protein number " + i, rp.getHrd());
+				assertEquals(Integer.valueOf(6 + String.valueOf(i).length()), rp.getSequenceLength());
+			}
+			ReferenceProtein duplicated = getReferenceProteinDAO().byAccession.get("sp|ACC7|PROT7_ARATH");
+			assertEquals("Duplicated protein", duplicated.getHrd());
+			assertEquals(Integer.valueOf(2), duplicated.getSequenceLength());
+		} finally {
+			closeDb();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testParseBlastDatabaseStopsReaderOnFailure() throws IOException, InterruptedException {
+		initTestSettings();
+		getSettings().setDatabaseSetupThreads(1);
+		// More batches than the queue between reader and writer holds:
+		int nEntries = 6 * ReferenceProtein.FASTA_ENTRIES_PER_BATCH;
+		File fasta = File.createTempFile("reference_proteins", ".fasta");
+		fasta.deleteOnExit();
+		PrintWriter fastaOut = new PrintWriter(fasta);
+		try {
+			for (int i = 0; i < nEntries; i++) {
+				fastaOut.println(">sp|ACC" + i + "|PROT" + i + "_ARATH Protein number " + i + " OS=Arabidopsis");
+				fastaOut.println("MKV");
+			}
+		} finally {
+			fastaOut.close();
+		}
+		getSettings().getBlastDbSettings().get("swissprot").put("database", fasta.getPath());
+		// Parsing fails, because the header regex lacks the accession group:
+		getSettings().getBlastDbSettings().get("swissprot").put(Settings.FASTA_HEADER_REGEX_KEY,
+				"^>(?<description>.+)$");
+		boolean failed = false;
+		try {
+			initializeDb(false);
+			ReferenceProtein.parseBlastDatabase("swissprot", false);
+		} catch (IllegalArgumentException e) {
+			failed = true;
+		} finally {
+			closeDb();
+		}
+		assertTrue(failed);
+		// The reader thread must not remain blocked on the full queue:
+		while (readerIsAlive())
+			Thread.sleep(10);
+	}
+
+	private static boolean readerIsAlive() {
+		for (StackTraceElement[] stack : Thread.getAllStackTraces().values())
+			for (StackTraceElement frame : stack)
+				if (frame.getMethodName().equals("readFastaBatches"))
+					return true;
+		return false;
+	}
+
 	@Test
 	public void testParseReferenceGoAnnotations()
 			throws IOException, MissingAccessionException, MissingProteinException, SAXException, ParsingException {
@@ -136,4 +233,41 @@ public class ReferenceProteinTest {
 			closeDb();
 		}
 	}
+
+	@Test
+	public void testParseReferenceGoAnnotationsSpillingToDisk() throws IOException {
+		setSettings(new Settings("./test/resources/ahrd_input_seq_sim_table_go_prediction.yml"));
+		// Expected GO annotations, parsed line by line:
+		Map<String, Set<String>> expected = new HashMap<String, Set<String>>();
+		for (String line : Files.readAllLines(Paths.get(getSettings().getPathToGeneOntologyResults()))) {
+			Matcher m = getSettings().getReferenceGoRegex().matcher(line);
+			if (m.find()) {
+				if (!expected.containsKey(m.group(Settings.SHORT_ACCESSION_GROUP_NAME)))
+					expected.put(m.group(Settings.SHORT_ACCESSION_GROUP_NAME), new HashSet<String>());
+				expected.get(m.group(Settings.SHORT_ACCESSION_GROUP_NAME)).add(m.group(Settings.GO_TERM_GROUP_NAME));
+			}
+		}
+		try {
+			initializeDb(false);
+			parseBlastDatabase("swissprot");
+			parseBlastDatabase("trembl");
+			parseBlastDatabase("tair");
+			int defaultMax = ReferenceProtein.defaultMaxGoAnnotationsInMemory();
+			assertTrue(defaultMax >= 10000 && defaultMax <= 1000000);
+			// Spill after every second annotation:
+			getSettings().setGoAnnotationsInMemory(2);
+			parseReferenceGoAnnotations();
+			int nAnnotatedRefProts = 0;
+			for (String shortAcc : expected.keySet()) {
+				ReferenceProtein rp = getReferenceProteinDAO().byShortAccession.get(shortAcc);
+				if (rp != null) {
+					assertEquals(expected.get(shortAcc), rp.getGoTerms());
+					nAnnotatedRefProts++;
+				}
+			}
+			assertTrue(nAnnotatedRefProts > 1);
+		} finally {
+			closeDb();
+		}
+	}
 }
@@ -1,10 +1,27 @@
 package ahrd.test;
 
+import static ahrd.controller.Settings.getSettings;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import ahrd.model.BlastResult;
+import ahrd.model.SequenceSimilarityTabularSearchResultParser;
+
 public class SequenceSimilarityTabularSearchResultParserTest {
 
 	public SequenceSimilarityTabularSearchResultParserTest() {
@@ -15,10 +32,179 @@ public class SequenceSimilarityTabularSearchResultParserTest {
 	public void setup() throws IOException {
 		TestUtils.initTestSettings();
 	}
-	
+
+	/**
+	 * Parses the argument file with the parser under test and compares each
+	 * parsed line with the result of splitting the same line with the
+	 * argument separator.
+	 */
+	private void assertParsesLikeSplit(String path, int windowSize, String sep) throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get(path));
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser(path,
+				windowSize);
+		try {
+			for (String line : lines) {
+				if (line.startsWith("#") || line.isEmpty())
+					continue;
+				assertTrue(parser.next());
+				String[] fields = line.split(sep);
+				assertEquals(fields[0], parser.getQueryAccession());
+				assertEquals(fields[1], parser.getSubjectAccession());
+				assertEquals(Integer.parseInt(fields[6]), parser.getQueryStart());
+				assertEquals(Integer.parseInt(fields[7]), parser.getQueryEnd());
+				assertEquals(Integer.parseInt(fields[8]), parser.getSubjectStart());
+				assertEquals(Integer.parseInt(fields[9]), parser.getSubjectEnd());
+				assertEquals(Double.parseDouble(BlastResult.validateDouble(fields[10])), parser.getEValue(), 0.0);
+				assertEquals(Double.parseDouble(fields[11]), parser.getBitScore(), 0.0);
+			}
+			assertFalse(parser.next());
+		} finally {
+			parser.close();
+		}
+	}
+
+	@Test
+	public void testParsesSwissprotTable() throws IOException {
+		assertParsesLikeSplit("./test/resources/swissprot_blast8_tabular.txt",
+				SequenceSimilarityTabularSearchResultParser.DEFAULT_WINDOW_SIZE, "\t");
+		assertParsesLikeSplit("./test/resources/tair_blast8_tabular.txt",
+				SequenceSimilarityTabularSearchResultParser.DEFAULT_WINDOW_SIZE, "\t");
+		assertParsesLikeSplit("./test/resources/trembl_blast8_tabular.txt",
+				SequenceSimilarityTabularSearchResultParser.DEFAULT_WINDOW_SIZE, "\t");
+	}
+
+	@Test
+	public void testParsesAcrossMappedWindows() throws IOException {
+		// Lines will frequently span two windows:
+		assertParsesLikeSplit("./test/resources/bgh04634_vs_trEMBL.txt", 256, "\t");
+	}
+
+	@Test
+	public void testParsesWithRegexSeparator() throws IOException {
+		getSettings().setSeqSimSearchTableSep("\\s+");
+		assertParsesLikeSplit("./test/resources/swissprot_blast8_tabular.txt",
+				SequenceSimilarityTabularSearchResultParser.DEFAULT_WINDOW_SIZE, "\\s+");
+	}
+
+	@Test
+	public void testParsesGzipCompressedTable() throws IOException {
+		String path = "./test/resources/bgh04634_vs_trEMBL.txt";
+		SequenceSimilarityTabularSearchResultParser plain = new SequenceSimilarityTabularSearchResultParser(path);
+		SequenceSimilarityTabularSearchResultParser compressed = new SequenceSimilarityTabularSearchResultParser(
+				TestUtils.gzipCopy(path).getPath());
+		try {
+			while (plain.next()) {
+				assertTrue(compressed.next());
+				assertEquals(plain.getQueryAccession(), compressed.getQueryAccession());
+				assertEquals(plain.getSubjectAccession(), compressed.getSubjectAccession());
+				assertEquals(plain.getQueryStart(), compressed.getQueryStart());
+				assertEquals(plain.getQueryEnd(), compressed.getQueryEnd());
+				assertEquals(plain.getSubjectStart(), compressed.getSubjectStart());
+				assertEquals(plain.getSubjectEnd(), compressed.getSubjectEnd());
+				assertEquals(plain.getEValue(), compressed.getEValue(), 0.0);
+				assertEquals(plain.getBitScore(), compressed.getBitScore(), 0.0);
+			}
+			assertFalse(compressed.next());
+		} finally {
+			plain.close();
+			compressed.close();
+		}
+	}
+
+	@Test
+	public void testParsesNumbersLikeDoubleParseDouble() throws IOException {
+		List<String> numbers = Arrays.asList("0.0", "-0.0", "1e-20", "e-100", "E-5", "3e-163", "94.4", "1067",
+				"2.3E+02", "0.00012", "123456789.123456789", "99999999999999999999.5", "1.0e-400", "7.", ".5",
+				"1.7976931348623157E308");
+		File results = File.createTempFile("numbers_blast8_tabular", ".txt");
+		results.deleteOnExit();
+		StringBuilder content = new StringBuilder();
+		for (String number : numbers) {
+			content.append("query\tsubject\t1\t2\t3\t4\t1\t10\t1\t10\t" + number + "\t" + number + "\r\n");
+		}
+		Files.write(results.toPath(), content.toString().getBytes());
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser(
+				results.getPath());
+		try {
+			for (String number : numbers) {
+				assertTrue(parser.next());
+				double expected = Double.parseDouble(BlastResult.validateDouble(number));
+				assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(parser.getEValue()));
+				assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(parser.getBitScore()));
+			}
+			assertFalse(parser.next());
+		} finally {
+			parser.close();
+		}
+	}
+
+	@Test
+	public void testInternsAccessions() throws IOException {
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser(
+				"./test/resources/bgh04634_vs_trEMBL.txt");
+		Map<String, String> seenSubjects = new HashMap<String, String>();
+		String query = null;
+		boolean foundRepeatedSubject = false;
+		try {
+			while (parser.next()) {
+				if (query != null)
+					assertSame(query, parser.getQueryAccession());
+				query = parser.getQueryAccession();
+				if (seenSubjects.containsKey(parser.getSubjectAccession())) {
+					assertSame(seenSubjects.get(parser.getSubjectAccession()), parser.getSubjectAccession());
+					foundRepeatedSubject = true;
+				}
+				seenSubjects.put(parser.getSubjectAccession(), parser.getSubjectAccession());
+			}
+		} finally {
+			parser.close();
+		}
+		// One HSP is double:
+		assertTrue(foundRepeatedSubject);
+	}
+
 	@Test
-	public void testParsesSwissprotTable() {
-		assert(true);
+	public void testParsesMoreAccessionsThanAreInternedAtATime() throws IOException {
+		File results = File.createTempFile("many_subjects_blast8_tabular", ".txt");
+		results.deleteOnExit();
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < SequenceSimilarityTabularSearchResultParser.MAX_INTERNED_ACCESSIONS + 100; i++) {
+			// Every subject occurs twice, some on either side of clearing the
+			// interned accessions:
+			lines.append("query_" + (i % 7) + "\tsubject_" + (i / 2) + "\t90.0\t100\t10\t0\t1\t100\t1\t100\t1e-"
+					+ (i % 50) + "\t" + (100 + i % 50) + "\n");
+		}
+		Files.write(results.toPath(), lines.toString().getBytes());
+		assertParsesLikeSplit(results.getPath(), SequenceSimilarityTabularSearchResultParser.DEFAULT_WINDOW_SIZE,
+				"\t");
+	}
+
+	@Test
+	public void testSkipsCommentLines() throws IOException {
+		getSettings().setSeqSimSearchTableCommentLineRegex(Pattern.compile("^#.*$"));
+		File results = File.createTempFile("commented_blast8_tabular", ".txt");
+		results.deleteOnExit();
+		List<String> lines = Files.readAllLines(Paths.get("./test/resources/tair_blast8_tabular.txt"));
+		lines.add(0, "# BLASTP 2.2.26");
+		lines.add(5, "# Fields: query id, subject id, % identity");
+		lines.add("");
+		Files.write(results.toPath(), lines);
+		assertParsesLikeSplit(results.getPath(), SequenceSimilarityTabularSearchResultParser.DEFAULT_WINDOW_SIZE,
+				"\t");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsLinesWithTooFewColumns() throws IOException {
+		File results = File.createTempFile("truncated_blast8_tabular", ".txt");
+		results.deleteOnExit();
+		Files.write(results.toPath(), "query\tsubject\t1\t2\n".getBytes());
+		SequenceSimilarityTabularSearchResultParser parser = new SequenceSimilarityTabularSearchResultParser(
+				results.getPath());
+		try {
+			parser.next();
+		} finally {
+			parser.close();
+		}
 	}
 
 }
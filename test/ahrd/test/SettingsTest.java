@@ -2,18 +2,22 @@ package ahrd.test;
 
 import static ahrd.controller.Settings.getSettings;
 import static ahrd.controller.Settings.setSettings;
+import static ahrd.controller.Utils.fromFile;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import ahrd.controller.Settings;
+import ahrd.model.DescriptionScoreCalculator;
 
 public class SettingsTest {
 
@@ -37,6 +41,8 @@ public class SettingsTest {
 		assertEquals(
 				"Test-Temperature in input.yml is set to 10 and should have been initialized correctly.",
 				Integer.valueOf(10), getSettings().getTemperature());
+		// Proteins are annotated serially by default:
+		assertEquals(1, getSettings().getAnnotationThreads());
 	}
 
 	@Test
@@ -159,4 +165,27 @@ public class SettingsTest {
 				"Path through Parameter-Space should be remembered, but flag is set to FALSE.",
 				getSettings().rememberSimulatedAnnealingPath());
 	}
+
+	@Test
+	public void testCompileBlacklist() throws IOException {
+		List<String> blacklist = fromFile("./test/resources/blacklist_descline.txt");
+		List<Pattern> merged = Settings.compileBlacklist(blacklist);
+		List<Pattern> separate = Settings.compileFilter(blacklist);
+		assertEquals(1, merged.size());
+		assertEquals(blacklist.size(), separate.size());
+		for (String description : Arrays.asList("Uncharacterized protein", "Similar to ATP synthase",
+				"ATP synthase subunit alpha", "Predicted protein", "At3g12345", "Whole genome shotgun sequence",
+				"Protein kinase domain containing protein", "", "Os01g0123456 protein")) {
+			assertEquals("Merged blacklist should judge '" + description + "' like the separate regular expressions.",
+					DescriptionScoreCalculator.passesBlacklist(description, separate),
+					DescriptionScoreCalculator.passesBlacklist(description, merged));
+		}
+		// Back-references can not be merged:
+		List<Pattern> backRefs = Settings.compileBlacklist(Arrays.asList("(a)\\1", "(b)\\1"));
+		assertEquals(2, backRefs.size());
+		assertTrue(!DescriptionScoreCalculator.passesBlacklist("xbbx", backRefs));
+		assertTrue(DescriptionScoreCalculator.passesBlacklist("abab", backRefs));
+		// Empty blacklists let every non empty description pass:
+		assertTrue(Settings.compileBlacklist(Arrays.<String> asList()).isEmpty());
+	}
 }
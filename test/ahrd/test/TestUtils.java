@@ -2,7 +2,12 @@ package ahrd.test;
 
 import static ahrd.controller.Settings.setSettings;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -10,6 +15,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 import ahrd.controller.Settings;
 import ahrd.model.BlastResult;
@@ -196,4 +202,22 @@ public class TestUtils {
 		refGos.put("accession_4", new HashSet<String>(Arrays.asList("GO:1726354", "GO:7162534")));
 		return refGos;
 	}
+	/**
+	 * @param path
+	 * @return File - a temporary gzip compressed copy of the argument file,
+	 *         deleted on exit
+	 * @throws IOException
+	 */
+	public static File gzipCopy(String path) throws IOException {
+		File gz = File.createTempFile(new File(path).getName(), ".gz");
+		gz.deleteOnExit();
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(gz));
+		try {
+			Files.copy(Paths.get(path), out);
+		} finally {
+			out.close();
+		}
+		return gz;
+	}
+
 }
@@ -7,16 +7,23 @@ import static ahrd.controller.Settings.getSettings;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import ahrd.model.BlastResult;
 import ahrd.model.Protein;
+import ahrd.model.TokenDictionary;
 import ahrd.model.TokenScoreCalculator;
+import ahrd.model.TokenScoreMap;
+import ahrd.model.TokenSet;
 
 public class TokenScoreCalculatorTest {
 
@@ -113,6 +120,33 @@ public class TokenScoreCalculatorTest {
 				tsc.getCumulativeTokenOverlapScores().get("token_three"), 0);
 	}
 
+	@Test
+	public void testReweighBlastDatabaseScores() throws IOException {
+		Protein p = TestUtils.mockProtein(); // sequence-length = 200
+		p.addBlastResult(br1);
+		p.addBlastResult(br2);
+		p.addBlastResult(br3);
+		// Filter the candidate descriptions down to a single one and change
+		// the Blast-Database-Weights:
+		Map<String, List<BlastResult>> filtered = new HashMap<String, List<BlastResult>>();
+		filtered.put("swissprot", new ArrayList<BlastResult>(Arrays.asList(br1)));
+		p.setBlastResults(filtered);
+		getSettings().setBlastDbWeight("trembl", "20");
+		p.resetScores();
+		TokenScoreCalculator tsc = p.getTokenScoreCalculator();
+		// All scores are still measured over all three BlastResults:
+		assertEquals(203.5, tsc.getTotalTokenBitScore(), 0.0);
+		assertEquals(0.88, tsc.getTotalTokenOverlapScore(), 0.0);
+		assertEquals(88.0, p.getDescriptionScoreCalculator().getMaxBitScore(), 0.0);
+		assertEquals(133.54, tsc.getCumulativeTokenBitScores().get("token_two"), 0.0);
+		// but weighed with the changed Blast-Database-Weights:
+		assertEquals(170.0, tsc.getTotalTokenBlastDatabaseScore(), 0.0);
+		assertEquals(150.0, tsc.getCumulativeTokenBlastDatabaseScores().get("token_one"), 0.0);
+		assertEquals(70.0, tsc.getCumulativeTokenBlastDatabaseScores().get("token_two"), 0.0);
+		assertEquals(20.0, tsc.getCumulativeTokenBlastDatabaseScores().get("token_three"), 0.0);
+		assertTrue(tsc.getTokenScores().isEmpty());
+	}
+
 	@Test
 	public void testSumOfAllTokenScores() {
 		Protein p = TestUtils.mockProtein();
@@ -251,4 +285,68 @@ public class TokenScoreCalculatorTest {
 			fail("Validation of the three weights in the formula Token-Score failed. It is too restrictive, a delta of 0.001 has to be excepted.");
 		}
 	}
+
+	@Test
+	public void testTokenSet() {
+		TokenSet tokens = TokenScoreCalculator.tokenize("Zinc-finger protein, ZINC finger (A)",
+				new ArrayList<Pattern>());
+		assertEquals(new HashSet<String>(Arrays.asList("zinc", "finger", "protein", "a")), tokens);
+		// Iteration is in lexicographic order:
+		assertEquals(Arrays.asList("a", "finger", "protein", "zinc"), new ArrayList<String>(tokens));
+		assertEquals(TokenDictionary.getId("finger"), tokens.getId(1));
+		assertTrue(tokens.remove("protein"));
+		assertTrue(!tokens.contains("protein"));
+		assertTrue(!tokens.contains("never_seen_token"));
+		assertEquals(3, tokens.size());
+	}
+
+	@Test
+	public void testTokenScoreMap() {
+		TokenScoreMap scores = new TokenScoreMap();
+		Map<String, Double> expected = new HashMap<String, Double>();
+		// Force the map to grow several times:
+		for (int i = 0; i < 1000; i++) {
+			scores.addScore(TokenDictionary.getId("token_" + i), i);
+			scores.addScore(TokenDictionary.getId("token_" + i), 0.5);
+			expected.put("token_" + i, i + 0.5);
+		}
+		assertEquals(expected, scores);
+		assertEquals(1000, scores.getIds().length);
+		assertTrue(Double.isNaN(scores.getScore(TokenDictionary.getId("token_without_score"))));
+		assertEquals(null, scores.get("token_without_score"));
+	}
+
+	@Test
+	public void testRemoveFromTokenScoreMap() {
+		TokenScoreMap scores = new TokenScoreMap();
+		Map<String, Double> expected = new HashMap<String, Double>();
+		for (int i = 0; i < 1000; i++) {
+			scores.put("token_" + i, (double) i);
+			expected.put("token_" + i, (double) i);
+		}
+		// Remove every third token via the entry set's iterator:
+		for (Iterator<Map.Entry<String, Double>> i = scores.entrySet().iterator(); i.hasNext();) {
+			Map.Entry<String, Double> entry = i.next();
+			if (entry.getValue() % 3 == 0) {
+				i.remove();
+				expected.remove(entry.getKey());
+			}
+		}
+		assertEquals(expected, scores);
+		assertEquals(Double.valueOf(1), scores.remove("token_1"));
+		expected.remove("token_1");
+		assertEquals(null, scores.remove("token_1"));
+		assertEquals(null, scores.remove("token_without_score"));
+		assertEquals(expected, scores);
+		// Removed tokens can be added again, and slots of removed tokens are
+		// reused after rehashing:
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 1000; i += 3) {
+				scores.put("token_" + i, (double) round);
+				assertEquals(Double.valueOf(round), scores.remove("token_" + i));
+			}
+		}
+		assertEquals(expected, scores);
+		assertEquals(expected.size(), scores.getIds().length);
+	}
 }
@@ -4,11 +4,17 @@ import static ahrd.controller.Settings.getSettings;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import nu.xom.ParsingException;
@@ -18,11 +24,16 @@ import org.junit.Test;
 import org.xml.sax.SAXException;
 
 import ahrd.controller.Parameters;
+import ahrd.controller.Settings;
 import ahrd.controller.Trainer;
+import ahrd.controller.Utils;
 import ahrd.exception.MissingAccessionException;
 import ahrd.exception.MissingInterproResultException;
 import ahrd.exception.MissingProteinException;
+import ahrd.model.BlastResult;
+import ahrd.model.CompiledProtein;
 import ahrd.model.Protein;
+import ahrd.view.TrainerOutputWriter;
 
 public class TrainerTest {
 
@@ -244,4 +255,268 @@ public class TrainerTest {
 							.size() == 0);
 		}
 	}
+
+	@Test
+	public void testEvaluateCompiledProteins() throws MissingInterproResultException, IOException, SQLException {
+		this.trainer.compileProteins();
+		List<Parameters> parameters = new ArrayList<Parameters>();
+		parameters.add(getSettings().getParameters().clone());
+		Utils.setRandom(new Random(42L));
+		try {
+			for (int i = 0; i < 5; i++)
+				parameters.add(Parameters.randomParameters(getSettings().getSortedBlastDatabases()));
+		} finally {
+			Utils.setRandom(null);
+		}
+		for (Parameters params : parameters) {
+			getSettings().setParameters(params);
+			this.trainer.evaluateCompiledProteins();
+			double avgEvlScr = getSettings().getAvgEvaluationScore();
+			double avgTruePosRate = getSettings().getAvgTruePositivesRate();
+			double avgFalsePosRate = getSettings().getAvgFalsePositivesRate();
+			// Score the Proteins themselves:
+			for (Protein prot : this.trainer.getProteins().values())
+				prot.resetScores();
+			this.trainer.assignHumanReadableDescriptions();
+			this.trainer.calculateEvaluationScores();
+			this.trainer.calcAveragesOfEvalScoreTPRandFPR();
+			assertTrue(getSettings().getAvgEvaluationScore() > 0.0);
+			assertEquals(getSettings().getAvgEvaluationScore(), avgEvlScr, 0.0);
+			assertEquals(getSettings().getAvgTruePositivesRate(), avgTruePosRate, 0.0);
+			assertEquals(getSettings().getAvgFalsePositivesRate(), avgFalsePosRate, 0.0);
+		}
+	}
+
+	@Test
+	public void testCompiledProteinsScoreAllValidBlastResults()
+			throws MissingInterproResultException, IOException, SQLException {
+		Protein prot = this.trainer.getProteins().get("gene:chr01.1056:mRNA:chr01.1056");
+		// Find the description AHRD assigns as is:
+		this.trainer.assignHumanReadableDescription(prot);
+		BlastResult unboosted = prot.getDescriptionScoreCalculator().getHighestScoringBlastResult();
+		prot.resetScores();
+		// Give the Protein more valid BlastResults than are kept as
+		// candidates: The best scoring ones are uninformative fillers, the
+		// others boost the tokens of another candidate description:
+		List<BlastResult> trembl = new ArrayList<BlastResult>(prot.getBlastResults().get("trembl"));
+		BlastResult boosted = null;
+		for (BlastResult br : trembl)
+			if (boosted == null && !br.getTokens().isEmpty()
+					&& !br.getTokens().containsAll(unboosted.getTokens()))
+				boosted = br;
+		for (int i = 0; i < BlastResult.MAX_BLAST_RESULTS_PER_DATABASE - trembl.size(); i++) {
+			BlastResult filler = new BlastResult("filler_" + i, 1.0, "filler" + i, 1, 2, 1, 2,
+					boosted.getSubjectLength(), 1.0, "trembl");
+			filler.getTokens().add("filler" + i);
+			prot.addBlastResult(filler);
+		}
+		for (int i = 0; i < 4 * BlastResult.MAX_BLAST_RESULTS_PER_DATABASE; i++) {
+			BlastResult booster = new BlastResult(boosted.getAccession() + "_booster_" + i, 10.0,
+					boosted.getDescription(), boosted.getQueryStart(), boosted.getQueryEnd(),
+					boosted.getSubjectStart(), boosted.getSubjectEnd(), boosted.getSubjectLength(),
+					boosted.getBitScore(), "trembl");
+			booster.setTokens(boosted.getTokens());
+			prot.addBlastResult(booster);
+		}
+		this.trainer.compileProteins();
+		// Score the Proteins as AHRD does, i.e. based on the scores measured
+		// while adding the BlastResults:
+		this.trainer.assignHumanReadableDescriptions();
+		this.trainer.calculateEvaluationScores();
+		assertEquals(BlastResult.MAX_BLAST_RESULTS_PER_DATABASE, prot.getBlastResults().get("trembl").size());
+		BlastResult chosen = prot.getDescriptionScoreCalculator().getHighestScoringBlastResult();
+		assertTrue(chosen.getTokens().containsAll(boosted.getTokens()));
+		double bitScoreWeight = getSettings().getTokenScoreBitScoreWeight();
+		double databaseScoreWeight = getSettings().getTokenScoreDatabaseScoreWeight();
+		double overlapScoreWeight = getSettings().getTokenScoreOverlapScoreWeight();
+		List<String> sortedBlastDbs = getSettings().getSortedBlastDatabases();
+		double[] blastDbWeights = new double[sortedBlastDbs.size()];
+		double[] descriptionScoreBitScoreWeights = new double[sortedBlastDbs.size()];
+		for (int i = 0; i < sortedBlastDbs.size(); i++) {
+			blastDbWeights[i] = getSettings().getBlastDbWeight(sortedBlastDbs.get(i));
+			descriptionScoreBitScoreWeights[i] = getSettings().getDescriptionScoreBitScoreWeight(sortedBlastDbs.get(i));
+		}
+		// Compiled Proteins are in the order of the Trainer's Proteins, and
+		// their candidates in the order of the Proteins' BlastResults:
+		int i = 0;
+		for (Protein p : this.trainer.getProteins().values()) {
+			CompiledProtein compiled = this.trainer.getCompiledProteins().get(i++);
+			int hit = compiled.findHighestScoringHit(bitScoreWeight, databaseScoreWeight, overlapScoreWeight,
+					blastDbWeights, descriptionScoreBitScoreWeights);
+			List<BlastResult> candidates = new ArrayList<BlastResult>();
+			for (List<BlastResult> brs : p.getBlastResults().values())
+				candidates.addAll(brs);
+			assertTrue(p.getAccession(), candidates.get(hit) == p.getDescriptionScoreCalculator()
+					.getHighestScoringBlastResult());
+			if (compiled.isEvaluated())
+				assertEquals(p.getAccession(), p.getEvaluationScoreCalculator().getEvalutionScore(),
+						compiled.getEvaluationScore(hit), 0.0);
+		}
+	}
+
+	@Test
+	public void testParallelEvaluationEqualsSerialEvaluation() throws MissingInterproResultException, IOException,
+			SQLException {
+		this.trainer.assignHumanReadableDescriptions();
+		this.trainer.calculateEvaluationScores();
+		this.trainer.findHighestPossibleEvaluationScores();
+		HashMap<String, Double> evlScrs = new HashMap<String, Double>();
+		HashMap<String, Double> highestEvlScrs = new HashMap<String, Double>();
+		for (Protein prot : this.trainer.getProteins().values()) {
+			evlScrs.put(prot.getAccession(), prot.getEvaluationScoreCalculator().getEvalutionScore());
+			highestEvlScrs.put(prot.getAccession(),
+					prot.getEvaluationScoreCalculator().getHighestPossibleEvaluationScore());
+		}
+		this.trainer.calcAveragesOfEvalScoreTPRandFPR();
+		double avgEvlScr = getSettings().getAvgEvaluationScore();
+		// Evaluate again using several threads:
+		getSettings().setEvaluationThreads(4);
+		this.trainer.calculateEvaluationScores();
+		this.trainer.findHighestPossibleEvaluationScores();
+		for (Protein prot : this.trainer.getProteins().values()) {
+			assertEquals(evlScrs.get(prot.getAccession()),
+					prot.getEvaluationScoreCalculator().getEvalutionScore());
+			assertEquals(highestEvlScrs.get(prot.getAccession()),
+					prot.getEvaluationScoreCalculator().getHighestPossibleEvaluationScore());
+		}
+		this.trainer.calcAveragesOfEvalScoreTPRandFPR();
+		assertEquals(avgEvlScr, getSettings().getAvgEvaluationScore(), 0.0);
+	}
+
+	/**
+	 * Sets up a new Trainer running five iterations, checkpointing after
+	 * every second.
+	 */
+	private Trainer checkpointingTrainer(Trainer trainer, String pathToCheckpoint, boolean resume)
+			throws IOException, MissingAccessionException, MissingProteinException, SAXException, ParsingException {
+		trainer.setup(false);
+		trainer.setupReferences();
+		getSettings().setTemperature(5);
+		getSettings().setPathToCheckpoint(pathToCheckpoint);
+		getSettings().setCheckpointInterval(2);
+		getSettings().setResumeFromCheckpoint(resume);
+		return trainer;
+	}
+
+	@Test
+	public void testResumeFromCheckpoint() throws IOException, MissingAccessionException, MissingProteinException,
+			SAXException, ParsingException, MissingInterproResultException, SQLException {
+		File checkpoint = File.createTempFile("trainer_checkpoint", ".ser");
+		checkpoint.delete();
+		try {
+			// Uninterrupted run:
+			Trainer uninterrupted = checkpointingTrainer(new Trainer("./test/resources/trainer_input.yml"),
+					checkpoint.getPath(), false);
+			Utils.setRandom(new Random(7L));
+			uninterrupted.train();
+			String pathLog = Utils.readFile(getSettings().getPathToSimulatedAnnealingPathLog());
+			checkpoint.delete();
+			// Run crashing in its third iteration, i.e. after the first
+			// checkpoint:
+			Trainer crashing = checkpointingTrainer(new Trainer("./test/resources/trainer_input.yml") {
+				private int iterations = 0;
+
+				@Override
+				public void coolDown() {
+					super.coolDown();
+					if (++iterations == 3)
+						throw new RuntimeException("Simulated crash");
+				}
+			}, checkpoint.getPath(), false);
+			Utils.setRandom(new Random(7L));
+			try {
+				crashing.train();
+				fail("Trainer should have crashed.");
+			} catch (RuntimeException expected) {
+				assertEquals("Simulated crash", expected.getMessage());
+			}
+			assertTrue(checkpoint.exists());
+			// Resume:
+			Utils.setRandom(new Random(123L));
+			Trainer resumed = checkpointingTrainer(new Trainer("./test/resources/trainer_input.yml"),
+					checkpoint.getPath(), true);
+			resumed.train();
+			assertEquals(uninterrupted.getBestParameters(), resumed.getBestParameters());
+			assertEquals(uninterrupted.getBestParameters().getAvgEvaluationScore(),
+					resumed.getBestParameters().getAvgEvaluationScore());
+			assertEquals(uninterrupted.getBestParametersFoundAtTemperature(),
+					resumed.getBestParametersFoundAtTemperature());
+			assertEquals(uninterrupted.getTestedParameters(), resumed.getTestedParameters());
+			assertEquals(pathLog, Utils.readFile(getSettings().getPathToSimulatedAnnealingPathLog()));
+		} finally {
+			Utils.setRandom(null);
+			checkpoint.delete();
+		}
+	}
+
+	@Test
+	public void testResumePathLogRefusesIncompletePathLog() throws IOException {
+		File pathLog = File.createTempFile("sim_anneal_path_log", ".csv");
+		pathLog.deleteOnExit();
+		getSettings().setPathToSimulatedAnnealingPathLog(pathLog.getPath());
+		Files.write(pathLog.toPath(), "header\nrow\nrow written after the checkpoint\n".getBytes());
+		TrainerOutputWriter outWriter = new TrainerOutputWriter();
+		// Rows written after the checkpoint are discarded:
+		outWriter.resumePathLog(11L);
+		outWriter.closePathLog();
+		assertEquals("header\nrow\n", Utils.readFile(pathLog.getPath()));
+		// A path-log shorter than at the checkpoint is refused:
+		try {
+			outWriter.resumePathLog(12L);
+			fail("Resuming a truncated path-log should have failed.");
+		} catch (IOException expected) {
+		}
+		assertEquals("header\nrow\n", Utils.readFile(pathLog.getPath()));
+		// As is a missing one:
+		pathLog.delete();
+		try {
+			outWriter.resumePathLog(11L);
+			fail("Resuming a missing path-log should have failed.");
+		} catch (IOException expected) {
+		}
+		assertTrue(!pathLog.exists());
+	}
+
+	@Test
+	public void testTrainChains() throws MissingInterproResultException, IOException, SQLException {
+		Settings settings = getSettings();
+		Parameters startParameters = settings.getParameters().clone();
+		settings.setTemperature(3);
+		settings.setAnnealingChains(3);
+		settings.setAnnealingThreads(2);
+		settings.setAnnealingSeed(42L);
+		try {
+			List<Trainer> chains = this.trainer.trainChains();
+			assertEquals(3, chains.size());
+			// The chains must not have altered the caller's Settings:
+			assertTrue(settings == getSettings());
+			assertEquals(Integer.valueOf(3), settings.getTemperature());
+			assertEquals(startParameters, settings.getParameters());
+			for (int i = 0; i < chains.size(); i++) {
+				assertNotNull(chains.get(i).getBestParameters());
+				assertNotNull(chains.get(i).getBestParameters().getAvgEvaluationScore());
+				assertTrue(new File(Trainer.chainPathToSimulatedAnnealingPathLog(
+						settings.getPathToSimulatedAnnealingPathLog(), i)).exists());
+			}
+			// Given a seed, results do not depend on the number of threads:
+			settings.setAnnealingThreads(1);
+			List<Trainer> serialChains = this.trainer.trainChains();
+			for (int i = 0; i < chains.size(); i++) {
+				assertEquals(chains.get(i).getBestParameters(), serialChains.get(i).getBestParameters());
+				assertEquals(chains.get(i).getBestParameters().getAvgEvaluationScore(),
+						serialChains.get(i).getBestParameters().getAvgEvaluationScore(), 0.0);
+			}
+		} finally {
+			for (int i = 0; i < 3; i++)
+				new File(Trainer.chainPathToSimulatedAnnealingPathLog(settings.getPathToSimulatedAnnealingPathLog(), i))
+						.delete();
+		}
+	}
+
+	@Test
+	public void testChainPathToSimulatedAnnealingPathLog() {
+		assertEquals(new File("./test/sim_anneal_path_log_chain_7.csv").getPath(),
+				Trainer.chainPathToSimulatedAnnealingPathLog("./test/sim_anneal_path_log.csv", 7));
+		assertEquals("path_log_chain_0", Trainer.chainPathToSimulatedAnnealingPathLog("path_log", 0));
+	}
 }
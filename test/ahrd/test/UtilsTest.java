@@ -2,8 +2,14 @@ package ahrd.test;
 
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -12,6 +18,7 @@ import java.util.Set;
 import org.junit.Test;
 
 import ahrd.controller.Utils;
+import ahrd.controller.WriteBehindOutputStream;
 
 public class UtilsTest {
 
@@ -24,6 +31,76 @@ public class UtilsTest {
 		assertEquals(0, fromFile.size());
 	}
 
+	@Test
+	public void testReadsAndWritesGzipCompressedFiles() throws IOException {
+		String path = "test/resources/proteins.fasta";
+		String gzPath = TestUtils.gzipCopy(path).getPath();
+		assertTrue(Utils.isCompressed(gzPath));
+		assertFalse(Utils.isCompressed(path));
+		assertEquals(Utils.readFile(path), Utils.readFile(gzPath));
+		// Written compressed, if the file name ends with '.gz':
+		File out = File.createTempFile("ahrd_output", Utils.GZIP_SUFFIX);
+		out.deleteOnExit();
+		BufferedWriter bw = Utils.openWriter(out.getPath());
+		bw.write(Utils.readFile(path));
+		bw.close();
+		assertTrue(Utils.isCompressed(out.getPath()));
+		assertEquals(Utils.readFile(path), Utils.readFile(out.getPath()));
+	}
+
+	@Test(timeout = 10000)
+	public void testWriteBehindOutputStreamDoesNotBlockAfterFailure() throws IOException {
+		final IOException diskFull = new IOException("disk full");
+		final boolean[] closed = new boolean[1];
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw diskFull;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				// Fail only after the producer has filled the queue:
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw diskFull;
+			}
+
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		WriteBehindOutputStream out = new WriteBehindOutputStream(failing, "failing");
+		byte[] chunk = new byte[WriteBehindOutputStream.CHUNK_SIZE];
+		IOException thrown = null;
+		try {
+			for (int i = 0; i < 4 * WriteBehindOutputStream.CHUNKS_WRITE_BEHIND; i++)
+				out.write(chunk);
+		} catch (IOException e) {
+			thrown = e;
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			if (thrown == null)
+				thrown = e;
+		}
+		assertSame(diskFull, thrown);
+		assertTrue(closed[0]);
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsZstdCompressedFiles() throws IOException {
+		File zst = File.createTempFile("proteins", ".fasta.zst");
+		zst.deleteOnExit();
+		Files.write(zst.toPath(), new byte[] { (byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd, 0, 0 });
+		Utils.openReader(zst.getPath());
+	}
+
 	@Test
 	public void testRandomTrueOrFalse() {
 		List<Boolean> rands = new ArrayList<Boolean>();